@@ -0,0 +1,87 @@
+package com.WebsitePinger.Ping.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared setup for the benchmarks.
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Outside a Spring context logback logs everything at DEBUG; per-check logging would dominate the numbers.
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * No logging at all, e.g. while shutting down with checks still in flight.
+     */
+    public static void silenceLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+    }
+
+    /**
+     * In-process website serving {@link HtmlFixtures} pages at {@code /page/<n>}.
+     * Pages whose number is a multiple of {@code changeEvery} alternate between two revisions,
+     * so every check of them sees a change; the others never change. {@code changeEvery = 0} means no page ever changes.
+     */
+    public static final class StubSite implements AutoCloseable {
+
+        private final HttpServer server;
+        private final ExecutorService executor;
+        private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+        public StubSite(HtmlFixtures.Size size, int changeEvery) throws IOException {
+            // The JDK server writes headers and body separately; without TCP_NODELAY every response on a
+            // reused keep-alive connection stalls ~40 ms on Nagle + delayed ACK. Read once, before the first server starts
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            byte[] stable = HtmlFixtures.page(size, 1).getBytes(StandardCharsets.UTF_8);
+            byte[] changed = HtmlFixtures.page(size, 2).getBytes(StandardCharsets.UTF_8);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+            server.createContext("/page/", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                int page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+                byte[] body = stable;
+                if (changeEvery > 0 && page % changeEvery == 0) {
+                    int count = requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+                    body = count % 2 == 0 ? changed : stable;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        public String url(int page) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/page/" + page;
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleaning and comparison of a single page, the CPU-bound part of every check.
+ * {@code jsoupDomText} is the DOM-based cleaning the streaming normalizer replaced, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CleanBenchmark {
+
+    private static final String URL = "https://example.com/results";
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public HtmlFixtures.Size size;
+
+    private String page;
+    private String changedPage;
+    private ContentComparator comparator;
+    private ContentComparator fingerprintOnly;
+    private ContentFilter regions;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        page = HtmlFixtures.page(size, 1);
+        changedPage = HtmlFixtures.page(size, 2);
+        comparator = new ContentComparator(false, true, new DiffEngine(2000, 8, 20), new NoOpSnapshotStore());
+        fingerprintOnly = new ContentComparator(false, false, null, new NoOpSnapshotStore());
+        regions = ContentFilter.of(List.of("main"), List.of(".ad", "form"), List.of("Last updated: \\S+ \\S+"));
+        // Baselines, so the compare benchmarks measure steady-state checks rather than first checks
+        comparator.compareAndStore(URL, page);
+        comparator.compareAndStore(URL + "?regions", page, regions);
+        fingerprintOnly.compareAndStore(URL, page);
+    }
+
+    @Benchmark
+    public String streamingNormalize() {
+        return HtmlTextNormalizer.normalize(page);
+    }
+
+    @Benchmark
+    public ContentFingerprint streamingFingerprint() {
+        return HtmlTextNormalizer.fingerprint(page);
+    }
+
+    @Benchmark
+    public String jsoupDomText() {
+        Document doc = Jsoup.parse(page);
+        doc.select("script").remove();
+        doc.select("input[type=hidden]").remove();
+        List<Node> comments = new ArrayList<>();
+        doc.forEachNode(node -> {
+            if (node instanceof Comment) {
+                comments.add(node);
+            }
+        });
+        comments.forEach(Node::remove);
+        return doc.body().text().replaceAll("\\s+", " ").trim();
+    }
+
+    // The common case: the page did not change
+    @Benchmark
+    public ComparisonResult compareUnchanged() {
+        return comparator.compareAndStore(URL, page);
+    }
+
+    // With diffing off nothing needs the cleaned text, so the page is hashed as it is tokenized
+    @Benchmark
+    public ComparisonResult compareUnchangedWithoutDiff() {
+        return fingerprintOnly.compareAndStore(URL, page);
+    }
+
+    // Selectors need the DOM path
+    @Benchmark
+    public ComparisonResult compareUnchangedWithSelectors() {
+        return comparator.compareAndStore(URL + "?regions", page, regions);
+    }
+
+    // Every call is a change, so this includes the word diff
+    @Benchmark
+    public ComparisonResult compareChanged() {
+        flip = !flip;
+        return comparator.compareAndStore(URL, flip ? changedPage : page);
+    }
+}
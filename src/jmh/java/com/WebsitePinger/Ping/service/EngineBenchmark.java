@@ -0,0 +1,183 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.cluster.ShardRouter;
+import com.WebsitePinger.Ping.cluster.StaticMembership;
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import com.WebsitePinger.Ping.store.SnapshotStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * The two check engines (monitor.engine) side by side: a full cycle over {@code urls} URLs of the
+ * in-process stub site, through the reactive pipeline or as blocking checks on virtual threads, with the
+ * same concurrency cap. One op is a cycle, so ops/s x urls is checks per second. Per-check latency
+ * (dispatch to done, queueing included) is printed as p50/p99/p99.9 after each iteration; run with
+ * {@code -bm sample} for cycle latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class EngineBenchmark {
+
+    private static final int MAX_CONCURRENCY = 64;
+
+    @Param({"reactive", "virtual-threads"})
+    public String engine;
+
+    @Param({"1000", "10000"})
+    public int urls;
+
+    private BenchmarkSupport.StubSite site;
+    private Scheduler cleanerScheduler;
+    private ConnectionProvider connectionProvider;
+    private HttpClient httpClient;
+    private ScheduledMonitorTask task;
+    private Timer checkLatency;
+    private final List<String> targets = new ArrayList<>();
+    private final AtomicLong errors = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        site = new BenchmarkSupport.StubSite(HtmlFixtures.Size.SMALL, 10);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cleanerScheduler = new CleanerConfig().cleanerScheduler(registry, 0, 0, MAX_CONCURRENCY);
+        // Not fresh and empty: don't register the default (external) URL
+        SnapshotStore store = new NoOpSnapshotStore() {
+            @Override
+            public boolean isFresh() {
+                return false;
+            }
+
+            @Override
+            public Map<String, MonitorSettings> loadMonitors() {
+                return Map.of();
+            }
+        };
+        NotificationService notifier = new NotificationService() {
+            @Override
+            public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+            }
+
+            @Override
+            public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+                errors.incrementAndGet();
+            }
+        };
+        MonitorMetrics metrics = new MonitorMetrics(registry);
+        FetchClientConfig clientConfig = new FetchClientConfig();
+        // One pooled connection per concurrent check, which is what the JDK client's unbounded pool opens
+        connectionProvider = clientConfig.fetchConnectionProvider(MAX_CONCURRENCY, 128, 10_000, 60_000, 600_000, 30_000);
+        WebClient.Builder webClient = WebClient.builder()
+                .clientConnector(clientConfig.fetchClientConnector(connectionProvider, 5_000, 10_000, true, true, false));
+        // The stub is a single host serving every page: measure the engine, not the politeness limit
+        HostRateLimiter rateLimiter = new HostRateLimiter(webClient, metrics, false, 2.0, 4, 30_000, 600_000, 3_600_000, false, 86_400_000);
+        HostCircuitBreaker circuitBreaker = new HostCircuitBreaker(metrics, true, 5, 60_000, 600_000);
+        WebsiteFetcher fetcher = new WebsiteFetcher(webClient, metrics, rateLimiter, circuitBreaker, 5_242_880, 3, 1_000, 5_000);
+        BlockingWebsiteFetcher blockingFetcher = null;
+        if (engine.equals("virtual-threads")) {
+            httpClient = clientConfig.blockingFetchClient(5_000);
+            blockingFetcher = new BlockingWebsiteFetcher(httpClient, fetcher, metrics, rateLimiter, circuitBreaker,
+                    10_000, true, true);
+        }
+        task = new ScheduledMonitorTask(fetcher, blockingFetcher,
+                new ContentComparator(false, true, new DiffEngine(2000, 8, 20), store),
+                notifier,
+                new AdaptivePollingPolicy(60_000, 600_000, 2.0, 3, 86_400_000),
+                rateLimiter, store, new PageHistoryStore(registry, true, 20, 2_592_000_000L, 16 << 20),
+                new ShardRouter(new StaticMembership("bench"), registry), metrics,
+                cleanerScheduler, MAX_CONCURRENCY, 100, 512, 0.1);
+        for (int i = 0; i < urls; i++) {
+            targets.add(site.url(i));
+        }
+        task.startMonitoring(targets.stream().collect(Collectors.toMap(url -> url,
+                url -> task.defaultSettings())));
+        // Baseline cycle: first checks store fingerprints instead of comparing
+        resetLatency();
+        cycle();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLatency() {
+        // A fresh registry per iteration, so the percentiles cover just that iteration
+        checkLatency = Timer.builder("bench.check.latency")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLatency() {
+        if (checkLatency.count() == 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("check latency (" + engine + ", " + urls + " URLs):");
+        for (ValueAtPercentile percentile : checkLatency.takeSnapshot().percentileValues()) {
+            line.append(String.format(" p%s=%.1f ms", percentile.percentile() * 100,
+                    percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        System.out.println(line);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        task.shutdown();
+        cleanerScheduler.dispose();
+        connectionProvider.dispose();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        site.close();
+        if (errors.get() > 0) {
+            System.out.println("WARNING: " + errors.get() + " checks failed; the numbers include failures");
+        }
+    }
+
+    @Benchmark
+    public void cycle() {
+        long now = System.currentTimeMillis();
+        long dispatched = System.nanoTime();
+        if (engine.equals("virtual-threads")) {
+            task.runCycle(targets, now, url -> checkLatency.record(Duration.ofNanos(System.nanoTime() - dispatched)));
+        } else {
+            Flux.fromIterable(targets)
+                    .flatMap(url -> task.checkUrl(url, now)
+                            .doFinally(signal -> checkLatency.record(Duration.ofNanos(System.nanoTime() - dispatched))),
+                            MAX_CONCURRENCY)
+                    .blockLast();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.Random;
+
+/**
+ * Deterministic, real-world-like pages for the benchmarks: a head full of styles and scripts,
+ * navigation, articles, result tables, forms with hidden fields and comments scattered around.
+ * Pages of the same size and revision are identical; a new revision changes a timestamp and
+ * one result in the middle of the page.
+ */
+public final class HtmlFixtures {
+
+    public enum Size {
+        SMALL(8 * 1024), MEDIUM(128 * 1024), HUGE(2 * 1024 * 1024);
+
+        private final int bytes;
+
+        Size(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static final String[] WORDS = {
+            "results", "semester", "examination", "student", "published", "pending", "course", "credits", "grade",
+            "university", "notice", "the", "of", "and", "for", "with", "&amp;", "&nbsp;", "revaluation", "schedule",
+            "department", "&#8217;s", "&quot;final&quot;", "centre", "portal", "download", "admit", "card", "fees",
+            "deadline", "2024-25", "B.E.", "M.Tech", "&copy;", "registration", "hall", "ticket"
+    };
+
+    private HtmlFixtures() {
+    }
+
+    public static String page(Size size, int revision) {
+        return page(size.bytes, revision);
+    }
+
+    /**
+     * A page of about {@code bytes} bytes (never less than the fixed head, navigation and footer).
+     */
+    public static String page(int bytes, int revision) {
+        Random random = new Random(42);
+        StringBuilder html = new StringBuilder(bytes + 4096);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">")
+                .append("<title>Examination Results Portal</title>")
+                .append("<link rel=\"stylesheet\" href=\"/static/css/main.3f9a1c.css\">")
+                .append("<style>body{font-family:Arial,sans-serif;margin:0}.nav a{color:#004b87}")
+                .append(".results td,.results th{padding:4px 8px;border:1px solid #ccc}</style>")
+                .append("<script async src=\"https://www.googletagmanager.com/gtag/js?id=G-XYZ\"></script>")
+                .append("<script>window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments)}")
+                .append("gtag('js',new Date());gtag('config','G-XYZ');if(a<b&&c>d){document.write('<p></p>')}</script>")
+                .append("<script type=\"application/ld+json\">{\"@context\":\"https://schema.org\",\"@type\":\"WebSite\"}</script>")
+                .append("</head>\n<body class=\"home page\">\n<!-- header generated at ").append(revision).append(" -->\n")
+                .append("<header class=\"site-header\"><nav class=\"nav\"><ul>");
+        for (int i = 0; i < 12; i++) {
+            html.append("<li><a href=\"/section/").append(i).append("\">").append(word(random)).append(' ')
+                    .append(word(random)).append("</a></li>");
+        }
+        html.append("</ul></nav></header>\n<main id=\"content\">\n")
+                .append("<p class=\"updated\">Last updated: 2024-06-").append(10 + revision % 20)
+                .append(" 10:").append(revision % 60).append("</p>\n");
+
+        int section = 0;
+        int middle = -1;
+        while (html.length() < bytes) {
+            if (middle < 0 && html.length() >= bytes / 2) {
+                middle = section;
+            }
+            appendSection(html, random, section, section == middle ? revision : 0);
+            section++;
+        }
+
+        html.append("</main>\n<footer><p>&copy; 2024 University Examination Cell. All rights reserved.</p>")
+                .append("<script>(function(){var s=document.createElement('script');s.src='/js/chat.js';")
+                .append("document.body.appendChild(s)})();</script></footer>\n</body></html>\n");
+        return html.toString();
+    }
+
+    private static void appendSection(StringBuilder html, Random random, int section, int revision) {
+        html.append("<article class=\"notice\" id=\"notice-").append(section).append("\"><h2>")
+                .append(sentence(random, 6)).append("</h2>\n");
+        for (int p = 0; p < 3; p++) {
+            html.append("<p>").append(sentence(random, 40)).append(" <a href=\"/notice/").append(section)
+                    .append("\">Read <b>more</b></a></p>\n");
+        }
+        html.append("<!-- ad slot ").append(section).append(" --><div class=\"ad\" data-slot=\"")
+                .append(random.nextInt(1000)).append("\"></div>\n")
+                .append("<table class=\"results\"><thead><tr><th>USN</th><th>Name</th><th>SGPA</th><th>Status</th></tr></thead><tbody>");
+        for (int r = 0; r < 10; r++) {
+            String sgpa = (5 + random.nextInt(5)) + "." + random.nextInt(10);
+            html.append("<tr><td>1XX21CS").append(String.format("%03d", section * 10 + r)).append("</td><td>")
+                    .append(word(random)).append(' ').append(word(random)).append("</td><td>")
+                    .append(r == 0 && revision > 0 ? "9." + revision % 10 : sgpa)
+                    .append("</td><td>").append(random.nextBoolean() ? "Pass" : "Pending").append("</td></tr>");
+        }
+        html.append("</tbody></table>\n<form action=\"/subscribe\" method=\"post\">")
+                .append("<input type=\"hidden\" name=\"csrf\" value=\"").append(Long.toHexString(random.nextLong())).append("\">")
+                .append("<label>Email <input type=\"email\" name=\"email\"></label><button>Subscribe</button></form>")
+                .append("</article>\n");
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(i % 9 == 0 ? "\n    " : " ");
+            }
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,482 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.cluster.ShardRouter;
+import com.WebsitePinger.Ping.cluster.StaticMembership;
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import com.WebsitePinger.Ping.store.SnapshotStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the whole check engine against a {@link SyntheticWebsiteFarm}: the real
+ * {@link ScheduledMonitorTask}, fetchers, comparator and history store, wired as in production and driven by
+ * their own scheduler tick, monitoring {@code urls} pages at a fixed interval. After a warmup that lets
+ * every page get its baseline, it measures for a while and reports checks per second, detection
+ * latency (from the moment a page changed to the notifyChange call), fetch latency by outcome, CPU, GC and
+ * heap. Limits given as {@code min-*}/{@code max-*} options turn it into a regression gate: the exit
+ * code is 1 when one is missed.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec@loadtest -Dloadtest.args="urls=20000 interval=30s"};
+ * {@code help} lists the options. The farm runs in the same JVM, so process CPU includes it; its share
+ * is reported separately.
+ */
+public final class LoadTest {
+
+    private static final String USAGE = """
+            Options, as name=value (durations as 250ms, 30s, 5m; sizes as 8k, 2m):
+              urls=10000                 pages monitored
+              engine=reactive            reactive | virtual-threads
+              interval=30s               check interval of every page
+              max-interval=<interval>    above the interval, polling of unchanged pages backs off up to it
+              max-concurrency=64         checks in flight at once
+              connections-per-host=64    connection pool size per host
+              politeness=false           per-host rate limit (2 requests/s per host, as in production)
+              hosts=1                    loopback addresses the pages are spread over
+              page-bytes=8k              page size
+              latency-median=20ms        response latency, log-normal with this median...
+              latency-p99=200ms          ...and this 99th percentile
+              error-rate=0.01            fraction of responses that are a 500
+              change-probability=0.001   chance that a page changes in any given second
+              etag=true                  ETags and 304 Not Modified
+              slow-drip-rate=0.01        fraction of bodies dripped out slowly...
+              slow-drip=2s               ...over this long
+              gzip=false                 compressed responses
+              warmup=<2 x max-interval>  not measured: the first checks of every page, and the JIT
+              duration=2m                measured
+            Regression gate (exit code 1 when missed; 0 = off):
+              min-checks-per-second=0
+              max-detection-p99=0        e.g. 40s
+              max-fetch-p99=0            of successful fetches, e.g. 500ms
+              max-heap-mb=0              heap used after GC at the end
+            """;
+
+    private record Options(int urls, String engine, long intervalMs, long maxIntervalMs, int maxConcurrency,
+                           int connectionsPerHost, boolean politeness, long warmupMs, long durationMs,
+                           SyntheticWebsiteFarm.Profile farm, double minChecksPerSecond, long maxDetectionP99Ms,
+                           long maxFetchP99Ms, long maxHeapMb) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                String option = arg.startsWith("--") ? arg.substring(2) : arg;
+                int equals = option.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected name=value, got '" + arg + "'");
+                }
+                values.put(option.substring(0, equals), option.substring(equals + 1).trim());
+            }
+            int urls = Integer.parseInt(take(values, "urls", "10000"));
+            String engine = take(values, "engine", "reactive");
+            if (!engine.equals("reactive") && !engine.equals("virtual-threads")) {
+                throw new IllegalArgumentException("Unknown engine '" + engine + "'");
+            }
+            long intervalMs = parseMillis(take(values, "interval", "30s"));
+            long maxIntervalMs = parseMillis(take(values, "max-interval", Long.toString(intervalMs)));
+            int maxConcurrency = Integer.parseInt(take(values, "max-concurrency", "64"));
+            Options options = new Options(urls, engine, intervalMs, maxIntervalMs, maxConcurrency,
+                    Integer.parseInt(take(values, "connections-per-host", Integer.toString(maxConcurrency))),
+                    Boolean.parseBoolean(take(values, "politeness", "false")),
+                    parseMillis(take(values, "warmup", Long.toString(2 * maxIntervalMs))),
+                    parseMillis(take(values, "duration", "2m")),
+                    new SyntheticWebsiteFarm.Profile(urls,
+                            Integer.parseInt(take(values, "hosts", "1")),
+                            (int) parseBytes(take(values, "page-bytes", "8k")),
+                            parseMillis(take(values, "latency-median", "20ms")),
+                            parseMillis(take(values, "latency-p99", "200ms")),
+                            Double.parseDouble(take(values, "error-rate", "0.01")),
+                            Double.parseDouble(take(values, "change-probability", "0.001")),
+                            Boolean.parseBoolean(take(values, "etag", "true")),
+                            Double.parseDouble(take(values, "slow-drip-rate", "0.01")),
+                            parseMillis(take(values, "slow-drip", "2s")),
+                            Boolean.parseBoolean(take(values, "gzip", "false"))),
+                    Double.parseDouble(take(values, "min-checks-per-second", "0")),
+                    parseMillis(take(values, "max-detection-p99", "0")),
+                    parseMillis(take(values, "max-fetch-p99", "0")),
+                    Long.parseLong(take(values, "max-heap-mb", "0")));
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown options " + values.keySet());
+            }
+            return options;
+        }
+
+        private static String take(Map<String, String> values, String name, String defaultValue) {
+            String value = values.remove(name);
+            return value == null || value.isEmpty() ? defaultValue : value;
+        }
+
+        private static long parseMillis(String value) {
+            String lower = value.toLowerCase();
+            if (lower.endsWith("ms")) {
+                return Long.parseLong(lower.substring(0, lower.length() - 2));
+            }
+            long unit = switch (lower.charAt(lower.length() - 1)) {
+                case 's' -> 1_000;
+                case 'm' -> 60_000;
+                case 'h' -> 3_600_000;
+                default -> 0;
+            };
+            return unit == 0 ? Long.parseLong(lower) : (long) (Double.parseDouble(lower.substring(0, lower.length() - 1)) * unit);
+        }
+
+        private static long parseBytes(String value) {
+            String lower = value.toLowerCase();
+            long unit = switch (lower.charAt(lower.length() - 1)) {
+                case 'k' -> 1024;
+                case 'm' -> 1024 * 1024;
+                default -> 0;
+            };
+            return unit == 0 ? Long.parseLong(lower) : (long) (Double.parseDouble(lower.substring(0, lower.length() - 1)) * unit);
+        }
+    }
+
+    private final Options options;
+    private final SyntheticWebsiteFarm farm;
+    // Meters go to the run registry for the whole run, and to a measurement registry once the warmup is over
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+    private final SimpleMeterRegistry runRegistry = new SimpleMeterRegistry();
+    private final Timer detectionLatency;
+    private final LongAdder unattributedChanges = new LongAdder();
+    private final LongAdder errorNotifications = new LongAdder();
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private Scheduler cleanerScheduler;
+    private ConnectionProvider connectionProvider;
+    private HttpClient httpClient;
+    private ScheduledMonitorTask task;
+    private ScheduledExecutorService ticker;
+
+    private LoadTest(Options options) {
+        this.options = options;
+        this.farm = new SyntheticWebsiteFarm(options.farm());
+        registry.add(runRegistry);
+        detectionLatency = Timer.builder("loadtest.detection.latency")
+                .description("Time from a page change to its notifyChange")
+                .register(registry);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (List.of(args).contains("help") || List.of(args).contains("--help")) {
+            System.out.print(USAGE);
+            return;
+        }
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        BenchmarkSupport.quietLogging();
+        LoadTest loadTest = new LoadTest(options);
+        boolean passed;
+        try {
+            passed = loadTest.run();
+        } finally {
+            loadTest.close();
+        }
+        // Reactor and JDK client threads would keep the JVM alive
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws InterruptedException {
+        long baselineHeap = usedHeapAfterGc();
+        startEngine();
+        System.out.printf("Monitoring %d URLs on %d host(s), %s engine, every %d ms: %.1f checks/s expected%n",
+                options.urls(), Math.max(1, options.farm().hosts()), options.engine(), options.intervalMs(),
+                options.urls() * 1000.0 / options.intervalMs());
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong lastChecks = new AtomicLong();
+        AtomicLong seconds = new AtomicLong();
+        progress.scheduleAtFixedRate(() -> {
+            peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+            if (seconds.incrementAndGet() % 10 == 0) {
+                long checks = (long) checkCount(runRegistry);
+                System.out.printf("%4d s: %.1f checks/s, %d changes made so far%n",
+                        seconds.get(), (checks - lastChecks.getAndSet(checks)) / 10.0, farm.changes());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        try {
+            Thread.sleep(options.warmupMs());
+            SimpleMeterRegistry measured = measurementRegistry();
+            long changesBefore = farm.changes();
+            SyntheticWebsiteFarm.Responses responsesBefore = farm.responses();
+            long cpuBefore = processCpuNanos();
+            long farmCpuBefore = farm.cpuNanos();
+            long[] gcBefore = gcTotals();
+            peakHeap.set(0);
+            long start = System.nanoTime();
+            registry.add(measured);
+            System.out.println("Warmup done, measuring for " + options.durationMs() + " ms");
+
+            Thread.sleep(options.durationMs());
+
+            registry.remove(measured);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            long cpu = processCpuNanos() - cpuBefore;
+            long farmCpu = farm.cpuNanos() - farmCpuBefore;
+            long[] gc = gcTotals();
+            progress.shutdownNow();
+            long heap = usedHeapAfterGc();
+            return report(measured, elapsedSeconds, farm.changes() - changesBefore, farm.responses().minus(responsesBefore),
+                    cpu, farmCpu, gc[0] - gcBefore[0], gc[1] - gcBefore[1], heap, baselineHeap);
+        } finally {
+            progress.shutdownNow();
+        }
+    }
+
+    private void startEngine() {
+        int maxConcurrency = options.maxConcurrency();
+        // Not fresh and empty: don't register the default (external) URL
+        SnapshotStore store = new NoOpSnapshotStore() {
+            @Override
+            public boolean isFresh() {
+                return false;
+            }
+
+            @Override
+            public Map<String, MonitorSettings> loadMonitors() {
+                return Map.of();
+            }
+        };
+        NotificationService notifier = new NotificationService() {
+            @Override
+            public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+                long age = farm.takeChangeAge(SyntheticWebsiteFarm.pageOf(url));
+                if (age < 0) {
+                    unattributedChanges.increment();
+                } else {
+                    detectionLatency.record(age, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+                errorNotifications.increment();
+            }
+        };
+        // The same settings as the application's defaults (application.properties), unless an option says otherwise
+        MonitorMetrics metrics = new MonitorMetrics(registry);
+        cleanerScheduler = new CleanerConfig().cleanerScheduler(registry, 0, 0, maxConcurrency);
+        FetchClientConfig clientConfig = new FetchClientConfig();
+        connectionProvider = clientConfig.fetchConnectionProvider(options.connectionsPerHost(), 128, 10_000, 60_000, 600_000, 30_000);
+        WebClient.Builder webClient = WebClient.builder()
+                .clientConnector(clientConfig.fetchClientConnector(connectionProvider, 5_000, 10_000, true, true, false));
+        HostRateLimiter rateLimiter = new HostRateLimiter(webClient, metrics, options.politeness(), 2.0, 4, 30_000, 600_000,
+                3_600_000, false, 86_400_000);
+        HostCircuitBreaker circuitBreaker = new HostCircuitBreaker(metrics, true, 5, 60_000, 600_000);
+        WebsiteFetcher fetcher = new WebsiteFetcher(webClient, metrics, rateLimiter, circuitBreaker, 5_242_880, 3, 1_000, 5_000);
+        BlockingWebsiteFetcher blockingFetcher = null;
+        if (options.engine().equals("virtual-threads")) {
+            httpClient = clientConfig.blockingFetchClient(5_000);
+            blockingFetcher = new BlockingWebsiteFetcher(httpClient, fetcher, metrics, rateLimiter, circuitBreaker,
+                    10_000, true, true);
+        }
+        task = new ScheduledMonitorTask(fetcher, blockingFetcher,
+                new ContentComparator(false, true, new DiffEngine(2000, 8, 20), store),
+                notifier,
+                new AdaptivePollingPolicy(options.intervalMs(), options.maxIntervalMs(), 2.0, 3, 86_400_000),
+                rateLimiter, store, new PageHistoryStore(registry, true, 20, 2_592_000_000L, 16 << 20),
+                new ShardRouter(new StaticMembership("loadtest"), registry), metrics,
+                cleanerScheduler, maxConcurrency, 100, 512, 0.1);
+
+        Map<String, MonitorSettings> monitors = new LinkedHashMap<>();
+        MonitorSettings settings = new MonitorSettings(options.intervalMs(), options.maxIntervalMs(), null, ContentFilter.NONE);
+        for (int page = 0; page < options.urls(); page++) {
+            monitors.put(farm.url(page), settings);
+        }
+        task.startMonitoring(monitors);
+        // What @Scheduled does in the application
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(task::checkWebsites, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    // Percentiles over the whole measurement, across hosts
+    private SimpleMeterRegistry measurementRegistry() {
+        SimpleMeterRegistry measured = new SimpleMeterRegistry();
+        measured.config().meterFilter(MeterFilter.ignoreTags("host"));
+        measured.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() != Meter.Type.TIMER) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.99)
+                        .percentilePrecision(2)
+                        // One window spanning the measurement, instead of the default rolling two minutes
+                        .expiry(Duration.ofMillis(2 * options.durationMs() + 60_000))
+                        .bufferLength(1)
+                        .build()
+                        .merge(config);
+            }
+        });
+        return measured;
+    }
+
+    private boolean report(SimpleMeterRegistry measured, double seconds, long changes, SyntheticWebsiteFarm.Responses responses,
+                           long cpuNanos, long farmCpuNanos, long gcCount, long gcMillis, long heap, long baselineHeap) {
+        double checksPerSecond = checkCount(measured) / seconds;
+        Map<String, Long> results = new TreeMap<>();
+        for (Counter counter : measured.find("monitor.checks").counters()) {
+            results.merge(counter.getId().getTag("result"), (long) counter.count(), Long::sum);
+        }
+        Timer detection = measured.find("loadtest.detection.latency").timer();
+        Map<String, Timer> fetches = new TreeMap<>();
+        for (Timer timer : measured.find("monitor.fetch.duration").timers()) {
+            fetches.put(timer.getId().getTag("outcome"), timer);
+        }
+        Counter skipped = measured.find("monitor.checks.skipped").counter();
+        int cores = Runtime.getRuntime().availableProcessors();
+        long maxHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+
+        System.out.printf("%n== %d URLs, %s engine, interval %d ms, measured %.0f s ==%n",
+                options.urls(), options.engine(), options.intervalMs(), seconds);
+        System.out.printf("checks      %.1f/s (%.1f/s expected) %s, %d skipped as still in flight%n",
+                checksPerSecond, options.urls() * 1000.0 / options.intervalMs(), results,
+                skipped == null ? 0 : (long) skipped.count());
+        System.out.printf("detection   p50 %s, p99 %s; %d of %d changes detected, %d pages with a change pending, %d unattributed%n",
+                latency(detection, 0.5), latency(detection, 0.99), detection == null ? 0 : detection.count(), changes,
+                farm.pendingChanges(), unattributedChanges.sum());
+        fetches.values().removeIf(timer -> timer.count() == 0);
+        fetches.forEach((outcome, timer) -> System.out.printf("fetch       %-12s p50 %s, p99 %s (%d)%n",
+                outcome, latency(timer, 0.5), latency(timer, 0.99), timer.count()));
+        System.out.printf("farm        %d bodies (%d slow-drip), %d not modified, %d errors; %d error notifications%n",
+                responses.bodies(), responses.slowDrip(), responses.notModified(), responses.errors(), errorNotifications.sum());
+        System.out.printf("cpu         %.2f of %d cores (farm %.2f, engine %.2f)%n", cpuNanos / seconds / 1e9, cores,
+                farmCpuNanos / seconds / 1e9, (cpuNanos - farmCpuNanos) / seconds / 1e9);
+        System.out.printf("gc          %d collections, %d ms (%.2f%% of the time)%n", gcCount, gcMillis, gcMillis / seconds / 10);
+        System.out.printf("heap        %.1f MB after GC (%.1f KB per URL above the pre-start baseline), peak %.1f MB of %.1f MB%n",
+                heap / 1048576d, (heap - baselineHeap) / 1024d / options.urls(), peakHeap.get() / 1048576d, maxHeap / 1048576d);
+
+        List<String> failures = new ArrayList<>();
+        if (options.minChecksPerSecond() > 0 && checksPerSecond < options.minChecksPerSecond()) {
+            failures.add(String.format("%.1f checks/s is below %.1f", checksPerSecond, options.minChecksPerSecond()));
+        }
+        if (options.maxDetectionP99Ms() > 0 && millis(detection, 0.99) > options.maxDetectionP99Ms()) {
+            failures.add("detection p99 " + latency(detection, 0.99) + " is above " + options.maxDetectionP99Ms() + " ms");
+        }
+        if (options.maxFetchP99Ms() > 0) {
+            fetches.forEach((outcome, timer) -> {
+                // Failed fetches include their retries and backoffs
+                if (!outcome.equals("failed") && millis(timer, 0.99) > options.maxFetchP99Ms()) {
+                    failures.add("fetch p99 (" + outcome + ") " + latency(timer, 0.99) + " is above " + options.maxFetchP99Ms() + " ms");
+                }
+            });
+        }
+        if (options.maxHeapMb() > 0 && heap > options.maxHeapMb() << 20) {
+            failures.add(String.format("heap %.1f MB is above %d MB", heap / 1048576d, options.maxHeapMb()));
+        }
+        if (options.minChecksPerSecond() > 0 || options.maxDetectionP99Ms() > 0 || options.maxFetchP99Ms() > 0 || options.maxHeapMb() > 0) {
+            failures.forEach(failure -> System.out.println("FAILED      " + failure));
+            System.out.println(failures.isEmpty() ? "PASSED" : "FAILED");
+        }
+        return failures.isEmpty();
+    }
+
+    private static double checkCount(MeterRegistry registry) {
+        return registry.find("monitor.checks").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private static double millis(Timer timer, double percentile) {
+        if (timer != null) {
+            for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    return value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String latency(Timer timer, double percentile) {
+        double millis = millis(timer, percentile);
+        if (Double.isNaN(millis)) {
+            return "-";
+        }
+        return millis < 1000 ? String.format("%.1f ms", millis) : String.format("%.2f s", millis / 1000);
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    // Collections and milliseconds spent in them, across all collectors
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // A few full collections, so what is left is what is reachable
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private void close() {
+        // Checks cut off by the shutdown log errors that are no part of the result
+        BenchmarkSupport.silenceLogging();
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (task != null) {
+            task.shutdown();
+        }
+        if (cleanerScheduler != null) {
+            cleanerScheduler.dispose();
+        }
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        farm.close();
+    }
+}
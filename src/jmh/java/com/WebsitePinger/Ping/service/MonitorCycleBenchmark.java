@@ -0,0 +1,142 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.cluster.ShardRouter;
+import com.WebsitePinger.Ping.cluster.StaticMembership;
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import com.WebsitePinger.Ping.store.SnapshotStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One monitoring cycle: every URL is fetched from an in-process stub site, cleaned and compared on
+ * the cleaner pool, and changes are passed to a notifier - the same path a scheduler tick takes.
+ * One op is a full cycle over {@code urls} URLs, so ops/s x urls is checks per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MonitorCycleBenchmark {
+
+    private static final int MAX_CONCURRENCY = 64;
+
+    @Param({"100", "1000"})
+    public int urls;
+
+    @Param({"SMALL", "MEDIUM"})
+    public HtmlFixtures.Size size;
+
+    // Every n-th page changes on every check; 0 means nothing changes
+    @Param({"0", "10"})
+    public int changeEvery;
+
+    private BenchmarkSupport.StubSite site;
+    private Scheduler cleanerScheduler;
+    private ConnectionProvider connectionProvider;
+    private ScheduledMonitorTask task;
+    private final List<String> targets = new ArrayList<>();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        site = new BenchmarkSupport.StubSite(size, changeEvery);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cleanerScheduler = new CleanerConfig().cleanerScheduler(registry, 0, 0, MAX_CONCURRENCY);
+        // Not fresh and empty: don't register the default (external) URL
+        SnapshotStore store = new NoOpSnapshotStore() {
+            @Override
+            public boolean isFresh() {
+                return false;
+            }
+
+            @Override
+            public Map<String, MonitorSettings> loadMonitors() {
+                return Map.of();
+            }
+        };
+        NotificationService notifier = new NotificationService() {
+            @Override
+            public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+                errors.incrementAndGet();
+            }
+        };
+        MonitorMetrics metrics = new MonitorMetrics(registry);
+        // Same client as the application: pooled keep-alive connections, compression, HTTP/2 negotiation
+        FetchClientConfig clientConfig = new FetchClientConfig();
+        connectionProvider = clientConfig.fetchConnectionProvider(16, 128, 10_000, 60_000, 600_000, 30_000);
+        WebClient.Builder webClient = WebClient.builder()
+                .clientConnector(clientConfig.fetchClientConnector(connectionProvider, 5_000, 10_000, true, true, false));
+        // The stub is a single host serving every page: measure the engine, not the politeness limit
+        HostRateLimiter rateLimiter = new HostRateLimiter(webClient, metrics, false, 2.0, 4, 30_000, 600_000, 3_600_000, false, 86_400_000);
+        task = new ScheduledMonitorTask(
+                new WebsiteFetcher(webClient, metrics, rateLimiter,
+                        new HostCircuitBreaker(metrics, true, 5, 60_000, 600_000), 5_242_880, 3, 1_000, 5_000),
+                null,
+                new ContentComparator(false, true, new DiffEngine(2000, 8, 20), store),
+                notifier,
+                new AdaptivePollingPolicy(60_000, 600_000, 2.0, 3, 86_400_000),
+                rateLimiter, store, new PageHistoryStore(registry, true, 20, 2_592_000_000L, 16 << 20),
+                new ShardRouter(new StaticMembership("bench"), registry), metrics,
+                cleanerScheduler, MAX_CONCURRENCY, 100, 512, 0.1);
+        for (int i = 0; i < urls; i++) {
+            targets.add(site.url(i));
+            task.startMonitoring(site.url(i));
+        }
+        // Baseline cycle: first checks store fingerprints instead of comparing
+        cycle();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        task.shutdown();
+        cleanerScheduler.dispose();
+        connectionProvider.dispose();
+        site.close();
+        if (errors.get() > 0) {
+            System.out.println("WARNING: " + errors.get() + " checks failed; the numbers include failures");
+        }
+    }
+
+    @Benchmark
+    public void cycle() {
+        long now = System.currentTimeMillis();
+        Flux.fromIterable(targets)
+                .flatMap(url -> task.checkUrl(url, now), MAX_CONCURRENCY)
+                .blockLast();
+    }
+}
@@ -0,0 +1,268 @@
+package com.WebsitePinger.Ping.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-URL monitoring state at scale, in the column tables against the maps they replaced:
+ * <ul>
+ *   <li>fingerprints: {@link FingerprintTable} against a {@code ConcurrentHashMap<String, ContentFingerprint>};</li>
+ *   <li>polling state, check history and in-flight flag: {@link PollingTable} (plus the URL-ordered key set the
+ *       status API pages through) against a {@code ConcurrentSkipListMap} of one state object per URL and a
+ *       {@code ConcurrentHashMap}-backed set of in-flight URLs;</li>
+ *   <li>validators: {@link ValidatorTable} against a {@code ConcurrentHashMap<String, HttpValidators>};</li>
+ *   <li>due times: {@link TimingWheel} against the previous wheel's entry object and map node per URL.</li>
+ * </ul>
+ * Setup prints the heap the state retains, in bytes per URL, with what both layouts share excluded: the URL
+ * strings, the settings object and the validator header values. One op is a check pass over every URL, with
+ * the per-check operations of a cycle; run with {@code -prof gc} to compare what each pass allocates.
+ * Text retained for diffs and page history is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class StateTableBenchmark {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    @Param({"maps", "table"})
+    public String layout;
+
+    @Param({"10000", "100000", "1000000"})
+    public int urls;
+
+    private String[] keys;
+    private ContentFingerprint[] fingerprints;
+    private String[] etags;
+    private final MonitorSettings settings = MonitorSettings.fixed(60_000);
+
+    // "maps"
+    private ConcurrentMap<String, ContentFingerprint> fingerprintMap;
+    private ConcurrentNavigableMap<String, MapPollingState> stateMap;
+    private Set<String> inFlight;
+    private ConcurrentMap<String, HttpValidators> validatorMap;
+    private MapTimingWheel mapWheel;
+
+    // "table"
+    private FingerprintTable fingerprintTable;
+    private PollingTable pollingTable;
+    private ConcurrentSkipListSet<String> urlOrder;
+    private ValidatorTable validatorTable;
+    private TimingWheel wheel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[urls];
+        fingerprints = new ContentFingerprint[urls];
+        etags = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            keys[i] = "https://site-" + (i % 997) + ".example.com/results/page-" + i + "?lang=en";
+            keys[i].hashCode(); // Cached in the string, so it is part of the shared baseline
+            fingerprints[i] = new ContentFingerprint(i * 0x9E3779B97F4A7C15L, ~i, 10_000 + i);
+            etags[i] = "\"v" + i + "\"";
+        }
+        long before = usedHeap();
+        if (layout.equals("maps")) {
+            fingerprintMap = new ConcurrentHashMap<>();
+            stateMap = new ConcurrentSkipListMap<>();
+            inFlight = ConcurrentHashMap.newKeySet();
+            validatorMap = new ConcurrentHashMap<>();
+            mapWheel = new MapTimingWheel();
+            for (int i = 0; i < urls; i++) {
+                // A copy: the map kept the fingerprint object of the last check, not one the caller still holds
+                ContentFingerprint fingerprint = fingerprints[i];
+                fingerprintMap.put(keys[i], new ContentFingerprint(fingerprint.high(), fingerprint.low(), fingerprint.length()));
+                stateMap.put(keys[i], new MapPollingState(settings));
+                // Every URL has been in flight once; the set's table doesn't shrink afterwards
+                inFlight.add(keys[i]);
+                validatorMap.put(keys[i], new HttpValidators(etags[i], null, null));
+                mapWheel.schedule(keys[i], i);
+            }
+            inFlight.clear();
+        } else {
+            fingerprintTable = new FingerprintTable(0);
+            pollingTable = new PollingTable(0);
+            urlOrder = new ConcurrentSkipListSet<>();
+            validatorTable = new ValidatorTable(0);
+            wheel = new TimingWheel(TICK_MS, WHEEL_SIZE, 0);
+            for (int i = 0; i < urls; i++) {
+                fingerprintTable.put(keys[i], fingerprints[i]);
+                pollingTable.put(keys[i], settings);
+                urlOrder.add(keys[i]);
+                validatorTable.put(keys[i], new HttpValidators(etags[i], null, null));
+                wheel.schedule(keys[i], i);
+            }
+        }
+        long retained = usedHeap() - before;
+        System.out.printf("%nretained state (%s, %d URLs): %.1f MB, %.1f bytes/URL%n",
+                layout, urls, retained / 1048576d, (double) retained / urls);
+    }
+
+    // Per URL: mark in flight, read the validators, compare, record the outcome, remember the validators,
+    // move the next check and clear the in-flight mark
+    @Benchmark
+    public void checkPass(Blackhole blackhole) {
+        long now = System.currentTimeMillis();
+        if (layout.equals("maps")) {
+            for (int i = 0; i < urls; i++) {
+                String key = keys[i];
+                inFlight.add(key);
+                blackhole.consume(validatorMap.get(key));
+                ContentFingerprint previous = fingerprintMap.put(key, fingerprints[i]);
+                boolean changed = !fingerprints[i].equals(previous);
+                MapPollingState state = stateMap.get(key);
+                blackhole.consume(state.record(changed, now, 10));
+                validatorMap.put(key, new HttpValidators(etags[i], null, null));
+                mapWheel.schedule(key, now + i);
+                inFlight.remove(key);
+            }
+        } else {
+            for (int i = 0; i < urls; i++) {
+                String key = keys[i];
+                pollingTable.tryStartCheck(key);
+                blackhole.consume(validatorTable.get(key));
+                FingerprintTable.Outcome outcome = fingerprintTable.put(key, fingerprints[i]);
+                boolean changed = outcome != FingerprintTable.Outcome.UNCHANGED;
+                blackhole.consume(pollingTable.recordSuccess(key, now, 10, changed));
+                blackhole.consume(pollingTable.record(key, changed, now, 2.0, 3, 86_400_000));
+                validatorTable.put(key, new HttpValidators(etags[i], null, null));
+                wheel.schedule(key, now + i);
+                pollingTable.checkDone(key);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // A few full collections, so what is left is what is reachable
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    // The fields of the per-URL state object the polling table replaced
+    private static final class MapPollingState {
+        private final MonitorSettings settings;
+        private long currentIntervalMs;
+        private int unchangedChecks;
+        private double decayedChanges;
+        private double decayedTimeMs;
+        private long lastCheckTime;
+        private int failedChecks;
+        private long lastCompletedTime;
+        private long lastChangeTime;
+        private long lastLatencyMs = -1;
+        private long checks;
+        private long changes;
+        private long errors;
+        private String lastError;
+        private boolean inFlight;
+
+        private MapPollingState(MonitorSettings settings) {
+            this.settings = settings;
+            this.currentIntervalMs = settings.minIntervalMs();
+        }
+
+        private synchronized long record(boolean changed, long now, long latencyMs) {
+            if (lastCheckTime > 0 && now > lastCheckTime) {
+                long elapsed = now - lastCheckTime;
+                double decay = Math.pow(0.5, elapsed / 86_400_000d);
+                decayedChanges *= decay;
+                decayedTimeMs = decayedTimeMs * decay + elapsed;
+            }
+            lastCheckTime = now;
+            checks++;
+            lastCompletedTime = now;
+            lastLatencyMs = latencyMs;
+            failedChecks = 0;
+            if (changed) {
+                changes++;
+                lastChangeTime = now;
+                decayedChanges += 1;
+                unchangedChecks = 0;
+                currentIntervalMs = settings.minIntervalMs();
+            } else if (++unchangedChecks >= 3) {
+                currentIntervalMs = Math.min(settings.maxIntervalMs(), currentIntervalMs * 2);
+            }
+            return currentIntervalMs;
+        }
+    }
+
+    // The previous timing wheel's layout: one linked entry object per key, found through a HashMap
+    private static final class MapTimingWheel {
+        private final MapWheelEntry[] buckets = new MapWheelEntry[WHEEL_SIZE];
+        private final Map<String, MapWheelEntry> entries = new HashMap<>();
+
+        private synchronized void schedule(String key, long deadlineMs) {
+            MapWheelEntry entry = entries.get(key);
+            if (entry != null) {
+                unlink(entry);
+            } else {
+                entry = new MapWheelEntry(key);
+                entries.put(key, entry);
+            }
+            entry.deadlineTick = deadlineMs / TICK_MS;
+            entry.bucket = (int) (entry.deadlineTick & (WHEEL_SIZE - 1));
+            entry.next = buckets[entry.bucket];
+            if (entry.next != null) {
+                entry.next.prev = entry;
+            }
+            buckets[entry.bucket] = entry;
+        }
+
+        private void unlink(MapWheelEntry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                buckets[entry.bucket] = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+        }
+    }
+
+    private static final class MapWheelEntry {
+        private final String key;
+        private long deadlineTick;
+        private int bucket;
+        private MapWheelEntry prev;
+        private MapWheelEntry next;
+
+        private MapWheelEntry(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.WebsitePinger.Ping.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process website farm for load tests: {@code pages} synthetic pages at {@code /page/<n>}, served by
+ * Reactor Netty on its own event loops, so thousands of slow responses cost no threads. Each response waits
+ * for a log-normally distributed latency, fails with a 500 at the error rate, and now and then drips its
+ * body out slowly. Pages change at random, independently; the time of each page's oldest change that has not
+ * been reported yet is kept, so a detected change can be timed from the moment it happened. Changes are only
+ * tracked from a page's first full response on, which is what the monitor takes as its baseline.
+ * <p>
+ * Pages are spread over {@code hosts} loopback addresses (127.0.0.1, 127.0.0.2, ...), so per-host limits
+ * (connection pools, politeness, circuit breakers) see more than one host. Linux routes all of 127/8 to
+ * the loopback interface; elsewhere only one host may be available.
+ */
+public final class SyntheticWebsiteFarm implements AutoCloseable {
+
+    // Bodies cycle through this many revisions, so consecutive revisions always differ
+    private static final int REVISIONS = 16;
+    private static final int DRIP_CHUNKS = 10;
+    // Standard normal quantile of the 99th percentile
+    private static final double Z_99 = 2.3263;
+    private static final long NOT_SERVED = -1;
+
+    /**
+     * What the farm serves.
+     *
+     * @param pages             Number of pages.
+     * @param hosts             Loopback addresses to spread the pages over.
+     * @param pageBytes         Approximate body size.
+     * @param latencyMedianMs   Median response delay; 0 for none.
+     * @param latencyP99Ms      99th percentile response delay; at most the median gives a fixed delay.
+     * @param errorRate         Fraction of responses that are a 500.
+     * @param changeProbability Chance that a page changes in any given second.
+     * @param etags             Send an ETag and answer a matching If-None-Match with a 304.
+     * @param slowDripRate      Fraction of responses whose body is sent in pieces, spread over {@code slowDripMs}.
+     * @param slowDripMs        How long a slow-drip body takes.
+     * @param gzip              Compress bodies for clients that accept it.
+     */
+    public record Profile(int pages, int hosts, int pageBytes, long latencyMedianMs, long latencyP99Ms,
+                          double errorRate, double changeProbability, boolean etags, double slowDripRate,
+                          long slowDripMs, boolean gzip) {
+    }
+
+    /**
+     * Response counts: full bodies (slow-drip ones included), 304s, 500s, and the slow-drip bodies among the full ones.
+     */
+    public record Responses(long bodies, long notModified, long errors, long slowDrip) {
+
+        Responses minus(Responses earlier) {
+            return new Responses(bodies - earlier.bodies, notModified - earlier.notModified, errors - earlier.errors,
+                    slowDrip - earlier.slowDrip);
+        }
+    }
+
+    private final Profile profile;
+    private final byte[][] bodies = new byte[REVISIONS][];
+    private final AtomicIntegerArray revisions;
+    // System.nanoTime() of each page's oldest unreported change, 0 if there is none, NOT_SERVED before the first body
+    private final AtomicLongArray pendingSince;
+    private final double latencySigma;
+    private final LoopResources loops;
+    private final Scheduler timer;
+    private final ScheduledExecutorService changer;
+    private final List<DisposableServer> servers = new ArrayList<>();
+
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dripped = new LongAdder();
+
+    public SyntheticWebsiteFarm(Profile profile) {
+        this.profile = profile;
+        for (int i = 0; i < REVISIONS; i++) {
+            bodies[i] = HtmlFixtures.page(profile.pageBytes(), i + 1).getBytes(StandardCharsets.UTF_8);
+        }
+        revisions = new AtomicIntegerArray(profile.pages());
+        pendingSince = new AtomicLongArray(profile.pages());
+        for (int page = 0; page < profile.pages(); page++) {
+            pendingSince.set(page, NOT_SERVED);
+        }
+        latencySigma = profile.latencyP99Ms() > profile.latencyMedianMs() && profile.latencyMedianMs() > 0
+                ? Math.log((double) profile.latencyP99Ms() / profile.latencyMedianMs()) / Z_99
+                : 0;
+        // Every farm thread is named farm-*, so their CPU time can be told apart from the engine's
+        loops = LoopResources.create("farm", Math.max(2, Runtime.getRuntime().availableProcessors() / 2), true);
+        timer = Schedulers.newParallel("farm-timer", 2, true);
+        for (int host = 1; host <= Math.max(1, profile.hosts()); host++) {
+            servers.add(HttpServer.create()
+                    .host("127.0.0." + host)
+                    .port(0)
+                    .runOn(loops)
+                    .compress(profile.gzip())
+                    .handle(this::serve)
+                    .bindNow(Duration.ofSeconds(10)));
+        }
+        changer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "farm-changes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        changer.scheduleAtFixedRate(this::changePages, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public String url(int page) {
+        DisposableServer server = servers.get(page % servers.size());
+        return "http://" + server.host() + ":" + server.port() + "/page/" + page;
+    }
+
+    /**
+     * Page number of one of the farm's URLs.
+     */
+    public static int pageOf(String url) {
+        return Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+    }
+
+    private Publisher<Void> serve(HttpServerRequest request, HttpServerResponse response) {
+        String path = request.path();
+        int page = path.startsWith("page/") ? parsePage(path.substring(5)) : -1;
+        if (page < 0 || page >= profile.pages()) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        long delayMs = latencyMs();
+        Mono<Void> reply = Mono.defer(() -> Mono.from(respond(page, request, response)));
+        return delayMs > 0 ? Mono.delay(Duration.ofMillis(delayMs), timer).then(reply) : reply;
+    }
+
+    private Publisher<Void> respond(int page, HttpServerRequest request, HttpServerResponse response) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < profile.errorRate()) {
+            errors.increment();
+            return response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send();
+        }
+        // Before reading the revision: a change racing with this response is still tracked
+        pendingSince.compareAndSet(page, NOT_SERVED, 0);
+        int revision = revisions.get(page);
+        String etag = "\"" + page + "-" + revision + "\"";
+        if (profile.etags()) {
+            response.header(HttpHeaderNames.ETAG, etag);
+            if (etag.equals(request.requestHeaders().get(HttpHeaderNames.IF_NONE_MATCH))) {
+                notModified.increment();
+                return response.status(HttpResponseStatus.NOT_MODIFIED).send();
+            }
+        }
+        served.increment();
+        byte[] body = bodies[revision % REVISIONS];
+        response.header(HttpHeaderNames.CONTENT_TYPE, "text/html; charset=utf-8");
+        if (!profile.gzip()) {
+            response.header(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(body.length));
+        }
+        if (random.nextDouble() < profile.slowDripRate()) {
+            dripped.increment();
+            // Headers go out at once, the body trickles in over slowDripMs, flushed piece by piece
+            int chunk = (body.length + DRIP_CHUNKS - 1) / DRIP_CHUNKS;
+            Flux<ByteBuf> pieces = Flux.range(0, DRIP_CHUNKS)
+                    .filter(i -> i * chunk < body.length)
+                    .delayElements(Duration.ofMillis(Math.max(1, profile.slowDripMs() / DRIP_CHUNKS)), timer)
+                    .map(i -> Unpooled.wrappedBuffer(body, i * chunk, Math.min(chunk, body.length - i * chunk)));
+            return response.send(pieces, piece -> true);
+        }
+        return response.send(Mono.just(Unpooled.wrappedBuffer(body)));
+    }
+
+    private static int parsePage(String number) {
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long latencyMs() {
+        if (profile.latencyMedianMs() <= 0) {
+            return 0;
+        }
+        if (latencySigma == 0) {
+            return profile.latencyMedianMs();
+        }
+        return Math.round(profile.latencyMedianMs() * Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    // Once a second: every page changes with changeProbability
+    private void changePages() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.nanoTime();
+        for (int page = 0; page < profile.pages(); page++) {
+            if (random.nextDouble() < profile.changeProbability()) {
+                revisions.incrementAndGet(page);
+                // Keep the oldest unreported change; later ones are detected together with it
+                pendingSince.compareAndSet(page, 0, now);
+                changes.increment();
+            }
+        }
+    }
+
+    /**
+     * Marks the page's changes as reported.
+     *
+     * @return Nanoseconds since the oldest change that had not been reported, or -1 if there was none.
+     */
+    public long takeChangeAge(int page) {
+        long since = pendingSince.get(page);
+        if (since <= 0 || !pendingSince.compareAndSet(page, since, 0)) {
+            return -1;
+        }
+        return System.nanoTime() - since;
+    }
+
+    /**
+     * Number of pages with a change that has not been reported yet.
+     */
+    public int pendingChanges() {
+        int pending = 0;
+        for (int page = 0; page < profile.pages(); page++) {
+            if (pendingSince.get(page) > 0) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    public long changes() {
+        return changes.sum();
+    }
+
+    /**
+     * Responses sent so far.
+     */
+    public Responses responses() {
+        return new Responses(served.sum(), notModified.sum(), errors.sum(), dripped.sum());
+    }
+
+    /**
+     * CPU time used so far by the farm's threads (event loops, timers, the page changer).
+     */
+    public long cpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("farm-")) {
+                total += Math.max(0, threads.getThreadCpuTime(thread.threadId()));
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        changer.shutdownNow();
+        servers.forEach(DisposableServer::disposeNow);
+        timer.dispose();
+        loops.disposeLater().block(Duration.ofSeconds(10));
+    }
+}
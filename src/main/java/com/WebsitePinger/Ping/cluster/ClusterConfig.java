@@ -0,0 +1,46 @@
+package com.WebsitePinger.Ping.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+
+/**
+ * Selects the cluster membership implementation via monitor.cluster.type (none or file).
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "monitor.cluster.type", havingValue = "file")
+    public FileLeaseMembership fileLeaseMembership(@Value("${monitor.cluster.dir:cluster}") String dir,
+                                                   @Value("${monitor.cluster.node-id:}") String nodeId,
+                                                   @Value("${monitor.cluster.lease.ms:15000}") long leaseMs,
+                                                   @Value("${monitor.cluster.renew-interval.ms:5000}") long renewIntervalMs) throws IOException {
+        return new FileLeaseMembership(Path.of(dir), nodeId(nodeId), leaseMs, renewIntervalMs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "monitor.cluster.type", havingValue = "none", matchIfMissing = true)
+    public ClusterMembership staticMembership(@Value("${monitor.cluster.node-id:}") String nodeId) {
+        return new StaticMembership(nodeId(nodeId));
+    }
+
+    // Configured id, or host name and process id, which stays unique across instances on one machine
+    static String nodeId(String configured) {
+        if (!configured.isBlank()) {
+            return configured.trim();
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "ping";
+        }
+        return host.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + ProcessHandle.current().pid();
+    }
+}
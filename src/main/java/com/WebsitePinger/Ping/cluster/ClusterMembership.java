@@ -0,0 +1,28 @@
+package com.WebsitePinger.Ping.cluster;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Which Ping instances are currently alive. {@link ShardRouter} splits the monitored URLs between them,
+ * so each URL is checked (and notified about) by exactly one instance.
+ */
+public interface ClusterMembership {
+
+    /**
+     * Id of this instance; unique within the cluster.
+     */
+    String localNodeId();
+
+    /**
+     * Ids of the live instances, sorted. Does not contain the local node while it can't prove it is
+     * alive (e.g. its lease couldn't be renewed), so a partitioned node stops checking rather than
+     * double-checking URLs the others have taken over.
+     */
+    List<String> liveNodes();
+
+    /**
+     * Registers a callback invoked with the new live node list whenever it changes.
+     */
+    void addListener(Consumer<List<String>> listener);
+}
@@ -0,0 +1,187 @@
+package com.WebsitePinger.Ping.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Lease-based membership over a directory shared by all instances (monitor.cluster.type=file), e.g. an NFS
+ * mount or, for several instances on one machine, a local directory.
+ * <ul>
+ *   <li>Each instance owns {@code <node-id>.lease}, holding the epoch millis its lease expires at. It rewrites
+ *       the file (atomically, via a temp file) every renew interval, pushing the expiry one lease ahead.</li>
+ *   <li>The live nodes are the lease files that have not expired. A node that stops renewing drops out after
+ *       at most one lease; a node that shuts down cleanly deletes its file and drops out on the next scan.</li>
+ *   <li>A node whose own lease has run out (the directory was unreachable) counts itself out as well, so it
+ *       stops checking once the others may have taken over its URLs.</li>
+ * </ul>
+ * Expiry times are compared against each instance's own clock, so clocks must agree to well within a lease.
+ */
+public final class FileLeaseMembership implements ClusterMembership, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileLeaseMembership.class);
+
+    static final String LEASE_SUFFIX = ".lease";
+    private static final Pattern NODE_ID = Pattern.compile("[A-Za-z0-9._-]+");
+    // Lease files of nodes that have been gone this long are deleted
+    private static final long STALE_LEASE_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final Path dir;
+    private final String nodeId;
+    private final long leaseMs;
+    private final LongSupplier clock;
+    private final List<Consumer<List<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService renewer;
+    private volatile List<String> liveNodes = List.of();
+    // Expiry of the last lease we managed to write
+    private long leaseExpiry;
+
+    public FileLeaseMembership(Path dir, String nodeId, long leaseMs, long renewIntervalMs) throws IOException {
+        this(dir, nodeId, leaseMs, System::currentTimeMillis);
+        if (renewIntervalMs >= leaseMs) {
+            throw new IllegalArgumentException("Lease renew interval must be shorter than the lease");
+        }
+        renewer.scheduleWithFixedDelay(this::refreshSafely, renewIntervalMs, renewIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Without background renewal: tests call refresh() themselves
+    FileLeaseMembership(Path dir, String nodeId, long leaseMs, LongSupplier clock) throws IOException {
+        if (!NODE_ID.matcher(nodeId).matches()) {
+            throw new IllegalArgumentException("Invalid cluster node id '" + nodeId + "': use letters, digits, '.', '_' and '-'");
+        }
+        Files.createDirectories(dir);
+        this.dir = dir;
+        this.nodeId = nodeId;
+        this.leaseMs = leaseMs;
+        this.clock = clock;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Join before the monitor starts, so the first checks are already sharded
+        refresh();
+        log.info("Joined cluster in {} as {}: live nodes {}.", dir, nodeId, liveNodes);
+    }
+
+    @Override
+    public String localNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public List<String> liveNodes() {
+        return liveNodes;
+    }
+
+    @Override
+    public void addListener(Consumer<List<String>> listener) {
+        listeners.add(listener);
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled renewal for good
+            log.error("Error refreshing cluster membership: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renews the local lease and rescans the directory for live nodes.
+     */
+    synchronized void refresh() {
+        long now = clock.getAsLong();
+        try {
+            writeLease(now + leaseMs);
+            leaseExpiry = now + leaseMs;
+        } catch (IOException e) {
+            log.warn("Could not renew cluster lease in {}: {}", dir, e.getMessage());
+        }
+        List<String> nodes;
+        try {
+            nodes = scan(now);
+        } catch (IOException e) {
+            log.warn("Could not read cluster leases in {}: {}", dir, e.getMessage());
+            nodes = new ArrayList<>(liveNodes);
+        }
+        if (leaseExpiry <= now) {
+            nodes.remove(nodeId);
+        }
+        update(List.copyOf(nodes));
+    }
+
+    private void writeLease(long expiry) throws IOException {
+        Path temp = dir.resolve("." + nodeId + ".tmp");
+        Files.writeString(temp, Long.toString(expiry), StandardCharsets.US_ASCII);
+        Files.move(temp, dir.resolve(nodeId + LEASE_SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Sorted ids of the nodes whose lease has not expired
+    private List<String> scan(long now) throws IOException {
+        List<String> nodes = new ArrayList<>();
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(dir, "*" + LEASE_SUFFIX)) {
+            for (Path lease : leases) {
+                String fileName = lease.getFileName().toString();
+                String node = fileName.substring(0, fileName.length() - LEASE_SUFFIX.length());
+                long expiry;
+                try {
+                    expiry = Long.parseLong(Files.readString(lease, StandardCharsets.US_ASCII).trim());
+                } catch (NoSuchFileException e) {
+                    continue; // Left the cluster meanwhile
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring unreadable lease file {}", lease);
+                    continue;
+                }
+                if (expiry > now) {
+                    nodes.add(node);
+                } else if (expiry + STALE_LEASE_MS < now) {
+                    Files.deleteIfExists(lease);
+                }
+            }
+        }
+        nodes.sort(null);
+        return nodes;
+    }
+
+    private void update(List<String> nodes) {
+        if (nodes.equals(liveNodes)) {
+            return;
+        }
+        List<String> previous = liveNodes;
+        liveNodes = nodes;
+        log.info("Cluster membership changed: {} -> {}", previous, nodes);
+        for (Consumer<List<String>> listener : listeners) {
+            listener.accept(nodes);
+        }
+    }
+
+    /**
+     * Leaves the cluster: deletes the local lease so the other nodes take over right away.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        renewer.shutdownNow();
+        leaseExpiry = 0;
+        Files.deleteIfExists(dir.resolve(nodeId + LEASE_SUFFIX));
+        log.info("Left cluster in {} as {}.", dir, nodeId);
+    }
+}
@@ -0,0 +1,138 @@
+package com.WebsitePinger.Ping.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Decides which instance checks a URL, by rendezvous (highest random weight) hashing over the live nodes:
+ * every node scores each URL, the highest score owns it. All nodes agree on the owner without talking to
+ * each other, and when a node joins or leaves only the URLs it gains or loses move (about 1/n of them).
+ */
+@Component
+public final class ShardRouter {
+
+    private final ClusterMembership membership;
+    private final List<BiConsumer<Assignment, Assignment>> listeners = new CopyOnWriteArrayList<>();
+    private final Counter rebalances;
+    private volatile Assignment assignment;
+
+    public ShardRouter(ClusterMembership membership, MeterRegistry registry) {
+        this.membership = membership;
+        this.assignment = new Assignment(membership.liveNodes(), membership.localNodeId());
+        this.rebalances = Counter.builder("monitor.cluster.rebalances")
+                .description("Times the live node set changed and URLs were reassigned")
+                .register(registry);
+        Gauge.builder("monitor.cluster.nodes", this, router -> router.assignment.nodes().size())
+                .description("Live instances sharing the monitored URLs")
+                .register(registry);
+        membership.addListener(this::membershipChanged);
+    }
+
+    /**
+     * Whether this instance should check the URL. Called for every due URL, so it allocates nothing.
+     */
+    public boolean owns(String url) {
+        return assignment.owns(url);
+    }
+
+    /**
+     * The current assignment of URLs to nodes.
+     */
+    public Assignment assignment() {
+        return assignment;
+    }
+
+    /**
+     * Registers a callback invoked with the previous and the new assignment after the live nodes change.
+     */
+    public void addRebalanceListener(BiConsumer<Assignment, Assignment> listener) {
+        listeners.add(listener);
+    }
+
+    private void membershipChanged(List<String> nodes) {
+        Assignment previous = assignment;
+        Assignment current = new Assignment(nodes, membership.localNodeId());
+        assignment = current;
+        rebalances.increment();
+        for (BiConsumer<Assignment, Assignment> listener : listeners) {
+            listener.accept(previous, current);
+        }
+    }
+
+    /**
+     * An immutable view of which node owns which URL.
+     */
+    public static final class Assignment {
+
+        private final List<String> nodes;
+        private final long[] seeds;
+        private final int localIndex;
+
+        Assignment(List<String> nodes, String localNodeId) {
+            this.nodes = List.copyOf(nodes);
+            this.seeds = new long[this.nodes.size()];
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = fnv1a64(this.nodes.get(i));
+            }
+            this.localIndex = this.nodes.indexOf(localNodeId);
+        }
+
+        public List<String> nodes() {
+            return nodes;
+        }
+
+        /**
+         * Whether the local node owns the URL; false for every URL while it isn't a live member.
+         */
+        public boolean owns(String url) {
+            if (localIndex < 0) {
+                return false;
+            }
+            return seeds.length == 1 || ownerIndex(url) == localIndex;
+        }
+
+        /**
+         * The node that owns the URL, or null if no node is live.
+         */
+        public String ownerOf(String url) {
+            return nodes.isEmpty() ? null : nodes.get(ownerIndex(url));
+        }
+
+        private int ownerIndex(String url) {
+            // String caches its hashCode, so this is cheap for URLs checked over and over
+            long key = mix64(url.hashCode());
+            int owner = 0;
+            long best = 0;
+            for (int i = 0; i < seeds.length; i++) {
+                long score = mix64(key ^ seeds[i]);
+                if (i == 0 || Long.compareUnsigned(score, best) > 0) {
+                    best = score;
+                    owner = i;
+                }
+            }
+            return owner;
+        }
+
+        // SplitMix64 finalizer: spreads every input bit over the whole output
+        static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        private static long fnv1a64(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix64(hash);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.WebsitePinger.Ping.cluster;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A cluster of one (monitor.cluster.type=none): this instance owns every URL.
+ */
+public class StaticMembership implements ClusterMembership {
+
+    private final String nodeId;
+
+    public StaticMembership(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String localNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public List<String> liveNodes() {
+        return List.of(nodeId);
+    }
+
+    @Override
+    public void addListener(Consumer<List<String>> listener) {
+        // Membership never changes
+    }
+}
@@ -0,0 +1,13 @@
+package com.WebsitePinger.Ping.controller;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import.
+ *
+ * @param imported Entries now monitored.
+ * @param rejected Entries skipped because they were invalid.
+ * @param errors   Why entries were rejected ("entry 12: ..."), up to the first 100.
+ */
+public record BulkImportResult(int imported, int rejected, List<String> errors) {
+}
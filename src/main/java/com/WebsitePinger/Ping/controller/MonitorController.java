@@ -1,51 +1,328 @@
 package com.WebsitePinger.Ping.controller;
 
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.history.PageVersion;
+import com.WebsitePinger.Ping.service.ContentFilter;
+import com.WebsitePinger.Ping.service.MonitorMetrics;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+import com.WebsitePinger.Ping.service.MonitorStatus;
+import com.WebsitePinger.Ping.service.NotificationService;
+import com.WebsitePinger.Ping.service.PollingSnapshot;
 import com.WebsitePinger.Ping.service.ScheduledMonitorTask;
+import com.WebsitePinger.Ping.service.StatusPage;
+import com.WebsitePinger.Ping.service.Subscription;
+import com.WebsitePinger.Ping.service.UrlCanonicalizer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Set; // Import needed for return type if we add status endpoint
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 @RestController
 @RequestMapping("/api/monitor") // Base path for monitoring endpoints
 public class MonitorController {
 
     private static final Logger log = LoggerFactory.getLogger(MonitorController.class);
+    private static final int IMPORT_BATCH_SIZE = 1000; // URLs registered (and persisted) per store write
+    private static final int MAX_IMPORT_ERRORS = 100;  // Rejections reported back in detail
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long MAX_BODY_BYTES = Integer.MAX_VALUE - 8; // Largest body one byte array (and String) can hold
+
     private final ScheduledMonitorTask monitorTask;
+    private final PageHistoryStore historyStore;
+    // Knows the recipients a subscription may pick
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public MonitorController(ScheduledMonitorTask monitorTask) {
+    public MonitorController(ScheduledMonitorTask monitorTask, PageHistoryStore historyStore,
+                             NotificationService notificationService, ObjectMapper objectMapper) {
         this.monitorTask = monitorTask;
+        this.historyStore = historyStore;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Invalid URLs (see UrlCanonicalizer) and parameters of the read endpoints
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 
     /**
      * Starts monitoring the specified URL.
-     * Example: POST /api/monitor?url=https://example.com
+     * Example: POST /api/monitor?url=https://example.com&intervalMs=60000&maxIntervalMs=3600000
      *
-     * @param url The URL to monitor.
+     * @param url           The URL to monitor.
+     * @param intervalMs    Optional minimum check interval; defaults to monitor.check.interval.ms.
+     * @param maxIntervalMs Optional ceiling the interval may back off to while the page is unchanged;
+     *                      defaults to monitor.adaptive.max-interval.ms. Equal to intervalMs for a fixed interval.
+     * @param maxBodyBytes  Optional response size cap for this URL; defaults to monitor.fetch.max-body-bytes.
+     * @param include       Optional CSS selectors (repeatable) of the regions to compare; default is the whole body.
+     * @param exclude       Optional CSS selectors (repeatable) of regions to ignore, e.g. ads or clocks.
+     * @param ignore        Optional regexes (repeatable) whose matches are ignored, e.g. timestamps or session ids.
+     * @param notify        Optional recipients (repeatable) of the configured sinks to notify; default is all of them.
+     * @param json          Optional JSON paths (repeatable) of the fields to compare, e.g. {@code $.results[*].grade},
+     *                      for URLs serving JSON (the data endpoints behind single-page apps). {@code $} compares
+     *                      the whole document. Can't be combined with include/exclude.
      * @return ResponseEntity indicating success or failure.
      */
     @PostMapping
-    public ResponseEntity<String> startMonitoring(@RequestParam String url) {
+    public ResponseEntity<String> startMonitoring(@RequestParam String url,
+                                                  @RequestParam(required = false) Long intervalMs,
+                                                  @RequestParam(required = false) Long maxIntervalMs,
+                                                  @RequestParam(required = false) Long maxBodyBytes,
+                                                  @RequestParam(required = false) List<String> include,
+                                                  @RequestParam(required = false) List<String> exclude,
+                                                  @RequestParam(required = false) List<String> ignore,
+                                                  @RequestParam(required = false) List<String> notify,
+                                                  @RequestParam(required = false) List<String> json) {
         if (url == null || url.isBlank()) {
             return ResponseEntity.badRequest().body("URL parameter is required.");
         }
+        MonitorSettings settings;
+        String page;
+        try {
+            settings = settings(intervalMs, maxIntervalMs, maxBodyBytes, include, exclude, ignore, notify, json);
+            // Every spelling of the URL (case, default port, tracking parameters, ...) is the same page
+            page = UrlCanonicalizer.canonicalize(url);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         try {
-            // Basic URL validation could be added here
-            log.info("Received request to start monitoring URL: {}", url);
-            monitorTask.startMonitoring(url);
-            return ResponseEntity.ok("Started monitoring URL: " + url);
+            log.info("Received request to start monitoring URL: {}", page);
+            monitorTask.startMonitoring(page, settings);
+            return ResponseEntity.ok("Started monitoring URL: " + page);
         } catch (Exception e) {
             log.error("Error starting monitoring for URL {}: {}", url, e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Error starting monitoring: " + e.getMessage());
         }
     }
 
+    // Applies the optional overrides to the default settings; throws IllegalArgumentException saying what is wrong
+    private MonitorSettings settings(Long intervalMs, Long maxIntervalMs, Long maxBodyBytes,
+                                     List<String> include, List<String> exclude, List<String> ignore,
+                                     List<String> notify, List<String> json) {
+        if (intervalMs != null && intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be positive.");
+        }
+        MonitorSettings settings = monitorTask.defaultSettings();
+        if (intervalMs != null) {
+            settings = settings.withMinIntervalMs(intervalMs);
+        }
+        if (maxIntervalMs != null) {
+            if (maxIntervalMs < settings.minIntervalMs()) {
+                throw new IllegalArgumentException("maxIntervalMs must not be below intervalMs.");
+            }
+            settings = settings.withMaxIntervalMs(maxIntervalMs);
+        }
+        if (maxBodyBytes != null) {
+            if (maxBodyBytes <= 0) {
+                throw new IllegalArgumentException("maxBodyBytes must be positive.");
+            }
+            if (maxBodyBytes > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("maxBodyBytes must not exceed " + MAX_BODY_BYTES + ".");
+            }
+            settings = settings.withMaxBodyBytes(maxBodyBytes);
+        }
+        if (notify != null && !notify.isEmpty()) {
+            // Recipients come from configuration only: a subscription can't make the monitor send anywhere else
+            List<String> known = notificationService.recipients();
+            for (String recipient : notify) {
+                if (!recipient.isBlank() && !known.contains(recipient.trim())) {
+                    throw new IllegalArgumentException("Unknown notify recipient: " + recipient.trim()
+                            + ". Configured recipients: " + known);
+                }
+            }
+            settings = settings.withRecipients(notify);
+        }
+        return settings.withContentFilter(ContentFilter.of(include, exclude, ignore, json));
+    }
+
+    // Validates a definition from the bulk or subscription API; throws IllegalArgumentException saying what is wrong
+    private Subscription subscription(MonitorDefinition definition) {
+        if (definition.url() == null || definition.url().isBlank()) {
+            throw new IllegalArgumentException("url is required.");
+        }
+        MonitorSettings settings = settings(definition.intervalMs(), definition.maxIntervalMs(), definition.maxBodyBytes(),
+                definition.include(), definition.exclude(), definition.ignore(), definition.recipients(), definition.json());
+        String id = definition.id() != null ? definition.id() : Subscription.DEFAULT;
+        return new Subscription(id, UrlCanonicalizer.canonicalize(definition.url()), settings);
+    }
+
+    /**
+     * Starts monitoring many URLs at once. The body is either a JSON array or NDJSON (one object per line)
+     * of {@link MonitorDefinition}s, the format GET /api/monitor/export produces. It is read as a stream,
+     * so imports of thousands of URLs don't have to fit in memory. Invalid entries are skipped and
+     * reported; malformed JSON stops the import (entries before it stay imported) with 400.
+     * Example: curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @monitors.ndjson .../api/monitor/bulk
+     *
+     * @param body The request body.
+     * @return How many entries were imported and why others were rejected.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportResult> importMonitors(InputStream body) throws IOException {
+        // By subscription key: spellings of the same URL within a batch collapse into one entry
+        Map<String, Subscription> batch = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        int imported = 0;
+        int rejected = 0;
+        int entry = 0;
+        // A top-level array is iterated element by element, same as NDJSON lines
+        try (MappingIterator<MonitorDefinition> definitions = objectMapper.readerFor(MonitorDefinition.class).readValues(body)) {
+            while (definitions.hasNextValue()) {
+                MonitorDefinition definition = definitions.nextValue();
+                entry++;
+                try {
+                    Subscription subscription = subscription(definition);
+                    batch.put(subscription.key(), subscription);
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.size() < MAX_IMPORT_ERRORS) {
+                        errors.add("entry " + entry + ": " + e.getMessage());
+                    }
+                }
+                if (batch.size() >= IMPORT_BATCH_SIZE) {
+                    imported += register(batch);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            imported += register(batch);
+            errors.add("entry " + (entry + 1) + ": malformed JSON, import stopped: " + e.getOriginalMessage());
+            log.warn("Bulk import stopped at entry {} after {} URLs: {}", entry + 1, imported, e.getOriginalMessage());
+            return ResponseEntity.badRequest().body(new BulkImportResult(imported, rejected, errors));
+        }
+        imported += register(batch);
+        log.info("Bulk import: {} URLs imported, {} rejected.", imported, rejected);
+        return ResponseEntity.ok(new BulkImportResult(imported, rejected, errors));
+    }
+
+    private int register(Map<String, Subscription> batch) {
+        int size = batch.size();
+        if (size > 0) {
+            monitorTask.subscribe(batch.values());
+            batch.clear();
+        }
+        return size;
+    }
+
+    /**
+     * Streams every subscription with its settings as NDJSON, ready to be re-imported via POST /api/monitor/bulk.
+     * Example: curl .../api/monitor/export > monitors.ndjson
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMonitors() {
+        ObjectWriter writer = objectMapper.writerFor(MonitorDefinition.class);
+        StreamingResponseBody body = outputStream -> {
+            BufferedOutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                monitorTask.forEachSubscription(subscription -> {
+                    try {
+                        out.write(writer.writeValueAsBytes(MonitorDefinition.of(subscription)));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Adds a subscription to a URL, or replaces the URL's subscription with the same id. Each subscription has
+     * its own filters, interval bounds and recipients; the page itself is fetched once per check for all of them.
+     * Example: curl -X POST -H 'Content-Type: application/json' .../api/monitor/subscriptions
+     *          -d '{"url": "https://example.com", "include": ["#prices"], "notify": ["ops@example.com"]}'
+     *
+     * @param definition The subscription; without an id, a new id is generated.
+     * @return The subscription as stored (canonical URL, id), or 400 saying what is wrong.
+     */
+    @PostMapping(value = "/subscriptions", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MonitorDefinition> subscribe(@RequestBody MonitorDefinition definition) {
+        String id = definition.id() != null ? definition.id() : UUID.randomUUID().toString().substring(0, 8);
+        // Invalid definitions throw IllegalArgumentException, answered with 400 by badRequest()
+        Subscription subscription = subscription(new MonitorDefinition(id, definition.url(), definition.intervalMs(),
+                definition.maxIntervalMs(), definition.maxBodyBytes(), definition.include(), definition.exclude(),
+                definition.ignore(), definition.recipients(), definition.json()));
+        monitorTask.subscribe(subscription);
+        return ResponseEntity.ok(MonitorDefinition.of(subscription));
+    }
+
+    /**
+     * Lists the subscriptions of a URL, the default one (without id) first.
+     * Example: GET /api/monitor/subscriptions?url=https://example.com
+     *
+     * @param url The URL, in any spelling.
+     * @return The subscriptions, or 404 if the URL is not monitored.
+     */
+    @GetMapping("/subscriptions")
+    public ResponseEntity<List<MonitorDefinition>> getSubscriptions(@RequestParam String url) {
+        List<Subscription> subscriptions = monitorTask.getSubscriptions(url);
+        if (subscriptions.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(subscriptions.stream().map(MonitorDefinition::of).toList());
+    }
+
+    /**
+     * Removes one subscription of a URL; the URL stops being monitored with its last subscription.
+     * Example: DELETE /api/monitor/subscriptions?url=https://example.com&id=prices
+     *
+     * @param url The URL, in any spelling.
+     * @param id  The subscription's id ("default" for the one POST /api/monitor manages).
+     * @return 200, or 404 if the URL has no such subscription.
+     */
+    @DeleteMapping("/subscriptions")
+    public ResponseEntity<String> unsubscribe(@RequestParam String url, @RequestParam String id) {
+        if (!monitorTask.unsubscribe(url, id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok("Removed subscription " + id + " of URL: " + UrlCanonicalizer.canonicalize(url));
+    }
+
     /**
-     * Stops monitoring the specified URL.
+     * Checks a monitored URL now instead of waiting for its next scheduled check. Subscribers are notified as
+     * usual; a check already running for the URL is joined rather than repeated.
+     * Example: POST /api/monitor/check?url=https://example.com
+     *
+     * @param url The URL, in any spelling.
+     * @return 202 once the check is started, or 404 if this instance does not monitor the URL.
+     */
+    @PostMapping("/check")
+    public ResponseEntity<String> checkNow(@RequestParam String url) {
+        if (!monitorTask.checkNow(url)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Checking URL: " + UrlCanonicalizer.canonicalize(url));
+    }
+
+    /**
+     * Stops monitoring the specified URL, with all of its subscriptions.
      * Example: DELETE /api/monitor?url=https://example.com
      *
      * @param url The URL to stop monitoring.
@@ -59,21 +336,106 @@ public class MonitorController {
         try {
             log.info("Received request to stop monitoring URL: {}", url);
             monitorTask.stopMonitoring(url);
-            return ResponseEntity.ok("Stopped monitoring URL: " + url);
+            return ResponseEntity.ok("Stopped monitoring URL: " + UrlCanonicalizer.canonicalize(url));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             log.error("Error stopping monitoring for URL {}: {}", url, e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Error stopping monitoring: " + e.getMessage());
         }
     }
 
-    // TODO: Add endpoint to view status (e.g., GET /api/monitor/status)
-    // This would require ScheduledMonitorTask to expose the list of monitoredUrls.
-    /*
+    /**
+     * Returns the adaptive polling state of a monitored URL.
+     * Example: GET /api/monitor/polling?url=https://example.com
+     *
+     * @param url The monitored URL.
+     * @return Interval bounds, current interval and change-rate estimate, or 404 if the URL is not monitored.
+     */
+    @GetMapping("/polling")
+    public ResponseEntity<PollingSnapshot> getPolling(@RequestParam String url) {
+        PollingSnapshot snapshot = monitorTask.getPollingSnapshot(url);
+        if (snapshot == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(snapshot);
+    }
+
+    /**
+     * Returns a page of per-URL status: state, last check and change time, latency and check/error counts.
+     * Pages are ordered by URL; pass the returned nextCursor to get the next page.
+     * Example: GET /api/monitor/status?state=FAILING&host=example.com&limit=50
+     *
+     * @param state  Optional filter: PENDING, OK or FAILING.
+     * @param host   Optional filter: only URLs on this host.
+     * @param q      Optional filter: only URLs containing this text.
+     * @param cursor Optional nextCursor of the previous page.
+     * @param limit  Page size, at most 1000 (default 100).
+     */
     @GetMapping("/status")
-    public ResponseEntity<Set<String>> getStatus() {
-        // Need to modify ScheduledMonitorTask to return monitoredUrls.keySet()
-        // return ResponseEntity.ok(monitorTask.getMonitoredUrls());
-        return ResponseEntity.ok(Set.of("Status endpoint not fully implemented yet."));
+    public ResponseEntity<StatusPage> getStatus(@RequestParam(required = false) MonitorStatus.State state,
+                                                @RequestParam(required = false) String host,
+                                                @RequestParam(required = false) String q,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        Predicate<MonitorStatus> filter = status -> true;
+        if (state != null) {
+            filter = filter.and(status -> status.state() == state);
+        }
+        if (host != null && !host.isBlank()) {
+            String wanted = host.trim().toLowerCase(Locale.ROOT);
+            filter = filter.and(status -> MonitorMetrics.hostOf(status.url()).equals(wanted));
+        }
+        if (q != null && !q.isEmpty()) {
+            filter = filter.and(status -> status.url().contains(q));
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(monitorTask.getStatus(cursor == null || cursor.isEmpty() ? null : cursor, pageSize, filter));
+    }
+
+    /**
+     * Lists the stored versions of a page, newest first.
+     * Example: GET /api/monitor/history?url=https://example.com
+     *
+     * @param url The page's URL.
+     * @return The versions, or 404 if none are stored.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<List<PageVersion>> getHistory(@RequestParam String url) {
+        List<PageVersion> versions = historyStore.versions(UrlCanonicalizer.canonicalize(url));
+        if (versions.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(versions);
+    }
+
+    /**
+     * Returns a stored version of a page as it was fetched. Served as plain text, so browsers show
+     * the markup instead of rendering a third-party page under this origin.
+     * Example: GET /api/monitor/history/content?url=https://example.com&at=2025-01-07T12:00:00Z
+     *
+     * @param url     The page's URL.
+     * @param version Optional id of the version, from GET /api/monitor/history.
+     * @param at      Optional point in time (ISO-8601): returns the version that was current then.
+     *                Without version or at, the newest version is returned.
+     * @return The page body, or 404 if there is no such version.
+     */
+    @GetMapping(value = "/history/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getHistoryContent(@RequestParam String url,
+                                                    @RequestParam(required = false) String version,
+                                                    @RequestParam(required = false) Instant at) {
+        url = UrlCanonicalizer.canonicalize(url);
+        String id = version;
+        if (id == null) {
+            PageVersion match = at != null
+                    ? historyStore.versionAt(url, at)
+                    : historyStore.versions(url).stream().findFirst().orElse(null);
+            id = match != null ? match.id() : null;
+        }
+        String content = id != null ? historyStore.content(url, id) : null;
+        if (content == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8)).body(content);
     }
-    */
 }
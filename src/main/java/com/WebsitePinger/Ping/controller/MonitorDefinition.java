@@ -0,0 +1,34 @@
+package com.WebsitePinger.Ping.controller;
+
+import com.WebsitePinger.Ping.service.ContentFilter;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+import com.WebsitePinger.Ping.service.Subscription;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * A monitored URL and its settings as exchanged by bulk import and export, one per NDJSON line, and by the
+ * subscription API. Fields mirror the query parameters of POST /api/monitor; omitted ones take the defaults.
+ * {@code notify} lists the recipients to notify (all if omitted).
+ * {@code json} lists JSON paths of the fields to compare, for URLs serving JSON.
+ * {@code id} names one of several subscriptions of the same URL; without it the URL's default subscription is meant.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record MonitorDefinition(String id, String url, Long intervalMs, Long maxIntervalMs, Long maxBodyBytes,
+                                List<String> include, List<String> exclude, List<String> ignore,
+                                @JsonProperty("notify") List<String> recipients, List<String> json) {
+
+    /**
+     * Definition of a current subscription, for export.
+     */
+    static MonitorDefinition of(Subscription subscription) {
+        MonitorSettings settings = subscription.settings();
+        ContentFilter filter = settings.contentFilter();
+        return new MonitorDefinition(subscription.isDefault() ? null : subscription.id(), subscription.url(),
+                settings.minIntervalMs(), settings.maxIntervalMs(), settings.maxBodyBytes(),
+                filter.includeSelectors(), filter.excludeSelectors(), filter.ignorePatterns(), settings.recipients(),
+                filter.jsonPaths());
+    }
+}
@@ -0,0 +1,204 @@
+package com.WebsitePinger.Ping.history;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Byte-level compression for stored page versions: plain deflate, and deflated deltas that describe
+ * one version as copies from another plus inserted bytes. Two revisions of a page usually share almost
+ * everything, so a delta is a small fraction of the page even before deflating it.
+ */
+final class DeltaCodec {
+
+    // Matches shorter than this are stored as inserted bytes; also the granularity of the base index
+    private static final int BLOCK = 16;
+    private static final long PRIME = 0x100000001b3L;
+    // PRIME^BLOCK, to drop the leaving byte from the rolling hash
+    private static final long PRIME_POW;
+
+    static {
+        long pow = 1;
+        for (int i = 0; i < BLOCK; i++) {
+            pow *= PRIME;
+        }
+        PRIME_POW = pow;
+    }
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * Deflates {@code data}.
+     */
+    static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[8 * 1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflates data produced by {@link #compress}.
+     * @param sizeHint Expected uncompressed size, to size the buffer.
+     */
+    static byte[] decompress(byte[] data, int sizeHint) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, sizeHint));
+            byte[] chunk = new byte[8 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Corrupt history blob: truncated deflate stream");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt history blob", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Encodes {@code target} as a deflated delta against {@code base}.
+     */
+    static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream ops = new ByteArrayOutputStream(Math.max(64, target.length / 8));
+        writeVarint(ops, target.length);
+        int[] index = index(base);
+        int mask = index.length - 1;
+        int literalStart = 0;
+        int pos = 0;
+        long hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (pos + BLOCK <= target.length) {
+            int candidate = index[(int) mix(hash) & mask] - 1;
+            if (candidate >= 0 && Arrays.equals(base, candidate, candidate + BLOCK, target, pos, pos + BLOCK)) {
+                // Extend the match forwards, then backwards into the pending literal bytes
+                int end = pos + BLOCK;
+                int baseEnd = candidate + BLOCK;
+                while (end < target.length && baseEnd < base.length && target[end] == base[baseEnd]) {
+                    end++;
+                    baseEnd++;
+                }
+                int start = pos;
+                int baseStart = candidate;
+                while (start > literalStart && baseStart > 0 && target[start - 1] == base[baseStart - 1]) {
+                    start--;
+                    baseStart--;
+                }
+                writeLiteral(ops, target, literalStart, start);
+                writeVarint(ops, ((long) (end - start) << 1) | 1);
+                writeVarint(ops, baseStart);
+                literalStart = end;
+                pos = end;
+                if (pos + BLOCK <= target.length) {
+                    hash = hash(target, pos);
+                }
+                continue;
+            }
+            if (pos + BLOCK < target.length) {
+                hash = hash * PRIME + (target[pos + BLOCK] & 0xFF) - PRIME_POW * (target[pos] & 0xFF);
+            }
+            pos++;
+        }
+        writeLiteral(ops, target, literalStart, target.length);
+        return compress(ops.toByteArray());
+    }
+
+    /**
+     * Rebuilds the target from {@code base} and a delta produced by {@link #encode}.
+     */
+    static byte[] decode(byte[] base, byte[] delta) {
+        byte[] ops = decompress(delta, delta.length * 4);
+        int[] pos = {0};
+        int targetLength = (int) readVarint(ops, pos);
+        byte[] target = new byte[targetLength];
+        int written = 0;
+        while (pos[0] < ops.length) {
+            long op = readVarint(ops, pos);
+            int count = (int) (op >>> 1);
+            if ((op & 1) == 1) {
+                int offset = (int) readVarint(ops, pos);
+                System.arraycopy(base, offset, target, written, count);
+            } else {
+                System.arraycopy(ops, pos[0], target, written, count);
+                pos[0] += count;
+            }
+            written += count;
+        }
+        if (written != targetLength) {
+            throw new IllegalStateException("Corrupt history delta: expected " + targetLength + " bytes, got " + written);
+        }
+        return target;
+    }
+
+    // Offset (+1, 0 = empty) of every BLOCK-aligned block of the base, by hash of its bytes
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK;
+        int size = Integer.highestOneBit(Math.max(16, blocks * 2 - 1)) << 1;
+        int[] index = new int[size];
+        for (int offset = 0; offset + BLOCK <= base.length; offset += BLOCK) {
+            int slot = (int) mix(hash(base, offset)) & (size - 1);
+            if (index[slot] == 0) {
+                // Keep the first occurrence: earlier blocks tend to be the longer matches
+                index[slot] = offset + 1;
+            }
+        }
+        return index;
+    }
+
+    private static long hash(byte[] data, int offset) {
+        long hash = 0;
+        for (int i = offset; i < offset + BLOCK; i++) {
+            hash = hash * PRIME + (data[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static void writeLiteral(ByteArrayOutputStream ops, byte[] data, int from, int to) {
+        if (to > from) {
+            writeVarint(ops, (long) (to - from) << 1);
+            ops.write(data, from, to - from);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
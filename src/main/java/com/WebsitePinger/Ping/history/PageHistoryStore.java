@@ -0,0 +1,406 @@
+package com.WebsitePinger.Ping.history;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded version history of the monitored pages, for looking up what a page looked like at some point.
+ * A version is recorded on the first check and on every detected change.
+ * <p>
+ * Bodies are content-addressed by their SHA-256, so a body is stored once however many URLs or versions
+ * share it. The newest body of a page is deflated on its own; when a newer one arrives, the previous body
+ * is re-stored as a deflated delta against it. Pages mostly change a little at a time, so older versions
+ * cost a small fraction of their size, and since deltas point at newer versions, retention can drop the
+ * oldest version of a page without re-encoding anything. Recently read or written bodies are kept decoded
+ * in an LRU cache bounded by monitor.history.cache.max-bytes.
+ */
+@Component
+public final class PageHistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PageHistoryStore.class);
+
+    /**
+     * A stored body: deflated on its own, or a delta against the body {@code baseId}.
+     * Referenced by versions and by the deltas based on it; removed when nothing refers to it.
+     */
+    private static final class Blob {
+        final byte[] data;
+        final String baseId;
+        final int length;
+        int refs; // Guarded by the store
+
+        Blob(byte[] data, String baseId, int length, int refs) {
+            this.data = data;
+            this.baseId = baseId;
+            this.length = length;
+            this.refs = refs;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxVersions;
+    private final long maxAgeMs;
+    // Key: URL, Value: its versions, oldest first. The deques and blobs are guarded by this store's lock;
+    // the map itself is concurrent so checks can ask for a URL's history without taking the lock
+    private final ConcurrentMap<String, Deque<PageVersion>> histories = new ConcurrentHashMap<>();
+    // Key: content id
+    private final Map<String, Blob> blobs = new HashMap<>();
+    private final VersionCache cache;
+    private long versionCount;
+    private long rawBytes;
+    private long storedBytes;
+    private final Counter deduplicated;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public PageHistoryStore(MeterRegistry registry,
+                            @Value("${monitor.history.enabled:true}") boolean enabled,
+                            @Value("${monitor.history.max-versions:20}") int maxVersions,
+                            @Value("${monitor.history.max-age.ms:2592000000}") long maxAgeMs,
+                            @Value("${monitor.history.cache.max-bytes:16777216}") long cacheMaxBytes) {
+        this.enabled = enabled;
+        this.maxVersions = Math.max(1, maxVersions);
+        this.maxAgeMs = maxAgeMs;
+        this.cache = new VersionCache(cacheMaxBytes);
+        this.deduplicated = Counter.builder("monitor.history.deduplicated")
+                .description("Versions whose body was already stored, for this or another URL")
+                .register(registry);
+        this.cacheHits = cacheCounter(registry, "hit");
+        this.cacheMisses = cacheCounter(registry, "miss");
+        Gauge.builder("monitor.history.versions", this, PageHistoryStore::versionCount)
+                .description("Page versions kept across all URLs")
+                .register(registry);
+        Gauge.builder("monitor.history.raw.bytes", this, PageHistoryStore::rawBytes)
+                .description("Size the kept versions would take stored in full")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("monitor.history.stored.bytes", this, PageHistoryStore::storedBytes)
+                .description("Size of the deduplicated, compressed bodies actually stored")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("monitor.history.cache.bytes", cache, VersionCache::bytes)
+                .description("Decoded bodies held by the recent-version cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static Counter cacheCounter(MeterRegistry registry, String result) {
+        return Counter.builder("monitor.history.cache.requests")
+                .description("Reads of stored bodies, by whether the decoded body was cached")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Whether versions are recorded at all (monitor.history.enabled); if not, checks need not keep the page.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether any version of the URL is stored. Cheap enough to call on every check.
+     */
+    public boolean hasHistory(String url) {
+        return histories.containsKey(url);
+    }
+
+    /**
+     * Records a version of a page, unless it is the same body as the page's newest version.
+     * Not meant to be called concurrently for the same URL.
+     *
+     * @param url     The page's URL.
+     * @param content The raw page body.
+     * @param time    When the version was seen.
+     */
+    public void record(String url, String content, Instant time) {
+        if (!enabled) {
+            return;
+        }
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        String id = contentId(body);
+        String previousId;
+        synchronized (this) {
+            Deque<PageVersion> versions = histories.get(url);
+            PageVersion newest = versions != null ? versions.peekLast() : null;
+            if (newest != null && newest.id().equals(id)) {
+                return;
+            }
+            Blob existing = blobs.get(id);
+            if (existing != null) {
+                // Seen before (a page flipping back, or the same body on another URL): just refer to it
+                existing.refs++;
+                deduplicated.increment();
+                append(url, new PageVersion(id, time, body.length));
+                return;
+            }
+            previousId = newest != null ? newest.id() : null;
+        }
+        // Compression runs outside the lock; only the bookkeeping below is serialized
+        byte[] full = DeltaCodec.compress(body);
+        byte[] previousBody = previousId != null ? load(previousId) : null;
+        byte[] previousDelta = previousBody != null ? DeltaCodec.encode(body, previousBody) : null;
+        synchronized (this) {
+            Blob blob = blobs.get(id);
+            if (blob == null) {
+                blob = new Blob(full, null, body.length, 1);
+                blobs.put(id, blob);
+                storedBytes += full.length;
+            } else {
+                // Stored by another URL meanwhile
+                blob.refs++;
+                deduplicated.increment();
+            }
+            append(url, new PageVersion(id, time, body.length));
+            if (previousDelta != null && blob.baseId == null) {
+                // Only onto a standalone body: deltas always point at a body without a base chain of its own
+                // at the time, so chains can never loop
+                rebase(previousId, id, previousDelta);
+            }
+        }
+        cache.put(id, body);
+    }
+
+    // Re-stores a standalone body as a delta against a newer one, if that is smaller
+    private void rebase(String id, String baseId, byte[] delta) {
+        Blob blob = blobs.get(id);
+        if (blob == null || blob.baseId != null || delta.length >= blob.data.length) {
+            return;
+        }
+        blobs.put(id, new Blob(delta, baseId, blob.length, blob.refs));
+        blobs.get(baseId).refs++;
+        storedBytes += delta.length - blob.data.length;
+    }
+
+    // Adds a version and applies the retention limits; must hold the lock
+    private void append(String url, PageVersion version) {
+        Deque<PageVersion> versions = histories.computeIfAbsent(url, u -> new ArrayDeque<>());
+        versions.addLast(version);
+        versionCount++;
+        rawBytes += version.length();
+        evict(versions, version.time());
+    }
+
+    // Drops versions beyond max-versions or older than max-age; the newest version is always kept
+    private void evict(Deque<PageVersion> versions, Instant now) {
+        Instant cutoff = now.minusMillis(maxAgeMs);
+        while (versions.size() > maxVersions || (versions.size() > 1 && versions.peekFirst().time().isBefore(cutoff))) {
+            PageVersion oldest = versions.pollFirst();
+            versionCount--;
+            rawBytes -= oldest.length();
+            release(oldest.id());
+        }
+    }
+
+    // Drops one reference to a body, and the body (and in turn its base) once nothing refers to it
+    private void release(String id) {
+        while (id != null) {
+            Blob blob = blobs.get(id);
+            if (blob == null || --blob.refs > 0) {
+                return;
+            }
+            blobs.remove(id);
+            storedBytes -= blob.data.length;
+            cache.remove(id);
+            id = blob.baseId;
+        }
+    }
+
+    /**
+     * Returns a page's stored versions, newest first; empty if none are stored.
+     */
+    public synchronized List<PageVersion> versions(String url) {
+        Deque<PageVersion> versions = histories.get(url);
+        if (versions == null) {
+            return List.of();
+        }
+        List<PageVersion> newestFirst = new ArrayList<>(versions.size());
+        versions.descendingIterator().forEachRemaining(newestFirst::add);
+        return newestFirst;
+    }
+
+    /**
+     * Returns the version of a page that was current at the given time.
+     * @return The newest version seen at or before {@code time}, or null if there is none.
+     */
+    public synchronized PageVersion versionAt(String url, Instant time) {
+        Deque<PageVersion> versions = histories.get(url);
+        if (versions == null) {
+            return null;
+        }
+        for (Iterator<PageVersion> newestFirst = versions.descendingIterator(); newestFirst.hasNext(); ) {
+            PageVersion version = newestFirst.next();
+            if (!version.time().isAfter(time)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the body of one of a page's versions.
+     * @param id A {@link PageVersion#id()} from the page's history.
+     * @return The body, or null if the page has no such version (any more).
+     */
+    public String content(String url, String id) {
+        synchronized (this) {
+            Deque<PageVersion> versions = histories.get(url);
+            if (versions == null || versions.stream().noneMatch(version -> version.id().equals(id))) {
+                return null;
+            }
+        }
+        byte[] body = load(id);
+        return body != null ? new String(body, StandardCharsets.UTF_8) : null;
+    }
+
+    // Decodes a body: walks its delta chain to a cached or standalone body, then applies the deltas back
+    private byte[] load(String id) {
+        byte[] cached = cache.get(id);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        List<Blob> chain = new ArrayList<>();
+        byte[] body = null;
+        // Blobs are immutable apart from their reference counts: collect them under the lock, decode outside it
+        synchronized (this) {
+            for (String next = id; next != null; ) {
+                Blob blob = blobs.get(next);
+                if (blob == null) {
+                    return null;
+                }
+                chain.add(blob);
+                next = blob.baseId;
+                if (next != null && (body = cache.get(next)) != null) {
+                    break;
+                }
+            }
+        }
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            Blob blob = chain.get(i);
+            body = blob.baseId == null ? DeltaCodec.decompress(blob.data, blob.length) : DeltaCodec.decode(body, blob.data);
+        }
+        cache.put(id, body);
+        return body;
+    }
+
+    /**
+     * Forgets every version of a page.
+     */
+    public synchronized void remove(String url) {
+        Deque<PageVersion> versions = histories.remove(url);
+        if (versions == null) {
+            return;
+        }
+        for (PageVersion version : versions) {
+            versionCount--;
+            rawBytes -= version.length();
+            release(version.id());
+        }
+    }
+
+    /**
+     * Applies max-age to pages that haven't changed for a while (changes apply it as they are recorded).
+     */
+    @Scheduled(fixedDelayString = "${monitor.history.sweep-interval.ms:3600000}",
+            initialDelayString = "${monitor.history.sweep-interval.ms:3600000}")
+    public void sweep() {
+        sweep(Instant.now());
+    }
+
+    synchronized void sweep(Instant now) {
+        long before = versionCount;
+        for (Deque<PageVersion> versions : histories.values()) {
+            evict(versions, now);
+        }
+        if (versionCount < before) {
+            log.debug("History sweep dropped {} versions older than {}.", before - versionCount, Duration.ofMillis(maxAgeMs));
+        }
+    }
+
+    synchronized long versionCount() {
+        return versionCount;
+    }
+
+    synchronized long rawBytes() {
+        return rawBytes;
+    }
+
+    synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    private static String contentId(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Decoded bodies by content id, least recently used evicted first once over the byte budget.
+     */
+    private static final class VersionCache {
+
+        private final long maxBytes;
+        private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        VersionCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String id) {
+            return entries.get(id);
+        }
+
+        synchronized void put(String id, byte[] body) {
+            if (body.length > maxBytes) {
+                return;
+            }
+            byte[] previous = entries.put(id, body);
+            bytes += body.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized void remove(String id) {
+            byte[] removed = entries.remove(id);
+            if (removed != null) {
+                bytes -= removed.length;
+            }
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.WebsitePinger.Ping.history;
+
+import java.time.Instant;
+
+/**
+ * One stored version of a page, as listed by the history API.
+ *
+ * @param id     SHA-256 of the page body (hex); versions with the same id are the same body, on any URL.
+ * @param time   When this version was first seen.
+ * @param length Size of the body in bytes (UTF-8).
+ */
+public record PageVersion(String id, Instant time, int length) {
+}
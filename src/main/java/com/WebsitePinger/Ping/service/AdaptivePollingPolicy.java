@@ -0,0 +1,60 @@
+package com.WebsitePinger.Ping.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Learns each URL's check interval from its comparison results.
+ * After {@code backoffAfter} unchanged checks in a row the interval is multiplied by
+ * {@code backoffMultiplier} on every further unchanged check, up to the URL's maximum;
+ * a detected change resets it to the minimum.
+ */
+@Component
+public class AdaptivePollingPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePollingPolicy.class);
+
+    private final long defaultIntervalMs;
+    private final long defaultMaxIntervalMs;
+    private final double backoffMultiplier;
+    private final int backoffAfter;
+    private final double rateHalfLifeMs;
+
+    public AdaptivePollingPolicy(@Value("${monitor.check.interval.ms:2000}") long defaultIntervalMs,
+                                 @Value("${monitor.adaptive.max-interval.ms:300000}") long defaultMaxIntervalMs,
+                                 @Value("${monitor.adaptive.backoff-multiplier:2.0}") double backoffMultiplier,
+                                 @Value("${monitor.adaptive.backoff-after:3}") int backoffAfter,
+                                 @Value("${monitor.adaptive.rate-half-life.ms:86400000}") long rateHalfLifeMs) {
+        if (backoffMultiplier < 1.0) {
+            throw new IllegalArgumentException("monitor.adaptive.backoff-multiplier must be >= 1.0");
+        }
+        this.defaultIntervalMs = defaultIntervalMs;
+        this.defaultMaxIntervalMs = defaultMaxIntervalMs;
+        this.backoffMultiplier = backoffMultiplier;
+        this.backoffAfter = Math.max(1, backoffAfter);
+        this.rateHalfLifeMs = rateHalfLifeMs;
+    }
+
+    /**
+     * Settings used for URLs registered without explicit intervals.
+     */
+    public MonitorSettings defaultSettings() {
+        return new MonitorSettings(defaultIntervalMs, Math.max(defaultIntervalMs, defaultMaxIntervalMs), null, ContentFilter.NONE);
+    }
+
+    /**
+     * Records the outcome of a completed check in the URL's row of the polling table.
+     *
+     * @return The URL's check interval from now on, or -1 if the table does not track the URL.
+     */
+    long onCheck(String url, PollingTable states, boolean changed, long now) {
+        long before = states.currentIntervalMs(url);
+        long after = states.record(url, changed, now, backoffMultiplier, backoffAfter, rateHalfLifeMs);
+        if (after != before && after >= 0) {
+            log.debug("Check interval for URL [{}] adjusted from {} ms to {} ms.", url, before, after);
+        }
+        return after;
+    }
+}
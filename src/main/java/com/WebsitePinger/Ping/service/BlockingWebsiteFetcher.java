@@ -0,0 +1,350 @@
+package com.WebsitePinger.Ping.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Blocking counterpart of {@link WebsiteFetcher} for monitor.engine=virtual-threads: the same conditional
+ * requests, size cap, retries, throttling and circuit breaking, on {@code java.net.http.HttpClient}, for
+ * callers that run each check on its own virtual thread. Validators and retry settings are shared with
+ * the {@link WebsiteFetcher}, so clearing a URL's validators there applies here too.
+ */
+@Service
+@ConditionalOnProperty(name = "monitor.engine", havingValue = "virtual-threads")
+public class BlockingWebsiteFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockingWebsiteFetcher.class);
+    private static final Duration ATTEMPT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient;
+    private final WebsiteFetcher fetcher;
+    private final MonitorMetrics metrics;
+    private final HostRateLimiter rateLimiter;
+    private final HostCircuitBreaker circuitBreaker;
+    private final Duration readTimeout;
+    private final boolean compression;
+    private final boolean http2;
+
+    public BlockingWebsiteFetcher(HttpClient blockingFetchClient, WebsiteFetcher fetcher, MonitorMetrics metrics,
+                                  HostRateLimiter rateLimiter, HostCircuitBreaker circuitBreaker,
+                                  @Value("${monitor.fetch.read-timeout.ms:10000}") long readTimeoutMs,
+                                  @Value("${monitor.fetch.compression:true}") boolean compression,
+                                  @Value("${monitor.fetch.http2:true}") boolean http2) {
+        this.httpClient = blockingFetchClient;
+        this.fetcher = fetcher;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.compression = compression;
+        this.http2 = http2;
+    }
+
+    /**
+     * Fetches the content of the given URL on the calling thread, retrying transient failures only while
+     * a retry would still start within {@code budget}. Meant to be called from a virtual thread.
+     *
+     * @param url          The URL to fetch.
+     * @param maxBodyBytes Size cap for this URL, or null for monitor.fetch.max-body-bytes.
+     * @param budget       Time available for retries (normally the URL's check interval), or null for no limit.
+     * @return The fetch result; a failed fetch returns a result carrying its {@link FetchFailure}.
+     * @throws InterruptedException If the thread is interrupted while fetching or backing off.
+     */
+    public FetchResult fetchContent(String url, Long maxBodyBytes, Duration budget) throws InterruptedException {
+        return fetchContent(url, maxBodyBytes, budget, false);
+    }
+
+    /**
+     * Like {@link #fetchContent(String, Long, Duration)}, asking for JSON if {@code json} is set.
+     * @see WebsiteFetcher#fetchContent(String, Long, Duration, boolean)
+     */
+    public FetchResult fetchContent(String url, Long maxBodyBytes, Duration budget, boolean json) throws InterruptedException {
+        log.debug("Fetching content for URL: {}", url);
+        long permit = circuitBreaker.tryAcquire(url);
+        if (permit == HostCircuitBreaker.REJECTED) {
+            // The host keeps failing: fail fast instead of waiting for yet another timeout
+            return fetcher.circuitOpen(url);
+        }
+        long limit = maxBodyBytes != null ? maxBodyBytes : fetcher.defaultMaxBodyBytes();
+        HttpValidators known = fetcher.knownValidators(url);
+        MonitorMetrics.HostMeters meters = metrics.forUrl(url);
+        long started = System.nanoTime();
+        FetchResult result;
+        for (long retries = 0; ; retries++) {
+            Throwable failure;
+            try {
+                result = attempt(url, known, limit, json, meters);
+                break;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failure = e;
+                metrics.fetchError(url, FetchFailure.kindOf(failure));
+            }
+            long backoff = fetcher.retryBackoffNanos(retries);
+            if (!fetcher.shouldRetry(failure, retries, backoff, started, budget)) {
+                // Give up: the caller gets the failure as a result
+                if (failure instanceof HostThrottledException throttled) {
+                    rateLimiter.onThrottled(url, throttled.retryAfter());
+                }
+                FetchFailure fetchFailure = FetchFailure.of(failure);
+                log.debug("Error fetching URL {}: {}", url, fetchFailure.describe());
+                result = FetchResult.failed(fetchFailure);
+                break;
+            }
+            log.debug("Retrying fetch for {} in {} ms due to error: {}", url, TimeUnit.NANOSECONDS.toMillis(backoff),
+                    failure.getMessage());
+            meters.retries().increment();
+            TimeUnit.NANOSECONDS.sleep(backoff);
+            // A retry is a new request to the host: it waits for a slot of the host's rate limit like any check
+            rateLimiter.awaitPermit(url);
+        }
+        meters.fetched(result, System.nanoTime() - started);
+        fetcher.recordHostHealth(url, permit, result);
+        return result;
+    }
+
+    // One request; failures are thrown so the caller can classify and retry them
+    private FetchResult attempt(String url, HttpValidators known, long limit, boolean json, MonitorMetrics.HostMeters meters)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET().timeout(readTimeout);
+        if (http2 && url.regionMatches(true, 0, "https:", 0, 6)) {
+            // Negotiated via ALPN, with HTTP/1.1 as fallback; plain http stays on HTTP/1.1 rather than
+            // trying an h2c upgrade on every new connection
+            request.version(HttpClient.Version.HTTP_2);
+        }
+        if (known != null) {
+            HttpHeaders conditional = new HttpHeaders();
+            known.applyTo(conditional);
+            conditional.forEach((name, values) -> values.forEach(value -> request.header(name, value)));
+        }
+        if (compression) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+        if (json) {
+            request.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        }
+        long started = System.nanoTime();
+        long[] headersAt = new long[1];
+        HttpResponse.BodyHandler<byte[]> handler = info -> {
+            headersAt[0] = System.nanoTime();
+            meters.timeToFirstByte().record(headersAt[0] - started, TimeUnit.NANOSECONDS);
+            if (!HttpStatusCode.valueOf(info.statusCode()).is2xxSuccessful() || md5Unchanged(known, info.headers())) {
+                // Not read anyway: discard it as it arrives
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return new CappedBody(url, limit, info.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1L));
+        };
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request.build(), handler);
+        HttpResponse<byte[]> response;
+        try {
+            // Whole-attempt timeout, like the reactive path's: connect, headers and body
+            response = exchange.get(ATTEMPT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new TimeoutException("Did not observe any response within " + ATTEMPT_TIMEOUT.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        return handleResponse(url, known, limit, response, meters, headersAt[0]);
+    }
+
+    private FetchResult handleResponse(String url, HttpValidators known, long limit, HttpResponse<byte[]> response,
+                                       MonitorMetrics.HostMeters meters, long headersAt) throws IOException {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.statusCode());
+        if (status.isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            log.debug("URL {} not modified (304).", url);
+            rateLimiter.onSuccess(url);
+            return FetchResult.unchanged();
+        }
+        if (status.isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS) || status.isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)) {
+            throw new HostThrottledException(url, status.value(),
+                    WebsiteFetcher.retryAfter(response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null)));
+        }
+        if (status.is4xxClientError()) {
+            throw HttpClientErrorException.create(status, "", springHeaders(response.headers()), null, null);
+        }
+        if (!status.is2xxSuccessful()) {
+            throw HttpServerErrorException.create(status, "", springHeaders(response.headers()), null, null);
+        }
+        rateLimiter.onSuccess(url);
+        if (response.body() == null) {
+            // Server ignored the conditional request but the body digest is unchanged
+            log.debug("URL {} has unchanged Content-MD5, skipping body.", url);
+            return FetchResult.unchanged();
+        }
+        byte[] body = decode(url, response.body(), response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(""), limit);
+        meters.bodyDuration().record(System.nanoTime() - headersAt, TimeUnit.NANOSECONDS);
+        meters.bodySize().record(body.length);
+        fetcher.rememberValidators(url, HttpValidators.from(springHeaders(response.headers())));
+        return FetchResult.modified(new String(body, charset(response.headers())));
+    }
+
+    private static boolean md5Unchanged(HttpValidators known, java.net.http.HttpHeaders headers) {
+        String contentMd5 = headers.firstValue("Content-MD5").orElse(null);
+        return known != null && contentMd5 != null && Objects.equals(known.contentMd5(), contentMd5);
+    }
+
+    // java.net.http doesn't decompress: undo gzip/deflate here, keeping the size cap on the decoded body
+    private static byte[] decode(String url, byte[] body, String contentEncoding, long limit) throws IOException {
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (!encoding.equals("gzip") && !encoding.equals("deflate")) {
+            return body;
+        }
+        InputStream raw = new ByteArrayInputStream(body);
+        try (InputStream in = encoding.equals("gzip") ? new GZIPInputStream(raw) : new InflaterInputStream(raw)) {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream(Math.max(body.length * 4, 1024));
+            byte[] chunk = new byte[16 * 1024];
+            for (int read; (read = in.read(chunk)) != -1; ) {
+                if (decoded.size() + (long) read > limit) {
+                    throw new ContentTooLargeException(url, limit);
+                }
+                decoded.write(chunk, 0, read);
+            }
+            return decoded.toByteArray();
+        }
+    }
+
+    private static Charset charset(java.net.http.HttpHeaders headers) {
+        try {
+            Charset charset = headers.firstValue(HttpHeaders.CONTENT_TYPE)
+                    .map(MediaType::parseMediaType)
+                    .map(MediaType::getCharset)
+                    .orElse(null);
+            return charset != null ? charset : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            // Malformed Content-Type or unknown charset
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static HttpHeaders springHeaders(java.net.http.HttpHeaders headers) {
+        HttpHeaders converted = new HttpHeaders();
+        headers.map().forEach(converted::addAll);
+        return converted;
+    }
+
+    // The exchange's own failure, without the future's wrapping; an oversized body wins over the I/O error
+    // the client may report for the cancelled download
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        for (Throwable inner = cause; inner != null; inner = inner.getCause()) {
+            if (inner instanceof ContentTooLargeException tooLarge) {
+                return tooLarge;
+            }
+        }
+        return cause instanceof Exception exception ? exception : new IOException(cause);
+    }
+
+    /**
+     * Collects the body into a buffer bounded by {@code maxBodyBytes}. An oversized body (declared
+     * or actual) cancels the download.
+     */
+    private static final class CappedBody implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final String url;
+        private final long maxBodyBytes;
+        private final long declaredLength;
+        private final ByteArrayOutputStream body;
+        private Flow.Subscription subscription;
+
+        CappedBody(String url, long maxBodyBytes, long declaredLength) {
+            this.url = url;
+            this.maxBodyBytes = maxBodyBytes;
+            this.declaredLength = declaredLength;
+            this.body = new ByteArrayOutputStream(declaredLength > 0 && declaredLength <= maxBodyBytes
+                    ? (int) declaredLength : 16 * 1024);
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (declaredLength > maxBodyBytes) {
+                tooLarge();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (body.size() + (long) buffer.remaining() > maxBodyBytes) {
+                    tooLarge();
+                    return;
+                }
+                if (buffer.hasArray()) {
+                    body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    byte[] copy = new byte[buffer.remaining()];
+                    buffer.get(copy);
+                    body.write(copy, 0, copy.length);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(body.toByteArray());
+        }
+
+        private void tooLarge() {
+            subscription.cancel();
+            result.completeExceptionally(new ContentTooLargeException(url, maxBodyBytes));
+        }
+    }
+}
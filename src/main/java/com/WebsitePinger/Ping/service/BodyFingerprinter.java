@@ -0,0 +1,77 @@
+package com.WebsitePinger.Ping.service;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Fingerprints a response body while it streams in: each chunk is decoded and fed through
+ * {@link HtmlTextNormalizer} into a {@link ContentHasher}, so neither the raw page nor its text is ever
+ * held in memory. The result equals {@code HtmlTextNormalizer.fingerprint(new String(body, charset))}.
+ * Not thread-safe; create one instance per body.
+ */
+final class BodyFingerprinter {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final CharsetDecoder decoder;
+    private final ContentHasher hasher = new ContentHasher();
+    private final HtmlTextNormalizer normalizer = new HtmlTextNormalizer(null, hasher);
+    private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+    // The first bytes of a character split across chunks; at most a few bytes
+    private ByteBuffer pending = EMPTY;
+
+    BodyFingerprinter(Charset charset) {
+        // Malformed input becomes U+FFFD, as when the body is decoded with new String(bytes, charset)
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Feeds the next chunk of the body. The chunk is fully consumed; it may be released afterwards.
+     */
+    void feed(ByteBuffer chunk) {
+        ByteBuffer in = chunk;
+        if (pending.hasRemaining()) {
+            in = ByteBuffer.allocate(pending.remaining() + chunk.remaining()).put(pending).put(chunk).flip();
+        }
+        decode(in, false);
+        if (in.hasRemaining()) {
+            // Keep the incomplete character for the next chunk; the chunk itself is about to be released
+            pending = ByteBuffer.allocate(in.remaining()).put(in).flip();
+        } else {
+            pending = EMPTY;
+        }
+    }
+
+    /**
+     * Completes the fingerprint. The fingerprinter must not be used afterwards.
+     */
+    ContentFingerprint finish() {
+        decode(pending, true);
+        while (decoder.flush(chars).isOverflow()) {
+            drain();
+        }
+        drain();
+        normalizer.finish();
+        return hasher.finish();
+    }
+
+    private void decode(ByteBuffer in, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(in, chars, endOfInput);
+            drain();
+        } while (result.isOverflow());
+    }
+
+    private void drain() {
+        chars.flip();
+        normalizer.feed(chars);
+        chars.clear();
+    }
+}
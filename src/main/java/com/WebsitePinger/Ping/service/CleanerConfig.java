@@ -0,0 +1,48 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker pool for the CPU-bound part of a check (HTML cleaning, fingerprinting, diffing),
+ * so it never runs on the reactor-netty event loop.
+ */
+@Configuration
+public class CleanerConfig {
+
+    /**
+     * Fixed pool sized to the cores, with a bounded queue. Queue depth, active threads and
+     * task timings are exported as executor.* metrics tagged name=content.cleaner.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler cleanerScheduler(MeterRegistry meterRegistry,
+                                      @Value("${monitor.cleaner.threads:0}") int threads,
+                                      @Value("${monitor.cleaner.queue-capacity:0}") int queueCapacity,
+                                      @Value("${monitor.check.max-concurrency:64}") int maxConcurrency) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // At most maxConcurrency checks are in flight, so a queue that large never rejects
+        int capacity = queueCapacity > 0 ? queueCapacity : Math.max(1, maxConcurrency);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "content-cleaner-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        ExecutorService monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "content.cleaner");
+        return Schedulers.fromExecutorService(monitored, "content-cleaner");
+    }
+}
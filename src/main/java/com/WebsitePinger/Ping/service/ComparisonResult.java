@@ -2,21 +2,24 @@ package com.WebsitePinger.Ping.service;
 
 /**
  * Holds the result of a content comparison.
+ * {@code diff} describes the change in the cleaned text; it is null when nothing changed or when
+ * no previous text was available to diff against (e.g. the first check after a restart).
+ * The raw contents are only populated when monitor.content.retain-previous is enabled.
  */
-public record ComparisonResult(boolean changed, String previousContent, String newContent) {
+public record ComparisonResult(boolean changed, String previousContent, String newContent, ContentDiff diff) {
 
     /**
      * Static factory for a "no change" result.
      */
     public static ComparisonResult noChange(String currentContent) {
-        return new ComparisonResult(false, currentContent, currentContent);
+        return new ComparisonResult(false, currentContent, currentContent, null);
     }
 
     /**
      * Static factory for a "change detected" result.
      */
-    public static ComparisonResult changed(String previousContent, String newContent) {
-        return new ComparisonResult(true, previousContent, newContent);
+    public static ComparisonResult changed(String previousContent, String newContent, ContentDiff diff) {
+        return new ComparisonResult(true, previousContent, newContent, diff);
     }
 
      /**
@@ -25,8 +28,8 @@ public record ComparisonResult(boolean changed, String previousContent, String n
      */
     public static ComparisonResult initial(String newContent) {
         // Return changed=false so the first fetch doesn't trigger a "change" notification
-        return new ComparisonResult(false, null, newContent);
+        return new ComparisonResult(false, null, newContent, null);
         // If you want the first fetch to trigger a notification, use:
-        // return new ComparisonResult(true, null, newContent);
+        // return new ComparisonResult(true, null, newContent, null);
     }
 }
@@ -6,8 +6,9 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
-@Service // Mark this as the primary implementation for now
+@Service // Log sink; receives digests from NotificationDispatcher
 public class ConsoleNotificationService implements NotificationService {
 
     private static final Logger log = LoggerFactory.getLogger(ConsoleNotificationService.class);
@@ -15,36 +16,50 @@ public class ConsoleNotificationService implements NotificationService {
     private static final int SNIPPET_LENGTH = 100; // Max length for showing content snippets
 
     @Override
-    public void notifyChange(String url, LocalDateTime detectionTime, String previousContent, String newContent) {
+    public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+        notifyChange(url, null, List.of(), detectionTime, result);
+    }
+
+    // Recipients are not routed: everything goes to the log
+    @Override
+    public void notifyChange(String url, String subscription, List<String> recipients, LocalDateTime detectionTime,
+                             ComparisonResult result) {
         log.warn("--- CHANGE DETECTED ---");
-        log.warn("URL: {}", url);
+        log.warn("URL: {}{}", url, subscription != null ? " [" + subscription + "]" : "");
         log.warn("Time: {}", detectionTime.format(formatter));
 
-        // Provide some context about the change
-        int prevLength = (previousContent != null) ? previousContent.length() : 0;
-        int newLength = (newContent != null) ? newContent.length() : 0;
-
-        log.warn("Content length changed from {} to {} characters.", prevLength, newLength);
-
-        // Optional: Show snippets (can be noisy for large pages)
-        // if (previousContent != null) {
-        //     log.warn("Previous Snippet (first {} chars): {}", SNIPPET_LENGTH, previousContent.substring(0, Math.min(prevLength, SNIPPET_LENGTH)));
-        // } else {
-        //     log.warn("Previous Snippet: [N/A - First Check]");
-        // }
-        // if (newContent != null) {
-        //     log.warn("New Snippet (first {} chars): {}", SNIPPET_LENGTH, newContent.substring(0, Math.min(newLength, SNIPPET_LENGTH)));
-        // } else {
-        //      log.warn("New Snippet: [N/A - Content Fetch Failed?]"); // Should ideally not happen if change detected
-        // }
-
-
-        // TODO: Implement a more sophisticated diff mechanism if needed
-        // Libraries like java-diff-utils can generate textual diffs.
+        ContentDiff diff = result.diff();
+        if (diff == null) {
+            // No previous text to diff against (e.g. first change after a restart, or diffing disabled)
+            log.warn("Diff unavailable.");
+        } else if (diff.isFieldDiff()) {
+            log.warn("{} field(s) changed{}.", diff.fields().size(), diff.complete() ? "" : " (showing first fields only)");
+            for (FieldChange field : diff.fields()) {
+                log.warn("[{}] {}: {} -> {}", field.type(), field.path(),
+                        field.previous() != null ? snippet(field.previous()) : "-",
+                        field.current() != null ? snippet(field.current()) : "-");
+            }
+        } else if (diff.hunks().isEmpty() && !diff.complete()) {
+            log.warn("Page changed too much for a detailed diff: ~{} words removed, ~{} words added.",
+                    diff.removedTokens(), diff.addedTokens());
+        } else {
+            log.warn("{} words removed, {} words added in {} region(s){}.", diff.removedTokens(), diff.addedTokens(),
+                    diff.hunks().size(), diff.complete() ? "" : " (showing first regions only)");
+            for (DiffHunk hunk : diff.hunks()) {
+                log.warn("[{} @ word {}] ...{} [-{}-] {+{}+} {}...", hunk.type(), hunk.position(),
+                        snippet(hunk.contextBefore()), snippet(hunk.removed()), snippet(hunk.added()),
+                        snippet(hunk.contextAfter()));
+            }
+        }
 
         log.warn("-----------------------");
     }
 
+    // Shortens a piece of text for logging (can be noisy for large changes)
+    private static String snippet(String text) {
+        return text.length() <= SNIPPET_LENGTH ? text : text.substring(0, SNIPPET_LENGTH) + "...";
+    }
+
     @Override
     public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
         log.error("--- MONITORING ERROR ---");
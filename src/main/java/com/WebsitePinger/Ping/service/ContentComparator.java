@@ -1,80 +1,212 @@
 package com.WebsitePinger.Ping.service;
 
+import com.WebsitePinger.Ping.store.SnapshotStore;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 // import org.jsoup.safety.Safelist; // Safelist not used in current cleaning logic
 import org.slf4j.Logger; // Keep only one Logger import
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Objects;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 @Service
 public class ContentComparator {
 
     private static final Logger log = LoggerFactory.getLogger(ContentComparator.class);
-    // Stores the last known content for each monitored URL
+    // Stores a compact fingerprint of the cleaned content for each monitored URL, in primitive columns
+    // rather than one map entry and fingerprint object per URL
+    private final FingerprintTable lastKnownFingerprint;
+    // Raw content is only kept when notifiers need the previous page (monitor.content.retain-previous=true)
     private final ConcurrentMap<String, String> lastKnownContent = new ConcurrentHashMap<>();
+    // Cleaned text (much smaller than the raw page) kept deflated for diffing, only when monitor.diff.enabled=true
+    private final ConcurrentMap<String, byte[]> lastCleanedText = new ConcurrentHashMap<>();
+    private final boolean retainPreviousContent;
+    private final DiffEngine diffEngine;
+    private final SnapshotStore snapshotStore;
+
+    public ContentComparator(@Value("${monitor.content.retain-previous:false}") boolean retainPreviousContent,
+                             @Value("${monitor.diff.enabled:false}") boolean diffEnabled,
+                             DiffEngine diffEngine, SnapshotStore snapshotStore) {
+        this.retainPreviousContent = retainPreviousContent;
+        this.diffEngine = diffEnabled ? diffEngine : null; // null: report changes without a diff
+        this.snapshotStore = snapshotStore;
+        // Resume from the persisted fingerprints so changes made while we were down are detected
+        Map<String, ContentFingerprint> stored = snapshotStore.loadFingerprints();
+        this.lastKnownFingerprint = new FingerprintTable(stored.size());
+        lastKnownFingerprint.putAll(stored);
+    }
 
     /**
-     * Compares the new content with the last known content for the given URL.
-     * Updates the stored content if it's the first check or if changes are detected.
+     * Compares the new content with the last known fingerprint for the given URL.
+     * Only the new content is cleaned; the previous state is a stored fingerprint.
+     * Updates the stored fingerprint if it's the first check or if changes are detected.
      *
      * @param url        The URL being checked.
      * @param newContent The newly fetched content.
-     * @return A ComparisonResult indicating if a change occurred and including previous/new content.
+     * @return A ComparisonResult indicating if a change occurred. The previous content is
+     *         only populated when raw content retention is enabled.
      */
     public ComparisonResult compareAndStore(String url, String newContent) {
-        if (newContent == null) {
+        return compareAndStore(url, newContent, ContentFilter.NONE);
+    }
+
+    /**
+     * Compares only the regions of the new content selected by {@code filter}.
+     *
+     * @param url        The URL being checked.
+     * @param newContent The newly fetched content.
+     * @param filter     Regions to include/exclude and text patterns to ignore.
+     * @return A ComparisonResult indicating if a change occurred.
+     */
+    public ComparisonResult compareAndStore(String url, String newContent, ContentFilter filter) {
+        return compareAndStore(url, newContent, newContent != null ? normalize(newContent, filter) : null);
+    }
+
+    /**
+     * Cleans and fingerprints fetched content for one filter - the only parse done per check and filter.
+     * Subscriptions of a page with the same filter share the result.
+     *
+     * @param content The fetched content.
+     * @param filter  Regions to include/exclude and text patterns to ignore, or the JSON fields to compare.
+     * @throws IllegalArgumentException If the filter is a JSON filter and the content is not JSON.
+     */
+    public NormalizedContent normalize(String content, ContentFilter filter) {
+        if (filter.isJson()) {
+            // Only the selected fields, streamed out of the response; its fingerprint is a structural hash
+            String fields = JsonNormalizer.normalize(content, filter.compiledJsonPaths(), filter.ignorePattern());
+            return new NormalizedContent(fields, ContentFingerprint.of(fields), true);
+        }
+        if (diffEngine == null && filter.isEmpty()) {
+            // Nothing needs the cleaned text: stream it straight into the hasher
+            return new NormalizedContent(null, HtmlTextNormalizer.fingerprint(content), false);
+        }
+        String cleaned = cleanHtml(content, filter);
+        return new NormalizedContent(cleaned, ContentFingerprint.of(cleaned), false);
+    }
+
+    /**
+     * Compares content already normalized by {@link #normalize} with the last known fingerprint of the URL.
+     *
+     * @param url        The URL, or the {@link Subscription#key()} of one subscription of it.
+     * @param newContent The newly fetched content, or null if the body was only fingerprinted while streaming.
+     * @param normalized The content cleaned for the filter of this key, or null if nothing was fetched.
+     * @return A ComparisonResult indicating if a change occurred.
+     */
+    public ComparisonResult compareAndStore(String url, String newContent, NormalizedContent normalized) {
+        if (normalized == null) {
             log.warn("Received null content for URL: {}. Treating as no change from last known state.", url);
             // Return no change, keeping the existing previous content if available
-            String previousContent = lastKnownContent.get(url);
-            // Still return no change if new content is null, using the last known original content
-            String originalPreviousContent = lastKnownContent.get(url);
-            return ComparisonResult.noChange(originalPreviousContent != null ? originalPreviousContent : "");
+            return ComparisonResult.noChange(lastKnownContent.get(url));
         }
 
-        String originalPreviousContent = lastKnownContent.get(url);
-
-        // Clean the new content for comparison
-        String cleanedNewContent = cleanHtml(newContent);
+        String cleanedNewContent = normalized.cleanedText();
+        ContentFingerprint newFingerprint = normalized.fingerprint();
+        FingerprintTable.Outcome outcome = lastKnownFingerprint.put(url, newFingerprint);
 
-        if (originalPreviousContent == null) {
-            log.info("First check for URL: {}. Storing initial original content.", url);
-            lastKnownContent.put(url, newContent); // Store the original new content
-            // Return initial state with original content
+        if (outcome == FingerprintTable.Outcome.FIRST) {
+            log.info("First check for URL: {}. Storing initial fingerprint.", url);
+            snapshotStore.saveFingerprint(url, newFingerprint);
+            retain(url, newContent);
+            retainCleaned(url, cleanedNewContent);
             return ComparisonResult.initial(newContent);
         }
 
-        // Clean the previous content for comparison
-        String cleanedPreviousContent = cleanHtml(originalPreviousContent);
-
-        // Compare the CLEANED versions
-        if (!Objects.equals(cleanedPreviousContent, cleanedNewContent)) {
-            log.info("Change detected for URL {} based on cleaned content comparison.", url);
-            lastKnownContent.put(url, newContent); // Store the new ORIGINAL content
-            // Return result with ORIGINAL contents for notification
-            return ComparisonResult.changed(originalPreviousContent, newContent);
+        // Compare the fingerprints of the CLEANED versions
+        if (outcome == FingerprintTable.Outcome.CHANGED) {
+            log.info("Change detected for URL {} based on cleaned content fingerprint.", url);
+            snapshotStore.saveFingerprint(url, newFingerprint);
+            String originalPreviousContent = retain(url, newContent);
+            String cleanedPreviousContent = retainCleaned(url, cleanedNewContent);
+            ContentDiff diff = cleanedPreviousContent == null ? null
+                    : normalized.json() ? diffEngine.diffFields(cleanedPreviousContent, cleanedNewContent)
+                    : diffEngine.diff(cleanedPreviousContent, cleanedNewContent);
+            // Return result with the diff (and ORIGINAL contents if retained) for notification
+            return ComparisonResult.changed(originalPreviousContent, newContent, diff);
         } else {
-            log.debug("No change detected for URL {} based on cleaned content comparison.", url);
+            log.debug("No change detected for URL {} based on cleaned content fingerprint.", url);
             // Return no change result with the new ORIGINAL content
             return ComparisonResult.noChange(newContent);
         }
     }
 
+    /**
+     * Whether comparisons need the fetched page or its cleaned text (diffing or raw content retention).
+     * If not, a page compared without a filter can be fingerprinted while it streams in.
+     */
+    public boolean needsText() {
+        return diffEngine != null || retainPreviousContent;
+    }
+
+    // Stores the raw content if retention is enabled and returns the previously retained content
+    private String retain(String url, String content) {
+        if (!retainPreviousContent) {
+            return null;
+        }
+        return lastKnownContent.put(url, content);
+    }
+
+    // Stores the cleaned text if diffing is enabled and returns the previously stored cleaned text.
+    // Only stored on the first check and on changes, so the (de)compression is paid when a diff is built
+    private String retainCleaned(String url, String cleanedContent) {
+        if (diffEngine == null) {
+            return null;
+        }
+        byte[] previous = lastCleanedText.put(url, deflate(cleanedContent));
+        return previous != null ? inflate(previous) : null;
+    }
+
+    private static byte[] deflate(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 4));
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory streams don't fail
+        }
+        return out.toByteArray();
+    }
+
+    private static String inflate(byte[] deflated) {
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(deflated))) {
+            return new String(inflater.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Cleans HTML content to remove potentially dynamic elements before comparison.
-     * Currently removes script tags and normalizes whitespace.
+     * Removes script tags, hidden inputs and comments, keeps only the filter's regions,
+     * drops ignored patterns and normalizes whitespace.
+     * Without selectors the page is normalized in a single streaming pass; a DOM is only
+     * built when regions have to be selected.
      *
-     * @param html The HTML content to clean.
+     * @param html   The HTML content to clean.
+     * @param filter Regions to include/exclude and text patterns to ignore.
      * @return The cleaned HTML content as a String.
      */
-    private String cleanHtml(String html) {
+    private String cleanHtml(String html, ContentFilter filter) {
         if (html == null) {
             return "";
         }
+        if (filter.includeQuery() == null && filter.excludeQuery() == null) {
+            String text = HtmlTextNormalizer.normalize(html);
+            if (filter.ignorePattern() == null) {
+                return text;
+            }
+            // Blank out timestamps, tokens etc. so they don't register as changes
+            return HtmlTextNormalizer.collapseWhitespace(filter.ignorePattern().matcher(text).replaceAll(" "));
+        }
         try {
             // More robust cleaning: Parse, remove dynamic elements, get body HTML, normalize whitespace
             Document doc = Jsoup.parse(html);
@@ -97,11 +229,22 @@ public class ContentComparator {
 
             // Consider removing style tags if needed: doc.select("style").remove();
 
-            // --- AGGRESSIVE CLEANING: Extract only text content from the body ---
-            String cleanedText = doc.body().text();
+            if (filter.excludeQuery() != null) {
+                doc.select(filter.excludeQuery()).remove(); // Drop excluded regions (ads, clocks, ...)
+            }
+
+            // --- AGGRESSIVE CLEANING: Extract only text content from the selected regions, or the body ---
+            String cleanedText = filter.includeQuery() != null
+                    ? doc.select(filter.includeQuery()).text()
+                    : doc.body().text();
+
+            if (filter.ignorePattern() != null) {
+                // Blank out timestamps, tokens etc. so they don't register as changes
+                cleanedText = filter.ignorePattern().matcher(cleanedText).replaceAll(" ");
+            }
 
             // Normalize whitespace within the extracted text
-            return cleanedText.replaceAll("\\s+", " ").trim();
+            return HtmlTextNormalizer.collapseWhitespace(cleanedText);
 
         } catch (Exception e) {
             log.error("Error cleaning HTML, returning original: {}", e.getMessage());
@@ -115,16 +258,36 @@ public class ContentComparator {
      * @param url The URL to remove from tracking.
      */
     public void clearState(String url) {
-        String removedContent = lastKnownContent.remove(url);
-        if (removedContent != null) {
+        lastKnownContent.remove(url);
+        lastCleanedText.remove(url);
+        snapshotStore.removeFingerprint(url);
+        if (lastKnownFingerprint.remove(url)) {
             log.info("Cleared stored state for URL: {}", url);
         }
     }
 
+    /**
+     * Checks whether a baseline has been stored for the URL.
+     * @param url The URL.
+     * @return true if at least one successful check has been recorded.
+     */
+    public boolean hasState(String url) {
+        return lastKnownFingerprint.contains(url);
+    }
+
+    /**
+     * Gets the last known fingerprint for a URL.
+     * @param url The URL.
+     * @return The last known fingerprint, or null if not tracked.
+     */
+    public ContentFingerprint getLastKnownFingerprint(String url) {
+        return lastKnownFingerprint.get(url);
+    }
+
      /**
      * Gets the last known content for a URL. Primarily for testing or debugging.
      * @param url The URL.
-     * @return The last known content, or null if not tracked.
+     * @return The last known content, or null if not tracked or retention is disabled.
      */
     public String getLastKnownContent(String url) {
         return lastKnownContent.get(url);
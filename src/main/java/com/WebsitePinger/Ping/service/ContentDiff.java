@@ -0,0 +1,43 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.List;
+
+/**
+ * Structured description of what changed between two versions of a page's cleaned text.
+ * When the edit budget is exceeded (very large or completely rewritten pages) only a summary
+ * is produced: {@code hunks} is empty, {@code complete} is false and the token counts give the
+ * size of the changed window left after trimming the common prefix and suffix.
+ * A JSON response monitored with JSON paths is diffed field by field instead: {@code fields} lists the
+ * changed fields, {@code hunks} is empty and the token counts are of values rather than words.
+ *
+ * @param hunks         Changed regions in page order (may be cut off at the configured maximum).
+ * @param complete      Whether {@code hunks} (or {@code fields}) covers every change.
+ * @param removedTokens Number of words removed.
+ * @param addedTokens   Number of words added.
+ * @param fields        Changed JSON fields in path order (may be cut off too); empty for text diffs.
+ */
+public record ContentDiff(List<DiffHunk> hunks, boolean complete, int removedTokens, int addedTokens,
+                          List<FieldChange> fields) {
+
+    public ContentDiff {
+        fields = fields == null ? List.of() : List.copyOf(fields);
+    }
+
+    /**
+     * A diff of page text.
+     */
+    public ContentDiff(List<DiffHunk> hunks, boolean complete, int removedTokens, int addedTokens) {
+        this(hunks, complete, removedTokens, addedTokens, List.of());
+    }
+
+    public boolean isFieldDiff() {
+        return !fields.isEmpty();
+    }
+
+    /**
+     * Static factory for a diff that could only be summarized.
+     */
+    public static ContentDiff summary(int removedTokens, int addedTokens) {
+        return new ContentDiff(List.of(), false, removedTokens, addedTokens);
+    }
+}
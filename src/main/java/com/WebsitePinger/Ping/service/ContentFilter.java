@@ -0,0 +1,197 @@
+package com.WebsitePinger.Ping.service;
+
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Restricts which parts of a page are compared.
+ * <ul>
+ *   <li>{@code includeSelectors} - CSS selectors of the regions to compare; empty means the whole body.</li>
+ *   <li>{@code excludeSelectors} - CSS selectors removed before extracting text (ads, clocks, ...).</li>
+ *   <li>{@code ignorePatterns} - regexes whose matches are dropped from the extracted text
+ *       (timestamps, CSRF tokens, session ids, ...).</li>
+ *   <li>{@code jsonPaths} - {@link JsonPath}s of the fields to compare; any makes this a JSON filter: the
+ *       response is parsed as JSON rather than HTML, and ignore patterns apply to string values.</li>
+ * </ul>
+ * Selectors, paths and patterns are validated and compiled once, when the filter is created.
+ */
+public final class ContentFilter {
+
+    /**
+     * Filter that compares the whole page body.
+     */
+    public static final ContentFilter NONE = new ContentFilter(List.of(), List.of(), List.of(), List.of());
+
+    // The JSON walk tracks the paths still matching in a long bit set
+    private static final int MAX_JSON_PATHS = 64;
+
+    private final List<String> includeSelectors;
+    private final List<String> excludeSelectors;
+    private final List<String> ignorePatterns;
+    private final List<String> jsonPaths;
+    private final String includeQuery;
+    private final String excludeQuery;
+    private final Pattern ignorePattern;
+    private final List<JsonPath> compiledJsonPaths;
+
+    private ContentFilter(List<String> includeSelectors, List<String> excludeSelectors, List<String> ignorePatterns,
+                          List<String> jsonPaths) {
+        this.includeSelectors = List.copyOf(includeSelectors);
+        this.excludeSelectors = List.copyOf(excludeSelectors);
+        this.ignorePatterns = List.copyOf(ignorePatterns);
+        this.jsonPaths = List.copyOf(jsonPaths);
+        this.compiledJsonPaths = jsonPaths.stream().map(JsonPath::compile).toList();
+        this.includeQuery = includeSelectors.isEmpty() ? null : String.join(", ", includeSelectors);
+        this.excludeQuery = excludeSelectors.isEmpty() ? null : String.join(", ", excludeSelectors);
+        // One alternation so the text is scanned once regardless of how many patterns there are
+        this.ignorePattern = ignorePatterns.isEmpty() ? null
+                : Pattern.compile(String.join("|", ignorePatterns.stream().map(p -> "(?:" + p + ")").toList()));
+    }
+
+    /**
+     * Creates a filter, treating null lists as empty.
+     *
+     * @throws IllegalArgumentException If a selector or pattern is invalid.
+     */
+    public static ContentFilter of(List<String> includeSelectors, List<String> excludeSelectors, List<String> ignorePatterns) {
+        return of(includeSelectors, excludeSelectors, ignorePatterns, null);
+    }
+
+    /**
+     * Creates a filter, treating null lists as empty; with JSON paths it is a JSON filter.
+     *
+     * @throws IllegalArgumentException If a selector, path or pattern is invalid, or JSON paths are combined
+     *                                  with CSS selectors.
+     */
+    public static ContentFilter of(List<String> includeSelectors, List<String> excludeSelectors, List<String> ignorePatterns,
+                                   List<String> jsonPaths) {
+        List<String> include = clean(includeSelectors);
+        List<String> exclude = clean(excludeSelectors);
+        List<String> ignore = clean(ignorePatterns);
+        List<String> json = clean(jsonPaths).stream().distinct().toList();
+        if (include.isEmpty() && exclude.isEmpty() && ignore.isEmpty() && json.isEmpty()) {
+            return NONE;
+        }
+        if (!json.isEmpty() && (!include.isEmpty() || !exclude.isEmpty())) {
+            throw new IllegalArgumentException("JSON paths select fields of a JSON response; they can't be combined with CSS selectors");
+        }
+        if (json.size() > MAX_JSON_PATHS) {
+            throw new IllegalArgumentException("At most " + MAX_JSON_PATHS + " JSON paths are supported, got " + json.size());
+        }
+        for (String selector : include) {
+            validateSelector(selector);
+        }
+        for (String selector : exclude) {
+            validateSelector(selector);
+        }
+        for (String pattern : ignore) {
+            try {
+                Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid ignore pattern '" + pattern + "': " + e.getDescription());
+            }
+        }
+        // JSON paths are validated by compiling them
+        return new ContentFilter(include, exclude, ignore, json);
+    }
+
+    public List<String> includeSelectors() {
+        return includeSelectors;
+    }
+
+    public List<String> excludeSelectors() {
+        return excludeSelectors;
+    }
+
+    public List<String> ignorePatterns() {
+        return ignorePatterns;
+    }
+
+    public List<String> jsonPaths() {
+        return jsonPaths;
+    }
+
+    /**
+     * Whether responses are compared as JSON, field by field.
+     */
+    public boolean isJson() {
+        return !jsonPaths.isEmpty();
+    }
+
+    /**
+     * Compiled JSON paths; empty for HTML filters.
+     */
+    List<JsonPath> compiledJsonPaths() {
+        return compiledJsonPaths;
+    }
+
+    /**
+     * Combined include selector, or null to compare the whole body.
+     */
+    String includeQuery() {
+        return includeQuery;
+    }
+
+    /**
+     * Combined exclude selector, or null if nothing is excluded.
+     */
+    String excludeQuery() {
+        return excludeQuery;
+    }
+
+    /**
+     * Combined ignore pattern, or null if nothing is ignored.
+     */
+    Pattern ignorePattern() {
+        return ignorePattern;
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    private static List<String> clean(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        return values.stream().filter(Objects::nonNull).map(String::trim).filter(v -> !v.isEmpty()).toList();
+    }
+
+    private static void validateSelector(String selector) {
+        try {
+            QueryParser.parse(selector);
+        } catch (Selector.SelectorParseException e) {
+            throw new IllegalArgumentException("Invalid CSS selector '" + selector + "': " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentFilter other)) {
+            return false;
+        }
+        return includeSelectors.equals(other.includeSelectors)
+                && excludeSelectors.equals(other.excludeSelectors)
+                && ignorePatterns.equals(other.ignorePatterns)
+                && jsonPaths.equals(other.jsonPaths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(includeSelectors, excludeSelectors, ignorePatterns, jsonPaths);
+    }
+
+    @Override
+    public String toString() {
+        return "ContentFilter[include=" + includeSelectors + ", exclude=" + excludeSelectors + ", ignore=" + ignorePatterns
+                + ", json=" + jsonPaths + "]";
+    }
+}
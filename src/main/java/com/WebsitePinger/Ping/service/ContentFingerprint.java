@@ -0,0 +1,24 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Compact summary of a page's cleaned content: a 128-bit hash plus the cleaned length.
+ * Two fingerprints are equal exactly when their hash halves and lengths match.
+ */
+public record ContentFingerprint(long high, long low, int length) {
+
+    /**
+     * Computes the fingerprint of already-cleaned text.
+     */
+    public static ContentFingerprint of(CharSequence cleanedText) {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update(cleanedText);
+        return hasher.finish();
+    }
+
+    /**
+     * Hex representation of the 128-bit hash, mainly for logging.
+     */
+    public String toHex() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,123 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Incremental 128-bit hasher (MurmurHash3 x64_128 over UTF-16 code units).
+ * Characters can be fed one at a time or in chunks, so callers never need to
+ * build the full cleaned text just to fingerprint it.
+ * Not thread-safe; create one instance per fingerprint.
+ */
+public class ContentHasher {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    // Pending block: 8 UTF-16 code units packed into two longs
+    private long k1;
+    private long k2;
+    private int pending;
+    private int length;
+
+    /**
+     * Feeds a single character into the hash.
+     */
+    public void update(char c) {
+        long v = c & 0xFFFFL;
+        if (pending < 4) {
+            k1 |= v << (pending * 16);
+        } else {
+            k2 |= v << ((pending - 4) * 16);
+        }
+        pending++;
+        length++;
+        if (pending == 8) {
+            mixBlock();
+        }
+    }
+
+    /**
+     * Feeds every character of the given sequence into the hash.
+     */
+    public void update(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            update(text.charAt(i));
+        }
+    }
+
+    /**
+     * Feeds {@code count} characters of {@code chars} starting at {@code offset}.
+     */
+    public void update(char[] chars, int offset, int count) {
+        for (int i = offset, end = offset + count; i < end; i++) {
+            update(chars[i]);
+        }
+    }
+
+    /**
+     * Number of characters hashed so far.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Completes the hash. The hasher must not be reused afterwards.
+     */
+    public ContentFingerprint finish() {
+        if (pending > 0) {
+            // Tail block: mix in whatever is pending without the h-rotation step
+            long t1 = k1 * C1;
+            t1 = Long.rotateLeft(t1, 31);
+            t1 *= C2;
+            h1 ^= t1;
+            if (pending > 4) {
+                long t2 = k2 * C2;
+                t2 = Long.rotateLeft(t2, 33);
+                t2 *= C1;
+                h2 ^= t2;
+            }
+        }
+        long byteLength = (long) length * 2;
+        long a = h1 ^ byteLength;
+        long b = h2 ^ byteLength;
+        a += b;
+        b += a;
+        a = fmix64(a);
+        b = fmix64(b);
+        a += b;
+        b += a;
+        return new ContentFingerprint(a, b, length);
+    }
+
+    private void mixBlock() {
+        long t1 = k1 * C1;
+        t1 = Long.rotateLeft(t1, 31);
+        t1 *= C2;
+        h1 ^= t1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        long t2 = k2 * C2;
+        t2 = Long.rotateLeft(t2, 33);
+        t2 *= C1;
+        h2 ^= t2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        k1 = 0;
+        k2 = 0;
+        pending = 0;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,13 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Signals that a response body exceeded the configured size cap and the download was aborted.
+ */
+public class ContentTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ContentTooLargeException(String url, long maxBytes) {
+        super("Response body for " + url + " exceeds the limit of " + maxBytes + " bytes");
+    }
+}
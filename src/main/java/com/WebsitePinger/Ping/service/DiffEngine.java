@@ -0,0 +1,258 @@
+package com.WebsitePinger.Ping.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Word-level diff of cleaned page text.
+ * The common prefix and suffix are trimmed first, so a localized edit on a large page costs
+ * a linear scan; the remaining window is diffed with Myers' O(ND) algorithm. If more than
+ * {@code maxEdits} edits would be needed the result degrades to a {@link ContentDiff#summary}.
+ * JSON responses reduced by {@link JsonNormalizer} are diffed field by field with {@link #diffFields}.
+ */
+@Component
+public class DiffEngine {
+
+    private static final byte EQUAL = 0;
+    private static final byte DELETE = 1;
+    private static final byte INSERT = 2;
+
+    private final int maxEdits;
+    private final int contextTokens;
+    private final int maxHunks;
+
+    public DiffEngine(@Value("${monitor.diff.max-edits:2000}") int maxEdits,
+                      @Value("${monitor.diff.context-tokens:8}") int contextTokens,
+                      @Value("${monitor.diff.max-hunks:20}") int maxHunks) {
+        this.maxEdits = maxEdits;
+        this.contextTokens = contextTokens;
+        this.maxHunks = maxHunks;
+    }
+
+    /**
+     * Diffs two whitespace-normalized texts word by word.
+     */
+    public ContentDiff diff(String previousText, String newText) {
+        String[] a = tokenize(previousText);
+        String[] b = tokenize(newText);
+
+        // Anchor on the unchanged prefix and suffix
+        int prefix = 0;
+        int maxPrefix = Math.min(a.length, b.length);
+        while (prefix < maxPrefix && a[prefix].equals(b[prefix])) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+            suffix++;
+        }
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+        if (n == 0 && m == 0) {
+            return new ContentDiff(List.of(), true, 0, 0);
+        }
+
+        byte[] ops = n == 0 || m == 0 ? trivialScript(n, m) : myers(intern(a, b, prefix, n, m), n, m);
+        if (ops == null) {
+            return ContentDiff.summary(n, m);
+        }
+        return buildHunks(a, b, prefix, ops);
+    }
+
+    /**
+     * Diffs the canonical texts of two JSON selections: which fields were added, removed or got a new value.
+     * At most monitor.diff.max-hunks fields are listed.
+     */
+    public ContentDiff diffFields(String previousFields, String newFields) {
+        List<Map.Entry<String, String>> previousEntries = JsonNormalizer.fields(previousFields);
+        Map<String, String> previous = new HashMap<>();
+        for (Map.Entry<String, String> field : previousEntries) {
+            previous.put(field.getKey(), field.getValue());
+        }
+        List<FieldChange> changes = new ArrayList<>();
+        int changed = 0;
+        int removedValues = 0;
+        int addedValues = 0;
+        for (Map.Entry<String, String> field : JsonNormalizer.fields(newFields)) {
+            String before = previous.remove(field.getKey());
+            if (field.getValue().equals(before)) {
+                continue;
+            }
+            changed++;
+            addedValues++;
+            removedValues += before != null ? 1 : 0;
+            if (changes.size() < maxHunks) {
+                changes.add(new FieldChange(field.getKey(), before, field.getValue()));
+            }
+        }
+        // What is left was not selected anymore: removed
+        for (Map.Entry<String, String> field : previousEntries) {
+            if (previous.containsKey(field.getKey())) {
+                changed++;
+                removedValues++;
+                if (changes.size() < maxHunks) {
+                    changes.add(new FieldChange(field.getKey(), field.getValue(), null));
+                }
+            }
+        }
+        return new ContentDiff(List.of(), changes.size() == changed, removedValues, addedValues, changes);
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        return text.split(" ");
+    }
+
+    // Maps the window's tokens to ints so the inner loop compares primitives; returns {a, b}
+    private static int[][] intern(String[] a, String[] b, int prefix, int n, int m) {
+        Map<String, Integer> ids = new HashMap<>();
+        int[] ia = new int[n];
+        int[] ib = new int[m];
+        for (int i = 0; i < n; i++) {
+            ia[i] = ids.computeIfAbsent(a[prefix + i], k -> ids.size());
+        }
+        for (int i = 0; i < m; i++) {
+            ib[i] = ids.computeIfAbsent(b[prefix + i], k -> ids.size());
+        }
+        return new int[][]{ia, ib};
+    }
+
+    private static byte[] trivialScript(int n, int m) {
+        byte[] ops = new byte[n + m];
+        for (int i = 0; i < n; i++) {
+            ops[i] = DELETE;
+        }
+        for (int i = n; i < n + m; i++) {
+            ops[i] = INSERT;
+        }
+        return ops;
+    }
+
+    /**
+     * Myers' greedy forward search. Returns the edit script (one op per step, in order),
+     * or null if more than maxEdits edits are required.
+     */
+    private byte[] myers(int[][] tokens, int n, int m) {
+        int[] a = tokens[0];
+        int[] b = tokens[1];
+        int max = Math.min(n + m, maxEdits);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        // trace.get(d) holds v[-d..d] as it was before step d, for backtracking
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static byte[] backtrack(List<int[]> trace, int n, int m) {
+        byte[] reversed = new byte[n + m];
+        int count = 0;
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK = (k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d])) ? k + 1 : k - 1;
+            int prevX = v[prevK + d];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                reversed[count++] = EQUAL;
+                x--;
+                y--;
+            }
+            reversed[count++] = x == prevX ? INSERT : DELETE;
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            reversed[count++] = EQUAL;
+            x--;
+            y--;
+        }
+        byte[] ops = new byte[count];
+        for (int i = 0; i < count; i++) {
+            ops[i] = reversed[count - 1 - i];
+        }
+        return ops;
+    }
+
+    private ContentDiff buildHunks(String[] a, String[] b, int prefix, byte[] ops) {
+        List<DiffHunk> hunks = new ArrayList<>();
+        int removedTokens = 0;
+        int addedTokens = 0;
+        boolean complete = true;
+        int x = prefix;
+        int y = prefix;
+        int i = 0;
+        while (i < ops.length) {
+            if (ops[i] == EQUAL) {
+                x++;
+                y++;
+                i++;
+                continue;
+            }
+            int startX = x;
+            int startY = y;
+            while (i < ops.length && ops[i] != EQUAL) {
+                if (ops[i] == DELETE) {
+                    x++;
+                } else {
+                    y++;
+                }
+                i++;
+            }
+            removedTokens += x - startX;
+            addedTokens += y - startY;
+            if (hunks.size() == maxHunks) {
+                complete = false;
+                continue;
+            }
+            DiffHunk.Type type = x == startX ? DiffHunk.Type.ADDED
+                    : y == startY ? DiffHunk.Type.REMOVED : DiffHunk.Type.MODIFIED;
+            hunks.add(new DiffHunk(type, startX,
+                    join(a, Math.max(0, startX - contextTokens), startX),
+                    join(a, startX, x),
+                    join(b, startY, y),
+                    join(a, x, Math.min(a.length, x + contextTokens))));
+        }
+        return new ContentDiff(List.copyOf(hunks), complete, removedTokens, addedTokens);
+    }
+
+    private static String join(String[] tokens, int from, int to) {
+        if (from >= to) {
+            return "";
+        }
+        return String.join(" ", Arrays.asList(tokens).subList(from, to));
+    }
+}
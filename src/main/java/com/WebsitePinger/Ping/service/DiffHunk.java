@@ -0,0 +1,20 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * One changed region of a page's cleaned text, with surrounding context.
+ *
+ * @param type          Whether text was added, removed or replaced.
+ * @param position      Token (word) offset of the region in the previous text.
+ * @param contextBefore Unchanged text immediately before the region.
+ * @param removed       Text only present in the previous version (empty for ADDED).
+ * @param added         Text only present in the new version (empty for REMOVED).
+ * @param contextAfter  Unchanged text immediately after the region.
+ */
+public record DiffHunk(Type type, int position, String contextBefore, String removed, String added, String contextAfter) {
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        MODIFIED
+    }
+}
@@ -0,0 +1,121 @@
+package com.WebsitePinger.Ping.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Mails each recipient one digest per dispatch window. Enabled by monitor.notify.email.to; the mail
+ * server is configured through the spring.mail.* properties.
+ */
+@Service
+@ConditionalOnProperty(name = "monitor.notify.email.to")
+public class EmailNotificationService implements NotificationService {
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int SNIPPET_LENGTH = 200; // Max length of each diff snippet in the mail
+    private static final int MAX_HUNKS = 5;        // Diff regions (or JSON fields) shown per page
+
+    private final MailSender mailSender;
+    private final List<String> recipients;
+    private final String from;
+
+    public EmailNotificationService(MailSender mailSender,
+                                    @Value("${monitor.notify.email.to}") List<String> recipients,
+                                    @Value("${monitor.notify.email.from:}") String from) {
+        this.mailSender = mailSender;
+        this.recipients = recipients.stream().map(String::trim).filter(address -> !address.isEmpty()).toList();
+        this.from = from;
+    }
+
+    @Override
+    public List<String> recipients() {
+        return recipients;
+    }
+
+    @Override
+    public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+        send(recipients, List.of(Notification.change(url, detectionTime, result)));
+    }
+
+    @Override
+    public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+        send(recipients, List.of(Notification.error(url, errorTime, errorMessage, null)));
+    }
+
+    @Override
+    public void notifyDigest(String recipient, List<Notification> notifications) {
+        send(List.of(recipient), notifications);
+    }
+
+    private void send(List<String> to, List<Notification> notifications) {
+        for (String recipient : to) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            if (!from.isEmpty()) {
+                message.setFrom(from);
+            }
+            message.setTo(recipient);
+            message.setSubject(subject(notifications));
+            message.setText(body(notifications));
+            mailSender.send(message);
+        }
+    }
+
+    static String subject(List<Notification> notifications) {
+        long changed = notifications.stream().filter(n -> n.type() == Notification.Type.CHANGE).count();
+        long failed = notifications.size() - changed;
+        StringBuilder subject = new StringBuilder("Ping: ");
+        if (changed > 0) {
+            subject.append(changed).append(changed == 1 ? " page changed" : " pages changed");
+        }
+        if (failed > 0) {
+            subject.append(changed > 0 ? ", " : "").append(failed).append(failed == 1 ? " page failing" : " pages failing");
+        }
+        return subject.toString();
+    }
+
+    static String body(List<Notification> notifications) {
+        StringBuilder body = new StringBuilder();
+        for (Notification notification : notifications) {
+            body.append(notification.type() == Notification.Type.CHANGE ? "CHANGED " : "ERROR   ")
+                    .append(notification.url())
+                    .append(notification.subscription() != null ? " [" + notification.subscription() + "]" : "").append('\n')
+                    .append("  ").append(notification.summary())
+                    .append(" (").append(notification.firstTime().format(formatter));
+            if (notification.count() > 1) {
+                body.append(" to ").append(notification.lastTime().format(formatter));
+            }
+            body.append(")\n");
+            ContentDiff diff = notification.result() == null ? null : notification.result().diff();
+            if (diff != null) {
+                for (FieldChange field : diff.fields().subList(0, Math.min(diff.fields().size(), MAX_HUNKS))) {
+                    body.append("  [").append(field.type()).append("] ").append(field.path()).append(": ")
+                            .append(field.previous() != null ? snippet(field.previous()) : "-").append(" -> ")
+                            .append(field.current() != null ? snippet(field.current()) : "-").append('\n');
+                }
+                List<DiffHunk> hunks = diff.hunks();
+                for (DiffHunk hunk : hunks.subList(0, Math.min(hunks.size(), MAX_HUNKS))) {
+                    body.append("  [").append(hunk.type()).append(" @ word ").append(hunk.position()).append("] ...")
+                            .append(snippet(hunk.contextBefore())).append(" [-").append(snippet(hunk.removed()))
+                            .append("-] {+").append(snippet(hunk.added())).append("+} ")
+                            .append(snippet(hunk.contextAfter())).append("...\n");
+                }
+                if (hunks.size() > MAX_HUNKS || diff.fields().size() > MAX_HUNKS || !diff.complete()) {
+                    body.append("  (more changes not shown)\n");
+                }
+            }
+            body.append('\n');
+        }
+        return body.toString();
+    }
+
+    private static String snippet(String text) {
+        return text.length() <= SNIPPET_LENGTH ? text : text.substring(0, SNIPPET_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,101 @@
+package com.WebsitePinger.Ping.service;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.compression.Brotli;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * The HTTP client behind the auto-configured WebClient.Builder used by {@link WebsiteFetcher}:
+ * a shared keep-alive connection pool with per-host limits, Netty-level timeouts, compression and HTTP/2.
+ * With monitor.engine=virtual-threads it also provides the JDK client behind {@link BlockingWebsiteFetcher}.
+ */
+@Configuration
+public class FetchClientConfig {
+
+    /**
+     * Connection pool shared by all fetches. Reactor Netty keeps one pool per remote host, so
+     * maxConnectionsPerHost and pendingAcquireMaxCount are per host. Connections are leased
+     * most-recently-used first, so pages on the same host keep reusing a few warm connections
+     * (no new TCP/TLS handshake) while the rest go idle and are evicted in the background.
+     * Pool gauges are exported as reactor.netty.connection.provider.*.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider fetchConnectionProvider(
+            @Value("${monitor.fetch.pool.max-connections-per-host:16}") int maxConnectionsPerHost,
+            @Value("${monitor.fetch.pool.pending-acquire-max-count:128}") int pendingAcquireMaxCount,
+            @Value("${monitor.fetch.pool.pending-acquire-timeout.ms:10000}") long pendingAcquireTimeoutMs,
+            @Value("${monitor.fetch.pool.max-idle-time.ms:60000}") long maxIdleTimeMs,
+            @Value("${monitor.fetch.pool.max-life-time.ms:600000}") long maxLifeTimeMs,
+            @Value("${monitor.fetch.pool.evict-interval.ms:30000}") long evictIntervalMs) {
+        return ConnectionProvider.builder("website-fetcher")
+                .maxConnections(maxConnectionsPerHost)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictIntervalMs))
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Picked up by the auto-configured WebClient.Builder in place of the default connector.
+     * HTTP/2 is negotiated via ALPN on https URLs, with HTTP/1.1 as fallback and for plain http.
+     * With connection metrics on, Reactor Netty also records DNS resolution, connect and TLS handshake
+     * time per remote address (reactor.netty.http.client.*), which split up monitor.fetch.time-to-first-byte;
+     * the uri tag is collapsed to a constant so it doesn't grow with the number of monitored URLs.
+     */
+    @Bean
+    public ClientHttpConnector fetchClientConnector(ConnectionProvider fetchConnectionProvider,
+                                                    @Value("${monitor.fetch.connect-timeout.ms:5000}") int connectTimeoutMs,
+                                                    @Value("${monitor.fetch.read-timeout.ms:10000}") long readTimeoutMs,
+                                                    @Value("${monitor.fetch.http2:true}") boolean http2,
+                                                    @Value("${monitor.fetch.compression:true}") boolean compression,
+                                                    @Value("${monitor.metrics.connection-metrics:true}") boolean connectionMetrics) {
+        HttpClient httpClient = HttpClient.create(fetchConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                // Longest gap allowed between reads once the request is sent
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .protocol(http2 ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11} : new HttpProtocol[]{HttpProtocol.HTTP11})
+                .compress(compression);
+        if (compression) {
+            // Netty decodes brotli only when brotli4j is on the classpath, so only advertise it then
+            String encodings = Brotli.isAvailable() ? "br, gzip, deflate" : "gzip, deflate";
+            httpClient = httpClient.headers(headers -> headers.set(HttpHeaders.ACCEPT_ENCODING, encodings));
+        }
+        if (connectionMetrics) {
+            httpClient = httpClient.metrics(true, uri -> "/");
+        }
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    /**
+     * The client behind {@link BlockingWebsiteFetcher}. It keeps its own keep-alive pool per host
+     * (unbounded: the engine's semaphore and the per-host rate limit bound the connections in use) and
+     * runs its callbacks on virtual threads. Redirects aren't followed, as with the reactive client.
+     * HTTP/1.1 by default; the fetcher asks for HTTP/2 on https URLs when monitor.fetch.http2 is on.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "monitor.engine", havingValue = "virtual-threads")
+    public java.net.http.HttpClient blockingFetchClient(@Value("${monitor.fetch.connect-timeout.ms:5000}") int connectTimeoutMs) {
+        return java.net.http.HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .version(java.net.http.HttpClient.Version.HTTP_1_1)
+                .followRedirects(java.net.http.HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.WebsitePinger.Ping.service;
+
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Why a fetch failed, after any retries.
+ *
+ * @param kind    Classification of the failure; decides retries and circuit breaking.
+ * @param message Human-readable detail (exception message, status line).
+ */
+public record FetchFailure(Kind kind, String message) {
+
+    public enum Kind {
+        TIMEOUT("timeout", true, true),
+        DNS("dns", false, true),
+        CONNECT("connect", true, true),
+        IO("io", true, true),
+        SERVER_ERROR("status_5xx", true, true),
+        CLIENT_ERROR("status_4xx", false, false),
+        TOO_LARGE("too_large", false, false),
+        THROTTLED("throttled", false, false),
+        CIRCUIT_OPEN("circuit_open", false, false),
+        OTHER("other", false, false);
+
+        private final String tag;
+        private final boolean transientError;
+        private final boolean hostFailure;
+
+        Kind(String tag, boolean transientError, boolean hostFailure) {
+            this.tag = tag;
+            this.transientError = transientError;
+            this.hostFailure = hostFailure;
+        }
+
+        /**
+         * Value of the cause tag on monitor.fetch.errors.
+         */
+        public String tag() {
+            return tag;
+        }
+
+        /**
+         * Whether the same request may succeed if simply sent again.
+         */
+        public boolean isTransient() {
+            return transientError;
+        }
+
+        /**
+         * Whether the failure means the host itself is unreachable or broken,
+         * rather than the one URL being wrong; these open the host's circuit.
+         */
+        public boolean isHostFailure() {
+            return hostFailure;
+        }
+    }
+
+    /**
+     * Classifies the error a fetch attempt ended with.
+     */
+    public static FetchFailure of(Throwable error) {
+        String message = error.getMessage();
+        if (message == null) {
+            // e.g. java.net.http's ConnectException for an unresolvable host: name the root cause instead
+            Throwable root = error;
+            while (root.getCause() != null && root.getCause() != root) {
+                root = root.getCause();
+            }
+            message = root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+        }
+        return new FetchFailure(kindOf(error), message);
+    }
+
+    static Kind kindOf(Throwable error) {
+        if (error instanceof ContentTooLargeException) {
+            return Kind.TOO_LARGE;
+        }
+        if (error instanceof HostThrottledException) {
+            return Kind.THROTTLED;
+        }
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is4xxClientError() ? Kind.CLIENT_ERROR : Kind.SERVER_ERROR;
+        }
+        if (error instanceof HttpStatusCodeException response) {
+            // Status errors of the blocking (java.net.http) fetch path
+            return response.getStatusCode().is4xxClientError() ? Kind.CLIENT_ERROR : Kind.SERVER_ERROR;
+        }
+        // java.net.http reports a failed lookup as a ConnectException caused by UnresolvedAddressException
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnknownHostException || cause instanceof UnresolvedAddressException) {
+                return Kind.DNS;
+            }
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof io.netty.handler.timeout.TimeoutException
+                    || cause instanceof HttpTimeoutException) {
+                return Kind.TIMEOUT;
+            }
+            if (cause instanceof ConnectException) {
+                return Kind.CONNECT;
+            }
+        }
+        return error instanceof WebClientRequestException || error instanceof IOException ? Kind.IO : Kind.OTHER;
+    }
+
+    /**
+     * One-line description for notifications and logs.
+     */
+    public String describe() {
+        return kind.tag() + ": " + message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Outcome of a fetch: a new body, a signal that the server reported the resource as
+ * unchanged (304 Not Modified or matching Content-MD5), or why the fetch failed.
+ * A body that only had to be fingerprinted is not kept: {@code content} is then null and
+ * {@code fingerprint} holds the fingerprint of its normalized text.
+ */
+public record FetchResult(boolean notModified, String content, ContentFingerprint fingerprint, FetchFailure failure) {
+
+    /**
+     * Static factory for a full response body.
+     */
+    public static FetchResult modified(String content) {
+        return new FetchResult(false, content, null, null);
+    }
+
+    /**
+     * Static factory for a new body that was fingerprinted as it streamed in (see {@link BodyFingerprinter}).
+     */
+    public static FetchResult fingerprinted(ContentFingerprint fingerprint) {
+        return new FetchResult(false, null, fingerprint, null);
+    }
+
+    /**
+     * Static factory for an unchanged resource; no body was read.
+     */
+    public static FetchResult unchanged() {
+        return new FetchResult(true, null, null, null);
+    }
+
+    /**
+     * Static factory for a failed fetch.
+     */
+    public static FetchResult failed(FetchFailure failure) {
+        return new FetchResult(false, null, null, failure);
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * One changed field of a JSON response monitored with JSON paths.
+ *
+ * @param path     Concrete path of the field, e.g. {@code $.results[3].grade}.
+ * @param previous The field's previous JSON value, or null if it was added.
+ * @param current  The field's new JSON value, or null if it was removed.
+ */
+public record FieldChange(String path, String previous, String current) {
+
+    public DiffHunk.Type type() {
+        return previous == null ? DiffHunk.Type.ADDED : current == null ? DiffHunk.Type.REMOVED : DiffHunk.Type.MODIFIED;
+    }
+}
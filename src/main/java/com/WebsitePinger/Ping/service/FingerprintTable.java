@@ -0,0 +1,101 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Last known fingerprint per key, stored column-wise: the hash halves and cleaned length of the key with
+ * id {@code i} (see {@link KeyIndex}) are {@code high[i]}, {@code low[i]} and {@code length[i]}.
+ * Per key that is 20 bytes of primitives plus one index slot, where a map held a node, a boxed
+ * {@link ContentFingerprint} and their headers; the garbage collector never has to trace the columns.
+ * <p>
+ * {@link #put} - the per-check operation - allocates nothing. All methods are synchronized, the critical
+ * sections are short.
+ */
+final class FingerprintTable {
+
+    /**
+     * How a stored fingerprint related to the one that replaced it.
+     */
+    enum Outcome {
+        // The key had no fingerprint yet
+        FIRST,
+        UNCHANGED,
+        CHANGED
+    }
+
+    private final KeyIndex index;
+    private long[] high;
+    private long[] low;
+    private int[] length;
+
+    FingerprintTable(int expectedKeys) {
+        index = new KeyIndex(expectedKeys);
+        int capacity = Math.max(8, expectedKeys);
+        high = new long[capacity];
+        low = new long[capacity];
+        length = new int[capacity];
+    }
+
+    /**
+     * Stores the key's new fingerprint and reports how it compares with the previous one.
+     */
+    synchronized Outcome put(String key, ContentFingerprint fingerprint) {
+        int id = index.find(key);
+        if (id < 0) {
+            id = index.intern(key);
+            ensureCapacity(id);
+            set(id, fingerprint);
+            return Outcome.FIRST;
+        }
+        if (high[id] == fingerprint.high() && low[id] == fingerprint.low() && length[id] == fingerprint.length()) {
+            return Outcome.UNCHANGED;
+        }
+        set(id, fingerprint);
+        return Outcome.CHANGED;
+    }
+
+    synchronized void putAll(Map<String, ContentFingerprint> fingerprints) {
+        fingerprints.forEach(this::put);
+    }
+
+    /**
+     * @return The key's fingerprint, or null if it has none.
+     */
+    synchronized ContentFingerprint get(String key) {
+        int id = index.find(key);
+        return id < 0 ? null : new ContentFingerprint(high[id], low[id], length[id]);
+    }
+
+    synchronized boolean contains(String key) {
+        return index.find(key) >= 0;
+    }
+
+    /**
+     * @return true if the key had a fingerprint.
+     */
+    synchronized boolean remove(String key) {
+        // The columns keep the stale values until the id is reused; put overwrites all three
+        return index.release(key) >= 0;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    private void set(int id, ContentFingerprint fingerprint) {
+        high[id] = fingerprint.high();
+        low[id] = fingerprint.low();
+        length[id] = fingerprint.length();
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < high.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, high.length * 2);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        length = Arrays.copyOf(length, capacity);
+    }
+}
@@ -0,0 +1,94 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Rate-limit state for one host: a token bucket kept as the theoretical arrival time of the next
+ * request (GCRA), so a request can reserve its start time ahead instead of polling for a token,
+ * plus the pause imposed after the host throttled us. All times are System.nanoTime() values.
+ */
+class HostBucket {
+
+    private final long baseIntervalNanos;
+    private final long baseBurstNanos;
+    // Time between requests at the steady rate, and how far ahead of it a burst may run
+    private long intervalNanos;
+    private long burstNanos;
+    private long nextArrival;
+    private long blockedUntil;
+    private int throttledStreak;
+    private long nextRobotsCheck;
+
+    HostBucket(long intervalNanos, int burst, long now) {
+        this.baseIntervalNanos = intervalNanos;
+        this.baseBurstNanos = (Math.max(1, burst) - 1) * intervalNanos;
+        this.intervalNanos = baseIntervalNanos;
+        this.burstNanos = baseBurstNanos;
+        this.nextArrival = now;
+        this.blockedUntil = now;
+        this.nextRobotsCheck = now;
+    }
+
+    /**
+     * Reserves the next request slot and returns when it starts (now, if a token is available).
+     */
+    synchronized long reserve(long now) {
+        long start = Math.max(now, Math.max(blockedUntil, nextArrival - burstNanos));
+        nextArrival = Math.max(nextArrival, start) + intervalNanos;
+        return start;
+    }
+
+    synchronized boolean isBlocked(long now) {
+        return blockedUntil - now > 0;
+    }
+
+    /**
+     * Returns how long the host stays paused, or 0 if it is not paused.
+     */
+    synchronized long pauseRemaining(long now) {
+        return Math.max(0, blockedUntil - now);
+    }
+
+    /**
+     * Pauses the host for {@code delayNanos}; requests afterwards resume at the steady rate, without a burst.
+     */
+    synchronized void block(long now, long delayNanos) {
+        blockedUntil = Math.max(blockedUntil, now + delayNanos);
+        nextArrival = Math.max(nextArrival, blockedUntil + burstNanos);
+        throttledStreak++;
+    }
+
+    /**
+     * Number of times in a row the host has throttled us.
+     */
+    synchronized int throttledStreak() {
+        return throttledStreak;
+    }
+
+    synchronized void succeeded() {
+        throttledStreak = 0;
+    }
+
+    /**
+     * Applies a robots.txt Crawl-delay: the host is never requested more often than once per delay.
+     * A delay of 0 restores the configured rate.
+     */
+    synchronized void crawlDelay(long delayNanos) {
+        if (delayNanos > baseIntervalNanos) {
+            intervalNanos = delayNanos;
+            burstNanos = 0;
+        } else {
+            intervalNanos = baseIntervalNanos;
+            burstNanos = baseBurstNanos;
+        }
+    }
+
+    /**
+     * Returns true, at most once per refresh period, when robots.txt should be (re-)read.
+     */
+    synchronized boolean claimRobotsCheck(long now, long refreshNanos) {
+        if (nextRobotsCheck - now > 0) {
+            return false;
+        }
+        nextRobotsCheck = now + refreshNanos;
+        return true;
+    }
+}
@@ -0,0 +1,201 @@
+package com.WebsitePinger.Ping.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stops fetching from a host that keeps failing. After {@code failureThreshold} host-level failures
+ * in a row (timeouts, connection errors, 5xx - see {@link FetchFailure.Kind#isHostFailure()}) the
+ * host's circuit opens and its checks fail fast without touching the network. Once the open period
+ * is over a single probe fetch is let through (half-open): success closes the circuit, failure
+ * opens it again for twice as long, up to {@code maxOpenDurationMs}.
+ * <p>
+ * Each fetch reports its outcome with the permit {@link #tryAcquire} gave it. While the circuit is open
+ * or half-open only the current probe's outcome counts, so a fetch that started before the circuit
+ * opened can neither close it nor fail the probe when it finally completes.
+ */
+@Component
+public class HostCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(HostCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Returned by {@link #tryAcquire} while the host's circuit is open: the fetch must not go ahead.
+     */
+    public static final long REJECTED = -1;
+    // Permit of a fetch made while the circuit is closed; a probe gets its probe number, counted from 1
+    static final long CLOSED_PERMIT = 0;
+
+    private final MonitorMetrics metrics;
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final long maxOpenDurationMs;
+    // Key: host, Value: the host's circuit
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public HostCircuitBreaker(MonitorMetrics metrics,
+                              @Value("${monitor.circuit.enabled:true}") boolean enabled,
+                              @Value("${monitor.circuit.failure-threshold:5}") int failureThreshold,
+                              @Value("${monitor.circuit.open-duration.ms:60000}") long openDurationMs,
+                              @Value("${monitor.circuit.max-open-duration.ms:600000}") long maxOpenDurationMs) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMs = openDurationMs;
+        this.maxOpenDurationMs = Math.max(openDurationMs, maxOpenDurationMs);
+    }
+
+    /**
+     * Returns the permit for a fetch of the URL, to be passed to {@link #onSuccess} or {@link #onFailure}
+     * with its outcome, or {@link #REJECTED} while its host's circuit is open.
+     * @param url The URL about to be fetched.
+     */
+    public long tryAcquire(String url) {
+        return tryAcquire(url, System.currentTimeMillis());
+    }
+
+    long tryAcquire(String url, long now) {
+        if (!enabled) {
+            return CLOSED_PERMIT;
+        }
+        Circuit circuit = circuits.get(MonitorMetrics.hostOf(url));
+        return circuit != null ? circuit.tryAcquire(now, openDurationMs) : CLOSED_PERMIT;
+    }
+
+    /**
+     * Records that the host answered (any status that isn't a host failure).
+     * @param url    The URL that was fetched.
+     * @param permit The fetch's permit from {@link #tryAcquire}.
+     */
+    public void onSuccess(String url, long permit) {
+        if (!enabled) {
+            return;
+        }
+        Circuit circuit = circuits.get(MonitorMetrics.hostOf(url));
+        if (circuit != null && circuit.succeeded(permit)) {
+            log.info("Circuit for host {} closed: it is responding again.", MonitorMetrics.hostOf(url));
+        }
+    }
+
+    /**
+     * Records a host-level failure of a fetch (after its retries).
+     * @param url    The URL that failed.
+     * @param permit The fetch's permit from {@link #tryAcquire}.
+     */
+    public void onFailure(String url, long permit) {
+        onFailure(url, permit, System.currentTimeMillis());
+    }
+
+    void onFailure(String url, long permit, long now) {
+        if (!enabled) {
+            return;
+        }
+        String host = MonitorMetrics.hostOf(url);
+        Circuit circuit = circuits.computeIfAbsent(host, h -> new Circuit(openDurationMs));
+        long openFor = circuit.failed(now, permit, failureThreshold, maxOpenDurationMs);
+        if (openFor > 0) {
+            metrics.forUrl(url).circuitOpened().increment();
+            log.warn("Circuit for host {} opened: skipping its checks for {} s.", host, openFor / 1000);
+        }
+    }
+
+    /**
+     * Returns the state of the URL's host's circuit.
+     */
+    public State state(String url) {
+        Circuit circuit = circuits.get(MonitorMetrics.hostOf(url));
+        return circuit != null ? circuit.state(System.currentTimeMillis()) : State.CLOSED;
+    }
+
+    private static final class Circuit {
+
+        private final long baseOpenDurationMs;
+        private State state = State.CLOSED;
+        private int failures;
+        private long openDurationMs;
+        private long openUntil;
+        private long probeStartedAt;
+        // Number of the latest probe; only its outcome counts while the circuit is not closed
+        private long probe;
+
+        private Circuit(long openDurationMs) {
+            this.baseOpenDurationMs = openDurationMs;
+            this.openDurationMs = openDurationMs;
+        }
+
+        synchronized long tryAcquire(long now, long probeTimeoutMs) {
+            switch (state) {
+                case CLOSED:
+                    return CLOSED_PERMIT;
+                case OPEN:
+                    if (now < openUntil) {
+                        return REJECTED;
+                    }
+                    state = State.HALF_OPEN;
+                    probeStartedAt = now;
+                    return ++probe;
+                default:
+                    // One probe at a time; a probe that never reported back (cancelled) is replaced eventually,
+                    // and its outcome no longer counts once it is
+                    if (now - probeStartedAt < probeTimeoutMs) {
+                        return REJECTED;
+                    }
+                    probeStartedAt = now;
+                    return ++probe;
+            }
+        }
+
+        // Any outcome counts while the circuit is closed; while it is open or half-open only the current probe's
+        private boolean counts(long permit) {
+            return state == State.CLOSED || (state == State.HALF_OPEN && permit == probe);
+        }
+
+        /**
+         * @return true if this closed an open or half-open circuit.
+         */
+        synchronized boolean succeeded(long permit) {
+            if (!counts(permit)) {
+                return false;
+            }
+            failures = 0;
+            if (state == State.CLOSED) {
+                return false;
+            }
+            state = State.CLOSED;
+            openDurationMs = baseOpenDurationMs;
+            return true;
+        }
+
+        /**
+         * @return How long the circuit was opened for, or 0 if it stays as it is.
+         */
+        synchronized long failed(long now, long permit, int threshold, long maxOpenDurationMs) {
+            if (!counts(permit)) {
+                // A fetch that started before the circuit opened, or a replaced probe
+                return 0;
+            }
+            failures++;
+            if (state == State.HALF_OPEN) {
+                // The probe failed: back off further
+                openDurationMs = Math.min(maxOpenDurationMs, openDurationMs * 2);
+            } else if (failures < threshold) {
+                return 0;
+            }
+            state = State.OPEN;
+            openUntil = now + openDurationMs;
+            return openDurationMs;
+        }
+
+        synchronized State state(long now) {
+            return state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state;
+        }
+    }
+}
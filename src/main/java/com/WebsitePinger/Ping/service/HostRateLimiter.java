@@ -0,0 +1,235 @@
+package com.WebsitePinger.Ping.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps each host at a steady, bounded request rate: a token bucket per host with room for a short burst.
+ * Checks beyond the rate wait for their slot rather than fail. A host that answers 429/503 is paused
+ * as a whole, for its Retry-After or else an exponential backoff, and robots.txt Crawl-delay can
+ * lower a host's rate further.
+ */
+@Component
+public class HostRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(HostRateLimiter.class);
+    // Upper bound for a robots.txt Crawl-delay, so one odd file can't stall a host for hours
+    private static final double MAX_CRAWL_DELAY_SECONDS = 300;
+
+    private final WebClient webClient;
+    private final MonitorMetrics metrics;
+    private final boolean enabled;
+    private final long intervalNanos;
+    private final int burst;
+    private final long backoffInitialNanos;
+    private final long backoffMaxNanos;
+    private final long maxRetryAfterNanos;
+    private final boolean robotsCrawlDelay;
+    private final long robotsRefreshNanos;
+    // Key: host, Value: the host's bucket
+    private final ConcurrentMap<String, HostBucket> buckets = new ConcurrentHashMap<>();
+
+    public HostRateLimiter(WebClient.Builder webClientBuilder, MonitorMetrics metrics,
+                           @Value("${monitor.politeness.enabled:true}") boolean enabled,
+                           @Value("${monitor.politeness.requests-per-second:2.0}") double requestsPerSecond,
+                           @Value("${monitor.politeness.burst:4}") int burst,
+                           @Value("${monitor.politeness.backoff.initial.ms:30000}") long backoffInitialMs,
+                           @Value("${monitor.politeness.backoff.max.ms:600000}") long backoffMaxMs,
+                           @Value("${monitor.politeness.max-retry-after.ms:3600000}") long maxRetryAfterMs,
+                           @Value("${monitor.politeness.robots-crawl-delay:false}") boolean robotsCrawlDelay,
+                           @Value("${monitor.politeness.robots-refresh.ms:86400000}") long robotsRefreshMs) {
+        if (enabled && requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("monitor.politeness.requests-per-second must be positive");
+        }
+        this.webClient = webClientBuilder.build();
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.intervalNanos = enabled ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+        this.burst = Math.max(1, burst);
+        this.backoffInitialNanos = TimeUnit.MILLISECONDS.toNanos(backoffInitialMs);
+        this.backoffMaxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(backoffInitialMs, backoffMaxMs));
+        this.maxRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(maxRetryAfterMs);
+        this.robotsCrawlDelay = robotsCrawlDelay;
+        this.robotsRefreshNanos = TimeUnit.MILLISECONDS.toNanos(robotsRefreshMs);
+    }
+
+    /**
+     * Completes when a request to the URL's host may start. Subscribe when the check is dispatched:
+     * the wait is a timer, so queued checks hold no thread and no concurrency slot.
+     * @param url The URL about to be fetched.
+     */
+    public Mono<Void> permit(String url) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        HostBucket bucket = bucketFor(url);
+        long requested = System.nanoTime();
+        return waitFor(bucket)
+                .doOnSuccess(ignored -> metrics.forUrl(url).politenessWait()
+                        .record(System.nanoTime() - requested, TimeUnit.NANOSECONDS));
+    }
+
+    private Mono<Void> waitFor(HostBucket bucket) {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            long wait = bucket.reserve(now) - now;
+            if (wait <= 0) {
+                return Mono.empty();
+            }
+            return Mono.delay(Duration.ofNanos(wait)).then(Mono.defer(() -> {
+                // The host was throttled while this check waited, so its slot fell inside the pause. Wait the pause
+                // out before reserving again: a check never holds more than one reservation at a time
+                long pause = bucket.pauseRemaining(System.nanoTime());
+                return pause > 0 ? Mono.delay(Duration.ofNanos(pause)).then(waitFor(bucket)) : Mono.<Void>empty();
+            }));
+        });
+    }
+
+    /**
+     * Blocking form of {@link #permit}, for checks running on virtual threads: sleeps until a request
+     * to the URL's host may start.
+     * @param url The URL about to be fetched.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void awaitPermit(String url) throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        HostBucket bucket = bucketFor(url);
+        long requested = System.nanoTime();
+        while (true) {
+            long now = System.nanoTime();
+            long wait = bucket.reserve(now) - now;
+            if (wait <= 0) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+            // Throttled while waiting: wait the pause out before reserving again, as in waitFor
+            long pause = bucket.pauseRemaining(System.nanoTime());
+            if (pause <= 0) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.sleep(pause);
+        }
+        metrics.forUrl(url).politenessWait().record(System.nanoTime() - requested, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Pauses the URL's host after a 429/503 response.
+     * @param url        The URL that was throttled.
+     * @param retryAfter The delay the server asked for, or null to back off exponentially.
+     */
+    public void onThrottled(String url, Duration retryAfter) {
+        if (!enabled) {
+            return;
+        }
+        HostBucket bucket = bucketFor(url);
+        long delay;
+        if (retryAfter != null) {
+            delay = Math.min(Math.max(0, retryAfter.toNanos()), maxRetryAfterNanos);
+        } else {
+            // Doubles with every 429/503 in a row
+            int streak = Math.min(bucket.throttledStreak(), 30);
+            delay = Math.min(backoffMaxNanos, backoffInitialNanos << streak);
+            delay = delay > 0 ? delay : backoffMaxNanos;
+        }
+        bucket.block(System.nanoTime(), delay);
+        metrics.forUrl(url).politenessBackoffs().increment();
+        log.warn("Host {} is throttling requests, pausing it for {} ms.", MonitorMetrics.hostOf(url),
+                TimeUnit.NANOSECONDS.toMillis(delay));
+    }
+
+    /**
+     * Records a successful response, which resets the host's backoff.
+     * @param url The URL that was fetched.
+     */
+    public void onSuccess(String url) {
+        if (enabled) {
+            bucketFor(url).succeeded();
+        }
+    }
+
+    private HostBucket bucketFor(String url) {
+        long now = System.nanoTime();
+        HostBucket bucket = buckets.computeIfAbsent(MonitorMetrics.hostOf(url), host -> new HostBucket(intervalNanos, burst, now));
+        if (robotsCrawlDelay && bucket.claimRobotsCheck(now, robotsRefreshNanos)) {
+            // In the background: until robots.txt is read the host runs at the configured rate
+            refreshCrawlDelay(url, bucket);
+        }
+        return bucket;
+    }
+
+    private void refreshCrawlDelay(String url, HostBucket bucket) {
+        URI robots;
+        try {
+            robots = URI.create(url).resolve("/robots.txt");
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        webClient.get()
+                .uri(robots)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(10))
+                .map(HostRateLimiter::crawlDelaySeconds)
+                .onErrorResume(error -> {
+                    log.debug("Could not read {}: {}", robots, error.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(0d)
+                .subscribe(seconds -> {
+                    if (seconds > 0) {
+                        log.info("Applying robots.txt Crawl-delay of {} s to host {}.", seconds, MonitorMetrics.hostOf(url));
+                    }
+                    bucket.crawlDelay((long) (seconds * TimeUnit.SECONDS.toNanos(1)));
+                });
+    }
+
+    /**
+     * Returns the Crawl-delay, in seconds, of the "User-agent: *" group of a robots.txt, or 0 if it has none.
+     */
+    static double crawlDelaySeconds(String robotsTxt) {
+        boolean inWildcardGroup = false;
+        boolean groupHasRules = false;
+        for (String rawLine : robotsTxt.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (field.equals("user-agent")) {
+                // Consecutive User-agent lines share one group; one after a rule starts a new group
+                if (groupHasRules) {
+                    inWildcardGroup = false;
+                    groupHasRules = false;
+                }
+                inWildcardGroup |= value.equals("*");
+            } else {
+                groupHasRules = true;
+                if (inWildcardGroup && field.equals("crawl-delay")) {
+                    try {
+                        double seconds = Double.parseDouble(value);
+                        return Double.isFinite(seconds) && seconds > 0 ? Math.min(seconds, MAX_CRAWL_DELAY_SECONDS) : 0;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.WebsitePinger.Ping.service;
+
+import java.time.Duration;
+
+/**
+ * Signals that a host answered 429 Too Many Requests or 503 Service Unavailable.
+ * Not retried: the whole host is paused by {@link HostRateLimiter} instead.
+ */
+public class HostThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public HostThrottledException(String url, int status, Duration retryAfter) {
+        super("Host of " + url + " responded " + status
+                + (retryAfter != null ? " with Retry-After " + retryAfter.toSeconds() + " s" : ""));
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * The delay the server asked for, or null if it sent no (valid) Retry-After header.
+     */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,625 @@
+package com.WebsitePinger.Ping.service;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * Streaming HTML-to-text normalizer, used instead of building a Jsoup DOM when the whole body is compared.
+ * Produces the same text as the DOM path ({@code body().text()} without scripts and comments, whitespace
+ * collapsed to single spaces and trimmed) in one pass over the markup:
+ * <ul>
+ *   <li>script, style and title content, comments and doctypes are skipped;</li>
+ *   <li>block-level tags and {@code <br>} separate words the way Jsoup's {@code text()} does;</li>
+ *   <li>character references are decoded, with Jsoup's rules for missing semicolons.</li>
+ * </ul>
+ * Hidden inputs need no special handling: inputs never contribute text.
+ * There is no tree builder, so markup the parser would have to repair (misnested or stray tags,
+ * tables outside tables) can differ in where words are separated - consistently from check to check.
+ * Output characters go to a {@link StringBuilder}, a {@link ContentHasher}, or both, so a page can be
+ * fingerprinted without materializing its text. Markup may be fed in chunks split anywhere.
+ * Not thread-safe; create one instance per page.
+ */
+public final class HtmlTextNormalizer {
+
+    private enum State {
+        TEXT, TAG_OPEN, END_TAG_OPEN, TAG_NAME, ATTRIBUTES, ATTR_DOUBLE, ATTR_SINGLE,
+        MARKUP_DECLARATION, COMMENT, BOGUS, RAW, ENTITY, PLAINTEXT
+    }
+
+    // Tag kinds, as bit flags
+    private static final int BLOCK = 1;         // separated from its neighbours by a space
+    private static final int SKIP = 1 << 1;     // raw text that is not part of the page text
+    private static final int RAW_TEXT = 1 << 2; // raw text that is kept verbatim
+    private static final int RCDATA = 1 << 3;   // raw text with character references decoded
+    private static final int PLAIN = 1 << 4;    // everything after the tag is text
+    private static final int IN_HEAD = 1 << 5;  // may appear in the head without starting the body
+    private static final int HEAD_ONLY = 1 << 6; // content is skipped when it appears in the head
+    private static final int VOID = 1 << 7;     // never has content or an end tag
+    private static final int KNOWN = 1 << 8;    // any tag Jsoup knows; unknown tags are inline
+    private static final char VERTICAL_TAB = 0x0B;
+
+    // Longest tag name that has a kind ("blockquote", "figcaption"); longer names are always inline
+    private static final int MAX_TAG_NAME = 10;
+    private static final int MAX_ENTITY_NAME = 32;
+    // Value of dashes after "--!" in a comment
+    private static final int BANG = -1;
+    private static final int TABLE_SIZE = 256;
+    private static final String[] TAG_NAMES = new String[TABLE_SIZE];
+    private static final int[] TAG_KINDS = new int[TABLE_SIZE];
+
+    // Numeric references in 0x80-0x9F are read as windows-1252, like browsers do
+    private static final int[] WIN1252 = {
+            0x20AC, 0x0081, 0x201A, 0x0192, 0x201E, 0x2026, 0x2020, 0x2021,
+            0x02C6, 0x2030, 0x0160, 0x2039, 0x0152, 0x008D, 0x017D, 0x008F,
+            0x0090, 0x2018, 0x2019, 0x201C, 0x201D, 0x2022, 0x2013, 0x2014,
+            0x02DC, 0x2122, 0x0161, 0x203A, 0x0153, 0x009D, 0x017E, 0x0178,
+    };
+
+    static {
+        // Jsoup's block tags
+        for (String name : new String[]{"br", "frameset", "noscript", "meta", "link", "frame", "section", "nav", "aside",
+                "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "pre", "div",
+                "blockquote", "hr", "address", "figure", "figcaption", "form", "fieldset", "ins", "del", "dl", "dt",
+                "dd", "li", "table", "caption", "thead", "tfoot", "tbody", "colgroup", "col", "tr", "th", "td",
+                "video", "audio", "canvas", "details", "menu", "template", "article", "main", "svg", "math",
+                "center", "dir", "applet", "marquee", "listing"}) {
+            register(name, BLOCK);
+        }
+        // Jsoup's inline tags
+        for (String name : new String[]{"object", "base", "font", "tt", "i", "b", "u", "big", "small", "em", "strong",
+                "dfn", "code", "samp", "kbd", "var", "cite", "abbr", "time", "acronym", "mark", "ruby", "rt", "rp", "rtc",
+                "a", "img", "wbr", "map", "q", "sub", "sup", "bdo", "iframe", "embed", "span", "input", "select",
+                "textarea", "label", "button", "optgroup", "option", "legend", "datalist", "keygen", "output",
+                "progress", "meter", "area", "param", "source", "track", "summary", "command", "device", "basefont",
+                "bgsound", "menuitem", "data", "bdi", "s", "strike", "nobr", "rb", "text", "mi", "mo", "msup", "mn",
+                "mtext", "html", "head", "body"}) {
+            register(name, KNOWN);
+        }
+        for (String name : new String[]{"html", "head", "base", "basefont", "bgsound", "command", "link", "meta",
+                "script", "style", "title"}) {
+            register(name, IN_HEAD);
+        }
+        // Jsoup keeps these in the head when they come before the body, and the head is never compared
+        for (String name : new String[]{"noscript", "template", "noframes", "title"}) {
+            register(name, IN_HEAD | HEAD_ONLY);
+        }
+        for (String name : new String[]{"br", "hr", "meta", "link", "col", "frame"}) {
+            register(name, VOID);
+        }
+        // Scripts are removed from the DOM before text extraction, so unlike style they don't separate words
+        register("script", SKIP);
+        register("style", BLOCK | SKIP);
+        register("title", BLOCK | RCDATA);
+        register("noframes", BLOCK | RAW_TEXT);
+        register("iframe", RAW_TEXT);
+        register("noembed", RAW_TEXT);
+        register("xmp", RAW_TEXT);
+        register("textarea", RCDATA);
+        register("plaintext", BLOCK | PLAIN);
+    }
+
+    private final StringBuilder text;
+    private final ContentHasher hasher;
+
+    private State state = State.TEXT;
+    // Tag name being read, lowercased, and its String-compatible hash
+    private final StringBuilder tagName = new StringBuilder(MAX_TAG_NAME + 1);
+    private int tagHash;
+    private boolean endTag;
+    private char lastAttributeChar;
+    private int dashes;
+    private int commentLength;
+    // Raw text element being read and how much of its "</name" end tag has been seen
+    private String rawName;
+    private int rawKind;
+    private int rawMatched;
+    // Character reference being read and the state to return to
+    private final StringBuilder entity = new StringBuilder(MAX_ENTITY_NAME);
+    private State entityReturn;
+    private boolean entityOverflow;
+    private final int[] codePoints = new int[2];
+    // Until the body starts, head-only elements are skipped
+    private boolean bodyStarted;
+    // Open block elements per tag, to tell real block ends from stray end tags
+    private final int[] openBlocks = new int[TABLE_SIZE];
+    // Whitespace is emitted lazily so runs collapse and the output is trimmed;
+    // the end of a block only becomes a space once something follows it
+    private boolean pendingSpace;
+    private boolean blockEnded;
+    private boolean emittedAny;
+
+    /**
+     * @param text   Receives the normalized text, or null.
+     * @param hasher Receives the normalized text, or null.
+     */
+    public HtmlTextNormalizer(StringBuilder text, ContentHasher hasher) {
+        this.text = text;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Normalizes a whole page to text.
+     */
+    public static String normalize(CharSequence html) {
+        StringBuilder text = new StringBuilder(Math.min(html.length(), 1 << 16));
+        new HtmlTextNormalizer(text, null).feed(html).finish();
+        return text.toString();
+    }
+
+    /**
+     * Fingerprints the normalized text of a page without materializing it.
+     * Equal to {@code ContentFingerprint.of(normalize(html))}.
+     */
+    public static ContentFingerprint fingerprint(CharSequence html) {
+        ContentHasher hasher = new ContentHasher();
+        new HtmlTextNormalizer(null, hasher).feed(html).finish();
+        return hasher.finish();
+    }
+
+    /**
+     * Collapses runs of whitespace to single spaces and trims, like {@code replaceAll("\\s+", " ").trim()}.
+     */
+    public static String collapseWhitespace(CharSequence value) {
+        StringBuilder out = new StringBuilder(value.length());
+        boolean pending = false;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (isRegexWhitespace(c)) {
+                pending = true;
+                continue;
+            }
+            if (pending && !out.isEmpty()) {
+                out.append(' ');
+            }
+            pending = false;
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Feeds the next chunk of markup.
+     */
+    public HtmlTextNormalizer feed(CharSequence chunk) {
+        for (int i = 0, n = chunk.length(); i < n; i++) {
+            accept(chunk.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Flushes whatever is pending at the end of the markup. The normalizer must not be fed afterwards.
+     */
+    public void finish() {
+        switch (state) {
+            case TAG_OPEN -> emit('<');
+            case ENTITY -> resolveEntity((char) 0, false);
+            case RAW -> flushRawMatch();
+            default -> {
+                // An unterminated tag or comment contributes nothing
+            }
+        }
+        state = State.TEXT;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT -> {
+                if (c == '<') {
+                    state = State.TAG_OPEN;
+                } else if (c == '&') {
+                    startEntity(State.TEXT);
+                } else {
+                    emit(c);
+                }
+            }
+            case TAG_OPEN -> {
+                if (c == '!') {
+                    dashes = 0;
+                    state = State.MARKUP_DECLARATION;
+                } else if (c == '/') {
+                    state = State.END_TAG_OPEN;
+                } else if (c == '?') {
+                    state = State.BOGUS;
+                } else if (isAsciiLetter(c)) {
+                    startTagName(c, false);
+                } else {
+                    // Not a tag after all: the '<' is text
+                    emit('<');
+                    state = State.TEXT;
+                    accept(c);
+                }
+            }
+            case END_TAG_OPEN -> {
+                if (isAsciiLetter(c)) {
+                    startTagName(c, true);
+                } else {
+                    state = c == '>' ? State.TEXT : State.BOGUS;
+                }
+            }
+            case TAG_NAME -> {
+                if (c == '>') {
+                    endOfTag();
+                } else if (c == '<') {
+                    // Jsoup (like browsers) ends the tag here and starts a new one
+                    endOfTag();
+                    accept(c);
+                } else if (isWhitespace(c) || c == '/') {
+                    lastAttributeChar = c;
+                    state = State.ATTRIBUTES;
+                } else if (tagName.length() <= MAX_TAG_NAME) {
+                    char lower = Character.toLowerCase(c);
+                    tagName.append(lower);
+                    tagHash = 31 * tagHash + lower;
+                }
+            }
+            case ATTRIBUTES -> {
+                if (c == '>') {
+                    endOfTag();
+                } else if (lastAttributeChar == '=' && c == '"') {
+                    state = State.ATTR_DOUBLE;
+                } else if (lastAttributeChar == '=' && c == '\'') {
+                    state = State.ATTR_SINGLE;
+                } else if (!isWhitespace(c)) {
+                    lastAttributeChar = c;
+                }
+            }
+            case ATTR_DOUBLE, ATTR_SINGLE -> {
+                if (c == (state == State.ATTR_DOUBLE ? '"' : '\'')) {
+                    lastAttributeChar = c;
+                    state = State.ATTRIBUTES;
+                }
+            }
+            case MARKUP_DECLARATION -> {
+                if (c == '-' && dashes == 0) {
+                    dashes = 1;
+                } else if (c == '-') {
+                    dashes = 0;
+                    commentLength = 0;
+                    state = State.COMMENT;
+                } else {
+                    // Doctype, CDATA and the like carry no page text
+                    state = c == '>' ? State.TEXT : State.BOGUS;
+                }
+            }
+            case COMMENT -> {
+                // Ends at "-->" or "--!>", or right away for the degenerate "<!-->" and "<!--->"
+                if (c == '>' && (dashes >= 2 || dashes == BANG || (commentLength <= 1 && dashes == commentLength))) {
+                    state = State.TEXT;
+                } else if (c == '!' && dashes >= 2) {
+                    dashes = BANG;
+                    commentLength++;
+                } else {
+                    dashes = c == '-' ? Math.max(dashes, 0) + 1 : 0;
+                    commentLength++;
+                }
+            }
+            case BOGUS -> {
+                if (c == '>') {
+                    state = State.TEXT;
+                }
+            }
+            case RAW -> acceptRaw(c);
+            case ENTITY -> acceptEntity(c);
+            case PLAINTEXT -> emit(c);
+        }
+    }
+
+    private void startTagName(char first, boolean end) {
+        char lower = Character.toLowerCase(first);
+        tagName.setLength(0);
+        tagName.append(lower);
+        tagHash = lower;
+        endTag = end;
+        lastAttributeChar = 0;
+        state = State.TAG_NAME;
+    }
+
+    private void endOfTag() {
+        state = State.TEXT;
+        int slot = slotOf(tagName, tagHash);
+        int kind = slot < 0 ? 0 : TAG_KINDS[slot];
+        if (endTag && !"br".contentEquals(tagName)) { // </br> is read as <br>
+            // A closed block is only separated from a following sibling, not from its parent's end tag.
+            // End tags of blocks that aren't open are dropped by the parser and separate nothing
+            if ((kind & BLOCK) != 0 && openBlocks[slot] > 0) {
+                openBlocks[slot]--;
+                blockEnded = true;
+            } else {
+                blockEnded = false;
+            }
+            return;
+        }
+        if (kind == 0) {
+            blockEnded = false; // Jsoup formats unknown tags as blocks, and doesn't separate a block from them
+        } else {
+            settleBlockEnd();
+        }
+        if ((kind & BLOCK) != 0) {
+            pendingSpace = true;
+            if ((kind & (VOID | SKIP | RAW_TEXT | RCDATA)) == 0) {
+                openBlocks[slot]++;
+            }
+        }
+        if ((kind & IN_HEAD) == 0) {
+            bodyStarted = true;
+        }
+        if (!bodyStarted && (kind & HEAD_ONLY) != 0) {
+            kind |= SKIP;
+        }
+        if ((kind & (SKIP | RAW_TEXT | RCDATA)) != 0) {
+            rawName = nameOf(tagName, tagHash);
+            rawKind = kind;
+            rawMatched = 0;
+            state = State.RAW;
+        } else if ((kind & PLAIN) != 0) {
+            state = State.PLAINTEXT;
+        }
+    }
+
+    // Inside script/style/textarea/...: everything is text until the matching "</name"
+    private void acceptRaw(char c) {
+        int endTagLength = rawName.length() + 2;
+        if (rawMatched == endTagLength) {
+            if (isWhitespace(c) || c == '/' || c == '>') {
+                blockEnded = (rawKind & BLOCK) != 0;
+                rawMatched = 0;
+                state = c == '>' ? State.TEXT : State.BOGUS; // BOGUS skips the rest of the end tag
+                return;
+            }
+            flushRawMatch();
+            acceptRaw(c);
+            return;
+        }
+        char expected = rawMatched == 0 ? '<' : rawMatched == 1 ? '/' : rawName.charAt(rawMatched - 2);
+        if (Character.toLowerCase(c) == expected) {
+            rawMatched++;
+            return;
+        }
+        if (rawMatched > 0) {
+            flushRawMatch();
+            acceptRaw(c);
+        } else if (c == '&' && (rawKind & RCDATA) != 0) {
+            startEntity(State.RAW);
+        } else {
+            emitRaw(c);
+        }
+    }
+
+    // A partial end tag turned out to be text
+    private void flushRawMatch() {
+        int matched = rawMatched;
+        rawMatched = 0;
+        for (int i = 0; i < matched; i++) {
+            emitRaw(i == 0 ? '<' : i == 1 ? '/' : rawName.charAt(i - 2));
+        }
+    }
+
+    private void emitRaw(char c) {
+        if ((rawKind & SKIP) == 0) {
+            emit(c);
+        }
+    }
+
+    private void startEntity(State returnTo) {
+        entity.setLength(0);
+        entityOverflow = false;
+        entityReturn = returnTo;
+        state = State.ENTITY;
+    }
+
+    private void acceptEntity(char c) {
+        boolean numeric = !entity.isEmpty() && entity.charAt(0) == '#';
+        if (entity.isEmpty() && c == '#') {
+            entity.append(c);
+        } else if (numeric && entity.length() == 1 && (c == 'x' || c == 'X')) {
+            entity.append(c);
+        } else if (numeric && isDigit(c, entity.length() > 1 && (entity.charAt(1) | 0x20) == 'x')) {
+            if (entity.length() < MAX_ENTITY_NAME) {
+                entity.append(c);
+            } else {
+                entityOverflow = true; // out of range anyway, keep consuming digits
+            }
+        } else if (!numeric && isNameChar(c) && entity.length() < MAX_ENTITY_NAME) {
+            entity.append(c);
+        } else {
+            resolveEntity(c, true);
+        }
+    }
+
+    // Emits the reference ended by c (when hasNext) and handles c; unresolvable references are text
+    private void resolveEntity(char c, boolean hasNext) {
+        state = entityReturn;
+        boolean semicolon = hasNext && c == ';';
+        boolean consumed = false;
+        if (!entity.isEmpty() && entity.charAt(0) == '#') {
+            boolean hex = entity.length() > 1 && (entity.charAt(1) | 0x20) == 'x';
+            int digitsFrom = hex ? 2 : 1;
+            if (entity.length() > digitsFrom) {
+                emitCodePoint(parseCodePoint(digitsFrom, hex ? 16 : 10));
+                consumed = semicolon;
+            } else {
+                emitLiteralEntity();
+            }
+        } else if (!entity.isEmpty() && resolveNamed(semicolon)) {
+            consumed = semicolon;
+        } else {
+            emitLiteralEntity();
+        }
+        if (hasNext && !consumed) {
+            accept(c);
+        }
+    }
+
+    private boolean resolveNamed(boolean semicolon) {
+        // Jsoup only resolves names made of letters followed by digits
+        int i = 0;
+        while (i < entity.length() && Character.isLetter(entity.charAt(i))) {
+            i++;
+        }
+        while (i < entity.length() && entity.charAt(i) >= '0' && entity.charAt(i) <= '9') {
+            i++;
+        }
+        if (i != entity.length()) {
+            return false;
+        }
+        // The common references are resolved without allocating
+        char common = commonEntity(entity);
+        if (common != 0) {
+            emitText(common);
+            return true;
+        }
+        String name = entity.toString();
+        if (!Entities.isBaseNamedEntity(name) && !(semicolon && Entities.isNamedEntity(name))) {
+            return false;
+        }
+        int count = Entities.codepointsForName(name, codePoints);
+        for (int j = 0; j < count; j++) {
+            emitCodePoint(codePoints[j]);
+        }
+        return true;
+    }
+
+    private static char commonEntity(CharSequence name) {
+        if ("amp".contentEquals(name)) {
+            return '&';
+        } else if ("nbsp".contentEquals(name)) {
+            return '\u00A0';
+        } else if ("lt".contentEquals(name)) {
+            return '<';
+        } else if ("gt".contentEquals(name)) {
+            return '>';
+        } else if ("quot".contentEquals(name)) {
+            return '"';
+        }
+        return 0;
+    }
+
+    private int parseCodePoint(int from, int radix) {
+        if (entityOverflow) {
+            return 0xFFFD;
+        }
+        int value = 0;
+        for (int i = from; i < entity.length(); i++) {
+            value = value * radix + Character.digit(entity.charAt(i), radix);
+            if (value > 0x10FFFF) {
+                return 0xFFFD;
+            }
+        }
+        if (value >= 0x80 && value < 0x80 + WIN1252.length) {
+            return WIN1252[value - 0x80];
+        }
+        return value;
+    }
+
+    private void emitLiteralEntity() {
+        emitText('&');
+        for (int i = 0; i < entity.length(); i++) {
+            emitText(entity.charAt(i));
+        }
+    }
+
+    private void emitCodePoint(int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            emitText((char) codePoint);
+        } else {
+            emitText(Character.highSurrogate(codePoint));
+            emitText(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    // Decoded references go wherever the reference appeared: normal text or a textarea
+    private void emitText(char c) {
+        if (entityReturn == State.RAW) {
+            emitRaw(c);
+        } else {
+            emit(c);
+        }
+    }
+
+    private void emit(char c) {
+        if (isTextWhitespace(c)) {
+            pendingSpace = true;
+            return;
+        }
+        if (c == '\u200B' || c == '\u00AD') {
+            return; // zero-width space and soft hyphen are dropped, like Jsoup does
+        }
+        settleBlockEnd();
+        bodyStarted = true; // text can't stay in the head
+        if (pendingSpace && emittedAny) {
+            write(' ');
+        }
+        pendingSpace = false;
+        emittedAny = true;
+        write(c);
+    }
+
+    // Something follows the block that was just closed: separate it
+    private void settleBlockEnd() {
+        if (blockEnded) {
+            pendingSpace = true;
+            blockEnded = false;
+        }
+    }
+
+    private void write(char c) {
+        if (text != null) {
+            text.append(c);
+        }
+        if (hasher != null) {
+            hasher.update(c);
+        }
+    }
+
+    private static void register(String name, int kind) {
+        kind |= KNOWN;
+        int i = name.hashCode() & (TABLE_SIZE - 1);
+        while (TAG_NAMES[i] != null && !TAG_NAMES[i].equals(name)) {
+            i = (i + 1) & (TABLE_SIZE - 1);
+        }
+        TAG_NAMES[i] = name;
+        TAG_KINDS[i] |= kind;
+    }
+
+    private static int slotOf(CharSequence name, int hash) {
+        if (name.length() > MAX_TAG_NAME) {
+            return -1;
+        }
+        for (int i = hash & (TABLE_SIZE - 1); TAG_NAMES[i] != null; i = (i + 1) & (TABLE_SIZE - 1)) {
+            if (TAG_NAMES[i].contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String nameOf(CharSequence name, int hash) {
+        return TAG_NAMES[slotOf(name, hash)];
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isDigit(char c, boolean hex) {
+        return (c >= '0' && c <= '9') || (hex && ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')));
+    }
+
+    // Whitespace in markup syntax
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    // Whitespace collapsed in the output: Jsoup's (which includes nbsp) plus the \s of the old regex
+    private static boolean isTextWhitespace(char c) {
+        return isWhitespace(c) || c == '\u00A0' || c == VERTICAL_TAB;
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        return isWhitespace(c) || c == VERTICAL_TAB;
+    }
+}
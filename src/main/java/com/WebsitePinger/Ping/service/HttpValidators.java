@@ -0,0 +1,36 @@
+package com.WebsitePinger.Ping.service;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * HTTP cache validators remembered from the last full response for a URL.
+ * Any field can be null if the server didn't send it.
+ */
+public record HttpValidators(String etag, String lastModified, String contentMd5) {
+
+    /**
+     * Extracts the validators from a response's headers.
+     * @return The validators, or null if the response carried none.
+     */
+    public static HttpValidators from(HttpHeaders headers) {
+        String etag = headers.getFirst(HttpHeaders.ETAG);
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        String contentMd5 = headers.getFirst("Content-MD5");
+        if (etag == null && lastModified == null && contentMd5 == null) {
+            return null;
+        }
+        return new HttpValidators(etag, lastModified, contentMd5);
+    }
+
+    /**
+     * Adds If-None-Match / If-Modified-Since request headers for the known validators.
+     */
+    public void applyTo(HttpHeaders requestHeaders) {
+        if (etag != null) {
+            requestHeaders.set(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            requestHeaders.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+}
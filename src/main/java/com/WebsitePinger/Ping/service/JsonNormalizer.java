@@ -0,0 +1,186 @@
+package com.WebsitePinger.Ping.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a JSON response to the fields selected by {@link JsonPath}s, in a canonical form that only
+ * changes when a selected value does. The response is read with a streaming parser: members and elements
+ * no path can reach are skipped without being materialized, only the selected subtrees are built.
+ * <p>
+ * The result has one line per selected leaf value, {@code path TAB value}, where the path is concrete
+ * ({@code $.results[3].grade}) and the value is its JSON text. Object members are sorted by name and lines
+ * by path (array elements by index), so key order and formatting never register as changes and the
+ * fingerprint of the text is a structural hash of the selection. Empty objects and arrays are leaves
+ * ({@code {}} / {@code []}). Neither paths nor values can contain a raw tab or line break: both are
+ * JSON-escaped.
+ */
+final class JsonNormalizer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    private static final Comparator<Leaf> CANONICAL_ORDER = (a, b) -> comparePaths(a.path(), b.path());
+
+    private JsonNormalizer() {
+    }
+
+    // A selected value: its path (member names and element indexes) and its JSON text
+    private record Leaf(Object[] path, String value) {
+    }
+
+    /**
+     * @param json          The response body.
+     * @param paths         The fields to compare; at most 64.
+     * @param ignorePattern Matches dropped from string values, or null.
+     * @return The canonical text of the selected fields.
+     * @throws IllegalArgumentException If the body is not valid JSON.
+     */
+    static String normalize(String json, List<JsonPath> paths, Pattern ignorePattern) {
+        List<Leaf> leaves = new ArrayList<>();
+        try (JsonParser parser = MAPPER.createParser(json)) {
+            if (parser.nextToken() == null) {
+                throw new IllegalArgumentException("Response is empty, expected JSON");
+            }
+            // Bit i is set while path i can still match the current value or something inside it
+            long all = paths.size() == 64 ? -1L : (1L << paths.size()) - 1;
+            walk(parser, paths, all, new ArrayList<>(), ignorePattern, leaves);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Response is not valid JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            // Reading from a String
+            throw new IllegalStateException(e);
+        }
+        leaves.sort(CANONICAL_ORDER);
+        StringBuilder text = new StringBuilder(leaves.size() * 32);
+        for (Leaf leaf : leaves) {
+            if (!text.isEmpty()) {
+                text.append('\n');
+            }
+            appendPath(text, leaf.path()).append('\t').append(leaf.value());
+        }
+        return text.toString();
+    }
+
+    // Visits the value at the parser's current token
+    private static void walk(JsonParser parser, List<JsonPath> paths, long alive, List<Object> path,
+                             Pattern ignorePattern, List<Leaf> leaves) throws IOException {
+        if (alive == 0) {
+            // Nothing selected in here: stream past it
+            parser.skipChildren();
+            return;
+        }
+        for (long bits = alive; bits != 0; bits &= bits - 1) {
+            if (paths.get(Long.numberOfTrailingZeros(bits)).depth() == path.size()) {
+                // Selected: the subtree is small, so build it and emit it in canonical order
+                JsonNode node = parser.readValueAsTree();
+                flatten(node, path, ignorePattern, leaves);
+                return;
+            }
+        }
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                path.add(name);
+                walk(parser, paths, advance(paths, alive, path.size() - 1, name, -1), path, ignorePattern, leaves);
+                path.remove(path.size() - 1);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            for (int index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+                path.add(index);
+                walk(parser, paths, advance(paths, alive, path.size() - 1, null, index), path, ignorePattern, leaves);
+                path.remove(path.size() - 1);
+            }
+        }
+        // A scalar no path ends at: nothing to emit
+    }
+
+    private static long advance(List<JsonPath> paths, long alive, int depth, String name, int index) {
+        long next = 0;
+        for (long bits = alive; bits != 0; bits &= bits - 1) {
+            int i = Long.numberOfTrailingZeros(bits);
+            JsonPath jsonPath = paths.get(i);
+            if (jsonPath.depth() > depth && jsonPath.matches(depth, name, index)) {
+                next |= 1L << i;
+            }
+        }
+        return next;
+    }
+
+    private static void flatten(JsonNode node, List<Object> path, Pattern ignorePattern, List<Leaf> leaves) {
+        if (node.isObject() && !node.isEmpty()) {
+            for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                path.add(field.getKey());
+                flatten(field.getValue(), path, ignorePattern, leaves);
+                path.remove(path.size() - 1);
+            }
+        } else if (node.isArray() && !node.isEmpty()) {
+            for (int i = 0; i < node.size(); i++) {
+                path.add(i);
+                flatten(node.get(i), path, ignorePattern, leaves);
+                path.remove(path.size() - 1);
+            }
+        } else if (node.isTextual() && ignorePattern != null) {
+            // Drop timestamps, tokens etc. so they don't register as changes
+            leaves.add(new Leaf(path.toArray(), TextNode.valueOf(ignorePattern.matcher(node.textValue()).replaceAll("")).toString()));
+        } else {
+            leaves.add(new Leaf(path.toArray(), node.toString()));
+        }
+    }
+
+    // Member names in string order, element indexes in numeric order, a path before the paths inside it
+    private static int comparePaths(Object[] a, Object[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int order = a[i] instanceof Integer indexA && b[i] instanceof Integer indexB
+                    ? Integer.compare(indexA, indexB)
+                    : a[i].toString().compareTo(b[i].toString());
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static StringBuilder appendPath(StringBuilder text, Object[] path) {
+        text.append('$');
+        for (Object step : path) {
+            if (step instanceof Integer index) {
+                text.append('[').append(index).append(']');
+            } else if (IDENTIFIER.matcher((String) step).matches()) {
+                text.append('.').append(step);
+            } else {
+                text.append('[').append(TextNode.valueOf((String) step)).append(']');
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Splits canonical text back into path/value pairs, in canonical order.
+     */
+    static List<Map.Entry<String, String>> fields(String canonical) {
+        List<Map.Entry<String, String>> fields = new ArrayList<>();
+        if (canonical.isEmpty()) {
+            return fields;
+        }
+        for (String line : canonical.split("\n")) {
+            int tab = line.indexOf('\t');
+            fields.add(Map.entry(line.substring(0, tab), line.substring(tab + 1)));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,134 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled JSONPath selecting the fields of a JSON response to compare. The supported subset is the
+ * one that can be matched while streaming, without looking ahead or back:
+ * <ul>
+ *   <li>{@code $} - the whole document;</li>
+ *   <li>{@code .name} or {@code ['name']} - a member of an object;</li>
+ *   <li>{@code [2]} - an element of an array;</li>
+ *   <li>{@code .*} or {@code [*]} - every member or element.</li>
+ * </ul>
+ * For example {@code $.results[*].grade} or {@code $['exam-session'].published}. Recursive descent
+ * ({@code ..}), slices and filter expressions are rejected.
+ */
+public final class JsonPath {
+
+    // A step matches one level of nesting: a member name, an array index, or anything (name == null, index < 0)
+    private record Step(String name, int index) {
+
+        // member is null inside an array and element -1 inside an object, so names never match elements
+        boolean matches(String member, int element) {
+            if (name != null) {
+                return name.equals(member);
+            }
+            return index < 0 || index == element;
+        }
+    }
+
+    private final String expression;
+    private final List<Step> steps;
+
+    private JsonPath(String expression, List<Step> steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the expression is not valid or uses an unsupported feature.
+     */
+    public static JsonPath compile(String expression) {
+        String path = expression.trim();
+        if (!path.startsWith("$")) {
+            throw invalid(expression, "must start with $");
+        }
+        List<Step> steps = new ArrayList<>();
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                if (path.startsWith("..", i)) {
+                    throw invalid(expression, "recursive descent (..) is not supported");
+                }
+                int end = i + 1;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                String name = path.substring(i + 1, end);
+                if (name.isEmpty()) {
+                    throw invalid(expression, "empty member name at " + i);
+                }
+                steps.add(name.equals("*") ? new Step(null, -1) : new Step(name, -1));
+                i = end;
+            } else if (c == '[') {
+                int close = bracketEnd(path, i, expression);
+                steps.add(bracketStep(path.substring(i + 1, close).trim(), expression));
+                i = close + 1;
+            } else {
+                throw invalid(expression, "unexpected '" + c + "' at " + i);
+            }
+        }
+        return new JsonPath(path, List.copyOf(steps));
+    }
+
+    private static int bracketEnd(String path, int open, String expression) {
+        char quote = open + 1 < path.length() ? path.charAt(open + 1) : 0;
+        if (quote == '\'' || quote == '"') {
+            int closingQuote = path.indexOf(quote, open + 2);
+            if (closingQuote < 0 || closingQuote + 1 >= path.length() || path.charAt(closingQuote + 1) != ']') {
+                throw invalid(expression, "unterminated member name at " + open);
+            }
+            return closingQuote + 1;
+        }
+        int close = path.indexOf(']', open);
+        if (close < 0) {
+            throw invalid(expression, "missing ] after " + open);
+        }
+        return close;
+    }
+
+    private static Step bracketStep(String selector, String expression) {
+        if (selector.equals("*")) {
+            return new Step(null, -1);
+        }
+        if (selector.length() >= 2 && (selector.charAt(0) == '\'' || selector.charAt(0) == '"')) {
+            return new Step(selector.substring(1, selector.length() - 1), -1);
+        }
+        try {
+            int index = Integer.parseInt(selector);
+            if (index < 0) {
+                throw invalid(expression, "negative indexes are not supported");
+            }
+            return new Step(null, index);
+        } catch (NumberFormatException e) {
+            throw invalid(expression, "unsupported selector [" + selector + "]");
+        }
+    }
+
+    private static IllegalArgumentException invalid(String expression, String reason) {
+        return new IllegalArgumentException("Invalid JSON path '" + expression + "': " + reason);
+    }
+
+    /**
+     * Number of nesting levels the path descends; 0 for {@code $}.
+     */
+    int depth() {
+        return steps.size();
+    }
+
+    /**
+     * Whether the path's step at {@code depth} accepts the member {@code name} (null inside an array)
+     * or the array element {@code index} (-1 inside an object).
+     */
+    boolean matches(int depth, String name, int index) {
+        return steps.get(depth).matches(name, index);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
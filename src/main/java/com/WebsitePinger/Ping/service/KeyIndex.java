@@ -0,0 +1,134 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.Arrays;
+
+/**
+ * Interns string keys (URLs, subscription keys) to small dense int ids, so per-key state can live in
+ * primitive arrays indexed by id instead of in one map entry (and boxed value) per key.
+ * Ids of released keys are reused, so the arrays stay as long as the peak number of keys.
+ * <p>
+ * Open addressing with linear probing over an {@code int[]}; the keys themselves are the only objects.
+ * Lookups allocate nothing: {@link String#hashCode()} is cached by the string. Not thread-safe; the
+ * owning table synchronizes.
+ */
+final class KeyIndex {
+
+    // Slots hold id + 1; 0 marks an empty slot
+    private int[] slots;
+    private String[] keys;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private int size;
+
+    KeyIndex(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedKeys * 2 - 1)) << 1;
+        slots = new int[capacity];
+        keys = new String[Math.max(8, expectedKeys)];
+    }
+
+    /**
+     * @return The key's id, or -1 if it has none.
+     */
+    int find(String key) {
+        int mask = slots.length - 1;
+        for (int i = home(key, mask); slots[i] != 0; i = (i + 1) & mask) {
+            String candidate = keys[slots[i] - 1];
+            if (candidate.equals(key)) {
+                return slots[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The key's id, assigning one if it has none.
+     */
+    int intern(String key) {
+        int id = find(key);
+        if (id >= 0) {
+            return id;
+        }
+        // Keep the load factor at or below 1/2, so probe sequences stay short
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[id] = key;
+        insert(id);
+        size++;
+        return id;
+    }
+
+    /**
+     * Forgets the key; its id may be handed to another key from now on.
+     * @return The id the key had, or -1 if it had none.
+     */
+    int release(String key) {
+        int mask = slots.length - 1;
+        int i = home(key, mask);
+        while (slots[i] != 0 && !keys[slots[i] - 1].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        if (slots[i] == 0) {
+            return -1;
+        }
+        int id = slots[i] - 1;
+        slots[i] = 0;
+        // Backward-shift deletion: move later entries of the probe run into the hole, so no tombstones are needed
+        for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int k = home(keys[slots[j] - 1], mask);
+            boolean reachable = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (!reachable) {
+                slots[i] = slots[j];
+                slots[j] = 0;
+                i = j;
+            }
+        }
+        keys[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        size--;
+        return id;
+    }
+
+    /**
+     * @return The key holding the id; undefined for an id that is not in use.
+     */
+    String keyOf(int id) {
+        return keys[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void insert(int id) {
+        int mask = slots.length - 1;
+        int i = home(keys[id], mask);
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = id + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < nextId; id++) {
+            if (keys[id] != null) {
+                insert(id);
+            }
+        }
+    }
+
+    private static int home(String key, int mask) {
+        // Fibonacci hashing: the top bits of the product mix every bit of the hash, so URLs sharing a
+        // long prefix still spread over the table
+        return key.hashCode() * 0x9E3779B9 >>> Integer.numberOfLeadingZeros(mask);
+    }
+}
@@ -0,0 +1,232 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The monitor's meters, exported at /actuator/prometheus. Fetch, clean and check meters are
+ * tagged by host, so slow or failing targets show up without grepping logs; meters for a host
+ * are created on its first check and cached, so recording a check allocates nothing.
+ */
+@Component
+public class MonitorMetrics {
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, HostMeters> hosts = new ConcurrentHashMap<>();
+    private final Timer cycleTimer;
+    private final Counter skippedChecks;
+    private final Counter coalescedChecks;
+
+    public MonitorMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.cycleTimer = Timer.builder("monitor.cycle.duration")
+                .description("Time from dispatching the URLs due on a tick until all of their checks complete")
+                .register(registry);
+        this.skippedChecks = Counter.builder("monitor.checks.skipped")
+                .description("Checks skipped because the previous check of the same URL was still in flight")
+                .register(registry);
+        this.coalescedChecks = Counter.builder("monitor.checks.coalesced")
+                .description("Checks that joined a check of the same page already in flight instead of fetching it again")
+                .register(registry);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public Timer cycleTimer() {
+        return cycleTimer;
+    }
+
+    public Counter skippedChecks() {
+        return skippedChecks;
+    }
+
+    public Counter coalescedChecks() {
+        return coalescedChecks;
+    }
+
+    /**
+     * Returns the meters of the host a URL points at.
+     * @param url The monitored URL.
+     */
+    public HostMeters forUrl(String url) {
+        return hosts.computeIfAbsent(hostOf(url), host -> new HostMeters(registry, host));
+    }
+
+    /**
+     * Counts a failed fetch attempt (including attempts that are retried, and checks skipped
+     * by an open circuit) by what went wrong.
+     * @param url  The URL being fetched.
+     * @param kind What went wrong.
+     */
+    public void fetchError(String url, FetchFailure.Kind kind) {
+        Counter.builder("monitor.fetch.errors")
+                .description("Failed fetch attempts, including ones that were retried")
+                .tag("host", hostOf(url))
+                .tag("cause", kind.tag())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Host part of an absolute URL, lower-cased, or "unknown"; parsed by hand rather than into a URI on every check.
+     */
+    public static String hostOf(String url) {
+        int start = url.indexOf("://");
+        if (start < 0) {
+            return "unknown";
+        }
+        start += 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+        int userInfo = url.lastIndexOf('@', end - 1);
+        if (userInfo >= start) {
+            start = userInfo + 1;
+        }
+        int port = url.lastIndexOf(':', end - 1);
+        if (port >= start && url.lastIndexOf(']', end - 1) < port) {
+            end = port; // Not the colon inside an IPv6 literal
+        }
+        return end > start ? url.substring(start, end).toLowerCase() : "unknown";
+    }
+
+    /**
+     * Meters of one monitored host.
+     */
+    public static final class HostMeters {
+
+        private final Timer fetchModified;
+        private final Timer fetchNotModified;
+        private final Timer fetchFailed;
+        private final Timer timeToFirstByte;
+        private final Timer bodyDuration;
+        private final DistributionSummary bodySize;
+        private final Counter retries;
+        private final Timer cleanDuration;
+        private final Counter checksChanged;
+        private final Counter checksUnchanged;
+        private final Counter checksNotModified;
+        private final Counter checksFailed;
+        private final Timer politenessWait;
+        private final Counter politenessBackoffs;
+        private final Counter circuitOpened;
+
+        private HostMeters(MeterRegistry registry, String host) {
+            this.fetchModified = fetchTimer(registry, host, "modified");
+            this.fetchNotModified = fetchTimer(registry, host, "not_modified");
+            this.fetchFailed = fetchTimer(registry, host, "failed");
+            this.timeToFirstByte = Timer.builder("monitor.fetch.time-to-first-byte")
+                    .description("Time until the response headers arrive: DNS, connect, TLS, request and server time")
+                    .tag("host", host)
+                    .register(registry);
+            this.bodyDuration = Timer.builder("monitor.fetch.body.duration")
+                    .description("Time spent downloading a response body")
+                    .tag("host", host)
+                    .register(registry);
+            this.bodySize = DistributionSummary.builder("monitor.fetch.body.size")
+                    .description("Bytes downloaded per response body")
+                    .baseUnit("bytes")
+                    .tag("host", host)
+                    .register(registry);
+            this.retries = Counter.builder("monitor.fetch.retries")
+                    .description("Fetch attempts retried after an error")
+                    .tag("host", host)
+                    .register(registry);
+            this.cleanDuration = Timer.builder("monitor.clean.duration")
+                    .description("Time spent cleaning, fingerprinting and comparing a fetched page")
+                    .tag("host", host)
+                    .register(registry);
+            this.checksChanged = checkCounter(registry, host, "changed");
+            this.checksUnchanged = checkCounter(registry, host, "unchanged");
+            this.checksNotModified = checkCounter(registry, host, "not_modified");
+            this.checksFailed = checkCounter(registry, host, "failed");
+            this.politenessWait = Timer.builder("monitor.politeness.wait")
+                    .description("Time a check waited for its host's rate limit before fetching")
+                    .tag("host", host)
+                    .register(registry);
+            this.politenessBackoffs = Counter.builder("monitor.politeness.backoffs")
+                    .description("Times the host answered 429/503 and was paused")
+                    .tag("host", host)
+                    .register(registry);
+            this.circuitOpened = Counter.builder("monitor.circuit.opened")
+                    .description("Times the host's circuit opened after repeated failures")
+                    .tag("host", host)
+                    .register(registry);
+        }
+
+        private static Timer fetchTimer(MeterRegistry registry, String host, String outcome) {
+            return Timer.builder("monitor.fetch.duration")
+                    .description("Time to fetch a URL, including retries")
+                    .tag("host", host)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+
+        private static Counter checkCounter(MeterRegistry registry, String host, String result) {
+            return Counter.builder("monitor.checks")
+                    .description("Completed checks by result")
+                    .tag("host", host)
+                    .tag("result", result)
+                    .register(registry);
+        }
+
+        void fetched(FetchResult result, long nanos) {
+            Timer timer = result.isFailed() ? fetchFailed : result.notModified() ? fetchNotModified : fetchModified;
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        Timer timeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        Timer bodyDuration() {
+            return bodyDuration;
+        }
+
+        DistributionSummary bodySize() {
+            return bodySize;
+        }
+
+        Counter retries() {
+            return retries;
+        }
+
+        Timer cleanDuration() {
+            return cleanDuration;
+        }
+
+        Timer politenessWait() {
+            return politenessWait;
+        }
+
+        Counter politenessBackoffs() {
+            return politenessBackoffs;
+        }
+
+        Counter circuitOpened() {
+            return circuitOpened;
+        }
+
+        void checked(ComparisonResult result, boolean notModified) {
+            if (result == null) {
+                checksFailed.increment();
+            } else if (result.changed()) {
+                checksChanged.increment();
+            } else if (notModified) {
+                checksNotModified.increment();
+            } else {
+                checksUnchanged.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.List;
+
+/**
+ * Per-URL monitoring settings supplied when a URL is registered.
+ * The check interval adapts between {@code minIntervalMs} and {@code maxIntervalMs};
+ * setting both to the same value gives a fixed interval.
+ * {@code maxBodyBytes} caps the response size; null uses monitor.fetch.max-body-bytes.
+ * {@code contentFilter} limits the comparison to selected regions of the page.
+ * {@code recipients} limits notifications to these recipients (mail addresses, webhook URLs) of the configured
+ * sinks; empty notifies every recipient.
+ */
+public record MonitorSettings(long minIntervalMs, long maxIntervalMs, Long maxBodyBytes, ContentFilter contentFilter,
+                              List<String> recipients) {
+
+    public MonitorSettings {
+        if (minIntervalMs <= 0) {
+            throw new IllegalArgumentException("Check interval must be positive, got " + minIntervalMs + " ms");
+        }
+        if (maxIntervalMs < minIntervalMs) {
+            throw new IllegalArgumentException("Maximum interval " + maxIntervalMs + " ms is below minimum " + minIntervalMs + " ms");
+        }
+        if (maxBodyBytes != null && maxBodyBytes <= 0) {
+            throw new IllegalArgumentException("Maximum body size must be positive, got " + maxBodyBytes + " bytes");
+        }
+        if (contentFilter == null) {
+            contentFilter = ContentFilter.NONE;
+        }
+        recipients = recipients == null ? List.of() : recipients.stream().map(String::trim).filter(target -> !target.isEmpty()).distinct().toList();
+    }
+
+    /**
+     * Settings that notify every recipient.
+     */
+    public MonitorSettings(long minIntervalMs, long maxIntervalMs, Long maxBodyBytes, ContentFilter contentFilter) {
+        this(minIntervalMs, maxIntervalMs, maxBodyBytes, contentFilter, List.of());
+    }
+
+    /**
+     * Settings with a fixed check interval.
+     */
+    public static MonitorSettings fixed(long intervalMs) {
+        return new MonitorSettings(intervalMs, intervalMs, null, ContentFilter.NONE);
+    }
+
+    /**
+     * Copy with a new minimum interval; the maximum is raised if it would fall below it.
+     */
+    public MonitorSettings withMinIntervalMs(long minIntervalMs) {
+        return new MonitorSettings(minIntervalMs, Math.max(minIntervalMs, maxIntervalMs), maxBodyBytes, contentFilter, recipients);
+    }
+
+    /**
+     * Copy with a new maximum interval.
+     */
+    public MonitorSettings withMaxIntervalMs(long maxIntervalMs) {
+        return new MonitorSettings(minIntervalMs, maxIntervalMs, maxBodyBytes, contentFilter, recipients);
+    }
+
+    /**
+     * Copy with a per-URL response size cap.
+     */
+    public MonitorSettings withMaxBodyBytes(Long maxBodyBytes) {
+        return new MonitorSettings(minIntervalMs, maxIntervalMs, maxBodyBytes, contentFilter, recipients);
+    }
+
+    /**
+     * Copy with a new content filter.
+     */
+    public MonitorSettings withContentFilter(ContentFilter contentFilter) {
+        return new MonitorSettings(minIntervalMs, maxIntervalMs, maxBodyBytes, contentFilter, recipients);
+    }
+
+    /**
+     * Copy that notifies only the given recipients (all of them if empty).
+     */
+    public MonitorSettings withRecipients(List<String> recipients) {
+        return new MonitorSettings(minIntervalMs, maxIntervalMs, maxBodyBytes, contentFilter, recipients);
+    }
+
+    /**
+     * Whether the interval is allowed to back off.
+     */
+    public boolean isAdaptive() {
+        return maxIntervalMs > minIntervalMs;
+    }
+}
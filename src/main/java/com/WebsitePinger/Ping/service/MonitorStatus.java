@@ -0,0 +1,20 @@
+package com.WebsitePinger.Ping.service;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time view of how a monitored URL is doing, as returned by the status API.
+ *
+ * @param state              PENDING until the first check completes, then OK or FAILING (last check failed).
+ * @param lastCheckTime      When the last check completed, or null before the first one.
+ * @param lastChangeTime     When a change was last detected, or null if none was seen yet.
+ * @param lastLatencyMs      Fetch time of the last check including retries, or null before the first one.
+ * @param failedChecksInARow Length of the current failure streak.
+ * @param lastError          Description of the most recent failure, or null if there was none.
+ */
+public record MonitorStatus(String url, State state, Instant lastCheckTime, Instant lastChangeTime, Long lastLatencyMs,
+                            long checks, long changes, long errors, int failedChecksInARow, String lastError,
+                            long currentIntervalMs) {
+
+    public enum State { PENDING, OK, FAILING }
+}
@@ -0,0 +1,11 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * A fetched page cleaned for one content filter, ready to be compared by every subscription using that filter.
+ *
+ * @param cleanedText The cleaned text, or null when nothing needs it (no diffing and no filter).
+ * @param fingerprint Fingerprint of the cleaned text.
+ * @param json        Whether the cleaned text is a JSON field listing (see {@link JsonNormalizer}) rather than page text.
+ */
+public record NormalizedContent(String cleanedText, ContentFingerprint fingerprint, boolean json) {
+}
@@ -0,0 +1,98 @@
+package com.WebsitePinger.Ping.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One entry of a notification digest: a change or an error of one URL, possibly standing for several
+ * events of the same kind that were coalesced within the dispatch window.
+ *
+ * @param type         Whether the URL changed or failed.
+ * @param url          The monitored URL.
+ * @param firstTime    When the first of the coalesced events happened.
+ * @param lastTime     When the latest of the coalesced events happened.
+ * @param count        How many events were coalesced into this one.
+ * @param result       The latest comparison result (changes only).
+ * @param errorMessage The latest error description (errors only).
+ * @param failure      The latest fetch failure, or null for other errors.
+ * @param subscription Id of the subscription that saw the change, null for the page's default subscription
+ *                     and for errors (which concern every subscription of the page).
+ * @param recipients   Recipients to deliver to; empty for every recipient.
+ */
+public record Notification(Type type, String url, LocalDateTime firstTime, LocalDateTime lastTime, int count,
+                           ComparisonResult result, String errorMessage, FetchFailure failure,
+                           String subscription, List<String> recipients) {
+
+    public enum Type { CHANGE, ERROR }
+
+    public Notification {
+        recipients = recipients == null ? List.of() : List.copyOf(recipients);
+    }
+
+    /**
+     * Static factory for a detected change.
+     */
+    public static Notification change(String url, LocalDateTime time, ComparisonResult result) {
+        return change(url, null, List.of(), time, result);
+    }
+
+    /**
+     * Static factory for a change seen by one subscription of the page.
+     */
+    public static Notification change(String url, String subscription, List<String> recipients, LocalDateTime time,
+                                      ComparisonResult result) {
+        return new Notification(Type.CHANGE, url, time, time, 1, result, null, null, subscription, recipients);
+    }
+
+    /**
+     * Static factory for a monitoring error.
+     */
+    public static Notification error(String url, LocalDateTime time, String errorMessage, FetchFailure failure) {
+        return error(url, List.of(), time, errorMessage, failure);
+    }
+
+    /**
+     * Static factory for a monitoring error addressed to some recipients only.
+     */
+    public static Notification error(String url, List<String> recipients, LocalDateTime time, String errorMessage,
+                                     FetchFailure failure) {
+        return new Notification(Type.ERROR, url, time, time, 1, null, errorMessage, failure, null, recipients);
+    }
+
+    /**
+     * Merges a later event of the same URL and type into this one: the latest result or error wins.
+     */
+    public Notification coalesce(Notification later) {
+        return new Notification(type, url, firstTime, later.lastTime, count + later.count,
+                later.result, later.errorMessage, later.failure, subscription, recipients);
+    }
+
+    /**
+     * Whether this entry goes into the digest of {@code recipient}. Sinks without recipients (the
+     * console) get every entry.
+     */
+    public boolean isFor(String recipient) {
+        return recipients.isEmpty() || recipient.isEmpty() || recipients.contains(recipient);
+    }
+
+    /**
+     * One-line description for digests, e.g. "changed 3 times, 12 words removed, 4 added" or "changed, 2 fields changed".
+     */
+    public String summary() {
+        String times = count > 1 ? " " + count + " times" : "";
+        if (type == Type.ERROR) {
+            return "failed" + times + ": " + errorMessage;
+        }
+        ContentDiff diff = result == null ? null : result.diff();
+        if (diff == null) {
+            return "changed" + times;
+        }
+        if (diff.isFieldDiff()) {
+            int fields = diff.fields().size();
+            return "changed" + times + ", " + fields + (diff.complete() ? "" : "+") + (fields == 1 ? " field" : " fields") + " changed";
+        }
+        String approx = diff.hunks().isEmpty() && !diff.complete() ? "~" : "";
+        return "changed" + times + ", " + approx + diff.removedTokens() + " words removed, "
+                + approx + diff.addedTokens() + " added";
+    }
+}
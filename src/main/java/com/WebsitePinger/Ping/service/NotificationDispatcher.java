@@ -0,0 +1,345 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The notification service the monitor talks to. Calls only record the event and return, so a slow mail
+ * server or webhook never holds up a check. Events are collected per URL for one window (repeated changes
+ * of a page become one entry, repeated errors are deduped) and then handed to every other
+ * {@link NotificationService} bean as a digest, one per recipient, each sink on its own virtual thread
+ * with a bounded queue of digests. Failed sends are retried with backoff.
+ */
+@Service
+@Primary
+public final class NotificationDispatcher implements NotificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+    // Tells a sink's worker to stop; compared by identity
+    private static final List<Notification> STOP = new ArrayList<>();
+
+    // Subscriptions of a page are coalesced separately: they can see different changes and go to different recipients
+    private record PendingKey(Notification.Type type, String url, String subscription, List<String> recipients) {}
+
+    private final long windowMs;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    // Events of the current window; bounded by maxPending entries
+    private final ConcurrentMap<PendingKey, Notification> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final List<SinkWorker> workers;
+    private final AtomicBoolean dropWarned = new AtomicBoolean();
+    private final MeterRegistry registry;
+    private final Counter changes;
+    private final Counter errors;
+    private final Counter coalesced;
+    private final Counter droppedPendingFull;
+    private final Counter droppedQueueFull;
+    private final Counter droppedSendFailed;
+
+    public NotificationDispatcher(List<NotificationService> sinks, MeterRegistry registry,
+                                  @Value("${monitor.notify.window.ms:5000}") long windowMs,
+                                  @Value("${monitor.notify.max-pending:10000}") int maxPending,
+                                  @Value("${monitor.notify.queue-capacity:64}") int queueCapacity,
+                                  @Value("${monitor.notify.max-attempts:3}") int maxAttempts,
+                                  @Value("${monitor.notify.retry-backoff.ms:2000}") long retryBackoffMs) {
+        this.windowMs = Math.max(0, windowMs);
+        this.maxPending = Math.max(1, maxPending);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = Math.max(0, retryBackoffMs);
+        this.registry = registry;
+        this.changes = eventCounter(registry, "change");
+        this.errors = eventCounter(registry, "error");
+        this.coalesced = Counter.builder("monitor.notifications.coalesced")
+                .description("Events merged into an event of the same URL already waiting in the window")
+                .register(registry);
+        this.droppedPendingFull = droppedCounter(registry, "pending_full");
+        this.droppedQueueFull = droppedCounter(registry, "queue_full");
+        this.droppedSendFailed = droppedCounter(registry, "send_failed");
+        Gauge.builder("monitor.notifications.pending", pending, ConcurrentMap::size)
+                .description("Events waiting for the end of the current window")
+                .register(registry);
+
+        // Spring leaves this bean out of the list, but be explicit about not feeding ourselves
+        this.workers = sinks.stream()
+                .filter(sink -> !(sink instanceof NotificationDispatcher))
+                .map(sink -> new SinkWorker(sink, Math.max(1, queueCapacity)))
+                .toList();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.windowMs > 0) {
+            flusher.scheduleWithFixedDelay(this::flushSafely, this.windowMs, this.windowMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Notification dispatcher started: {} sink(s) {}, {} ms window.", workers.size(),
+                workers.stream().map(worker -> worker.name).toList(), this.windowMs);
+    }
+
+    private static Counter eventCounter(MeterRegistry registry, String type) {
+        return Counter.builder("monitor.notifications.events")
+                .description("Change and error events handed to the dispatcher")
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private static Counter droppedCounter(MeterRegistry registry, String reason) {
+        return Counter.builder("monitor.notifications.dropped")
+                .description("Events or digests that were never delivered")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+        notifyChange(url, null, List.of(), detectionTime, result);
+    }
+
+    @Override
+    public void notifyChange(String url, String subscription, List<String> recipients, LocalDateTime detectionTime,
+                             ComparisonResult result) {
+        changes.increment();
+        submit(Notification.change(url, subscription, recipients, detectionTime, result));
+    }
+
+    @Override
+    public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+        notifyError(url, List.of(), errorTime, errorMessage);
+    }
+
+    @Override
+    public void notifyError(String url, List<String> recipients, LocalDateTime errorTime, String errorMessage) {
+        errors.increment();
+        submit(Notification.error(url, recipients, errorTime, errorMessage, null));
+    }
+
+    @Override
+    public void notifyError(String url, LocalDateTime errorTime, FetchFailure failure) {
+        notifyError(url, List.of(), errorTime, failure);
+    }
+
+    @Override
+    public void notifyError(String url, List<String> recipients, LocalDateTime errorTime, FetchFailure failure) {
+        errors.increment();
+        submit(Notification.error(url, recipients, errorTime, "Fetch failed (" + failure.describe() + ")", failure));
+    }
+
+    /**
+     * Every recipient of every sink, i.e. what a subscription may name in its notify list.
+     */
+    @Override
+    public List<String> recipients() {
+        return workers.stream()
+                .flatMap(worker -> worker.sink.recipients().stream())
+                .filter(recipient -> !recipient.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    // Never blocks: the event is merged into the window, or dropped if the window is full
+    private void submit(Notification notification) {
+        PendingKey key = new PendingKey(notification.type(), notification.url(), notification.subscription(),
+                notification.recipients());
+        // Admit-or-merge in one step per key, rather than a size check followed by a separate merge
+        Notification merged = pending.compute(key, (k, current) -> current != null ? current.coalesce(notification)
+                : pending.size() < maxPending ? notification : null);
+        if (merged == null) {
+            droppedPendingFull.increment();
+            if (dropWarned.compareAndSet(false, true)) {
+                log.warn("Notification window is full ({} URLs), dropping new events until it is flushed.", maxPending);
+            }
+            return;
+        }
+        if (merged != notification) {
+            coalesced.increment();
+        }
+        if (windowMs == 0 && !flusher.isShutdown()) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled flush for good
+            log.error("Error flushing notifications: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ends the current window: hands its events to every sink's queue as one digest.
+     */
+    void flush() {
+        List<Notification> batch = new ArrayList<>();
+        for (PendingKey key : pending.keySet()) {
+            // Removing key by key keeps events that arrive meanwhile for the next window
+            Notification notification = pending.remove(key);
+            if (notification != null) {
+                batch.add(notification);
+            }
+        }
+        dropWarned.set(false);
+        if (batch.isEmpty()) {
+            return;
+        }
+        batch.sort(Comparator.comparing(Notification::firstTime));
+        List<Notification> digest = List.copyOf(batch);
+        for (SinkWorker worker : workers) {
+            worker.offer(digest);
+        }
+    }
+
+    /**
+     * Delivers what is still pending and waits briefly for the sinks to finish.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+        for (SinkWorker worker : workers) {
+            worker.stop();
+        }
+        for (SinkWorker worker : workers) {
+            worker.await(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Queue and delivery thread of one sink, so a slow or failing sink only delays itself.
+     */
+    private final class SinkWorker {
+
+        private final NotificationService sink;
+        private final String name;
+        private final BlockingQueue<List<Notification>> queue;
+        private final Thread thread;
+        private final Counter sent;
+        private final Counter retried;
+        private final Counter failed;
+        private final Timer deliveryDuration;
+
+        SinkWorker(NotificationService sink, int queueCapacity) {
+            this.sink = sink;
+            this.name = ClassUtils.getShortName(ClassUtils.getUserClass(sink));
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.sent = deliveryCounter("sent");
+            this.retried = deliveryCounter("retried");
+            this.failed = deliveryCounter("failed");
+            this.deliveryDuration = Timer.builder("monitor.notifications.delivery.duration")
+                    .description("Time to deliver one digest to one recipient, per attempt")
+                    .tag("sink", name)
+                    .register(registry);
+            this.thread = Thread.ofVirtual().name("notifier-" + name).start(this::run);
+        }
+
+        private Counter deliveryCounter(String outcome) {
+            return Counter.builder("monitor.notifications.deliveries")
+                    .description("Digest delivery attempts per sink and recipient")
+                    .tag("sink", name)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+
+        void offer(List<Notification> digest) {
+            if (!queue.offer(digest)) {
+                droppedQueueFull.increment(digest.size());
+                log.warn("Notification queue of {} is full, dropping a digest of {} event(s).", name, digest.size());
+            }
+        }
+
+        void stop() {
+            try {
+                // Behind the digests still queued; give up after a while if the sink is stuck
+                if (!queue.offer(STOP, 1, TimeUnit.SECONDS)) {
+                    thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void await(long timeoutMs) {
+            try {
+                if (!thread.join(Duration.ofMillis(timeoutMs))) {
+                    log.warn("Notification sink {} did not finish in time, {} digest(s) not delivered.", name, queue.size());
+                    thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    List<Notification> digest = queue.take();
+                    if (digest == STOP) {
+                        return;
+                    }
+                    for (String recipient : sink.recipients()) {
+                        // Entries of subscriptions that named other recipients are left out
+                        List<Notification> addressed = digest.stream().filter(entry -> entry.isFor(recipient)).toList();
+                        if (!addressed.isEmpty()) {
+                            deliver(recipient, addressed);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void deliver(String recipient, List<Notification> digest) throws InterruptedException {
+            String target = recipient.isEmpty() ? name : name + " " + recipient;
+            for (int attempt = 1; ; attempt++) {
+                long start = System.nanoTime();
+                try {
+                    sink.notifyDigest(recipient, digest);
+                    sent.increment();
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) {
+                        failed.increment();
+                        droppedSendFailed.increment(digest.size());
+                        log.error("Giving up on a digest of {} event(s) for {} after {} attempt(s): {}",
+                                digest.size(), target, attempt, e.getMessage());
+                        return;
+                    }
+                    retried.increment();
+                    log.warn("Sending a digest via {} failed (attempt {}/{}): {}",
+                            target, attempt, maxAttempts, e.getMessage());
+                } finally {
+                    deliveryDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                // Doubles per attempt; this is a virtual thread, so sleeping is cheap
+                Thread.sleep(retryBackoffMs << Math.min(attempt - 1, 20));
+            }
+        }
+    }
+}
@@ -1,21 +1,24 @@
 package com.WebsitePinger.Ping.service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Interface for sending notifications about website changes.
+ * The monitor talks to the {@link NotificationDispatcher}, which queues events and hands them to every
+ * other implementation (console, email, webhook) as digests, on its own threads.
  */
 public interface NotificationService {
 
     /**
      * Sends a notification about a detected change.
      *
-     * @param url             The URL where the change was detected.
-     * @param detectionTime   The time the change was detected.
-     * @param previousContent The content before the change (can be null on first detection).
-     * @param newContent      The content after the change.
+     * @param url           The URL where the change was detected.
+     * @param detectionTime The time the change was detected.
+     * @param result        The comparison result; {@link ComparisonResult#diff()} describes what changed.
+     *                      Raw contents are only set when monitor.content.retain-previous is enabled.
      */
-    void notifyChange(String url, LocalDateTime detectionTime, String previousContent, String newContent);
+    void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result);
 
     /**
      * Sends a notification about an error during monitoring.
@@ -25,4 +28,78 @@ public interface NotificationService {
      * @param errorMessage  A description of the error.
      */
     void notifyError(String url, LocalDateTime errorTime, String errorMessage);
+
+    /**
+     * Sends a notification about a URL that could no longer be fetched.
+     * Called once when the URL starts failing, not on every failed check.
+     *
+     * @param url       The URL that failed.
+     * @param errorTime The time the failure was detected.
+     * @param failure   What went wrong; {@link FetchFailure#kind()} tells timeouts, HTTP errors etc. apart.
+     */
+    default void notifyError(String url, LocalDateTime errorTime, FetchFailure failure) {
+        notifyError(url, errorTime, "Fetch failed (" + failure.describe() + ")");
+    }
+
+    /**
+     * Sends a change seen by one subscription of a page, to that subscription's recipients only.
+     * Sinks that don't route by recipient treat it like {@link #notifyChange(String, LocalDateTime, ComparisonResult)}.
+     *
+     * @param url           The page's URL.
+     * @param subscription  Id of the subscription, null for the page's default subscription.
+     * @param recipients    Recipients to notify; empty for all of them.
+     * @param detectionTime The time the change was detected.
+     * @param result        The subscription's comparison result.
+     */
+    default void notifyChange(String url, String subscription, List<String> recipients, LocalDateTime detectionTime,
+                              ComparisonResult result) {
+        notifyChange(url, detectionTime, result);
+    }
+
+    /**
+     * Sends an error of a page to some recipients only (the union of its subscriptions' recipients).
+     *
+     * @param recipients Recipients to notify; empty for all of them.
+     */
+    default void notifyError(String url, List<String> recipients, LocalDateTime errorTime, String errorMessage) {
+        notifyError(url, errorTime, errorMessage);
+    }
+
+    /**
+     * Sends a fetch failure of a page to some recipients only (the union of its subscriptions' recipients).
+     *
+     * @param recipients Recipients to notify; empty for all of them.
+     */
+    default void notifyError(String url, List<String> recipients, LocalDateTime errorTime, FetchFailure failure) {
+        notifyError(url, errorTime, failure);
+    }
+
+    /**
+     * Where this sink delivers to (mail addresses, webhook URLs, ...). The dispatcher sends one digest
+     * per recipient and retries each recipient on its own. Sinks without recipients return a single
+     * placeholder, which is passed back to {@link #notifyDigest}.
+     */
+    default List<String> recipients() {
+        return List.of("");
+    }
+
+    /**
+     * Delivers a digest of the events of one dispatch window; called by the dispatcher on its own thread.
+     * Throwing makes the dispatcher retry the digest for this recipient.
+     *
+     * @param recipient     One of {@link #recipients()}.
+     * @param notifications The window's events, one per URL and type, oldest first.
+     */
+    default void notifyDigest(String recipient, List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            if (notification.type() == Notification.Type.CHANGE) {
+                notifyChange(notification.url(), notification.subscription(), notification.recipients(),
+                        notification.lastTime(), notification.result());
+            } else if (notification.failure() != null) {
+                notifyError(notification.url(), notification.firstTime(), notification.failure());
+            } else {
+                notifyError(notification.url(), notification.firstTime(), notification.errorMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package com.WebsitePinger.Ping.service;
+
+/**
+ * Point-in-time view of a URL's adaptive polling state, as returned by the API.
+ *
+ * @param changesPerHour Estimated change rate (exponentially decayed), or null before the second check.
+ */
+public record PollingSnapshot(String url, long minIntervalMs, long maxIntervalMs, long currentIntervalMs,
+                              int unchangedChecks, Double changesPerHour) {
+}
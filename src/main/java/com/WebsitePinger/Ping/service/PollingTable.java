@@ -0,0 +1,289 @@
+package com.WebsitePinger.Ping.service;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Adaptive-polling state and check history of every monitored URL, stored column-wise: the URL with id
+ * {@code i} (see {@link KeyIndex}) has its interval in {@code currentIntervalMs[i]}, its failure streak in
+ * {@code failedChecks[i]}, and so on. Only the settings and the last error message are objects, and those
+ * are shared or rare; a URL costs about 100 bytes of primitives plus one index slot, where a state object
+ * per URL cost an object header and a skip-list node on top of the same fields.
+ * <p>
+ * A check updates several columns of one URL together, so all methods are synchronized on the table;
+ * the critical sections are short and, apart from the snapshots handed to the status API, allocation-free.
+ * Methods taking the URL of a page that is not tracked change nothing.
+ */
+final class PollingTable {
+
+    private final KeyIndex index;
+    private MonitorSettings[] settings;
+    private long[] currentIntervalMs;
+    private int[] unchangedChecks;
+    // Exponentially decayed number of observed changes and observed time, for the change-rate estimate
+    private double[] decayedChanges;
+    private double[] decayedTimeMs;
+    private long[] lastCheckTime;
+    private int[] failedChecks;
+    // Reported by the status API; times are epoch millis, 0 = never
+    private long[] lastCompletedTime;
+    private long[] lastChangeTime;
+    private long[] lastLatencyMs;
+    private long[] checks;
+    private long[] changes;
+    private long[] errors;
+    private String[] lastError;
+    // Set while a check is queued or running
+    private boolean[] inFlight;
+
+    PollingTable(int expectedUrls) {
+        index = new KeyIndex(expectedUrls);
+        int capacity = Math.max(8, expectedUrls);
+        settings = new MonitorSettings[capacity];
+        currentIntervalMs = new long[capacity];
+        unchangedChecks = new int[capacity];
+        decayedChanges = new double[capacity];
+        decayedTimeMs = new double[capacity];
+        lastCheckTime = new long[capacity];
+        failedChecks = new int[capacity];
+        lastCompletedTime = new long[capacity];
+        lastChangeTime = new long[capacity];
+        lastLatencyMs = new long[capacity];
+        checks = new long[capacity];
+        changes = new long[capacity];
+        errors = new long[capacity];
+        lastError = new String[capacity];
+        inFlight = new boolean[capacity];
+    }
+
+    /**
+     * Starts tracking the URL with fresh state, replacing any state it had.
+     * @return true if the URL was not tracked before.
+     */
+    synchronized boolean put(String url, MonitorSettings urlSettings) {
+        boolean added = index.find(url) < 0;
+        int id = index.intern(url);
+        ensureCapacity(id);
+        // Ids are reused, so every column is reset
+        settings[id] = urlSettings;
+        currentIntervalMs[id] = urlSettings.minIntervalMs();
+        unchangedChecks[id] = 0;
+        decayedChanges[id] = 0;
+        decayedTimeMs[id] = 0;
+        lastCheckTime[id] = 0;
+        failedChecks[id] = 0;
+        lastCompletedTime[id] = 0;
+        lastChangeTime[id] = 0;
+        lastLatencyMs[id] = -1;
+        checks[id] = 0;
+        changes[id] = 0;
+        errors[id] = 0;
+        lastError[id] = null;
+        inFlight[id] = false;
+        return added;
+    }
+
+    /**
+     * Applies new polling settings to a tracked URL, keeping its history, its in-flight check and, within
+     * the new bounds, its adapted interval.
+     * @return The URL's interval from now on, or -1 if it is not tracked.
+     */
+    synchronized long updateSettings(String url, MonitorSettings urlSettings) {
+        int id = index.find(url);
+        if (id < 0) {
+            return -1;
+        }
+        settings[id] = urlSettings;
+        currentIntervalMs[id] = Math.max(urlSettings.minIntervalMs(), Math.min(urlSettings.maxIntervalMs(), currentIntervalMs[id]));
+        return currentIntervalMs[id];
+    }
+
+    /**
+     * @return true if the URL was tracked.
+     */
+    synchronized boolean remove(String url) {
+        int id = index.release(url);
+        if (id < 0) {
+            return false;
+        }
+        // Drop the only object references; the primitives are overwritten when the id is reused
+        settings[id] = null;
+        lastError[id] = null;
+        return true;
+    }
+
+    synchronized boolean contains(String url) {
+        return index.find(url) >= 0;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The URL's polling settings, or null if it is not tracked.
+     */
+    synchronized MonitorSettings settings(String url) {
+        int id = index.find(url);
+        return id < 0 ? null : settings[id];
+    }
+
+    /**
+     * @return The URL's current check interval, or -1 if it is not tracked.
+     */
+    synchronized long currentIntervalMs(String url) {
+        int id = index.find(url);
+        return id < 0 ? -1 : currentIntervalMs[id];
+    }
+
+    /**
+     * Records a completed check and returns the interval to use from now on, or -1 if the URL is not tracked.
+     */
+    synchronized long record(String url, boolean changed, long now, double backoffMultiplier, int backoffAfter,
+                             double halfLifeMs) {
+        int id = index.find(url);
+        if (id < 0) {
+            return -1;
+        }
+        long last = lastCheckTime[id];
+        if (last > 0 && now > last) {
+            long elapsed = now - last;
+            double decay = Math.pow(0.5, elapsed / halfLifeMs);
+            decayedChanges[id] *= decay;
+            decayedTimeMs[id] = decayedTimeMs[id] * decay + elapsed;
+        }
+        lastCheckTime[id] = now;
+
+        if (changed) {
+            decayedChanges[id] += 1;
+            unchangedChecks[id] = 0;
+            // Just changed: snap back to the fastest allowed rate
+            currentIntervalMs[id] = settings[id].minIntervalMs();
+        } else if (++unchangedChecks[id] >= backoffAfter) {
+            currentIntervalMs[id] = Math.min(settings[id].maxIntervalMs(),
+                    (long) Math.ceil(currentIntervalMs[id] * backoffMultiplier));
+        }
+        return currentIntervalMs[id];
+    }
+
+    /**
+     * Marks a check of the URL as queued.
+     * @return false if one already is queued or running, or the URL is not tracked.
+     */
+    synchronized boolean tryStartCheck(String url) {
+        int id = index.find(url);
+        if (id < 0 || inFlight[id]) {
+            return false;
+        }
+        inFlight[id] = true;
+        return true;
+    }
+
+    synchronized void checkDone(String url) {
+        int id = index.find(url);
+        if (id >= 0) {
+            inFlight[id] = false;
+        }
+    }
+
+    /**
+     * Records a failed check.
+     * @param now       Completion time, epoch millis.
+     * @param latencyMs Time spent fetching, including retries.
+     * @param error     What went wrong.
+     * @return The number of checks in a row that have now failed; 1 if the URL is not tracked.
+     */
+    synchronized int recordFailure(String url, long now, long latencyMs, String error) {
+        int id = index.find(url);
+        if (id < 0) {
+            return 1;
+        }
+        completed(id, now, latencyMs);
+        errors[id]++;
+        lastError[id] = error;
+        return ++failedChecks[id];
+    }
+
+    /**
+     * Records a check whose fetch succeeded.
+     * @param now       Completion time, epoch millis.
+     * @param latencyMs Time spent fetching, including retries.
+     * @param changed   Whether a change was detected.
+     * @return The number of failed checks in a row before this one; 0 if the URL is not tracked.
+     */
+    synchronized int recordSuccess(String url, long now, long latencyMs, boolean changed) {
+        int id = index.find(url);
+        if (id < 0) {
+            return 0;
+        }
+        completed(id, now, latencyMs);
+        if (changed) {
+            changes[id]++;
+            lastChangeTime[id] = now;
+        }
+        int before = failedChecks[id];
+        failedChecks[id] = 0;
+        return before;
+    }
+
+    private void completed(int id, long now, long latencyMs) {
+        checks[id]++;
+        lastCompletedTime[id] = now;
+        lastLatencyMs[id] = latencyMs;
+    }
+
+    /**
+     * Captures the URL's polling state for reporting.
+     * @return The snapshot, or null if the URL is not tracked.
+     */
+    synchronized PollingSnapshot snapshot(String url) {
+        int id = index.find(url);
+        if (id < 0) {
+            return null;
+        }
+        // Rate is only meaningful once some time has been observed
+        Double changesPerHour = decayedTimeMs[id] > 0 ? decayedChanges[id] / decayedTimeMs[id] * 3_600_000d : null;
+        return new PollingSnapshot(url, settings[id].minIntervalMs(), settings[id].maxIntervalMs(),
+                currentIntervalMs[id], unchangedChecks[id], changesPerHour);
+    }
+
+    /**
+     * Captures the URL's check history for the status API.
+     * @return The status, or null if the URL is not tracked.
+     */
+    synchronized MonitorStatus status(String url) {
+        int id = index.find(url);
+        if (id < 0) {
+            return null;
+        }
+        MonitorStatus.State state = checks[id] == 0 ? MonitorStatus.State.PENDING
+                : failedChecks[id] > 0 ? MonitorStatus.State.FAILING : MonitorStatus.State.OK;
+        return new MonitorStatus(url, state,
+                lastCompletedTime[id] > 0 ? Instant.ofEpochMilli(lastCompletedTime[id]) : null,
+                lastChangeTime[id] > 0 ? Instant.ofEpochMilli(lastChangeTime[id]) : null,
+                lastLatencyMs[id] >= 0 ? lastLatencyMs[id] : null,
+                checks[id], changes[id], errors[id], failedChecks[id], lastError[id], currentIntervalMs[id]);
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < settings.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, settings.length * 2);
+        settings = Arrays.copyOf(settings, capacity);
+        currentIntervalMs = Arrays.copyOf(currentIntervalMs, capacity);
+        unchangedChecks = Arrays.copyOf(unchangedChecks, capacity);
+        decayedChanges = Arrays.copyOf(decayedChanges, capacity);
+        decayedTimeMs = Arrays.copyOf(decayedTimeMs, capacity);
+        lastCheckTime = Arrays.copyOf(lastCheckTime, capacity);
+        failedChecks = Arrays.copyOf(failedChecks, capacity);
+        lastCompletedTime = Arrays.copyOf(lastCompletedTime, capacity);
+        lastChangeTime = Arrays.copyOf(lastChangeTime, capacity);
+        lastLatencyMs = Arrays.copyOf(lastLatencyMs, capacity);
+        checks = Arrays.copyOf(checks, capacity);
+        changes = Arrays.copyOf(changes, capacity);
+        errors = Arrays.copyOf(errors, capacity);
+        lastError = Arrays.copyOf(lastError, capacity);
+        inFlight = Arrays.copyOf(inFlight, capacity);
+    }
+}
@@ -1,108 +1,957 @@
 package com.WebsitePinger.Ping.service;
 
+import com.WebsitePinger.Ping.cluster.ShardRouter;
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.store.SnapshotStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set; // Added import
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Component
 public class ScheduledMonitorTask {
 
     private static final Logger log = LoggerFactory.getLogger(ScheduledMonitorTask.class);
+    // Threads of the virtual-thread engine's checks
+    private static final ThreadFactory CHECK_THREADS = Thread.ofVirtual().name("check-", 0).factory();
+    // The default subscription first, then by id
+    private static final Comparator<Subscription> SUBSCRIPTION_ORDER =
+            Comparator.comparing((Subscription subscription) -> !subscription.isDefault()).thenComparing(Subscription::id);
 
     private final WebsiteFetcher websiteFetcher;
+    // Set with monitor.engine=virtual-threads: checks then run as blocking tasks on virtual threads
+    // instead of through the reactive pipeline
+    private final BlockingWebsiteFetcher blockingFetcher;
     private final ContentComparator contentComparator;
     private final NotificationService notificationService;
 
-    // Using a map to potentially monitor multiple URLs in the future
-    // Key: URL, Value: Boolean (indicates if monitoring is active)
-    private final ConcurrentMap<String, Boolean> monitoredUrls = new ConcurrentHashMap<>();
+    private final AdaptivePollingPolicy pollingPolicy;
+    private final HostRateLimiter rateLimiter;
+    private final SnapshotStore snapshotStore;
+    // Past versions of each page, recorded on the first check and on every change
+    private final PageHistoryStore historyStore;
+    // Which of the monitored URLs this instance checks when several instances share them
+    private final ShardRouter shardRouter;
+
+    // Per canonical URL: the page's polling settings (serving all of its subscriptions), adaptive polling state,
+    // check history and in-flight flag, in primitive columns
+    private final PollingTable pollingStates = new PollingTable(0);
+    // The monitored URLs in URL order, so the status API can page through them without copying or sorting.
+    // Holds only the keys; a URL is added after its row in pollingStates and removed before it
+    private final ConcurrentSkipListSet<String> monitoredUrls = new ConcurrentSkipListSet<>();
+    // Key: canonical URL, Value: the page's subscriptions, an immutable list replaced on every change.
+    // A page is fetched once per check and the result fanned out to each of them
+    private final ConcurrentMap<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    // Key: subscription key, Value: its comparisons in a row that failed (e.g. a JSON subscription of a page
+    // that served HTML). Counted per subscription, so one broken filter doesn't fail the page's other subscriptions
+    private final ConcurrentMap<String, Integer> comparisonFailures = new ConcurrentHashMap<>();
+    // A check of a page that is already being checked (e.g. an on-demand check during a scheduled one)
+    // joins the one in flight: same fetch, same comparison, one set of notifications. The value tells
+    // whether the host throttled the check
+    private final SingleFlight<String, Boolean> checks;
+    // Next due time per URL; only the URLs that are due are checked on each scheduler tick
+    private final TimingWheel schedule;
+    // Receives the URLs due on a tick; reused, since ticks never overlap
+    private final List<String> dueUrls = new ArrayList<>();
+    // Due checks from every tick flow through one pipeline, so maxConcurrency is a global cap
+    // and checks beyond it wait in this queue instead of piling onto the event loop
+    private final Sinks.Many<DueCheck> dueChecks = Sinks.many().unicast().onBackpressureBuffer();
+    // Checks the host answered with 429/503, queued once more behind the host's pause. Emitted from the
+    // cleaner threads, so emission is synchronized on the sink
+    private final Sinks.Many<DueCheck> requeuedChecks = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable checkPipeline;
+    // Virtual-thread engine: global cap on running checks, and the threads that own each tick's checks
+    private final Semaphore checkSlots;
+    private final ExecutorService cycles;
+    private final double jitter;
+
+    private final MonitorMetrics metrics;
+    // CPU-bound cleaning/comparison runs here rather than on the netty I/O threads
+    private final Scheduler cleanerScheduler;
 
     @Autowired
-    public ScheduledMonitorTask(WebsiteFetcher websiteFetcher, ContentComparator contentComparator, NotificationService notificationService) {
+    public ScheduledMonitorTask(WebsiteFetcher websiteFetcher, @Nullable BlockingWebsiteFetcher blockingFetcher,
+                                ContentComparator contentComparator, NotificationService notificationService,
+                                AdaptivePollingPolicy pollingPolicy, HostRateLimiter rateLimiter,
+                                SnapshotStore snapshotStore, PageHistoryStore historyStore, ShardRouter shardRouter,
+                                MonitorMetrics metrics,
+                                @Qualifier("cleanerScheduler") Scheduler cleanerScheduler,
+                                @Value("${monitor.check.max-concurrency:64}") int maxConcurrency,
+                                @Value("${monitor.scheduler.tick.ms:100}") long tickMs,
+                                @Value("${monitor.scheduler.wheel-size:512}") int wheelSize,
+                                @Value("${monitor.scheduler.jitter:0.1}") double jitter) {
         this.websiteFetcher = websiteFetcher;
+        this.blockingFetcher = blockingFetcher;
         this.contentComparator = contentComparator;
         this.notificationService = notificationService;
-        // Set the default URL to monitor based on user request
-        startMonitoring("https://eresultsglobal.contineo.in/"); // User specified URL
+        this.pollingPolicy = pollingPolicy;
+        this.rateLimiter = rateLimiter;
+        this.snapshotStore = snapshotStore;
+        this.historyStore = historyStore;
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.cleanerScheduler = cleanerScheduler;
+        this.jitter = jitter;
+        this.schedule = new TimingWheel(tickMs, wheelSize, System.currentTimeMillis());
+        this.checks = new SingleFlight<>(metrics.coalescedChecks()::increment);
+        Gauge.builder("monitor.subscriptions", subscriptionCount, AtomicInteger::get)
+                .description("Subscriptions across all monitored pages")
+                .register(metrics.registry());
+        if (blockingFetcher != null) {
+            this.checkPipeline = null;
+            this.checkSlots = new Semaphore(Math.max(1, maxConcurrency));
+            this.cycles = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("check-cycle-", 0).factory());
+            log.info("Check engine: virtual threads, at most {} concurrent checks.", maxConcurrency);
+        } else {
+            this.checkSlots = null;
+            this.cycles = null;
+            this.checkPipeline = Flux.merge(dueChecks.asFlux(), requeuedChecks.asFlux())
+                // Checks wait for their host's rate limit before taking a concurrency slot, so a
+                // throttled host queues up on its own instead of holding slots other hosts could use
+                .flatMap(due -> rateLimiter.permit(due.url()).thenReturn(due)
+                        // An error must never reach the pipeline itself: that would end checking for good
+                        .onErrorResume(error -> {
+                            log.error("Could not wait for the rate limit of URL [{}]: {}", due.url(), error.getMessage());
+                            complete(due.url(), due.batch());
+                            return Mono.empty();
+                        }), Integer.MAX_VALUE)
+                .flatMap(this::run, maxConcurrency)
+                .subscribe(null, error -> log.error("Check pipeline failed: {}", error.getMessage()));
+        }
+        shardRouter.addRebalanceListener(this::rebalanced);
+        if (snapshotStore.isFresh()) {
+            // Set the default URL to monitor based on user request
+            startMonitoring("https://eresultsglobal.contineo.in/"); // User specified URL
+        } else {
+            // Resume the subscriptions persisted before the last shutdown; their keys were canonicalized when they were added
+            snapshotStore.loadMonitors().forEach((key, settings) -> register(Subscription.fromKey(key, settings)));
+            log.info("Restored {} monitored URLs ({} subscriptions) from the snapshot store.",
+                    pollingStates.size(), subscriptionCount.get());
+        }
     }
 
-    // Method to add a URL to monitor (will be used by UI/API later)
+    // Method to add a URL to monitor with the default check intervals
     public void startMonitoring(String url) {
-        log.info("Adding URL to monitor: {}", url);
-        monitoredUrls.put(url, true);
-        // Optionally perform an initial fetch immediately?
+        startMonitoring(url, pollingPolicy.defaultSettings());
+    }
+
+    // Method to add a URL to monitor with its own settings; re-registering replaces the settings.
+    // These are the settings of the URL's default subscription; other subscriptions are kept
+    public void startMonitoring(String url, MonitorSettings settings) {
+        subscribe(Subscription.of(UrlCanonicalizer.canonicalize(url), settings));
+    }
+
+    // Bulk version for imports: the whole batch is persisted in one write
+    public void startMonitoring(Map<String, MonitorSettings> monitors) {
+        List<Subscription> batch = new ArrayList<>(monitors.size());
+        monitors.forEach((url, settings) -> batch.add(Subscription.of(UrlCanonicalizer.canonicalize(url), settings)));
+        subscribe(batch);
+    }
+
+    /**
+     * Adds a subscription to a page, or replaces the page's subscription with the same id.
+     * The page is polled as often as its most demanding subscription asks for.
+     * @throws IllegalArgumentException If the URL is not a valid http(s) URL.
+     */
+    public void subscribe(Subscription subscription) {
+        Subscription canonical = canonical(subscription);
+        MonitorSettings settings = canonical.settings();
+        if (canonical.isDefault()) {
+            log.info("Adding URL to monitor: {} (interval {}-{} ms)", canonical.url(), settings.minIntervalMs(), settings.maxIntervalMs());
+        } else {
+            log.info("Adding subscription [{}] to URL: {} (interval {}-{} ms)", canonical.id(), canonical.url(),
+                    settings.minIntervalMs(), settings.maxIntervalMs());
+        }
+        resetBaseline(canonical);
+        snapshotStore.saveMonitor(canonical.key(), settings);
+        register(canonical);
     }
 
-    // Method to stop monitoring a URL
+    /**
+     * Bulk version of {@link #subscribe(Subscription)}: the whole batch is persisted in one write.
+     */
+    public void subscribe(Collection<Subscription> batch) {
+        Map<String, Subscription> canonical = new LinkedHashMap<>();
+        for (Subscription subscription : batch) {
+            Subscription page = canonical(subscription);
+            canonical.put(page.key(), page);
+        }
+        Map<String, MonitorSettings> records = new LinkedHashMap<>();
+        canonical.forEach((key, subscription) -> {
+            resetBaseline(subscription);
+            records.put(key, subscription.settings());
+        });
+        snapshotStore.saveMonitors(records);
+        canonical.values().forEach(this::register);
+        log.info("Added {} subscriptions.", canonical.size());
+    }
+
+    private static Subscription canonical(Subscription subscription) {
+        String url = UrlCanonicalizer.canonicalize(subscription.url());
+        return url.equals(subscription.url()) ? subscription : new Subscription(subscription.id(), url, subscription.settings());
+    }
+
+    private void resetBaseline(Subscription subscription) {
+        List<Subscription> current = subscriptions.get(subscription.url());
+        if (current == null) {
+            return;
+        }
+        Subscription previous = find(current, subscription.id());
+        if (previous != null && !previous.settings().contentFilter().equals(subscription.settings().contentFilter())) {
+            // A different region is compared from now on: the old baseline no longer applies
+            contentComparator.clearState(subscription.key());
+            websiteFetcher.clearValidators(subscription.url());
+        } else if (previous == null) {
+            // A new subscriber of a page that is already monitored: the next fetch must not be answered
+            // with 304, or the subscriber would have no baseline until the page changes
+            websiteFetcher.clearValidators(subscription.url());
+        }
+    }
+
+    private static Subscription find(List<Subscription> pageSubscriptions, String id) {
+        for (Subscription subscription : pageSubscriptions) {
+            if (subscription.id().equals(id)) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    private void register(Subscription subscription) {
+        String url = subscription.url();
+        subscriptions.compute(url, (page, current) -> {
+            List<Subscription> updated = new ArrayList<>(current != null ? current : List.of());
+            if (!updated.removeIf(existing -> existing.id().equals(subscription.id()))) {
+                subscriptionCount.incrementAndGet();
+            }
+            updated.add(subscription);
+            updated.sort(SUBSCRIPTION_ORDER);
+            List<Subscription> result = List.copyOf(updated);
+            track(page, result);
+            return result;
+        });
+    }
+
+    // Puts the page on the wheel with settings that serve every subscription, or takes it off once none are left.
+    // Called under the page's entry in subscriptions, so changes to one page are serialized
+    private void track(String url, List<Subscription> pageSubscriptions) {
+        if (pageSubscriptions.isEmpty()) {
+            monitoredUrls.remove(url);
+            pollingStates.remove(url);
+            schedule.cancel(url);
+            return;
+        }
+        MonitorSettings settings = pageSettings(pageSubscriptions);
+        MonitorSettings previous = pollingStates.settings(url);
+        if (settings.equals(previous)) {
+            // Polling needs unchanged (e.g. a subscriber with a slower interval joined): keep the page's state
+            return;
+        }
+        if (previous != null) {
+            // New polling needs (e.g. a subscriber with a shorter interval or a bigger body cap joined): the page keeps
+            // its history and any check in flight, and only moves its next check if the interval had to shrink
+            long before = pollingStates.currentIntervalMs(url);
+            long after = pollingStates.updateSettings(url, settings);
+            if (after >= 0 && after < before) {
+                schedule.schedule(url, System.currentTimeMillis() + jittered(after));
+            }
+            return;
+        }
+        pollingStates.put(url, settings);
+        monitoredUrls.add(url);
+        // Start at a random offset within the first interval so URLs registered together don't burst
+        long firstDelay = ThreadLocalRandom.current().nextLong(settings.minIntervalMs() + 1);
+        schedule.schedule(url, System.currentTimeMillis() + firstDelay);
+    }
+
+    // The page is polled as often as its most demanding subscription asks for, with a body cap that fits all of them.
+    // Filters and recipients stay per subscription
+    private MonitorSettings pageSettings(List<Subscription> pageSubscriptions) {
+        long minIntervalMs = Long.MAX_VALUE;
+        long maxIntervalMs = Long.MAX_VALUE;
+        Long maxBodyBytes = null;
+        boolean defaultBodyCap = false;
+        for (Subscription subscription : pageSubscriptions) {
+            MonitorSettings settings = subscription.settings();
+            minIntervalMs = Math.min(minIntervalMs, settings.minIntervalMs());
+            maxIntervalMs = Math.min(maxIntervalMs, settings.maxIntervalMs());
+            if (settings.maxBodyBytes() == null) {
+                defaultBodyCap = true;
+            } else {
+                maxBodyBytes = maxBodyBytes == null ? settings.maxBodyBytes() : Math.max(maxBodyBytes, settings.maxBodyBytes());
+            }
+        }
+        if (maxBodyBytes != null && defaultBodyCap) {
+            maxBodyBytes = Math.max(maxBodyBytes, websiteFetcher.defaultMaxBodyBytes());
+        }
+        return new MonitorSettings(minIntervalMs, Math.max(minIntervalMs, maxIntervalMs), maxBodyBytes, ContentFilter.NONE);
+    }
+
+    // Method to stop monitoring a URL, with all of its subscriptions
     public void stopMonitoring(String url) {
-        log.info("Stopping monitoring for URL: {}", url);
-        monitoredUrls.remove(url);
-        contentComparator.clearState(url); // Clear stored state
+        String page = UrlCanonicalizer.canonicalize(url);
+        log.info("Stopping monitoring for URL: {}", page);
+        List<Subscription> removed = new ArrayList<>();
+        subscriptions.compute(page, (key, current) -> {
+            if (current != null) {
+                removed.addAll(current);
+            }
+            track(page, List.of());
+            return null;
+        });
+        subscriptionCount.addAndGet(-removed.size());
+        removed.forEach(this::forget);
+        websiteFetcher.clearValidators(page); // Next fetch must be unconditional to rebuild the baseline
+        historyStore.remove(page);
+    }
+
+    /**
+     * Removes one subscription of a page; the page stops being monitored with its last subscription.
+     * @return false if the page has no subscription with that id.
+     */
+    public boolean unsubscribe(String url, String id) {
+        String page = UrlCanonicalizer.canonicalize(url);
+        Subscription[] removed = new Subscription[1];
+        subscriptions.computeIfPresent(page, (key, current) -> {
+            removed[0] = find(current, id);
+            if (removed[0] == null) {
+                return current;
+            }
+            List<Subscription> remaining = new ArrayList<>(current);
+            remaining.remove(removed[0]);
+            track(page, remaining);
+            return remaining.isEmpty() ? null : List.copyOf(remaining);
+        });
+        if (removed[0] == null) {
+            return false;
+        }
+        log.info("Removed subscription [{}] of URL: {}", id, page);
+        subscriptionCount.decrementAndGet();
+        forget(removed[0]);
+        if (!subscriptions.containsKey(page)) {
+            websiteFetcher.clearValidators(page);
+            historyStore.remove(page);
+        }
+        return true;
     }
 
-    // Fixed rate scheduler: runs every 2000 milliseconds (2 seconds)
-    // Note: Using fixedRate means the next task starts 2 seconds after the *start*
-    // of the previous one. If tasks take longer than 2s, they might overlap.
-    // Consider fixedDelay if you want the interval *between* the end of one task and the start of the next.
+    private void forget(Subscription subscription) {
+        contentComparator.clearState(subscription.key()); // Clear stored state
+        comparisonFailures.remove(subscription.key());
+        snapshotStore.removeMonitor(subscription.key());
+    }
+
+    // Scheduler tick: advances the timing wheel and checks the URLs that have come due.
+    // Each URL is rescheduled when dispatched, so its checks start every interval (+/- jitter)
+    // regardless of how long they take; a URL is never checked twice concurrently.
     // Use fixedRateString to allow configuration via application.properties
-    @Scheduled(fixedRateString = "${monitor.check.interval.ms:2000}") // Default to 2000ms if property not found
+    @Scheduled(fixedRateString = "${monitor.scheduler.tick.ms:100}") // Default to 100ms if property not found
     public void checkWebsites() {
-        if (monitoredUrls.isEmpty()) {
-            // log.trace("No URLs currently being monitored."); // Can be noisy
+        long now = System.currentTimeMillis();
+        List<String> due = dueUrls;
+        due.clear();
+        if (schedule.advance(now, due) == 0) {
+            return;
+        }
+        // A URL whose previous check is still queued or running is skipped instead of overlapping.
+        // URLs owned by another instance stay on the wheel, so they are picked up as soon as a rebalance hands them over
+        due.removeIf(url -> !reschedule(url, now) || !shardRouter.owns(url) || !tryAcquire(url));
+        if (due.isEmpty()) {
             return;
         }
 
-        log.debug("Running scheduled website check for {} URLs.", monitoredUrls.size());
+        log.debug("Running scheduled website check for {} of {} URLs.", due.size(), pollingStates.size());
 
-        monitoredUrls.keySet().forEach(url -> {
-            log.debug("Checking URL: {}", url);
-            websiteFetcher.fetchContent(url)
-                .subscribe(newContent -> { // Process the fetched content asynchronously
-                    // newContent can be null if fetcher failed and returned Mono.empty()
-                    ComparisonResult result = contentComparator.compareAndStore(url, newContent);
-
-                    // Log the outcome of the check for this cycle
-                    if (result.changed()) {
-                        // Notification service already logs the details for changes
-                        notificationService.notifyChange(url, LocalDateTime.now(), result.previousContent(), result.newContent());
-                        log.info("Check completed for URL [{}]: Change DETECTED.", url); // Add summary log
-                    } else if (newContent == null && result.previousContent() == null) {
-                         // Handle case where fetch failed on the very first check
-                        log.warn("Check completed for URL [{}]: Fetch failed (null content) on initial check.", url);
-                        // Optionally notify error
-                        // notificationService.notifyError(url, LocalDateTime.now(), "Initial fetch failed (null content).");
-                    } else if (newContent == null) {
-                        // Handle case where fetch failed but we have previous content (no change reported by comparator)
-                        log.warn("Check completed for URL [{}]: Fetch failed (null content), no change detected from last known state.", url);
-                         // Optionally notify error
-                        // notificationService.notifyError(url, LocalDateTime.now(), "Fetch failed (null content).");
+        TickBatch batch = new TickBatch(Timer.start(metrics.registry()), due.size());
+        if (blockingFetcher != null) {
+            // The tick's checks get a thread of their own, so this scheduler thread never blocks
+            List<String> cycle = List.copyOf(due);
+            cycles.execute(() -> runCycle(cycle, now, url -> complete(url, batch)));
+            return;
+        }
+        for (String url : due) {
+            // Only this scheduler thread emits, so emission is always serialized
+            Sinks.EmitResult emitResult = dueChecks.tryEmitNext(new DueCheck(url, now, batch, false));
+            if (emitResult.isFailure()) {
+                log.warn("Could not queue check for URL [{}]: {}", url, emitResult);
+                complete(url, batch);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (blockingFetcher != null) {
+            // Interrupting a cycle thread cancels the checks in its scope
+            cycles.shutdownNow();
+            return;
+        }
+        dueChecks.tryEmitComplete();
+        synchronized (requeuedChecks) {
+            requeuedChecks.tryEmitComplete();
+        }
+        checkPipeline.dispose();
+    }
+
+    // A check dispatched on a tick, waiting for a slot in the pipeline. A re-queued check belongs to no batch
+    private record DueCheck(String url, long dispatchTime, @Nullable TickBatch batch, boolean requeued) {
+    }
+
+    // Tracks the checks dispatched on one tick, to time the whole batch
+    private static final class TickBatch {
+        private final Timer.Sample sample;
+        private final AtomicInteger remaining;
+
+        private TickBatch(Timer.Sample sample, int size) {
+            this.sample = sample;
+            this.remaining = new AtomicInteger(size);
+        }
+    }
+
+    // Runs a check from the pipeline. A check the host throttled is queued once more behind the host's pause
+    // and stays in flight meanwhile, so the wheel doesn't dispatch the URL again; its batch is done either way
+    private Mono<Void> run(DueCheck due) {
+        boolean[] requeued = new boolean[1];
+        return check(due.url(), due.dispatchTime())
+                .doOnNext(throttled -> requeued[0] = throttled && requeue(due))
+                // Failures are handled inside the check; anything that still escapes only ends this check
+                .onErrorResume(error -> {
+                    log.error("Check of URL [{}] failed: {}", due.url(), error.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    if (requeued[0]) {
+                        batchDone(due.batch());
                     } else {
-                        // This means result.changed() is false and newContent is not null
-                        log.info("Check completed for URL [{}]: No change detected.", url);
+                        complete(due.url(), due.batch());
+                    }
+                })
+                .then();
+    }
+
+    private boolean requeue(DueCheck due) {
+        if (due.requeued()) {
+            return false;
+        }
+        log.debug("URL [{}] was throttled, checking it again once its host allows.", due.url());
+        synchronized (requeuedChecks) {
+            return requeuedChecks.tryEmitNext(new DueCheck(due.url(), System.currentTimeMillis(), null, true)).isSuccess();
+        }
+    }
+
+    private void complete(String url, @Nullable TickBatch batch) {
+        pollingStates.checkDone(url);
+        batchDone(batch);
+    }
+
+    private void batchDone(@Nullable TickBatch batch) {
+        if (batch != null && batch.remaining.decrementAndGet() == 0) {
+            batch.sample.stop(metrics.cycleTimer());
+        }
+    }
+
+    // Puts a due URL back on the wheel for its next check; false if it is no longer monitored
+    private boolean reschedule(String url, long now) {
+        long interval = pollingStates.currentIntervalMs(url);
+        if (interval < 0) {
+            return false;
+        }
+        schedule.schedule(url, now + jittered(interval));
+        if (!pollingStates.contains(url)) {
+            // Lost a race with stopMonitoring
+            schedule.cancel(url);
+            return false;
+        }
+        return true;
+    }
+
+    private long jittered(long interval) {
+        long spread = (long) (interval * jitter);
+        long delay = spread > 0 ? interval - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1) : interval;
+        return Math.max(1, delay);
+    }
+
+    // Feeds a completed check into the adaptive policy and moves the next check if the interval changed
+    private void adaptInterval(String url, boolean changed, long dispatchTime) {
+        long before = pollingStates.currentIntervalMs(url);
+        long after = pollingPolicy.onCheck(url, pollingStates, changed, System.currentTimeMillis());
+        if (after != before && after >= 0) {
+            // Should the URL be removed meanwhile, the deadline expires unchecked: reschedule drops it
+            schedule.schedule(url, dispatchTime + jittered(after));
+        }
+    }
+
+    // Drops the baseline of URLs handed to another instance: if one comes back later, its first check
+    // re-baselines instead of reporting changes the other instance has already notified about
+    private void rebalanced(ShardRouter.Assignment previous, ShardRouter.Assignment current) {
+        int acquired = 0;
+        int released = 0;
+        for (String url : monitoredUrls) {
+            boolean before = previous.owns(url);
+            boolean after = current.owns(url);
+            if (before && !after) {
+                subscriptions.getOrDefault(url, List.of()).forEach(subscription -> contentComparator.clearState(subscription.key()));
+                websiteFetcher.clearValidators(url);
+                released++;
+            } else if (!before && after) {
+                acquired++;
+            }
+        }
+        log.info("Cluster rebalanced across {} node(s): took over {} URLs, handed off {}.",
+                current.nodes().size(), acquired, released);
+    }
+
+    // Marks the URL as in flight, or counts a skipped check if it already is
+    private boolean tryAcquire(String url) {
+        if (pollingStates.tryStartCheck(url)) {
+            return true;
+        }
+        if (!pollingStates.contains(url)) {
+            return false;
+        }
+        log.debug("Skipping URL [{}]: previous check still in flight.", url);
+        metrics.skippedChecks().increment();
+        return false;
+    }
+
+    // Package-private so the cycle benchmark can drive checks without waiting for the wheel
+    Mono<Void> checkUrl(String url, long dispatchTime) {
+        return check(url, dispatchTime).then();
+    }
+
+    // Emits whether the host throttled the check
+    private Mono<Boolean> check(String url, long dispatchTime) {
+        return checks.execute(url, () -> fetchAndCompare(url, dispatchTime));
+    }
+
+    private Mono<Boolean> fetchAndCompare(String url, long dispatchTime) {
+        log.debug("Checking URL: {}", url);
+        MonitorSettings settings = settings(url);
+        Duration retryBudget = retryBudget(url, settings);
+        long started = System.nanoTime();
+        return websiteFetcher.fetchContent(url, settings.maxBodyBytes(), retryBudget, acceptsOnlyJson(url), needsOnlyFingerprint(url))
+            // Fetch latency for the status API, taken before queueing for the cleaner
+            .map(fetchResult -> new TimedResult(fetchResult, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)))
+            // Hop off the event loop before parsing; the pipeline's flatMap bounds how much can queue up
+            .publishOn(cleanerScheduler)
+            .map(timed -> handleResult(url, timed.result(), timed.latencyMs(), dispatchTime)) // Process the fetched content asynchronously
+            .onErrorResume(error -> {
+                processingFailed(url, error);
+                return Mono.just(false);
+            });
+    }
+
+    /**
+     * Checks the URLs of one cycle on the virtual-thread engine and returns once all of them are done.
+     * Each check is a plain blocking task on its own virtual thread: it waits for its host's rate limit,
+     * then for one of the monitor.check.max-concurrency slots, then fetches and compares inline.
+     * The cycle is a structured scope: it cannot finish before its checks, and interrupting it cancels them.
+     * Package-private so the engine benchmark can run whole cycles.
+     *
+     * @param urls         The due URLs.
+     * @param dispatchTime When the cycle was dispatched.
+     * @param done         Called with each URL once its check has finished, successfully or not.
+     */
+    void runCycle(List<String> urls, long dispatchTime, Consumer<String> done) {
+        // StructuredTaskScope is still a preview API on Java 21; closing a thread-per-task executor
+        // gives the same guarantee (close() waits for every task, and an interrupt cancels them)
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(CHECK_THREADS)) {
+            for (String url : urls) {
+                scope.execute(() -> {
+                    try {
+                        // A check the host throttled runs once more, behind the host's pause and without holding a slot
+                        boolean throttled = false;
+                        for (int attempt = 0; attempt < 2 && (attempt == 0 || throttled); attempt++) {
+                            rateLimiter.awaitPermit(url);
+                            checkSlots.acquire();
+                            try {
+                                throttled = checkUrlBlocking(url, attempt == 0 ? dispatchTime : System.currentTimeMillis());
+                            } finally {
+                                checkSlots.release();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.accept(url);
                     }
-                }, error -> {
-                    // Handle errors that might occur during the subscription processing itself
-                    log.error("Check failed for URL [{}] due to subscription processing error: {}", url, error.getMessage()); // Keep this summary log
-                    // The notification service will log the detailed error
-                    notificationService.notifyError(url, LocalDateTime.now(), "Subscription processing error: " + error.getMessage());
                 });
+            }
+        }
+    }
+
+    // Blocking version of check: fetch and comparison on the calling (virtual) thread; true if the host throttled it
+    private boolean checkUrlBlocking(String url, long dispatchTime) throws InterruptedException {
+        return checks.executeBlocking(url, () -> {
+            log.debug("Checking URL: {}", url);
+            MonitorSettings settings = settings(url);
+            long started = System.nanoTime();
+            try {
+                FetchResult fetchResult = blockingFetcher.fetchContent(url, settings.maxBodyBytes(), retryBudget(url, settings),
+                        acceptsOnlyJson(url));
+                return handleResult(url, fetchResult, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), dispatchTime);
+            } catch (RuntimeException error) {
+                processingFailed(url, error);
+                return false;
+            }
         });
     }
 
+    /**
+     * Checks a monitored page right away, outside its schedule. If the page is being checked already,
+     * the running check is joined instead of fetching the page a second time.
+     * @param url The page's URL.
+     * @return false if the page is not monitored, or is checked by another instance.
+     * @throws IllegalArgumentException If the URL is not a valid http(s) URL.
+     */
+    public boolean checkNow(String url) {
+        String page = UrlCanonicalizer.canonicalize(url);
+        if (!pollingStates.contains(page) || !shardRouter.owns(page)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (blockingFetcher != null) {
+            cycles.execute(() -> runCycle(List.of(page), now, done -> { }));
+        } else {
+            // Outside the pipeline, but still behind the host's rate limit
+            rateLimiter.permit(page)
+                    .then(checkUrl(page, now))
+                    .subscribe(null, error -> log.error("On-demand check of URL [{}] failed: {}", page, error.getMessage()));
+        }
+        return true;
+    }
+
+    // JSON is asked for when every subscription of the page compares JSON fields; a page also compared as HTML
+    // is fetched the way a browser would
+    private boolean acceptsOnlyJson(String url) {
+        List<Subscription> pageSubscriptions = subscriptions.getOrDefault(url, List.of());
+        for (Subscription subscription : pageSubscriptions) {
+            if (!subscription.settings().contentFilter().isJson()) {
+                return false;
+            }
+        }
+        return !pageSubscriptions.isEmpty();
+    }
+
+    // The body can be hashed while it streams in, without ever holding the page, when no diff, filter or
+    // history version needs its text
+    private boolean needsOnlyFingerprint(String url) {
+        if (contentComparator.needsText() || historyStore.isEnabled()) {
+            return false;
+        }
+        List<Subscription> pageSubscriptions = subscriptions.getOrDefault(url, List.of());
+        for (Subscription subscription : pageSubscriptions) {
+            if (!subscription.settings().contentFilter().isEmpty()) {
+                return false;
+            }
+        }
+        return !pageSubscriptions.isEmpty();
+    }
+
+    private MonitorSettings settings(String url) {
+        MonitorSettings settings = pollingStates.settings(url);
+        return settings != null ? settings : pollingPolicy.defaultSettings();
+    }
+
+    // Retries must not run into the URL's next check
+    private Duration retryBudget(String url, MonitorSettings settings) {
+        long interval = pollingStates.currentIntervalMs(url);
+        return Duration.ofMillis(interval >= 0 ? interval : settings.minIntervalMs());
+    }
+
+    // Handle errors that might occur during result processing itself; like fetch failures, notified once per streak
+    private void processingFailed(String url, Throwable error) {
+        metrics.forUrl(url).checked(null, false);
+        String message = "Processing error: " + error.getMessage();
+        int failedChecks = pollingStates.recordFailure(url, System.currentTimeMillis(), -1, message);
+        if (failedChecks == 1) {
+            log.error("Check failed for URL [{}] due to processing error: {}", url, error.getMessage()); // Keep this summary log
+            // The notification service will log the detailed error
+            notificationService.notifyError(url, recipients(subscriptions.getOrDefault(url, List.of())), LocalDateTime.now(), message);
+        } else {
+            log.debug("Check failed for URL [{}] ({} in a row): {}", url, failedChecks, message);
+        }
+    }
+
+    // Errors concern every subscription of a page: the union of their recipients, or everyone if one of them
+    // did not pick any
+    private static List<String> recipients(List<Subscription> pageSubscriptions) {
+        Set<String> recipients = new LinkedHashSet<>();
+        for (Subscription subscription : pageSubscriptions) {
+            if (subscription.settings().recipients().isEmpty()) {
+                return List.of();
+            }
+            recipients.addAll(subscription.settings().recipients());
+        }
+        return List.copyOf(recipients);
+    }
+
+    private record TimedResult(FetchResult result, long latencyMs) {
+    }
+
+    // A subscription whose comparison found a change
+    private record Compared(Subscription subscription, ComparisonResult result) {
+    }
+
+    // Returns true if the host throttled the check (429/503)
+    private boolean handleResult(String url, FetchResult fetchResult, long latencyMs, long dispatchTime) {
+        List<Subscription> pageSubscriptions = subscriptions.getOrDefault(url, List.of());
+        if (pageSubscriptions.isEmpty()) {
+            log.debug("URL [{}] was removed while it was being checked.", url);
+            return false;
+        }
+        MonitorMetrics.HostMeters meters = metrics.forUrl(url);
+        if (fetchResult.isFailed()) {
+            // The last known state is kept; the interval isn't adapted since nothing was compared
+            meters.checked(null, false);
+            handleFailure(url, pageSubscriptions, fetchResult.failure(), latencyMs);
+            return fetchResult.failure().kind() == FetchFailure.Kind.THROTTLED;
+        }
+        String newContent = fetchResult.content();
+        // 304 / unchanged digest goes straight to "no change" without cleaning or comparing
+        List<Compared> changes = fetchResult.notModified()
+                ? List.of()
+                : meters.cleanDuration().record(() -> compare(url, fetchResult, pageSubscriptions));
+        boolean changed = !changes.isEmpty();
+        recovered(url, latencyMs, changed);
+        adaptInterval(url, changed, dispatchTime);
+        if (newContent != null && (changed || !historyStore.hasHistory(url))) {
+            // The first version seen (also after a restart: the history lives in memory) and every change
+            historyStore.record(url, newContent, Instant.now());
+        }
+        meters.checked(changed ? changes.get(0).result() : ComparisonResult.noChange(null), fetchResult.notModified());
+
+        // Log the outcome of the check for this cycle
+        if (changed) {
+            // Notification service already logs the details for changes
+            LocalDateTime detectionTime = LocalDateTime.now();
+            for (Compared compared : changes) {
+                Subscription subscription = compared.subscription();
+                notificationService.notifyChange(url, subscription.isDefault() ? null : subscription.id(),
+                        subscription.settings().recipients(), detectionTime, compared.result());
+            }
+            log.info("Check completed for URL [{}]: Change DETECTED for {} of {} subscriptions.", url,
+                    changes.size(), pageSubscriptions.size()); // Add summary log
+        } else if (fetchResult.notModified()) {
+            log.debug("Check completed for URL [{}]: Not modified.", url);
+        } else {
+            // No subscription saw a change.
+            // DEBUG only: logged on every check, counted in monitor.checks
+            log.debug("Check completed for URL [{}]: No change detected.", url);
+        }
+        return false;
+    }
+
+    // Fans one fetched page out to its subscriptions: cleaned once per distinct filter, compared once per
+    // subscription against its own baseline. Returns the subscriptions that saw a change
+    private List<Compared> compare(String url, FetchResult fetchResult, List<Subscription> pageSubscriptions) {
+        String content = fetchResult.content();
+        Map<ContentFilter, NormalizedContent> normalized = new HashMap<>(4);
+        if (fetchResult.fingerprint() != null) {
+            // Fingerprinted while streaming: only fetched that way when every subscription compares the whole page
+            normalized.put(ContentFilter.NONE, new NormalizedContent(null, fetchResult.fingerprint(), false));
+        }
+        List<Compared> changes = new ArrayList<>(1);
+        // Set when a subscription is left without a baseline: the next check must then fetch the whole page
+        boolean needsFullFetch = false;
+        for (Subscription subscription : pageSubscriptions) {
+            if (content == null && !normalized.containsKey(subscription.settings().contentFilter())) {
+                // Subscribed with a filter while the page was being fingerprinted: compared from the next check on
+                needsFullFetch = true;
+                continue;
+            }
+            ComparisonResult result;
+            try {
+                NormalizedContent cleaned = normalized.computeIfAbsent(subscription.settings().contentFilter(),
+                        filter -> contentComparator.normalize(content, filter));
+                result = contentComparator.compareAndStore(subscription.key(), content, cleaned);
+            } catch (RuntimeException error) {
+                // e.g. a JSON subscription of a page that served HTML: only this subscription misses the check
+                comparisonFailed(url, subscription, error);
+                // Without a baseline it must be compared on the next check, not skipped by a 304
+                needsFullFetch |= !contentComparator.hasState(subscription.key());
+                continue;
+            }
+            Integer failedBefore = comparisonFailures.remove(subscription.key());
+            if (failedBefore != null) {
+                log.info("Subscription [{}] of URL [{}] is comparable again after {} failed comparisons.",
+                        subscription.id(), url, failedBefore);
+            }
+            if (result.changed()) {
+                changes.add(new Compared(subscription, result));
+            }
+        }
+        if (needsFullFetch) {
+            // This fetch stored its validators; a 304 on the next check would leave the subscription without a
+            // baseline until the page changes
+            websiteFetcher.clearValidators(url);
+        }
+        return changes;
+    }
+
+    // Notifies the subscription's recipients once when its comparisons start failing; later failures in the
+    // same streak are only counted
+    private void comparisonFailed(String url, Subscription subscription, RuntimeException error) {
+        int failedComparisons = comparisonFailures.merge(subscription.key(), 1, Integer::sum);
+        if (failedComparisons == 1) {
+            log.warn("Comparison failed for subscription [{}] of URL [{}]: {}", subscription.id(), url, error.getMessage());
+            notificationService.notifyError(url, subscription.settings().recipients(), LocalDateTime.now(),
+                    (subscription.isDefault() ? "" : "Subscription " + subscription.id() + ": ")
+                            + "Comparison failed: " + error.getMessage());
+        } else {
+            log.debug("Comparison failed for subscription [{}] of URL [{}] ({} in a row): {}", subscription.id(), url,
+                    failedComparisons, error.getMessage());
+        }
+    }
+
+    // Notifies once when a URL starts failing; later failures in the same streak are only counted.
+    // Not for an open circuit or a throttling host: those are our own backing off, not the page failing
+    private void handleFailure(String url, List<Subscription> pageSubscriptions, FetchFailure failure, long latencyMs) {
+        int failedChecks = pollingStates.recordFailure(url, System.currentTimeMillis(), latencyMs, failure.describe());
+        if (failedChecks == 1 && failure.kind() != FetchFailure.Kind.CIRCUIT_OPEN && failure.kind() != FetchFailure.Kind.THROTTLED) {
+            log.warn("Check failed for URL [{}]: {}", url, failure.describe());
+            notificationService.notifyError(url, recipients(pageSubscriptions), LocalDateTime.now(), failure);
+        } else {
+            log.debug("Check failed for URL [{}] ({} in a row): {}", url, failedChecks, failure.describe());
+        }
+    }
+
+    private void recovered(String url, long latencyMs, boolean changed) {
+        int failedChecks = pollingStates.recordSuccess(url, System.currentTimeMillis(), latencyMs, changed);
+        if (failedChecks > 0) {
+            log.info("URL [{}] is reachable again after {} failed checks.", url, failedChecks);
+        }
+    }
+
     /**
      * Returns the set of currently monitored URLs.
-     * Primarily for testing or status endpoints.
-     * @return A set of monitored URLs.
+     * Primarily for testing; the status API pages through {@link #getStatus} instead.
+     * @return A live, read-only view of the monitored URLs (no copy is made).
      */
     public Set<String> getMonitoredUrls() {
-        // Return an immutable copy to prevent external modification
-        return Set.copyOf(monitoredUrls.keySet());
+        return Collections.unmodifiableSet(monitoredUrls);
+    }
+
+    /**
+     * Returns the number of monitored URLs.
+     */
+    public int getMonitoredCount() {
+        return pollingStates.size();
+    }
+
+    /**
+     * Returns one page of URL statuses in URL order, read straight from the live index.
+     * @param cursor Last URL of the previous page, or null to start at the beginning.
+     * @param limit  Maximum number of statuses to return.
+     * @param filter Statuses to include.
+     */
+    public StatusPage getStatus(String cursor, int limit, Predicate<MonitorStatus> filter) {
+        Set<String> remaining = cursor == null ? monitoredUrls : monitoredUrls.tailSet(cursor, false);
+        List<MonitorStatus> items = new ArrayList<>(Math.min(limit, 1024));
+        for (String url : remaining) {
+            if (items.size() >= limit) {
+                break;
+            }
+            // Null if the URL was removed since the iterator passed it
+            MonitorStatus status = pollingStates.status(url);
+            if (status != null && filter.test(status)) {
+                items.add(status);
+            }
+        }
+        // A full page may be followed by an empty one; that's cheaper than scanning ahead for a match
+        String nextCursor = items.size() >= limit ? items.get(items.size() - 1).url() : null;
+        return new StatusPage(items, nextCursor, pollingStates.size());
+    }
+
+    /**
+     * Returns the number of subscriptions across all monitored URLs.
+     */
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    /**
+     * Returns the subscriptions of a URL, the default one first.
+     * @param url The URL, in any spelling.
+     * @return The subscriptions; empty if the URL is not monitored.
+     */
+    public List<Subscription> getSubscriptions(String url) {
+        return subscriptions.getOrDefault(UrlCanonicalizer.canonicalize(url), List.of());
+    }
+
+    /**
+     * Calls the action for every subscription, in URL order (for exports).
+     * URLs added or removed meanwhile may or may not be included.
+     */
+    public void forEachSubscription(Consumer<Subscription> action) {
+        for (String url : monitoredUrls) {
+            subscriptions.getOrDefault(url, List.of()).forEach(action);
+        }
+    }
+
+    /**
+     * Returns the settings applied to URLs registered without explicit intervals.
+     */
+    public MonitorSettings defaultSettings() {
+        return pollingPolicy.defaultSettings();
+    }
+
+    /**
+     * Returns the settings of a URL's default subscription (the one POST /api/monitor manages).
+     * @param url The URL, in any spelling.
+     * @return The settings, or null if the URL has no default subscription.
+     */
+    public MonitorSettings getSettings(String url) {
+        Subscription subscription = find(getSubscriptions(url), Subscription.DEFAULT);
+        return subscription != null ? subscription.settings() : null;
+    }
+
+    /**
+     * Returns the adaptive polling state of a URL: interval bounds, current interval
+     * and change-rate estimate.
+     * @param url The URL, in any spelling.
+     * @return The snapshot, or null if the URL is not monitored.
+     */
+    public PollingSnapshot getPollingSnapshot(String url) {
+        return pollingStates.snapshot(UrlCanonicalizer.canonicalize(url));
     }
 }
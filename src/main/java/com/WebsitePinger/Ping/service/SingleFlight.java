@@ -0,0 +1,112 @@
+package com.WebsitePinger.Ping.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, callers arriving while it is
+ * in flight wait for and share its outcome instead of starting another. Nothing is cached: once the call
+ * completes, the next caller runs it again. Used for reactive and blocking calls alike.
+ *
+ * @param <K> The key, e.g. a canonical URL.
+ * @param <V> The call's result.
+ */
+final class SingleFlight<K, V> {
+
+    /**
+     * A call that blocks the calling thread.
+     */
+    @FunctionalInterface
+    interface BlockingCall<V> {
+        V call() throws InterruptedException;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Runnable onJoin;
+
+    /**
+     * @param onJoin Called whenever a caller joins a call already in flight (for metrics).
+     */
+    SingleFlight(Runnable onJoin) {
+        this.onJoin = onJoin;
+    }
+
+    /**
+     * Subscribes to the call for {@code key}, or joins the one in flight. A joining subscriber cancelling
+     * does not cancel the shared call; an empty call completes every subscriber empty.
+     */
+    Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> leader = inFlight.putIfAbsent(key, future);
+            if (leader != null) {
+                onJoin.run();
+                return Mono.fromFuture(leader, true);
+            }
+            // The call is subscribed to here rather than by the first subscriber, so it runs to completion
+            // for the callers that joined even if the first one cancels
+            Mono.defer(call).subscribe(
+                    value -> complete(key, future, value, null),
+                    error -> complete(key, future, null, error),
+                    () -> complete(key, future, null, null));
+            return Mono.fromFuture(future, true);
+        });
+    }
+
+    /**
+     * Runs the call for {@code key} on the calling thread, or waits for the one in flight.
+     * A RuntimeException thrown by the call is rethrown to every caller.
+     */
+    V executeBlocking(K key, BlockingCall<V> call) throws InterruptedException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, future);
+        if (leader != null) {
+            onJoin.run();
+            try {
+                return leader.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e.getCause() instanceof Error fatal) {
+                    throw fatal;
+                }
+                // The leader was interrupted: the call's outcome is unknown
+                throw new IllegalStateException("Shared call was interrupted", e.getCause());
+            }
+        }
+        V value = null;
+        Throwable error = null;
+        try {
+            value = call.call();
+            return value;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            complete(key, future, value, error);
+        }
+    }
+
+    // Leaves the map first, so a caller arriving now starts a fresh call rather than joining a finished one
+    private void complete(K key, CompletableFuture<V> future, V value, Throwable error) {
+        inFlight.remove(key, future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(value);
+        }
+    }
+
+    /**
+     * Number of calls in flight.
+     */
+    int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,13 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.List;
+
+/**
+ * One page of the status listing, ordered by URL.
+ *
+ * @param items      The statuses on this page.
+ * @param nextCursor Pass as {@code cursor} to get the next page; null on the last page.
+ * @param total      Number of monitored URLs, regardless of filters.
+ */
+public record StatusPage(List<MonitorStatus> items, String nextCursor, int total) {
+}
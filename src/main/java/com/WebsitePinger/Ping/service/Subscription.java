@@ -0,0 +1,63 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * One party's interest in a monitored page: its own filters, interval bounds and notification recipients.
+ * A page is fetched once per check however many subscriptions it has; each subscription then compares
+ * (and is notified about) the regions it selected. POST /api/monitor?url=... manages the page's
+ * {@link #DEFAULT} subscription.
+ *
+ * @param id       Unique among the subscriptions of the page.
+ * @param url      The page's canonical URL (see {@link UrlCanonicalizer}).
+ * @param settings The subscription's settings.
+ */
+public record Subscription(String id, String url, MonitorSettings settings) {
+
+    /**
+     * Id of the subscription managed by the URL-only API.
+     */
+    public static final String DEFAULT = "default";
+
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    public Subscription {
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Subscription id must be 1-64 letters, digits, '.', '_' or '-', got " + id);
+        }
+        if (url == null || url.indexOf('#') >= 0) {
+            throw new IllegalArgumentException("Subscription URL must be canonical, got " + url);
+        }
+        if (settings == null) {
+            throw new IllegalArgumentException("Subscription settings are required");
+        }
+    }
+
+    /**
+     * The page's default subscription.
+     */
+    public static Subscription of(String url, MonitorSettings settings) {
+        return new Subscription(DEFAULT, url, settings);
+    }
+
+    public boolean isDefault() {
+        return DEFAULT.equals(id);
+    }
+
+    /**
+     * Key of the subscription's baseline and persisted record: the URL itself for the default subscription,
+     * so state stored before subscriptions existed still applies, else {@code url#id}. Canonical URLs never
+     * contain '#'.
+     */
+    public String key() {
+        return isDefault() ? url : url + '#' + id;
+    }
+
+    /**
+     * Reverses {@link #key()}; the URL part is returned as stored, not canonicalized.
+     */
+    public static Subscription fromKey(String key, MonitorSettings settings) {
+        int hash = key.indexOf('#');
+        return hash < 0 ? of(key, settings) : new Subscription(key.substring(hash + 1), key.substring(0, hash), settings);
+    }
+}
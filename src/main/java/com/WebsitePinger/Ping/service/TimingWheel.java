@@ -0,0 +1,147 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hashed timing wheel holding at most one pending deadline per key.
+ * Scheduling and cancelling are O(1); {@link #advance(long, List)} only visits the buckets
+ * for the ticks that have elapsed since the previous call.
+ * <p>
+ * Stored column-wise, like {@link FingerprintTable}: the key with id {@code i} (see {@link KeyIndex}) has its
+ * deadline in {@code deadlineTick[i]} and its neighbours in the bucket's list in {@code next[i]} and
+ * {@code prev[i]}, so a pending key costs 16 bytes of primitives plus one index slot instead of a list entry
+ * object and a map node. All methods are synchronized, the critical sections are short and allocation-free.
+ */
+public class TimingWheel {
+
+    // End of a bucket's list
+    private static final int NONE = -1;
+
+    private final long tickMs;
+    // Id of the first key in each bucket
+    private final int[] buckets;
+    private final int mask;
+    private final KeyIndex index;
+    private long[] deadlineTick;
+    private int[] next;
+    private int[] prev;
+    private long currentTick;
+
+    /**
+     * @param tickMs    Resolution of the wheel in milliseconds.
+     * @param wheelSize Number of buckets, rounded up to a power of two.
+     * @param startMs   Time (in ms) the wheel starts at.
+     */
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.buckets = new int[size];
+        Arrays.fill(buckets, NONE);
+        this.mask = size - 1;
+        this.currentTick = startMs / tickMs;
+        this.index = new KeyIndex(0);
+        this.deadlineTick = new long[8];
+        this.next = new int[8];
+        this.prev = new int[8];
+    }
+
+    /**
+     * Schedules the key to expire at the given time, replacing any pending deadline for it.
+     * Deadlines in the past expire on the next {@link #advance(long, List)}.
+     */
+    public synchronized void schedule(String key, long deadlineMs) {
+        int id = index.find(key);
+        if (id >= 0) {
+            unlink(id);
+        } else {
+            id = index.intern(key);
+            ensureCapacity(id);
+        }
+        deadlineTick[id] = Math.max(deadlineMs / tickMs, currentTick + 1);
+        link(id);
+    }
+
+    /**
+     * Cancels the pending deadline for the key, if any.
+     * @return true if a deadline was pending.
+     */
+    public synchronized boolean cancel(String key) {
+        int id = index.find(key);
+        if (id < 0) {
+            return false;
+        }
+        unlink(id);
+        index.release(key);
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the given time and removes every key whose deadline has passed.
+     * @param expired Receives the expired keys, in no particular order; the caller can reuse one list every tick.
+     * @return The number of keys that expired.
+     */
+    public synchronized int advance(long nowMs, List<String> expired) {
+        long targetTick = nowMs / tickMs;
+        int count = 0;
+        // Never walk more than one full revolution: every bucket is visited once at most
+        long from = Math.max(currentTick + 1, targetTick - mask);
+        for (long tick = from; tick <= targetTick; tick++) {
+            int id = buckets[(int) (tick & mask)];
+            while (id != NONE) {
+                int following = next[id];
+                if (deadlineTick[id] <= targetTick) {
+                    unlink(id);
+                    String key = index.keyOf(id);
+                    index.release(key);
+                    expired.add(key);
+                    count++;
+                }
+                id = following;
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return count;
+    }
+
+    /**
+     * Number of keys with a pending deadline.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void link(int id) {
+        int bucket = (int) (deadlineTick[id] & mask);
+        prev[id] = NONE;
+        next[id] = buckets[bucket];
+        if (next[id] != NONE) {
+            prev[next[id]] = id;
+        }
+        buckets[bucket] = id;
+    }
+
+    private void unlink(int id) {
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            buckets[(int) (deadlineTick[id] & mask)] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < deadlineTick.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, deadlineTick.length * 2);
+        deadlineTick = Arrays.copyOf(deadlineTick, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+    }
+}
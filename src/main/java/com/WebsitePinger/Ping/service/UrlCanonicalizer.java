@@ -0,0 +1,176 @@
+package com.WebsitePinger.Ping.service;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Maps the spellings of a page's URL to one canonical form, so that {@code https://X.com},
+ * {@code https://x.com:443/} and {@code https://x.com/?utm_source=mail#top} are monitored (and fetched)
+ * as the same resource. Most rules only make changes a server cannot tell apart; dropping tracking parameters
+ * and sorting the rest are a deliberate trade-off: a server could answer such URLs differently, but they are
+ * treated as the same page on purpose, so that links shared with different parameters or orders share one
+ * subscription and one fetch:
+ * <ul>
+ *   <li>scheme and host are lower-cased, a trailing dot on the host is dropped, and so is the default port;</li>
+ *   <li>an empty path becomes {@code /}, and {@code .} / {@code ..} segments are resolved;</li>
+ *   <li>percent-escapes use upper-case hex, and escaped unreserved characters are decoded;</li>
+ *   <li>tracking parameters (utm_*, gclid, fbclid, ...) and stray {@code &} separators are dropped, and the
+ *       rest are sorted by name (parameters with the same name keep their order). Parameters without a value,
+ *       such as {@code a=} or {@code a}, are kept as they are: a server may read them as flags;</li>
+ *   <li>the fragment is dropped: it is never sent to the server.</li>
+ * </ul>
+ * Trailing slashes of non-empty paths are kept: {@code /a} and {@code /a/} can be different pages.
+ */
+public final class UrlCanonicalizer {
+
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "gclid", "dclid", "gbraid", "wbraid", "fbclid", "msclkid", "yclid", "igshid",
+            "mc_cid", "mc_eid", "_ga", "_gl", "_hsenc", "_hsmi");
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Returns the canonical form of an absolute http(s) URL.
+     * @throws IllegalArgumentException If the URL is not a valid absolute http or https URL.
+     */
+    public static String canonicalize(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("URL is required.");
+        }
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid URL: " + e.getMessage());
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme)) {
+            throw new IllegalArgumentException("Only http and https URLs can be monitored: " + url);
+        }
+        String host = uri.getHost();
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("URL has no host: " + url);
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(host);
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            canonical.append(':').append(port);
+        }
+        String path = normalizeEscapes(uri.getRawPath());
+        canonical.append(path.isEmpty() ? "/" : removeDotSegments(path));
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String[]> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            String normalized = normalizeEscapes(parameter);
+            int equals = normalized.indexOf('=');
+            String name = equals < 0 ? normalized : normalized.substring(0, equals);
+            if (isTracking(name)) {
+                continue;
+            }
+            parameters.add(new String[]{name, normalized});
+        }
+        // List.sort is stable: repeated names keep their order, which servers may rely on
+        parameters.sort(Comparator.comparing(parameter -> parameter[0]));
+        StringBuilder query = new StringBuilder(rawQuery.length());
+        for (String[] parameter : parameters) {
+            if (!query.isEmpty()) {
+                query.append('&');
+            }
+            query.append(parameter[1]);
+        }
+        return query.toString();
+    }
+
+    private static boolean isTracking(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.startsWith("utm_") || TRACKING_PARAMETERS.contains(lower);
+    }
+
+    // Upper-cases the hex of every escape and decodes escapes of unreserved characters (RFC 3986, 6.2.2)
+    private static String normalizeEscapes(String raw) {
+        if (raw == null) {
+            return "";
+        }
+        if (raw.indexOf('%') < 0) {
+            return raw;
+        }
+        StringBuilder out = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            // URI has already rejected malformed escapes
+            if (c == '%' && i + 2 < raw.length()) {
+                int value = Integer.parseInt(raw, i + 1, i + 3, 16);
+                if (isUnreserved((char) value)) {
+                    out.append((char) value);
+                } else {
+                    out.append('%').append(Character.toUpperCase(raw.charAt(i + 1))).append(Character.toUpperCase(raw.charAt(i + 2)));
+                }
+                i += 2;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    // RFC 3986, 5.2.4; a path that climbs above the root stays at the root
+    private static String removeDotSegments(String path) {
+        if (!path.contains("/.")) {
+            return path;
+        }
+        List<String> segments = new ArrayList<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+            if (part.equals(".")) {
+                if (last) {
+                    segments.add("");
+                }
+            } else if (part.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                if (last) {
+                    segments.add("");
+                }
+            } else {
+                segments.add(part);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+}
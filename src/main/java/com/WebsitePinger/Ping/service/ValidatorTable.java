@@ -0,0 +1,69 @@
+package com.WebsitePinger.Ping.service;
+
+import java.util.Arrays;
+
+/**
+ * HTTP cache validators per URL, stored column-wise: the ETag, Last-Modified and Content-MD5 of the URL with
+ * id {@code i} (see {@link KeyIndex}) are {@code etag[i]}, {@code lastModified[i]} and {@code contentMd5[i]}.
+ * The header strings are the only objects; there is no map node or {@link HttpValidators} record per URL.
+ * All methods are synchronized, the critical sections are short.
+ */
+final class ValidatorTable {
+
+    private final KeyIndex index;
+    private String[] etag;
+    private String[] lastModified;
+    private String[] contentMd5;
+
+    ValidatorTable(int expectedUrls) {
+        index = new KeyIndex(expectedUrls);
+        int capacity = Math.max(8, expectedUrls);
+        etag = new String[capacity];
+        lastModified = new String[capacity];
+        contentMd5 = new String[capacity];
+    }
+
+    /**
+     * @return The URL's validators, or null if it has none.
+     */
+    synchronized HttpValidators get(String url) {
+        int id = index.find(url);
+        return id < 0 ? null : new HttpValidators(etag[id], lastModified[id], contentMd5[id]);
+    }
+
+    synchronized void put(String url, HttpValidators validators) {
+        int id = index.intern(url);
+        ensureCapacity(id);
+        etag[id] = validators.etag();
+        lastModified[id] = validators.lastModified();
+        contentMd5[id] = validators.contentMd5();
+    }
+
+    /**
+     * @return true if the URL had validators.
+     */
+    synchronized boolean remove(String url) {
+        int id = index.release(url);
+        if (id < 0) {
+            return false;
+        }
+        etag[id] = null;
+        lastModified[id] = null;
+        contentMd5[id] = null;
+        return true;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < etag.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, etag.length * 2);
+        etag = Arrays.copyOf(etag, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        contentMd5 = Arrays.copyOf(contentMd5, capacity);
+    }
+}
@@ -0,0 +1,110 @@
+package com.WebsitePinger.Ping.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * POSTs each digest as JSON to every URL in monitor.notify.webhook.url:
+ * {"notifications": [{"type": "CHANGE", "url": ..., "count": 2, "summary": ..., ...}]}.
+ * Any non-2xx answer counts as a failed send and is retried by the dispatcher.
+ */
+@Service
+@ConditionalOnProperty(name = "monitor.notify.webhook.url")
+public class WebhookNotificationService implements NotificationService {
+
+    private final RestClient restClient;
+    private final List<String> endpoints;
+
+    public WebhookNotificationService(RestClient.Builder restClientBuilder,
+                                      @Value("${monitor.notify.webhook.url}") List<String> endpoints,
+                                      @Value("${monitor.notify.webhook.timeout.ms:10000}") long timeoutMs) {
+        // Blocking client: it runs on the dispatcher's virtual thread, never on a monitor thread
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build());
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.endpoints = endpoints.stream().map(String::trim).filter(endpoint -> !endpoint.isEmpty()).toList();
+    }
+
+    @Override
+    public List<String> recipients() {
+        return endpoints;
+    }
+
+    @Override
+    public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+        for (String endpoint : endpoints) {
+            notifyDigest(endpoint, List.of(Notification.change(url, detectionTime, result)));
+        }
+    }
+
+    @Override
+    public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+        for (String endpoint : endpoints) {
+            notifyDigest(endpoint, List.of(Notification.error(url, errorTime, errorMessage, null)));
+        }
+    }
+
+    @Override
+    public void notifyDigest(String recipient, List<Notification> notifications) {
+        restClient.post()
+                .uri(recipient)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("notifications", notifications.stream().map(WebhookNotificationService::toJson).toList()))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    // Values are JSON text as found in the response (strings keep their quotes); an absent one is left out
+    private static Map<String, Object> toJson(FieldChange field) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("path", field.path());
+        json.put("change", field.type().name());
+        if (field.previous() != null) {
+            json.put("previous", field.previous());
+        }
+        if (field.current() != null) {
+            json.put("current", field.current());
+        }
+        return json;
+    }
+
+    static Map<String, Object> toJson(Notification notification) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("type", notification.type().name());
+        json.put("url", notification.url());
+        if (notification.subscription() != null) {
+            json.put("subscription", notification.subscription());
+        }
+        json.put("firstTime", notification.firstTime().toString());
+        json.put("lastTime", notification.lastTime().toString());
+        json.put("count", notification.count());
+        json.put("summary", notification.summary());
+        ContentDiff diff = notification.result() == null ? null : notification.result().diff();
+        if (diff != null && diff.isFieldDiff()) {
+            json.put("fields", diff.fields().stream().map(WebhookNotificationService::toJson).toList());
+        } else if (diff != null) {
+            json.put("wordsRemoved", diff.removedTokens());
+            json.put("wordsAdded", diff.addedTokens());
+        }
+        if (notification.failure() != null) {
+            json.put("cause", notification.failure().kind().tag());
+        }
+        if (notification.errorMessage() != null) {
+            json.put("error", notification.errorMessage());
+        }
+        return json;
+    }
+}
@@ -2,48 +2,361 @@ package com.WebsitePinger.Ping.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class WebsiteFetcher {
 
     private static final Logger log = LoggerFactory.getLogger(WebsiteFetcher.class);
+    // Largest buffer allocated up front for a body with a Content-Length; bigger bodies grow the buffer as they arrive
+    private static final int MAX_PRESIZE_BYTES = 1024 * 1024;
     private final WebClient webClient;
+    // Validators (ETag, Last-Modified, Content-MD5) from the last full response per URL
+    private final ValidatorTable validators = new ValidatorTable(0);
+    private final long defaultMaxBodyBytes;
+    private final MonitorMetrics metrics;
+    private final HostRateLimiter rateLimiter;
+    private final HostCircuitBreaker circuitBreaker;
+    private final int maxRetries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
 
-    public WebsiteFetcher(WebClient.Builder webClientBuilder) {
+    public WebsiteFetcher(WebClient.Builder webClientBuilder, MonitorMetrics metrics, HostRateLimiter rateLimiter,
+                          HostCircuitBreaker circuitBreaker,
+                          @Value("${monitor.fetch.max-body-bytes:5242880}") long defaultMaxBodyBytes,
+                          @Value("${monitor.fetch.retry.max-retries:3}") int maxRetries,
+                          @Value("${monitor.fetch.retry.initial-backoff.ms:1000}") long initialBackoffMs,
+                          @Value("${monitor.fetch.retry.max-backoff.ms:5000}") long maxBackoffMs) {
         // Configure WebClient - you might want to customize timeouts, headers etc.
         this.webClient = webClientBuilder.baseUrl("").build(); // Base URL set per request
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.defaultMaxBodyBytes = defaultMaxBodyBytes;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialBackoffMs));
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(initialBackoffMs, maxBackoffMs));
     }
 
     /**
      * Fetches the content of the given URL.
+     * Sends If-None-Match / If-Modified-Since when validators are known, so an unchanged
+     * resource costs a 304 instead of a full download.
      *
      * @param url The URL to fetch.
-     * @return A Mono emitting the website content as a String, or an empty Mono if an error occurs.
+     * @return A Mono emitting the fetch result; a failed fetch emits a result carrying its {@link FetchFailure}.
      */
-    public Mono<String> fetchContent(String url) {
+    public Mono<FetchResult> fetchContent(String url) {
+        return fetchContent(url, null, null);
+    }
+
+    /**
+     * Fetches the content of the given URL, aborting the download once the body exceeds {@code maxBodyBytes}.
+     *
+     * @param url          The URL to fetch.
+     * @param maxBodyBytes Size cap for this URL, or null for monitor.fetch.max-body-bytes.
+     * @return A Mono emitting the fetch result; a failed fetch emits a result carrying its {@link FetchFailure}.
+     */
+    public Mono<FetchResult> fetchContent(String url, Long maxBodyBytes) {
+        return fetchContent(url, maxBodyBytes, null);
+    }
+
+    /**
+     * Fetches the content of the given URL, retrying transient failures only while a retry would
+     * still start within {@code budget}.
+     *
+     * @param url          The URL to fetch.
+     * @param maxBodyBytes Size cap for this URL, or null for monitor.fetch.max-body-bytes.
+     * @param budget       Time available for retries (normally the URL's check interval), or null for no limit.
+     * @return A Mono emitting the fetch result; a failed fetch emits a result carrying its {@link FetchFailure}.
+     */
+    public Mono<FetchResult> fetchContent(String url, Long maxBodyBytes, Duration budget) {
+        return fetchContent(url, maxBodyBytes, budget, false);
+    }
+
+    /**
+     * Fetches the content of the given URL, asking for JSON if {@code json} is set: single-page apps often
+     * serve the same URL as an HTML shell or as the JSON data behind it, depending on Accept.
+     *
+     * @param url          The URL to fetch.
+     * @param maxBodyBytes Size cap for this URL, or null for monitor.fetch.max-body-bytes.
+     * @param budget       Time available for retries (normally the URL's check interval), or null for no limit.
+     * @param json         Whether to send {@code Accept: application/json}.
+     * @return A Mono emitting the fetch result; a failed fetch emits a result carrying its {@link FetchFailure}.
+     */
+    public Mono<FetchResult> fetchContent(String url, Long maxBodyBytes, Duration budget, boolean json) {
+        return fetchContent(url, maxBodyBytes, budget, json, false);
+    }
+
+    /**
+     * Fetches the content of the given URL. With {@code fingerprintOnly} the body is never materialized:
+     * each chunk is normalized and hashed as it arrives, and a new body is reported only by the fingerprint
+     * of its text ({@link FetchResult#fingerprinted}). For callers that need neither the page nor its text.
+     *
+     * @param url             The URL to fetch.
+     * @param maxBodyBytes    Size cap for this URL, or null for monitor.fetch.max-body-bytes.
+     * @param budget          Time available for retries (normally the URL's check interval), or null for no limit.
+     * @param json            Whether to send {@code Accept: application/json}.
+     * @param fingerprintOnly Whether to hash the body while streaming instead of returning it.
+     * @return A Mono emitting the fetch result; a failed fetch emits a result carrying its {@link FetchFailure}.
+     */
+    public Mono<FetchResult> fetchContent(String url, Long maxBodyBytes, Duration budget, boolean json,
+                                          boolean fingerprintOnly) {
         log.debug("Fetching content for URL: {}", url);
-        return webClient.get()
-                .uri(url)
-                .retrieve() // Retrieve the response body
-                .bodyToMono(String.class) // Convert body to String
-                .timeout(Duration.ofSeconds(10)) // Add a timeout
-                .retryWhen(Retry.backoff(3, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(5)) // Basic retry logic
-                        .filter(throwable -> {
-                            // Add specific exceptions to retry on if needed
-                            log.warn("Retrying fetch for {} due to error: {}", url, throwable.getMessage());
-                            return true; // Retry on most errors for this example
-                        }))
-                .doOnError(error -> log.error("Error fetching URL {}: {}", url, error.getMessage()))
-                .onErrorResume(error -> {
-                    // Handle specific errors differently if needed
-                    // For now, return empty Mono on any error after retries
-                    return Mono.empty();
-                });
+        long permit = circuitBreaker.tryAcquire(url);
+        if (permit == HostCircuitBreaker.REJECTED) {
+            // The host keeps failing: fail fast instead of waiting for yet another timeout
+            return Mono.just(circuitOpen(url));
+        }
+        long limit = maxBodyBytes != null ? maxBodyBytes : defaultMaxBodyBytes;
+        HttpValidators known = validators.get(url);
+        MonitorMetrics.HostMeters meters = metrics.forUrl(url);
+        // Deferred so every retry restarts the per-attempt clock
+        Mono<FetchResult> attempt = Mono.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.get()
+                    .uri(url)
+                    .headers(headers -> {
+                        if (known != null) {
+                            known.applyTo(headers);
+                        }
+                        if (json) {
+                            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+                        }
+                    })
+                    .exchangeToMono(response -> {
+                        meters.timeToFirstByte().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        return handleResponse(url, known, limit, fingerprintOnly, response, meters);
+                    })
+                    .timeout(Duration.ofSeconds(10)) // Add a timeout
+                    .doOnError(error -> metrics.fetchError(url, FetchFailure.kindOf(error)));
+        });
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return attempt
+                    .retryWhen(retryPolicy(url, started, budget, meters))
+                    .onErrorResume(error -> {
+                        // Give up: the caller gets the failure as a result rather than an error signal
+                        if (error instanceof HostThrottledException throttled) {
+                            rateLimiter.onThrottled(url, throttled.retryAfter());
+                        }
+                        FetchFailure failure = FetchFailure.of(error);
+                        log.debug("Error fetching URL {}: {}", url, failure.describe());
+                        return Mono.just(FetchResult.failed(failure));
+                    })
+                    .doOnSuccess(result -> {
+                        meters.fetched(result, System.nanoTime() - started);
+                        recordHostHealth(url, permit, result);
+                    });
+        });
+    }
+
+    // Retries transient failures (timeouts, connection errors, 5xx) with jittered exponential backoff;
+    // 4xx and other permanent failures are not retried. A retry is only scheduled if it would start
+    // within the budget, so a failing URL never keeps retrying into its next check. Each retry is a new
+    // request to the host, so after the backoff it waits for a slot of the host's rate limit like any check.
+    private Retry retryPolicy(String url, long started, Duration budget, MonitorMetrics.HostMeters meters) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            long retries = signal.totalRetries();
+            long backoff = retryBackoffNanos(retries);
+            if (!shouldRetry(failure, retries, backoff, started, budget)) {
+                return Mono.error(failure);
+            }
+            log.debug("Retrying fetch for {} in {} ms due to error: {}", url, TimeUnit.NANOSECONDS.toMillis(backoff),
+                    failure.getMessage());
+            meters.retries().increment();
+            return Mono.delay(Duration.ofNanos(backoff)).delayUntil(ignored -> rateLimiter.permit(url));
+        }));
+    }
+
+    // Jittered exponential backoff before retry number retries + 1
+    long retryBackoffNanos(long retries) {
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(retries, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    // Whether a failed attempt should be retried after the given backoff (shared with BlockingWebsiteFetcher)
+    boolean shouldRetry(Throwable failure, long retries, long backoffNanos, long started, Duration budget) {
+        boolean withinBudget = budget == null || System.nanoTime() + backoffNanos - started < budget.toNanos();
+        return retries < maxRetries && FetchFailure.kindOf(failure).isTransient() && withinBudget;
+    }
+
+    // Fail-fast result for a host whose circuit is open
+    FetchResult circuitOpen(String url) {
+        metrics.fetchError(url, FetchFailure.Kind.CIRCUIT_OPEN);
+        return FetchResult.failed(new FetchFailure(FetchFailure.Kind.CIRCUIT_OPEN,
+                "Circuit open for host " + MonitorMetrics.hostOf(url)));
+    }
+
+    long defaultMaxBodyBytes() {
+        return defaultMaxBodyBytes;
+    }
+
+    HttpValidators knownValidators(String url) {
+        return validators.get(url);
+    }
+
+    // Only called once the body has actually been read
+    void rememberValidators(String url, HttpValidators received) {
+        if (received != null) {
+            validators.put(url, received);
+        } else {
+            validators.remove(url);
+        }
+    }
+
+    // Feeds the outcome into the host's circuit, with the fetch's permit: any answer from the host counts as healthy
+    void recordHostHealth(String url, long permit, FetchResult result) {
+        if (!result.isFailed()) {
+            circuitBreaker.onSuccess(url, permit);
+            return;
+        }
+        FetchFailure.Kind kind = result.failure().kind();
+        if (kind.isHostFailure()) {
+            circuitBreaker.onFailure(url, permit);
+        } else if (kind == FetchFailure.Kind.CLIENT_ERROR || kind == FetchFailure.Kind.TOO_LARGE) {
+            circuitBreaker.onSuccess(url, permit);
+        }
+    }
+
+    private Mono<FetchResult> handleResponse(String url, HttpValidators known, long maxBodyBytes, boolean fingerprintOnly,
+                                             ClientResponse response, MonitorMetrics.HostMeters meters) {
+        if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            log.debug("URL {} not modified (304).", url);
+            rateLimiter.onSuccess(url);
+            return response.releaseBody().thenReturn(FetchResult.unchanged());
+        }
+        if (response.statusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                || response.statusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)) {
+            HostThrottledException throttled = new HostThrottledException(url, response.statusCode().value(),
+                    retryAfter(response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER)));
+            return response.releaseBody().then(Mono.error(throttled));
+        }
+        if (!response.statusCode().is2xxSuccessful()) {
+            return response.createError();
+        }
+        rateLimiter.onSuccess(url);
+        HttpValidators received = HttpValidators.from(response.headers().asHttpHeaders());
+        if (known != null && received != null && received.contentMd5() != null
+                && Objects.equals(known.contentMd5(), received.contentMd5())) {
+            // Server ignored the conditional request but the body digest is unchanged
+            log.debug("URL {} has unchanged Content-MD5, skipping body.", url);
+            return response.releaseBody().thenReturn(FetchResult.unchanged());
+        }
+        return readBody(url, response, maxBodyBytes, fingerprintOnly, meters)
+                .doOnNext(result -> rememberValidators(url, received));
+    }
+
+    /**
+     * Parses a Retry-After header: either delta-seconds or an HTTP date.
+     * @return The delay, or null if the header is missing or malformed.
+     */
+    static Duration retryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            // Not delta-seconds: try an HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Streams the body as DataBuffers, bounded by {@code maxBodyBytes}, releasing each chunk as soon as
+     * it is consumed. An oversized body (declared or actual) cancels the download. Chunks are copied into
+     * a buffer that becomes the page, or with {@code fingerprintOnly} decoded and hashed right away, so
+     * nothing of the page outlives its chunk. Hashing on the I/O thread is a single streaming pass, as
+     * cheap as the copy it replaces.
+     */
+    private Mono<FetchResult> readBody(String url, ClientResponse response, long maxBodyBytes, boolean fingerprintOnly,
+                                       MonitorMetrics.HostMeters meters) {
+        long declaredLength = response.headers().contentLength().orElse(-1L);
+        if (declaredLength > maxBodyBytes) {
+            return response.releaseBody().then(Mono.error(new ContentTooLargeException(url, maxBodyBytes)));
+        }
+        Charset charset = response.headers().contentType()
+                .map(MediaType::getCharset)
+                .orElse(StandardCharsets.UTF_8);
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            BodyFingerprinter fingerprinter = fingerprintOnly ? new BodyFingerprinter(charset) : null;
+            // Pre-sized from Content-Length, but only up to a bound: a large declared length isn't allocated up front
+            ByteArrayOutputStream body = fingerprintOnly ? null
+                    : new ByteArrayOutputStream(declaredLength > 0 ? (int) Math.min(declaredLength, MAX_PRESIZE_BYTES) : 16 * 1024);
+            long[] size = new long[1];
+            return response.bodyToFlux(DataBuffer.class)
+                    .<Void>handle((buffer, sink) -> {
+                        try {
+                            if (size[0] + buffer.readableByteCount() > maxBodyBytes) {
+                                sink.error(new ContentTooLargeException(url, maxBodyBytes));
+                                return;
+                            }
+                            size[0] += buffer.readableByteCount();
+                            try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                                while (chunks.hasNext()) {
+                                    ByteBuffer chunk = chunks.next();
+                                    if (fingerprinter != null) {
+                                        fingerprinter.feed(chunk);
+                                    } else if (chunk.hasArray()) {
+                                        body.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                                    } else {
+                                        byte[] copy = new byte[chunk.remaining()];
+                                        chunk.get(copy);
+                                        body.write(copy, 0, copy.length);
+                                    }
+                                }
+                            }
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        meters.bodyDuration().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        meters.bodySize().record(size[0]);
+                        return fingerprinter != null ? FetchResult.fingerprinted(fingerprinter.finish())
+                                : FetchResult.modified(body.toString(charset));
+                    }));
+        });
+    }
+
+    /**
+     * Forgets the validators for a URL, so the next fetch is unconditional.
+     * Must be called whenever the comparison baseline for the URL is discarded.
+     * @param url The URL.
+     */
+    public void clearValidators(String url) {
+        validators.remove(url);
     }
 }
@@ -0,0 +1,413 @@
+package com.WebsitePinger.Ping.store;
+
+import com.WebsitePinger.Ping.service.ContentFilter;
+import com.WebsitePinger.Ping.service.ContentFingerprint;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded file-backed snapshot store.
+ * <ul>
+ *   <li>{@code monitors.log} - append-only log of monitor add/remove records, each framed with
+ *       length and CRC32. Replayed on startup and compacted once dead records pile up. Strings are
+ *       int-length-prefixed UTF-8.</li>
+ *   <li>{@code fingerprints.idx} - memory-mapped table of fixed 32-byte slots, one per monitored URL
+ *       (the slot number is part of the URL's add record). Fingerprint updates are in-place writes
+ *       to the mapping, so the log does not grow with every detected change.</li>
+ * </ul>
+ * Startup cost is proportional to the number of monitored URLs; no page content is ever read.
+ */
+public class FileSnapshotStore implements SnapshotStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSnapshotStore.class);
+
+    static final String LOG_FILE = "monitors.log";
+    static final String INDEX_FILE = "fingerprints.idx";
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int VALID = 1;
+
+    private final Path logPath;
+    private final int compactionThreshold;
+    private final boolean fresh;
+    private final FileChannel indexChannel;
+    private FileChannel logChannel;
+    private MappedByteBuffer index;
+    private int slotCapacity;
+
+    // Live monitors as of the end of the log
+    private final Map<String, Monitor> monitors = new LinkedHashMap<>();
+    private final BitSet usedSlots = new BitSet();
+    private int deadRecords;
+
+    private record Monitor(int slot, MonitorSettings settings) {
+    }
+
+    public FileSnapshotStore(Path dir, int compactionThreshold) throws IOException {
+        Files.createDirectories(dir);
+        this.logPath = dir.resolve(LOG_FILE);
+        this.compactionThreshold = compactionThreshold;
+        this.fresh = !Files.exists(logPath);
+
+        this.logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayLog();
+
+        this.indexChannel = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int slotsOnDisk = (int) (indexChannel.size() / SLOT_SIZE);
+        this.slotCapacity = Math.max(INITIAL_SLOTS, Math.max(slotsOnDisk, usedSlots.length()));
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCapacity * SLOT_SIZE);
+
+        log.info("Loaded snapshot store from {}: {} monitored URLs.", dir, monitors.size());
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized boolean isFresh() {
+        return fresh;
+    }
+
+    @Override
+    public synchronized void saveMonitor(String url, MonitorSettings settings) {
+        saveMonitors(Map.of(url, settings));
+    }
+
+    // All records are appended first and synced once, so a bulk import doesn't pay one fsync per URL.
+    // Every record is encoded before any state changes, so a batch that can't be encoded leaves the store as it was
+    @Override
+    public synchronized void saveMonitors(Map<String, MonitorSettings> batch) {
+        int[] slots = new int[batch.size()];
+        List<byte[]> records = new ArrayList<>(batch.size());
+        int nextFree = 0;
+        for (Map.Entry<String, MonitorSettings> entry : batch.entrySet()) {
+            Monitor existing = monitors.get(entry.getKey());
+            int slot;
+            if (existing != null) {
+                slot = existing.slot();
+            } else {
+                // The lowest free slots, claimed below once every record is encoded
+                slot = usedSlots.nextClearBit(nextFree);
+                nextFree = slot + 1;
+            }
+            slots[records.size()] = slot;
+            records.add(encodeAdd(entry.getKey(), slot, entry.getValue()));
+        }
+        try {
+            int i = 0;
+            for (Map.Entry<String, MonitorSettings> entry : batch.entrySet()) {
+                String url = entry.getKey();
+                int slot = slots[i];
+                if (monitors.containsKey(url)) {
+                    deadRecords++;
+                } else {
+                    allocateSlot(slot);
+                    clearSlot(slot);
+                }
+                writeRecord(logChannel, records.get(i++));
+                monitors.put(url, new Monitor(slot, entry.getValue()));
+            }
+            logChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to snapshot log " + logPath, e);
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized void removeMonitor(String url) {
+        Monitor existing = monitors.remove(url);
+        if (existing == null) {
+            return;
+        }
+        clearSlot(existing.slot());
+        usedSlots.clear(existing.slot());
+        append(encodeRemove(url));
+        deadRecords += 2; // The add record and this remove record
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized Map<String, MonitorSettings> loadMonitors() {
+        Map<String, MonitorSettings> result = new LinkedHashMap<>();
+        monitors.forEach((url, monitor) -> result.put(url, monitor.settings()));
+        return result;
+    }
+
+    @Override
+    public synchronized void saveFingerprint(String url, ContentFingerprint fingerprint) {
+        Monitor monitor = monitors.get(url);
+        if (monitor == null) {
+            return;
+        }
+        int base = monitor.slot() * SLOT_SIZE;
+        index.putInt(base + 20, 0); // Invalidate first so a torn write is never read back as valid
+        index.putLong(base, fingerprint.high());
+        index.putLong(base + 8, fingerprint.low());
+        index.putInt(base + 16, fingerprint.length());
+        index.putInt(base + 24, check(fingerprint.high(), fingerprint.low(), fingerprint.length()));
+        index.putInt(base + 20, VALID);
+    }
+
+    @Override
+    public synchronized void removeFingerprint(String url) {
+        Monitor monitor = monitors.get(url);
+        if (monitor != null) {
+            clearSlot(monitor.slot());
+        }
+    }
+
+    @Override
+    public synchronized Map<String, ContentFingerprint> loadFingerprints() {
+        Map<String, ContentFingerprint> result = new HashMap<>();
+        monitors.forEach((url, monitor) -> {
+            int base = monitor.slot() * SLOT_SIZE;
+            if (index.getInt(base + 20) != VALID) {
+                return;
+            }
+            long high = index.getLong(base);
+            long low = index.getLong(base + 8);
+            int length = index.getInt(base + 16);
+            if (index.getInt(base + 24) == check(high, low, length)) {
+                result.put(url, new ContentFingerprint(high, low, length));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Flushes the index mapping and the log to disk and closes the files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        index.force();
+        logChannel.force(true);
+        logChannel.close();
+        indexChannel.close();
+    }
+
+    // --- Log handling ---
+
+    private void replayLog() throws IOException {
+        long size = logChannel.size();
+        ByteBuffer buffer = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long validEnd = 0;
+        int records = 0;
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc32(payload) != crc) {
+                break;
+            }
+            apply(payload);
+            records++;
+            validEnd = buffer.position();
+        }
+        if (validEnd < size) {
+            // Partially written record from a crash: drop it
+            log.warn("Truncating {} trailing bytes of snapshot log {}.", size - validEnd, logPath);
+            logChannel.truncate(validEnd);
+        }
+        logChannel.position(validEnd);
+        deadRecords = records - monitors.size();
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type != ADD && type != REMOVE) {
+            throw new IOException("Unknown snapshot record type " + type);
+        }
+        String url = readString(in);
+        if (type == ADD) {
+            int slot = in.readInt();
+            long minIntervalMs = in.readLong();
+            long maxIntervalMs = in.readLong();
+            long maxBodyBytes = in.readLong();
+            List<String> include = readStrings(in);
+            List<String> exclude = readStrings(in);
+            List<String> ignore = readStrings(in);
+            List<String> recipients = readStrings(in);
+            List<String> jsonPaths = readStrings(in);
+            ContentFilter filter = ContentFilter.of(include, exclude, ignore, jsonPaths);
+            Monitor previous = monitors.put(url, new Monitor(slot,
+                    new MonitorSettings(minIntervalMs, maxIntervalMs, maxBodyBytes > 0 ? maxBodyBytes : null, filter, recipients)));
+            if (previous != null && previous.slot() != slot) {
+                usedSlots.clear(previous.slot());
+            }
+            usedSlots.set(slot);
+        } else {
+            Monitor previous = monitors.remove(url);
+            if (previous != null) {
+                usedSlots.clear(previous.slot());
+            }
+        }
+    }
+
+    private void append(byte[] payload) {
+        try {
+            writeRecord(logChannel, payload);
+            logChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to snapshot log " + logPath, e);
+        }
+    }
+
+    private static void writeRecord(FileChannel channel, byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    // Rewrites the log with one add record per live monitor once dead records outnumber live ones
+    private void maybeCompact() {
+        if (deadRecords < compactionThreshold || deadRecords <= monitors.size()) {
+            return;
+        }
+        Path tmp = logPath.resolveSibling(LOG_FILE + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, Monitor> entry : monitors.entrySet()) {
+                    writeRecord(out, encodeAdd(entry.getKey(), entry.getValue().slot(), entry.getValue().settings()));
+                }
+                out.force(true);
+            }
+            logChannel.close();
+            Files.move(tmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logChannel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logChannel.position(logChannel.size());
+            log.info("Compacted snapshot log: dropped {} dead records, {} live.", deadRecords, monitors.size());
+            deadRecords = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact snapshot log " + logPath, e);
+        }
+    }
+
+    private static byte[] encodeAdd(String url, int slot, MonitorSettings settings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + url.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ADD);
+            writeString(out, url);
+            out.writeInt(slot);
+            out.writeLong(settings.minIntervalMs());
+            out.writeLong(settings.maxIntervalMs());
+            out.writeLong(settings.maxBodyBytes() != null ? settings.maxBodyBytes() : -1L);
+            writeStrings(out, settings.contentFilter().includeSelectors());
+            writeStrings(out, settings.contentFilter().excludeSelectors());
+            writeStrings(out, settings.contentFilter().ignorePatterns());
+            writeStrings(out, settings.recipients());
+            writeStrings(out, settings.contentFilter().jsonPaths());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRemove(String url) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + url.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REMOVE);
+            writeString(out, url);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) {
+            throw new IOException("Corrupt snapshot record: " + count + " strings");
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    // Unlike writeUTF, not limited to 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Corrupt snapshot record: string of " + length + " bytes");
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static int crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // --- Index handling ---
+
+    // Claims a free slot, growing the index if the slot lies beyond the mapping
+    private void allocateSlot(int slot) {
+        if (slot >= slotCapacity) {
+            int newCapacity = Math.max(slotCapacity * 2, slot + 1);
+            try {
+                index.force();
+                index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) newCapacity * SLOT_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to grow fingerprint index", e);
+            }
+            slotCapacity = newCapacity;
+        }
+        usedSlots.set(slot);
+    }
+
+    private void clearSlot(int slot) {
+        index.putInt(slot * SLOT_SIZE + 20, 0);
+    }
+
+    private static int check(long high, long low, int length) {
+        return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32)) ^ length ^ 0x5bd1e995;
+    }
+}
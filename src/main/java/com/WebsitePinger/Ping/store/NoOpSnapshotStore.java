@@ -0,0 +1,43 @@
+package com.WebsitePinger.Ping.store;
+
+import com.WebsitePinger.Ping.service.ContentFingerprint;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+
+import java.util.Map;
+
+/**
+ * Store that persists nothing; state lives only in memory (monitor.store.type=none).
+ */
+public class NoOpSnapshotStore implements SnapshotStore {
+
+    @Override
+    public boolean isFresh() {
+        return true;
+    }
+
+    @Override
+    public void saveMonitor(String url, MonitorSettings settings) {
+    }
+
+    @Override
+    public void removeMonitor(String url) {
+    }
+
+    @Override
+    public Map<String, MonitorSettings> loadMonitors() {
+        return Map.of();
+    }
+
+    @Override
+    public void saveFingerprint(String url, ContentFingerprint fingerprint) {
+    }
+
+    @Override
+    public void removeFingerprint(String url) {
+    }
+
+    @Override
+    public Map<String, ContentFingerprint> loadFingerprints() {
+        return Map.of();
+    }
+}
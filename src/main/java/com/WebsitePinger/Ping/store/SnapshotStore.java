@@ -0,0 +1,58 @@
+package com.WebsitePinger.Ping.store;
+
+import com.WebsitePinger.Ping.service.ContentFingerprint;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+import com.WebsitePinger.Ping.service.Subscription;
+
+import java.util.Map;
+
+/**
+ * Persists the monitored URL set and the last known content fingerprint per URL,
+ * so monitoring resumes after a restart without re-baselining every page.
+ * Page bodies are never stored. Monitors are keyed by {@link Subscription#key()}: the URL itself for a
+ * page's default subscription, {@code url#id} for its other subscriptions.
+ */
+public interface SnapshotStore {
+
+    /**
+     * Whether the store holds no previously persisted state (first start).
+     */
+    boolean isFresh();
+
+    /**
+     * Records that a URL is monitored with the given settings, replacing earlier settings.
+     */
+    void saveMonitor(String url, MonitorSettings settings);
+
+    /**
+     * Records many monitors at once (bulk import); stores may write them with a single sync.
+     */
+    default void saveMonitors(Map<String, MonitorSettings> monitors) {
+        monitors.forEach(this::saveMonitor);
+    }
+
+    /**
+     * Forgets a URL and its fingerprint.
+     */
+    void removeMonitor(String url);
+
+    /**
+     * Loads every monitored URL with its settings.
+     */
+    Map<String, MonitorSettings> loadMonitors();
+
+    /**
+     * Records the latest fingerprint for a monitored URL. Ignored for URLs that are not monitored.
+     */
+    void saveFingerprint(String url, ContentFingerprint fingerprint);
+
+    /**
+     * Clears the stored fingerprint of a URL, keeping the URL monitored.
+     */
+    void removeFingerprint(String url);
+
+    /**
+     * Loads every stored fingerprint.
+     */
+    Map<String, ContentFingerprint> loadFingerprints();
+}
@@ -0,0 +1,29 @@
+package com.WebsitePinger.Ping.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Selects the snapshot store implementation via monitor.store.type (file or none).
+ */
+@Configuration
+public class SnapshotStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "monitor.store.type", havingValue = "file", matchIfMissing = true)
+    public FileSnapshotStore fileSnapshotStore(@Value("${monitor.store.dir:data}") String dir,
+                                               @Value("${monitor.store.compaction-threshold:1024}") int compactionThreshold) throws IOException {
+        return new FileSnapshotStore(Path.of(dir), compactionThreshold);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "monitor.store.type", havingValue = "none")
+    public SnapshotStore noOpSnapshotStore() {
+        return new NoOpSnapshotStore();
+    }
+}
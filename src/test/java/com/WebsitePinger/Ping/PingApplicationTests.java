@@ -1,22 +1,36 @@
 package com.WebsitePinger.Ping;
 
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.service.MonitorSettings;
 import com.WebsitePinger.Ping.service.ScheduledMonitorTask;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = "monitor.store.type=none") // Keep tests from persisting monitored URLs
 @AutoConfigureMockMvc // Enable and configure MockMvc
+@AutoConfigureObservability(tracing = false) // Metrics export (and /actuator/prometheus) is off in tests by default
 class PingApplicationTests {
 
 	@Autowired
@@ -25,8 +39,13 @@ class PingApplicationTests {
 	@Autowired
 	private ScheduledMonitorTask monitorTask; // Inject the task to check its state
 
+	@Autowired
+	private PageHistoryStore historyStore;
+
 	private static final String TEST_URL_1 = "https://httpbin.org/get"; // Use a real, stable URL for testing
 	private static final String TEST_URL_2 = "https://httpbin.org/delay/1"; // Another test URL
+	// Bulk tests use hosts that never resolve, with long intervals so they aren't checked meanwhile
+	private static final String BULK_PREFIX = "https://bulk.invalid/page";
 
 	@BeforeEach
 	void setUp() {
@@ -34,6 +53,8 @@ class PingApplicationTests {
 		// Note: The default "https://example.com" added in the constructor will remain unless explicitly removed.
 		monitorTask.stopMonitoring(TEST_URL_1);
 		monitorTask.stopMonitoring(TEST_URL_2);
+		monitorTask.getMonitoredUrls().stream().filter(url -> url.startsWith(BULK_PREFIX)).toList()
+				.forEach(monitorTask::stopMonitoring);
 	}
 
 	@Test
@@ -57,6 +78,44 @@ class PingApplicationTests {
 		assertTrue(monitorTask.getMonitoredUrls().contains(TEST_URL_1), "URL should be monitored after POST request");
 	}
 
+	@Test
+	void testStartMonitoringEndpoint_WithInterval() throws Exception {
+		mockMvc.perform(post("/api/monitor").param("url", TEST_URL_1).param("intervalMs", "60000"))
+				.andExpect(status().isOk());
+
+		assertEquals(60000, monitorTask.getSettings(TEST_URL_1).minIntervalMs(), "URL should keep its own interval");
+	}
+
+	@Test
+	void testPollingEndpoint() throws Exception {
+		monitorTask.startMonitoring(TEST_URL_1, MonitorSettings.fixed(60000).withMaxIntervalMs(600000));
+
+		mockMvc.perform(get("/api/monitor/polling").param("url", TEST_URL_1))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.minIntervalMs").value(60000))
+				.andExpect(jsonPath("$.maxIntervalMs").value(600000))
+				.andExpect(jsonPath("$.currentIntervalMs").value(60000));
+	}
+
+	@Test
+	void testPollingEndpoint_NotMonitored() throws Exception {
+		mockMvc.perform(get("/api/monitor/polling").param("url", TEST_URL_2))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void testStartMonitoringEndpoint_BadRequest_MaxBelowMin() throws Exception {
+		mockMvc.perform(post("/api/monitor").param("url", TEST_URL_1).param("intervalMs", "60000").param("maxIntervalMs", "1000"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void testStartMonitoringEndpoint_BadRequest_NonPositiveInterval() throws Exception {
+		mockMvc.perform(post("/api/monitor").param("url", TEST_URL_1).param("intervalMs", "0"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("intervalMs must be positive.")));
+	}
+
 	@Test
 	void testStopMonitoringEndpoint() throws Exception {
 		// First, start monitoring the URL
@@ -72,6 +131,167 @@ class PingApplicationTests {
 		assertFalse(monitorTask.getMonitoredUrls().contains(TEST_URL_2), "URL should not be monitored after DELETE request");
 	}
 
+	@Test
+	void testBulkImportEndpoint_Ndjson() throws Exception {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 2500; i++) {
+			body.append("{\"url\":\"").append(BULK_PREFIX).append(i).append("\",\"intervalMs\":3600000}\n");
+		}
+		body.append("{\"url\":\"").append(BULK_PREFIX).append("-bad\",\"intervalMs\":0}\n");
+		body.append("{\"intervalMs\":60000}\n");
+
+		mockMvc.perform(post("/api/monitor/bulk").contentType(MediaType.APPLICATION_NDJSON).content(body.toString()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported").value(2500))
+				.andExpect(jsonPath("$.rejected").value(2))
+				.andExpect(jsonPath("$.errors[0]").value("entry 2501: intervalMs must be positive."))
+				.andExpect(jsonPath("$.errors[1]").value("entry 2502: url is required."));
+
+		assertEquals(3600000, monitorTask.getSettings(BULK_PREFIX + 2499).minIntervalMs());
+	}
+
+	@Test
+	void testBulkImportEndpoint_JsonArray() throws Exception {
+		String body = "[{\"url\":\"" + BULK_PREFIX + "1\",\"intervalMs\":3600000,\"include\":[\"#main\"]},"
+				+ "{\"url\":\"" + BULK_PREFIX + "2\",\"intervalMs\":3600000}]";
+
+		mockMvc.perform(post("/api/monitor/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported").value(2))
+				.andExpect(jsonPath("$.rejected").value(0));
+
+		assertEquals(List.of("#main"), monitorTask.getSettings(BULK_PREFIX + 1).contentFilter().includeSelectors());
+	}
+
+	@Test
+	void testBulkImportEndpoint_MalformedJsonKeepsEarlierEntries() throws Exception {
+		String body = "{\"url\":\"" + BULK_PREFIX + "1\",\"intervalMs\":3600000}\n{\"url\": oops}\n";
+
+		mockMvc.perform(post("/api/monitor/bulk").contentType(MediaType.APPLICATION_NDJSON).content(body))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.imported").value(1))
+				.andExpect(jsonPath("$.errors[0]").value(containsString("entry 2: malformed JSON")));
+
+		assertTrue(monitorTask.getMonitoredUrls().contains(BULK_PREFIX + 1));
+	}
+
+	@Test
+	void testExportEndpoint() throws Exception {
+		monitorTask.startMonitoring(BULK_PREFIX + 1, MonitorSettings.fixed(3600000));
+
+		MvcResult result = mockMvc.perform(get("/api/monitor/export")).andReturn();
+		String exported = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		assertTrue(exported.lines().anyMatch(line -> line.equals(
+				"{\"url\":\"" + BULK_PREFIX + "1\",\"intervalMs\":3600000,\"maxIntervalMs\":3600000}")), exported);
+	}
+
+	@Test
+	void testSubscriptionEndpoints() throws Exception {
+		// Every spelling of the page is the same monitored URL
+		monitorTask.startMonitoring("HTTPS://bulk.invalid:443/page1?utm_source=test#top", MonitorSettings.fixed(3600000));
+		mockMvc.perform(post("/api/monitor/subscriptions").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"id\":\"prices\",\"url\":\"https://BULK.invalid/page1\",\"intervalMs\":1800000,\"include\":[\"#prices\"]}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value("prices"))
+				.andExpect(jsonPath("$.url").value(BULK_PREFIX + 1));
+
+		assertEquals(List.of(BULK_PREFIX + 1), monitorTask.getMonitoredUrls().stream().filter(url -> url.startsWith(BULK_PREFIX)).toList());
+		// Polled as often as the most demanding subscription asks for
+		assertEquals(1800000, monitorTask.getPollingSnapshot(BULK_PREFIX + 1).minIntervalMs());
+		mockMvc.perform(get("/api/monitor/subscriptions").param("url", BULK_PREFIX + 1))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].id").doesNotExist())
+				.andExpect(jsonPath("$[1].include[0]").value("#prices"));
+
+		// Recipients can only be picked from the configured sinks
+		mockMvc.perform(post("/api/monitor/subscriptions").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"url\":\"" + BULK_PREFIX + "1\",\"notify\":[\"someone@example.com\"]}"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("Unknown notify recipient")));
+		mockMvc.perform(get("/api/monitor/subscriptions").param("url", "ftp://bulk.invalid/page1"))
+				.andExpect(status().isBadRequest());
+
+		mockMvc.perform(post("/api/monitor/check").param("url", BULK_PREFIX + 1))
+				.andExpect(status().isAccepted());
+		mockMvc.perform(post("/api/monitor/check").param("url", BULK_PREFIX + 2))
+				.andExpect(status().isNotFound());
+
+		mockMvc.perform(delete("/api/monitor/subscriptions").param("url", BULK_PREFIX + 1).param("id", "prices"))
+				.andExpect(status().isOk());
+		assertEquals(3600000, monitorTask.getPollingSnapshot(BULK_PREFIX + 1).minIntervalMs());
+		mockMvc.perform(delete("/api/monitor/subscriptions").param("url", BULK_PREFIX + 1).param("id", "prices"))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(delete("/api/monitor/subscriptions").param("url", BULK_PREFIX + 1).param("id", "default"))
+				.andExpect(status().isOk());
+		assertFalse(monitorTask.getMonitoredUrls().contains(BULK_PREFIX + 1));
+	}
+
+	@Test
+	void testStatusEndpoint_PagesAndFilters() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			monitorTask.startMonitoring(BULK_PREFIX + i, MonitorSettings.fixed(3600000));
+		}
+
+		mockMvc.perform(get("/api/monitor/status").param("host", "bulk.invalid").param("limit", "3"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items", hasSize(3)))
+				.andExpect(jsonPath("$.items[0].url").value(BULK_PREFIX + 0))
+				.andExpect(jsonPath("$.items[0].state").value("PENDING"))
+				.andExpect(jsonPath("$.items[0].checks").value(0))
+				.andExpect(jsonPath("$.nextCursor").value(BULK_PREFIX + 2));
+
+		mockMvc.perform(get("/api/monitor/status").param("host", "bulk.invalid").param("limit", "3")
+						.param("cursor", BULK_PREFIX + 2))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items", hasSize(2)))
+				.andExpect(jsonPath("$.items[1].url").value(BULK_PREFIX + 4))
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+		mockMvc.perform(get("/api/monitor/status").param("q", "bulk.invalid").param("state", "OK"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items", hasSize(0)));
+	}
+
+	@Test
+	void testHistoryEndpoints() throws Exception {
+		String url = "https://history.invalid/page";
+		historyStore.record(url, "<p>first</p>", Instant.parse("2025-01-01T00:00:00Z"));
+		historyStore.record(url, "<p>second</p>", Instant.parse("2025-01-08T00:00:00Z"));
+
+		MvcResult result = mockMvc.perform(get("/api/monitor/history").param("url", url))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("$[0].time").value("2025-01-08T00:00:00Z"))
+				.andExpect(jsonPath("$[1].length").value(12))
+				.andReturn();
+		String firstId = JsonPath.read(result.getResponse().getContentAsString(), "$[1].id");
+
+		mockMvc.perform(get("/api/monitor/history/content").param("url", url))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+				.andExpect(content().string("<p>second</p>"));
+		mockMvc.perform(get("/api/monitor/history/content").param("url", url).param("at", "2025-01-05T00:00:00Z"))
+				.andExpect(content().string("<p>first</p>"));
+		mockMvc.perform(get("/api/monitor/history/content").param("url", url).param("version", firstId))
+				.andExpect(content().string("<p>first</p>"));
+		mockMvc.perform(get("/api/monitor/history/content").param("url", url).param("at", "2024-12-31T00:00:00Z"))
+				.andExpect(status().isNotFound());
+		historyStore.remove(url);
+		mockMvc.perform(get("/api/monitor/history").param("url", url))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void testPrometheusEndpoint() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("monitor_checks_skipped_total")));
+	}
+
 	@Test
 	void testStartMonitoringEndpoint_BadRequest_NoUrl() throws Exception {
 		mockMvc.perform(post("/api/monitor")) // No 'url' parameter
@@ -0,0 +1,84 @@
+package com.WebsitePinger.Ping.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileLeaseMembershipTests {
+
+	@TempDir
+	Path dir;
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	private FileLeaseMembership node(String id) throws IOException {
+		return new FileLeaseMembership(dir, id, 10_000, clock::get);
+	}
+
+	@Test
+	void nodesSeeEachOtherAndLeaveCleanly() throws IOException {
+		FileLeaseMembership a = node("a");
+		FileLeaseMembership b = node("b");
+		List<List<String>> changes = new ArrayList<>();
+		a.addListener(changes::add);
+
+		assertEquals(List.of("a", "b"), b.liveNodes());
+		a.refresh();
+		assertEquals(List.of("a", "b"), a.liveNodes());
+
+		b.close();
+		assertFalse(Files.exists(dir.resolve("b" + FileLeaseMembership.LEASE_SUFFIX)));
+		a.refresh();
+		assertEquals(List.of("a"), a.liveNodes());
+		assertEquals(List.of(List.of("a", "b"), List.of("a")), changes);
+		a.close();
+	}
+
+	@Test
+	void nodeThatStopsRenewingDropsOutAfterItsLease() throws IOException {
+		FileLeaseMembership a = node("a");
+		FileLeaseMembership b = node("b");
+
+		// Only a keeps renewing
+		clock.addAndGet(9_000);
+		a.refresh();
+		assertEquals(List.of("a", "b"), a.liveNodes());
+		clock.addAndGet(1_000);
+		a.refresh();
+		assertEquals(List.of("a"), a.liveNodes());
+
+		// b comes back
+		b.refresh();
+		a.refresh();
+		assertEquals(List.of("a", "b"), a.liveNodes());
+	}
+
+	@Test
+	void nodeThatCannotRenewCountsItselfOut() throws IOException {
+		FileLeaseMembership a = node("a");
+		assertEquals(List.of("a"), a.liveNodes());
+
+		// The shared directory disappears: the lease can't be renewed
+		Files.delete(dir.resolve("a" + FileLeaseMembership.LEASE_SUFFIX));
+		Files.delete(dir);
+		clock.addAndGet(5_000);
+		a.refresh();
+		assertEquals(List.of("a"), a.liveNodes(), "Still within the last lease");
+		clock.addAndGet(5_000);
+		a.refresh();
+		assertEquals(List.of(), a.liveNodes());
+	}
+
+	@Test
+	void rejectsNodeIdsThatAreNotFileNames() {
+		assertThrows(IllegalArgumentException.class, () -> node("../evil"));
+	}
+}
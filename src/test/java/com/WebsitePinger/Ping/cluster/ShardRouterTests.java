@@ -0,0 +1,101 @@
+package com.WebsitePinger.Ping.cluster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTests {
+
+	private static final List<String> URLS = new ArrayList<>();
+
+	static {
+		for (int i = 0; i < 30_000; i++) {
+			URLS.add("https://site" + (i % 300) + ".example/page/" + i);
+		}
+	}
+
+	@Test
+	void everyUrlHasExactlyOneOwnerAndTheLoadIsEven() {
+		List<String> nodes = List.of("a", "b", "c");
+		Map<String, Integer> owned = new HashMap<>();
+		for (String url : URLS) {
+			int owners = 0;
+			for (String node : nodes) {
+				if (new ShardRouter.Assignment(nodes, node).owns(url)) {
+					owners++;
+					owned.merge(node, 1, Integer::sum);
+				}
+			}
+			assertEquals(1, owners, url);
+		}
+		for (String node : nodes) {
+			// 10,000 each on average
+			assertTrue(Math.abs(owned.get(node) - 10_000) < 500, owned.toString());
+		}
+	}
+
+	@Test
+	void joiningNodeOnlyTakesItsShare() {
+		ShardRouter.Assignment before = new ShardRouter.Assignment(List.of("a", "b", "c"), "a");
+		ShardRouter.Assignment after = new ShardRouter.Assignment(List.of("a", "b", "c", "d"), "a");
+		int moved = 0;
+		for (String url : URLS) {
+			String owner = after.ownerOf(url);
+			if (!owner.equals(before.ownerOf(url))) {
+				// URLs only ever move to the new node
+				assertEquals("d", owner);
+				moved++;
+			}
+		}
+		assertTrue(Math.abs(moved - URLS.size() / 4) < 750, "moved " + moved);
+	}
+
+	@Test
+	void nonMemberOwnsNothingAndSingleNodeOwnsEverything() {
+		assertFalse(new ShardRouter.Assignment(List.of("a", "b"), "z").owns(URLS.get(0)));
+		assertFalse(new ShardRouter.Assignment(List.of(), "a").owns(URLS.get(0)));
+		assertTrue(URLS.stream().allMatch(new ShardRouter.Assignment(List.of("a"), "a")::owns));
+	}
+
+	@Test
+	void rebalancesWhenMembershipChanges() {
+		AtomicReference<Consumer<List<String>>> listener = new AtomicReference<>();
+		ClusterMembership membership = new ClusterMembership() {
+			@Override
+			public String localNodeId() {
+				return "a";
+			}
+
+			@Override
+			public List<String> liveNodes() {
+				return List.of("a");
+			}
+
+			@Override
+			public void addListener(Consumer<List<String>> l) {
+				listener.set(l);
+			}
+		};
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		ShardRouter router = new ShardRouter(membership, registry);
+		List<ShardRouter.Assignment> seen = new ArrayList<>();
+		router.addRebalanceListener((previous, current) -> seen.add(current));
+		assertTrue(router.owns(URLS.get(0)));
+
+		listener.get().accept(List.of("a", "b"));
+
+		assertEquals(List.of("a", "b"), router.assignment().nodes());
+		assertEquals(1, seen.size());
+		assertEquals(2.0, registry.get("monitor.cluster.nodes").gauge().value());
+		assertEquals(URLS.stream().filter(url -> router.assignment().ownerOf(url).equals("a")).count(),
+				URLS.stream().filter(router::owns).count());
+	}
+}
@@ -0,0 +1,163 @@
+package com.WebsitePinger.Ping.history;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageHistoryStoreTests {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+	private static final String URL = "https://a.example/";
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private PageHistoryStore store(int maxVersions, long cacheBytes) {
+		return new PageHistoryStore(registry, true, maxVersions, Duration.ofDays(30).toMillis(), cacheBytes);
+	}
+
+	// A ~40 KB page of varied text; revisions change one paragraph each
+	private static String page(int revision) {
+		Random random = new Random(42);
+		StringBuilder page = new StringBuilder("<html><body>");
+		for (int paragraph = 0; paragraph < 200; paragraph++) {
+			page.append("<p>");
+			for (int word = 0; word < 30; word++) {
+				page.append((char) ('a' + random.nextInt(26))).append(random.nextInt(10_000)).append(' ');
+			}
+			if (paragraph == revision % 200) {
+				page.append("revision ").append(revision);
+			}
+			page.append("</p>\n");
+		}
+		return page.append("</body></html>").toString();
+	}
+
+	@Test
+	void everyVersionReadsBackExactly() {
+		// No cache: every read decodes its delta chain
+		PageHistoryStore store = store(50, 0);
+		for (int revision = 0; revision < 30; revision++) {
+			store.record(URL, page(revision), T0.plusSeconds(revision));
+		}
+
+		List<PageVersion> versions = store.versions(URL);
+		assertEquals(30, versions.size());
+		for (int i = 0; i < versions.size(); i++) {
+			// Newest first
+			assertEquals(page(29 - i), store.content(URL, versions.get(i).id()));
+		}
+	}
+
+	@Test
+	void historyIsASmallFractionOfTheRawSize() {
+		PageHistoryStore store = store(50, 0);
+		for (int revision = 0; revision < 30; revision++) {
+			store.record(URL, page(revision), T0.plusSeconds(revision));
+		}
+
+		// One deflated page plus 29 small deltas
+		assertTrue(store.storedBytes() * 10 < store.rawBytes(),
+				store.storedBytes() + " stored for " + store.rawBytes() + " raw");
+		assertEquals(store.rawBytes(), registry.get("monitor.history.raw.bytes").gauge().value());
+	}
+
+	@Test
+	void identicalBodiesAreStoredOnce() {
+		PageHistoryStore store = store(50, 1 << 20);
+		store.record(URL, page(1), T0);
+		long stored = store.storedBytes();
+
+		store.record("https://mirror.example/", page(1), T0);
+		store.record(URL, page(2), T0.plusSeconds(1));
+		// Flipping back refers to the stored body again
+		store.record(URL, page(1), T0.plusSeconds(2));
+		// Same body as the newest version: nothing to record
+		store.record(URL, page(1), T0.plusSeconds(3));
+
+		assertEquals(3, store.versions(URL).size());
+		assertEquals(store.versions(URL).get(0).id(), store.versions("https://mirror.example/").get(0).id());
+		assertEquals(2, registry.counter("monitor.history.deduplicated").count());
+		// Only the second body and its delta were added
+		assertTrue(store.storedBytes() < stored * 2);
+		assertEquals(page(2), store.content(URL, store.versions(URL).get(1).id()));
+	}
+
+	@Test
+	void retentionDropsTheOldestVersionsAndFreesTheirBodies() {
+		PageHistoryStore store = store(3, 0);
+		for (int revision = 0; revision < 10; revision++) {
+			store.record(URL, page(revision), T0.plusSeconds(revision));
+		}
+
+		List<PageVersion> versions = store.versions(URL);
+		assertEquals(3, versions.size());
+		assertEquals(T0.plusSeconds(9), versions.get(0).time());
+		assertEquals(page(7), store.content(URL, versions.get(2).id()));
+		assertEquals(3, store.versionCount());
+
+		store.remove(URL);
+		assertEquals(0, store.storedBytes());
+		assertEquals(0, store.rawBytes());
+		assertFalse(store.hasHistory(URL));
+	}
+
+	@Test
+	void sweepDropsExpiredVersionsButKeepsTheNewest() {
+		PageHistoryStore store = store(50, 0);
+		store.record(URL, page(1), T0);
+		store.record(URL, page(2), T0.plus(Duration.ofDays(10)));
+		store.record(URL, page(3), T0.plus(Duration.ofDays(20)));
+
+		store.sweep(T0.plus(Duration.ofDays(45)));
+		assertEquals(1, store.versions(URL).size());
+		store.sweep(T0.plus(Duration.ofDays(400)));
+
+		assertEquals(page(3), store.content(URL, store.versions(URL).get(0).id()));
+	}
+
+	@Test
+	void versionAtFindsTheVersionCurrentAtThatTime() {
+		PageHistoryStore store = store(50, 1 << 20);
+		store.record(URL, page(1), T0);
+		store.record(URL, page(2), T0.plus(Duration.ofDays(7)));
+
+		assertNull(store.versionAt(URL, T0.minusSeconds(1)));
+		assertEquals(T0, store.versionAt(URL, T0.plus(Duration.ofDays(6))).time());
+		assertEquals(T0.plus(Duration.ofDays(7)), store.versionAt(URL, T0.plus(Duration.ofDays(8))).time());
+		assertNull(store.content("https://other.example/", store.versions(URL).get(0).id()));
+	}
+
+	@Test
+	void deltasRoundTripArbitraryEdits() {
+		Random random = new Random(7);
+		for (int round = 0; round < 50; round++) {
+			byte[] base = new byte[random.nextInt(5_000)];
+			random.nextBytes(base);
+			// Splice random chunks of the base with fresh bytes
+			ByteArrayOutputStream target = new ByteArrayOutputStream();
+			for (int piece = 0; piece < 10; piece++) {
+				if (random.nextBoolean() && base.length > 0) {
+					int from = random.nextInt(base.length);
+					int length = random.nextInt(base.length - from + 1);
+					target.write(base, from, length);
+				} else {
+					byte[] fresh = new byte[random.nextInt(100)];
+					random.nextBytes(fresh);
+					target.writeBytes(fresh);
+				}
+			}
+			byte[] expected = target.toByteArray();
+			assertArrayEquals(expected, DeltaCodec.decode(base, DeltaCodec.encode(base, expected)), "round " + round);
+		}
+		byte[] text = "unchanged".getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(text, DeltaCodec.decompress(DeltaCodec.compress(text), text.length));
+	}
+}
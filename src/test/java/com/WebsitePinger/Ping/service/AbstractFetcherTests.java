@@ -0,0 +1,270 @@
+package com.WebsitePinger.Ping.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The cases both check engines' fetchers must pass, against one stub server. Subclasses build their fetcher
+// from the shared metrics, rate limiter and circuit breaker
+abstract class AbstractFetcherTests {
+
+	static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+	HttpServer server;
+	String baseUrl;
+	MonitorMetrics metrics;
+	HostRateLimiter rateLimiter;
+	HostCircuitBreaker circuitBreaker;
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	final AtomicInteger busyRequests = new AtomicInteger();
+	final AtomicInteger failingRequests = new AtomicInteger();
+	final List<String> ifModifiedSince = new CopyOnWriteArrayList<>();
+	final AtomicInteger md5Requests = new AtomicInteger();
+	volatile String md5Version = "v1";
+
+	/**
+	 * Fetches a path of the stub server with the engine under test.
+	 */
+	abstract FetchResult fetch(String path, Long maxBodyBytes, Duration budget) throws InterruptedException;
+
+	FetchResult fetch(String path) throws InterruptedException {
+		return fetch(path, null, null);
+	}
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/etag", exchange -> {
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				exchange.getResponseHeaders().set("ETag", "\"v1\"");
+				respond(exchange, "<html><body>hello</body></html>");
+			}
+			exchange.close();
+		});
+		server.createContext("/modified", exchange -> {
+			String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			ifModifiedSince.add(String.valueOf(since));
+			if (LAST_MODIFIED.equals(since)) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+				respond(exchange, "<html><body>dated</body></html>");
+			}
+			exchange.close();
+		});
+		server.createContext("/md5", exchange -> {
+			// Ignores conditional requests, but sends a digest of the body
+			md5Requests.incrementAndGet();
+			String version = md5Version;
+			exchange.getResponseHeaders().set("Content-MD5", "digest-" + version);
+			respond(exchange, "<html><body>" + version + "</body></html>");
+			exchange.close();
+		});
+		server.createContext("/large", exchange -> {
+			// Chunked, so the cap has to be enforced while streaming rather than from Content-Length
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				for (int i = 0; i < 10; i++) {
+					out.write("x".repeat(1_000).getBytes(StandardCharsets.UTF_8));
+					out.flush();
+				}
+			}
+			exchange.close();
+		});
+		server.createContext("/missing", exchange -> {
+			failingRequests.incrementAndGet();
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		server.createContext("/broken", exchange -> {
+			failingRequests.incrementAndGet();
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		});
+		server.createContext("/busy", exchange -> {
+			busyRequests.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", "120");
+			exchange.sendResponseHeaders(429, -1);
+			exchange.close();
+		});
+		server.createContext("/gzip", exchange -> {
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(("<html><body>" + acceptEncoding + "</body></html>").getBytes(StandardCharsets.UTF_8));
+			}
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, compressed.size());
+			try (OutputStream out = exchange.getResponseBody()) {
+				compressed.writeTo(out);
+			}
+			exchange.close();
+		});
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+		metrics = new MonitorMetrics(registry);
+		rateLimiter = new HostRateLimiter(WebClient.builder(), metrics, true, 1_000, 100, 30_000, 600_000, 3_600_000, false, 86_400_000);
+		circuitBreaker = new HostCircuitBreaker(metrics, true, 3, 60_000, 600_000);
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void secondFetchIsConditionalAndShortCircuitsOn304() throws InterruptedException {
+		FetchResult first = fetch("/etag");
+		FetchResult second = fetch("/etag");
+
+		assertNotNull(first);
+		assertFalse(first.notModified());
+		assertEquals("<html><body>hello</body></html>", first.content());
+		assertNotNull(second);
+		assertTrue(second.notModified());
+		assertNull(second.content());
+	}
+
+	@Test
+	void lastModifiedMakesTheNextFetchConditional() throws InterruptedException {
+		FetchResult first = fetch("/modified");
+		FetchResult second = fetch("/modified");
+		// A 304 keeps the validators, so the next fetch is conditional again
+		FetchResult third = fetch("/modified");
+
+		assertEquals("<html><body>dated</body></html>", first.content());
+		assertTrue(second.notModified());
+		assertTrue(third.notModified());
+		assertEquals(List.of("null", LAST_MODIFIED, LAST_MODIFIED), ifModifiedSince);
+	}
+
+	@Test
+	void unchangedContentMd5SkipsTheBodyOfAFullResponse() throws InterruptedException {
+		FetchResult first = fetch("/md5");
+		FetchResult second = fetch("/md5");
+		md5Version = "v2";
+		FetchResult third = fetch("/md5");
+
+		assertEquals("<html><body>v1</body></html>", first.content());
+		// The server answered 200 again, but with the digest of the body we already have
+		assertTrue(second.notModified());
+		assertNull(second.content());
+		assertFalse(third.notModified());
+		assertEquals("<html><body>v2</body></html>", third.content());
+		assertEquals(3, md5Requests.get());
+		// Only the two changed bodies were read
+		assertEquals(2, registry.get("monitor.fetch.body.size").tag("host", "127.0.0.1").summary().count());
+	}
+
+	@Test
+	void oversizedBodyIsRejected() throws InterruptedException {
+		FetchResult oversized = fetch("/large");
+
+		assertNotNull(oversized);
+		assertEquals(FetchFailure.Kind.TOO_LARGE, oversized.failure().kind());
+		assertFalse(fetch("/large", 20_000L, null).isFailed());
+	}
+
+	@Test
+	void compressedResponsesAreDecoded() throws InterruptedException {
+		FetchResult result = fetch("/gzip");
+
+		assertNotNull(result);
+		assertEquals("<html><body>gzip, deflate</body></html>", result.content());
+	}
+
+	@Test
+	void throttledHostIsPausedInsteadOfRetried() throws InterruptedException {
+		assertTrue(rateLimiter.permit(baseUrl + "/etag").blockOptional(Duration.ofSeconds(1)).isEmpty());
+
+		FetchResult result = fetch("/busy");
+
+		assertEquals(FetchFailure.Kind.THROTTLED, result.failure().kind());
+		assertEquals(1, busyRequests.get());
+		assertEquals(1, registry.get("monitor.fetch.errors").tags("host", "127.0.0.1", "cause", "throttled").counter().count());
+		// Every URL on the host now waits out the Retry-After
+		assertThrows(IllegalStateException.class, () -> rateLimiter.permit(baseUrl + "/etag").block(Duration.ofMillis(200)));
+	}
+
+	@Test
+	void clientErrorsAreNotRetried() throws InterruptedException {
+		FetchResult result = fetch("/missing");
+
+		assertEquals(FetchFailure.Kind.CLIENT_ERROR, result.failure().kind());
+		assertEquals(1, failingRequests.get());
+		// The host answered, so its circuit stays closed
+		assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.state(baseUrl + "/missing"));
+	}
+
+	@Test
+	void serverErrorsAreRetriedWithinTheBudget() throws InterruptedException {
+		FetchResult result = fetch("/broken");
+
+		assertEquals(FetchFailure.Kind.SERVER_ERROR, result.failure().kind());
+		assertEquals(4, failingRequests.get());
+		// Each retry waited for a slot of the host's rate limit
+		assertEquals(3, registry.get("monitor.politeness.wait").tag("host", "127.0.0.1").timer().count());
+
+		// No time left for a retry
+		failingRequests.set(0);
+		fetch("/broken", null, Duration.ofMillis(1));
+		assertEquals(1, failingRequests.get());
+	}
+
+	@Test
+	void repeatedHostFailuresOpenTheCircuit() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			fetch("/broken", null, Duration.ZERO);
+		}
+		assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.state(baseUrl + "/etag"));
+
+		// Every URL on the host now fails fast, without a request
+		FetchResult result = fetch("/etag");
+
+		assertEquals(FetchFailure.Kind.CIRCUIT_OPEN, result.failure().kind());
+		assertEquals(3, failingRequests.get());
+	}
+
+	@Test
+	void fetchesAreMeteredByHost() throws InterruptedException {
+		fetch("/etag");
+		fetch("/etag");
+		fetch("/large");
+
+		assertEquals(1, registry.get("monitor.fetch.duration").tags("host", "127.0.0.1", "outcome", "modified").timer().count());
+		assertEquals(1, registry.get("monitor.fetch.duration").tags("host", "127.0.0.1", "outcome", "not_modified").timer().count());
+		assertEquals(1, registry.get("monitor.fetch.duration").tags("host", "127.0.0.1", "outcome", "failed").timer().count());
+		assertEquals(3, registry.get("monitor.fetch.time-to-first-byte").tag("host", "127.0.0.1").timer().count());
+		assertEquals(31, registry.get("monitor.fetch.body.size").tag("host", "127.0.0.1").summary().totalAmount());
+		// Oversized bodies are not retried
+		assertEquals(1, registry.get("monitor.fetch.errors").tags("host", "127.0.0.1", "cause", "too_large").counter().count());
+		assertEquals(0, registry.get("monitor.fetch.retries").tag("host", "127.0.0.1").counter().count());
+	}
+
+	static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
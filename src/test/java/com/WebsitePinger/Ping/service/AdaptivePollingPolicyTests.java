@@ -0,0 +1,38 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptivePollingPolicyTests {
+
+	private final AdaptivePollingPolicy policy = new AdaptivePollingPolicy(1000, 8000, 2.0, 2, 3_600_000);
+
+	@Test
+	void backsOffExponentiallyUpToCeilingAndSnapsBackOnChange() {
+		PollingTable states = new PollingTable(0);
+		states.put("u", policy.defaultSettings());
+		long now = 1_000_000;
+
+		assertEquals(1000, policy.onCheck("u", states, false, now += 1000)); // below backoff-after
+		assertEquals(2000, policy.onCheck("u", states, false, now += 1000));
+		assertEquals(4000, policy.onCheck("u", states, false, now += 2000));
+		assertEquals(8000, policy.onCheck("u", states, false, now += 4000));
+		assertEquals(8000, policy.onCheck("u", states, false, now += 8000)); // capped
+		assertEquals(1000, policy.onCheck("u", states, true, now += 8000));
+	}
+
+	@Test
+	void fixedIntervalNeverChangesAndRateIsEstimated() {
+		PollingTable states = new PollingTable(0);
+		states.put("u", MonitorSettings.fixed(1000));
+		long now = 0;
+		for (int i = 0; i < 10; i++) {
+			assertEquals(1000, policy.onCheck("u", states, i % 2 == 0, now += 1000));
+		}
+
+		PollingSnapshot snapshot = states.snapshot("u");
+		assertNotNull(snapshot.changesPerHour());
+		assertTrue(snapshot.changesPerHour() > 0);
+	}
+}
@@ -0,0 +1,69 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The shared cases against the virtual-thread engine's java.net.http fetcher
+class BlockingWebsiteFetcherTests extends AbstractFetcherTests {
+
+	private BlockingWebsiteFetcher fetcher;
+	private WebsiteFetcher reactiveFetcher;
+	private HttpClient httpClient;
+
+	@BeforeEach
+	void createFetcher() {
+		httpClient = new FetchClientConfig().blockingFetchClient(5_000);
+		// The reactive fetcher only holds the shared validators and retry settings here; it never fetches
+		reactiveFetcher = new WebsiteFetcher(WebClient.builder(), metrics, rateLimiter, circuitBreaker, 5_000, 3, 10, 50);
+		fetcher = new BlockingWebsiteFetcher(httpClient, reactiveFetcher, metrics, rateLimiter, circuitBreaker, 10_000, true, true);
+	}
+
+	@AfterEach
+	void closeClient() {
+		httpClient.close();
+	}
+
+	@Override
+	FetchResult fetch(String path, Long maxBodyBytes, Duration budget) throws InterruptedException {
+		return fetcher.fetchContent(baseUrl + path, maxBodyBytes, budget);
+	}
+
+	@Test
+	void validatorsAreSharedWithTheReactiveFetcher() throws InterruptedException {
+		fetch("/etag");
+		reactiveFetcher.clearValidators(baseUrl + "/etag");
+
+		FetchResult result = fetch("/etag");
+
+		assertFalse(result.notModified());
+	}
+
+	@Test
+	void throttledHostPausesBlockingChecksToo() throws InterruptedException {
+		fetch("/busy");
+
+		Thread waiting = Thread.ofVirtual().start(() -> {
+			try {
+				rateLimiter.awaitPermit(baseUrl + "/etag");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertFalse(waiting.join(Duration.ofMillis(200)));
+		waiting.interrupt();
+	}
+
+	@Test
+	void unresolvableHostsAreClassifiedAsDns() throws InterruptedException {
+		FetchResult result = fetcher.fetchContent("http://no-such-host.invalid/", null, Duration.ZERO);
+
+		assertEquals(FetchFailure.Kind.DNS, result.failure().kind());
+	}
+}
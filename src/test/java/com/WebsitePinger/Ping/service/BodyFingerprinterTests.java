@@ -0,0 +1,48 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodyFingerprinterTests {
+
+	@Test
+	void streamedFingerprintEqualsFingerprintOfTheDecodedPage() {
+		for (String html : HtmlTextNormalizerTests.CORPUS) {
+			String page = html + "<p>Grüße € 😀</p>";
+			byte[] body = page.getBytes(StandardCharsets.UTF_8);
+			ContentFingerprint expected = HtmlTextNormalizer.fingerprint(page);
+			// Chunk sizes that split multi-byte characters at every possible offset
+			for (int chunkSize = 1; chunkSize <= 7; chunkSize++) {
+				assertEquals(expected, streamed(body, chunkSize, StandardCharsets.UTF_8), html + " in chunks of " + chunkSize);
+			}
+		}
+	}
+
+	@Test
+	void malformedInputIsReplacedLikeStringDecoding() {
+		byte[] body = {'<', 'p', '>', 'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82, '<', '/', 'p', '>', (byte) 0xF0, (byte) 0x9F};
+
+		assertEquals(HtmlTextNormalizer.fingerprint(new String(body, StandardCharsets.UTF_8)), streamed(body, 3, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void bodyIsDecodedWithItsCharset() {
+		byte[] body = "<p>café</p>".getBytes(StandardCharsets.ISO_8859_1);
+
+		assertEquals(HtmlTextNormalizer.fingerprint("<p>café</p>"), streamed(body, 2, StandardCharsets.ISO_8859_1));
+	}
+
+	private static ContentFingerprint streamed(byte[] body, int chunkSize, Charset charset) {
+		BodyFingerprinter fingerprinter = new BodyFingerprinter(charset);
+		for (int offset = 0; offset < body.length; offset += chunkSize) {
+			fingerprinter.feed(ByteBuffer.wrap(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + chunkSize))));
+		}
+		return fingerprinter.finish();
+	}
+}
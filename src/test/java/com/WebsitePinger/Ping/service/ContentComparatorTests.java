@@ -0,0 +1,140 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentComparatorTests {
+
+	private static final String URL = "https://example.com/";
+
+	private final DiffEngine diffEngine = new DiffEngine(2000, 2, 20);
+
+	@Test
+	void firstCheckIsInitialAndStoresFingerprint() {
+		ContentComparator comparator = new ContentComparator(false, true, diffEngine, new NoOpSnapshotStore());
+
+		ComparisonResult result = comparator.compareAndStore(URL, "<html><body><p>Hello</p></body></html>");
+
+		assertFalse(result.changed());
+		assertTrue(comparator.hasState(URL));
+		assertEquals(5, comparator.getLastKnownFingerprint(URL).length()); // cleaned text is "Hello"
+		assertNull(comparator.getLastKnownContent(URL), "Raw content should not be retained by default");
+	}
+
+	@Test
+	void scriptsCommentsAndWhitespaceDoNotCountAsChanges() {
+		ContentComparator comparator = new ContentComparator(false, true, diffEngine, new NoOpSnapshotStore());
+		comparator.compareAndStore(URL, "<html><body><p>Hello   world</p><script>var t = 1;</script></body></html>");
+
+		ComparisonResult result = comparator.compareAndStore(URL,
+				"<html><body><!-- cache 42 --><p>Hello world</p><script>var t = 2;</script><input type=hidden value=x></body></html>");
+
+		assertFalse(result.changed());
+	}
+
+	@Test
+	void textChangeIsDetected() {
+		ContentComparator comparator = new ContentComparator(false, true, diffEngine, new NoOpSnapshotStore());
+		comparator.compareAndStore(URL, "<html><body><p>Results pending</p></body></html>");
+
+		ComparisonResult result = comparator.compareAndStore(URL, "<html><body><p>Results published</p></body></html>");
+
+		assertTrue(result.changed());
+		assertNull(result.previousContent());
+		assertEquals(List.of(new DiffHunk(DiffHunk.Type.MODIFIED, 1, "Results", "pending", "published", "")), result.diff().hunks());
+	}
+
+	@Test
+	void onlySelectedRegionsAreCompared() {
+		ContentComparator comparator = new ContentComparator(false, true, diffEngine, new NoOpSnapshotStore());
+		ContentFilter filter = ContentFilter.of(List.of("#results"), List.of("#results .ad"), List.of("Updated \\d{2}:\\d{2}"));
+		comparator.compareAndStore(URL, "<body><div id=clock>10:00</div><div id=results>Pending <span class=ad>Buy!</span> Updated 10:00</div></body>", filter);
+
+		ComparisonResult unchanged = comparator.compareAndStore(URL,
+				"<body><div id=clock>10:05</div><div id=results>Pending <span class=ad>Sale!</span> Updated 10:05</div></body>", filter);
+		ComparisonResult changed = comparator.compareAndStore(URL,
+				"<body><div id=clock>10:10</div><div id=results>Published Updated 10:10</div></body>", filter);
+
+		assertFalse(unchanged.changed());
+		assertTrue(changed.changed());
+	}
+
+	@Test
+	void jsonChangesAreReportedPerField() {
+		ContentComparator comparator = new ContentComparator(false, true, diffEngine, new NoOpSnapshotStore());
+		ContentFilter filter = ContentFilter.of(null, null, null, List.of("$.results[*].grade"));
+		comparator.compareAndStore(URL, "{\"generated\":1,\"results\":[{\"id\":7,\"grade\":\"B\"}]}", filter);
+
+		ComparisonResult unchanged = comparator.compareAndStore(URL,
+				"{\"results\":[{\"grade\":\"B\",\"id\":7}],\"generated\":2}", filter);
+		ComparisonResult changed = comparator.compareAndStore(URL,
+				"{\"generated\":3,\"results\":[{\"id\":7,\"grade\":\"A\"},{\"id\":8,\"grade\":\"C\"}]}", filter);
+
+		assertFalse(unchanged.changed());
+		assertTrue(changed.changed());
+		assertTrue(changed.diff().isFieldDiff());
+		assertEquals(List.of(
+				new FieldChange("$.results[0].grade", "\"B\"", "\"A\""),
+				new FieldChange("$.results[1].grade", null, "\"C\"")), changed.diff().fields());
+	}
+
+	@Test
+	void invalidSelectorOrPatternIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> ContentFilter.of(List.of("div[["), null, null));
+		assertThrows(IllegalArgumentException.class, () -> ContentFilter.of(null, null, List.of("(unclosed")));
+		assertSame(ContentFilter.NONE, ContentFilter.of(List.of(" "), null, null));
+	}
+
+	@Test
+	void diffReportsAddedRemovedAndModifiedRegionsWithContext() {
+		ContentDiff diff = diffEngine.diff("a b c d e f g h", "a b X d e f h i");
+
+		assertTrue(diff.complete());
+		assertEquals(List.of(
+				new DiffHunk(DiffHunk.Type.MODIFIED, 2, "a b", "c", "X", "d e"),
+				new DiffHunk(DiffHunk.Type.REMOVED, 6, "e f", "g", "", "h"),
+				new DiffHunk(DiffHunk.Type.ADDED, 8, "g h", "", "i", "")), diff.hunks());
+		assertEquals(2, diff.removedTokens());
+		assertEquals(2, diff.addedTokens());
+	}
+
+	@Test
+	void diffDegradesToSummaryOverBudget() {
+		DiffEngine tinyBudget = new DiffEngine(3, 2, 20);
+
+		ContentDiff diff = tinyBudget.diff("keep a b c d keep", "keep w x y z keep");
+
+		assertFalse(diff.complete());
+		assertTrue(diff.hunks().isEmpty());
+		assertEquals(4, diff.removedTokens());
+		assertEquals(4, diff.addedTokens());
+	}
+
+	@Test
+	void previousContentIsReturnedWhenRetained() {
+		ContentComparator comparator = new ContentComparator(true, true, diffEngine, new NoOpSnapshotStore());
+		String first = "<html><body><p>v1</p></body></html>";
+		String second = "<html><body><p>v2</p></body></html>";
+		comparator.compareAndStore(URL, first);
+
+		ComparisonResult result = comparator.compareAndStore(URL, second);
+
+		assertTrue(result.changed());
+		assertEquals(first, result.previousContent());
+		assertEquals(second, comparator.getLastKnownContent(URL));
+	}
+
+	@Test
+	void hasherIsIncrementalAndSensitiveToOrder() {
+		ContentHasher chunked = new ContentHasher();
+		chunked.update("Hello, ");
+		chunked.update("world!".toCharArray(), 0, 6);
+
+		assertEquals(ContentFingerprint.of("Hello, world!"), chunked.finish());
+		assertNotEquals(ContentFingerprint.of("ab"), ContentFingerprint.of("ba"));
+	}
+}
@@ -0,0 +1,53 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintTableTests {
+
+	private static final ContentFingerprint A = new ContentFingerprint(1, 2, 3);
+	private static final ContentFingerprint B = new ContentFingerprint(1, 2, 4);
+
+	@Test
+	void reportsHowEachFingerprintCompares() {
+		FingerprintTable table = new FingerprintTable(0);
+
+		assertEquals(FingerprintTable.Outcome.FIRST, table.put("https://example.com/", A));
+		assertEquals(FingerprintTable.Outcome.UNCHANGED, table.put("https://example.com/", A));
+		assertEquals(FingerprintTable.Outcome.CHANGED, table.put("https://example.com/", B));
+		assertEquals(B, table.get("https://example.com/"));
+
+		assertTrue(table.remove("https://example.com/"));
+		assertFalse(table.remove("https://example.com/"));
+		assertNull(table.get("https://example.com/"));
+		// A removed key starts over, even though its id (and stale columns) may be reused
+		assertEquals(FingerprintTable.Outcome.FIRST, table.put("https://example.com/", B));
+	}
+
+	@Test
+	void agreesWithAMapUnderRandomPutsAndRemoves() {
+		FingerprintTable table = new FingerprintTable(4);
+		Map<String, ContentFingerprint> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			// Few distinct keys, so removals punch holes into long probe runs that later lookups must cross
+			String key = "https://example.com/page/" + random.nextInt(5_000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key) != null, table.remove(key), key);
+			} else {
+				ContentFingerprint fingerprint = random.nextBoolean() ? A : B;
+				ContentFingerprint previous = expected.put(key, fingerprint);
+				FingerprintTable.Outcome outcome = previous == null ? FingerprintTable.Outcome.FIRST
+						: previous.equals(fingerprint) ? FingerprintTable.Outcome.UNCHANGED : FingerprintTable.Outcome.CHANGED;
+				assertEquals(outcome, table.put(key, fingerprint), key);
+			}
+		}
+		assertEquals(expected.size(), table.size());
+		expected.forEach((key, fingerprint) -> assertEquals(fingerprint, table.get(key)));
+	}
+}
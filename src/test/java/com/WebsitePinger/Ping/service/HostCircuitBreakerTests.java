@@ -0,0 +1,81 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostCircuitBreakerTests {
+
+	private static final String URL = "https://example.com/page";
+	private static final String OTHER_URL_SAME_HOST = "https://example.com/other";
+	private static final long CLOSED = HostCircuitBreaker.CLOSED_PERMIT;
+
+	private final HostCircuitBreaker breaker =
+			new HostCircuitBreaker(new MonitorMetrics(new SimpleMeterRegistry()), true, 3, 1_000, 4_000);
+
+	@Test
+	void opensAfterConsecutiveFailuresAndProbesWhenTheOpenPeriodEnds() {
+		breaker.onFailure(URL, CLOSED, 0);
+		breaker.onFailure(URL, CLOSED, 0);
+		assertEquals(CLOSED, breaker.tryAcquire(URL, 0));
+		breaker.onFailure(OTHER_URL_SAME_HOST, CLOSED, 0);
+
+		assertEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(URL, 999));
+		// A single probe once the period is over
+		long probe = breaker.tryAcquire(URL, 1_000);
+		assertTrue(probe > CLOSED);
+		assertEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(OTHER_URL_SAME_HOST, 1_000));
+
+		breaker.onSuccess(URL, probe);
+		assertEquals(CLOSED, breaker.tryAcquire(OTHER_URL_SAME_HOST, 1_001));
+		assertEquals(HostCircuitBreaker.State.CLOSED, breaker.state(URL));
+	}
+
+	@Test
+	void failedProbeDoublesTheOpenPeriod() {
+		for (int i = 0; i < 3; i++) {
+			breaker.onFailure(URL, CLOSED, 0);
+		}
+		breaker.onFailure(URL, breaker.tryAcquire(URL, 1_000), 1_000);
+
+		assertEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(URL, 2_999));
+		breaker.onFailure(URL, breaker.tryAcquire(URL, 3_000), 3_000);
+		assertEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(URL, 6_999));
+		assertNotEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(URL, 7_000));
+	}
+
+	@Test
+	void successResetsTheFailureCount() {
+		breaker.onFailure(URL, CLOSED, 0);
+		breaker.onFailure(URL, CLOSED, 0);
+		breaker.onSuccess(URL, CLOSED);
+		breaker.onFailure(URL, CLOSED, 0);
+		breaker.onFailure(URL, CLOSED, 0);
+
+		assertEquals(CLOSED, breaker.tryAcquire(URL, 0));
+	}
+
+	@Test
+	void lateResultsDoNotCountAsTheProbesOutcome() {
+		for (int i = 0; i < 3; i++) {
+			breaker.onFailure(URL, CLOSED, 0);
+		}
+		// Fetches that started while the circuit was closed complete after it opened
+		breaker.onSuccess(URL, CLOSED);
+		assertEquals(HostCircuitBreaker.REJECTED, breaker.tryAcquire(URL, 500));
+
+		long probe = breaker.tryAcquire(URL, 1_000);
+		breaker.onFailure(URL, CLOSED, 1_000);
+		breaker.onSuccess(OTHER_URL_SAME_HOST, CLOSED);
+		assertEquals(HostCircuitBreaker.State.HALF_OPEN, breaker.state(URL));
+
+		// A probe that never reported back is replaced; its result no longer counts either
+		long replacement = breaker.tryAcquire(URL, 2_000);
+		assertNotEquals(probe, replacement);
+		breaker.onSuccess(URL, probe);
+		assertEquals(HostCircuitBreaker.State.HALF_OPEN, breaker.state(URL));
+		breaker.onSuccess(URL, replacement);
+		assertEquals(HostCircuitBreaker.State.CLOSED, breaker.state(URL));
+	}
+}
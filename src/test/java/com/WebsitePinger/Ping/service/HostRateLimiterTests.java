@@ -0,0 +1,148 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostRateLimiterTests {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void bucketAllowsBurstThenSteadyRate() {
+		long now = 5 * SECOND;
+		HostBucket bucket = new HostBucket(SECOND, 3, now);
+
+		assertEquals(now, bucket.reserve(now));
+		assertEquals(now, bucket.reserve(now));
+		assertEquals(now, bucket.reserve(now));
+		assertEquals(now + SECOND, bucket.reserve(now));
+		assertEquals(now + 2 * SECOND, bucket.reserve(now));
+		// Idle for a while: the burst is available again, but not more than the burst
+		long later = now + 60 * SECOND;
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later + SECOND, bucket.reserve(later));
+	}
+
+	@Test
+	void blockedBucketResumesAtSteadyRateAfterThePause() {
+		long now = 0;
+		HostBucket bucket = new HostBucket(SECOND, 3, now);
+		bucket.block(now, 30 * SECOND);
+
+		assertTrue(bucket.isBlocked(now + 29 * SECOND));
+		assertFalse(bucket.isBlocked(now + 30 * SECOND));
+		assertEquals(30 * SECOND, bucket.reserve(now));
+		assertEquals(31 * SECOND, bucket.reserve(now));
+		assertEquals(1, bucket.throttledStreak());
+		bucket.succeeded();
+		assertEquals(0, bucket.throttledStreak());
+	}
+
+	@Test
+	void checksQueuedBeforeAPauseTakeOneSlotEachAfterIt() {
+		HostBucket bucket = new HostBucket(SECOND, 1, 0);
+		assertEquals(0, bucket.reserve(0));
+		assertEquals(SECOND, bucket.reserve(0));
+		assertEquals(2 * SECOND, bucket.reserve(0));
+		assertEquals(3 * SECOND, bucket.reserve(0));
+		bucket.block(SECOND / 2, 10 * SECOND);
+
+		// The three queued checks wake inside the pause and reserve again once it ends
+		long pauseEnd = SECOND / 2 + 10 * SECOND;
+		assertEquals(9 * SECOND + SECOND / 2, bucket.pauseRemaining(SECOND));
+		assertEquals(0, bucket.pauseRemaining(pauseEnd));
+		assertEquals(pauseEnd, bucket.reserve(pauseEnd));
+		assertEquals(pauseEnd + SECOND, bucket.reserve(pauseEnd));
+		assertEquals(pauseEnd + 2 * SECOND, bucket.reserve(pauseEnd));
+		// A new check queues right behind them, at the steady rate
+		assertEquals(pauseEnd + 3 * SECOND, bucket.reserve(pauseEnd));
+	}
+
+	@Test
+	void throttledWaitersResumeAtTheConfiguredRate() throws InterruptedException {
+		HostRateLimiter limiter = new HostRateLimiter(WebClient.builder(), new MonitorMetrics(new SimpleMeterRegistry()),
+				true, 5, 1, 500, 500, 500, false, 86_400_000);
+		String url = "http://example.com/";
+		// Warm up, so the pause below starts before the first queued slot
+		limiter.onThrottled("http://other.example.com/", Duration.ZERO);
+		limiter.permit(url).block(Duration.ofSeconds(1));
+		limiter.permit(url).block(Duration.ofSeconds(1));
+		List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+		long begin = System.nanoTime();
+		Flux.range(0, 3)
+				.flatMap(i -> limiter.permit(url).then(Mono.fromRunnable(() -> starts.add((System.nanoTime() - begin) / 1_000_000))))
+				.subscribe();
+		// Paused for 500 ms while the checks are queued at 200, 400 and 600 ms: the first two wake inside the pause
+		limiter.onThrottled(url, Duration.ofMillis(500));
+		Thread.sleep(1_500);
+
+		List<Long> sorted = starts.stream().sorted().toList();
+		assertEquals(3, sorted.size());
+		assertTrue(sorted.get(0) >= 500, "starts " + sorted);
+		for (int i = 1; i < sorted.size(); i++) {
+			long gap = sorted.get(i) - sorted.get(i - 1);
+			assertTrue(gap >= 180 && gap <= 260, "starts " + sorted);
+		}
+	}
+
+	@Test
+	void crawlDelayOverridesAFasterRate() {
+		HostBucket bucket = new HostBucket(SECOND, 3, 0);
+		bucket.crawlDelay(10 * SECOND);
+
+		assertEquals(0, bucket.reserve(0));
+		assertEquals(10 * SECOND, bucket.reserve(0));
+		// Back to the configured rate, bursts included
+		bucket.crawlDelay(0);
+		long later = 60 * SECOND;
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later, bucket.reserve(later));
+		assertEquals(later + SECOND, bucket.reserve(later));
+	}
+
+	@Test
+	void crawlDelayIsReadFromTheWildcardGroup() {
+		String robots = """
+				User-agent: Googlebot
+				Crawl-delay: 1
+
+				User-agent: Bingbot
+				User-agent: *   # everyone else
+				Disallow: /private
+				Crawl-delay: 7.5
+				""";
+
+		assertEquals(7.5, HostRateLimiter.crawlDelaySeconds(robots));
+		assertEquals(0, HostRateLimiter.crawlDelaySeconds("User-agent: *\nDisallow: /\n"));
+		assertEquals(0, HostRateLimiter.crawlDelaySeconds("User-agent: *\nCrawl-delay: soon\n"));
+		assertEquals(300, HostRateLimiter.crawlDelaySeconds("User-agent: *\nCrawl-delay: 86400\n"));
+		assertEquals(0, HostRateLimiter.crawlDelaySeconds("User-agent: Googlebot\nCrawl-delay: 5\n"));
+	}
+
+	@Test
+	void retryAfterAcceptsSecondsAndHttpDates() {
+		assertEquals(Duration.ofSeconds(120), WebsiteFetcher.retryAfter("120"));
+		assertNull(WebsiteFetcher.retryAfter(null));
+		assertNull(WebsiteFetcher.retryAfter("tomorrow"));
+		String inAMinute = ZonedDateTime.now().plusSeconds(60).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+		Duration delay = WebsiteFetcher.retryAfter(inAMinute);
+		assertNotNull(delay);
+		assertTrue(delay.toSeconds() > 50 && delay.toSeconds() <= 60, delay.toString());
+		assertEquals(Duration.ZERO, WebsiteFetcher.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+}
@@ -0,0 +1,100 @@
+package com.WebsitePinger.Ping.service;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlTextNormalizerTests {
+
+	static final List<String> CORPUS = List.of(
+			"<html><body><p>Hello</p></body></html>",
+			"<html><head><title>Results</title><style>p { color: red }</style><script>var t = 1;</script></head>"
+					+ "<body><h1>Semester   results</h1><p>Published <b>today</b>.</p></body></html>",
+			"<!DOCTYPE html><html><body><!-- cache 42 --><div>a</div><div>b</div>c<span>d</span>e<br>f</body></html>",
+			"<ul><li>one<li>two</ul><table><tr><td>1</td><td>2</td></tr><tr><th>x</th></tr></table>",
+			"<p>Fish &amp; chips &lt;3 &quot;ok&quot; &nbsp; &copy &copy; &notanentity; &hellip; &amp x</p>",
+			"<p>&#65;&#x42;&#X43 &#128; &#0; &#1114112; &#; &#x; &#128512; tail&</p>",
+			"<p>a<script>if (a < b && c > d) document.write('</p>');</script>b</p>",
+			"<p>a<style>.x{}</style>b<script type=text/javascript>x</script >c</p>",
+			"<p>1 < 2 and 3 > 2, <3 and < p>not a tag</p>",
+			"<form><input type=hidden name=csrf value=abc123><input type=text value=kept><textarea>Some &amp; text</textarea>"
+					+ "<select><option>A</option><option>B</option></select><button>Go</button></form>",
+			"<div title='a > b' data-x=\"c > d\" class=e>attr gt</div><img alt=\"<p>\" src=x.png>after",
+			"<p>zero\u200Bwidth soft\u00ADhyphen non\u00A0breaking tab\there\r\nnewline</p>",
+			"<!----><!-- a -- b --><!---><!-->text<!-- --!> still comment -->after",
+			"<div><span><div>inner</div></span>tail</div><table><tr><td>cell</td></tr></table><custom-tag>joined</custom-tag>",
+			"<pre>  keep\n  lines  </pre><textarea>\n  a  b\n</textarea><iframe><p>raw</p></iframe>",
+			"<body><p>Unclosed <b>bold <i>italic</p><p>next",
+			"<svg><text>vector</text></svg><math><mi>x</mi></math><template><p>inert</p></template>",
+			"<h1>Title</h1><hr><h2>Sub</h2><dl><dt>Term</dt><dd>Def</dd></dl><address>Addr</address>",
+			"<p>Prices: 100&euro; &pound;5 &frac12; &sup2;</p><?xml version=\"1.0\"?><p>after pi</p>",
+			"<P CLASS=X>Upper<BR>Case</P><DIV>Block</DIV><SCRIPT>hidden()</SCRIPT>",
+			"plain text without any markup   at all",
+			"",
+			"<p>   </p>",
+			"<p>trailing ampersand &",
+			"<p>unterminated tag <",
+			"<p>unterminated comment <!-- never closed",
+			"<noscript><p>Enable JS</p></noscript><main><article><section>Sec</section></article></main>",
+			"<div>a<br/>b<br />c</br>d</div><wbr>e<custom-element>f</custom-element>g",
+			"<html><head><meta charset=utf-8><template><p>head template</p></template><noframes>nf</noframes></head>"
+					+ "<body><noscript>body noscript</noscript><p>y</p></body></html>"
+	);
+
+	@Test
+	void matchesTheDomBasedCleaningOnTheCorpus() {
+		for (String html : CORPUS) {
+			assertEquals(domText(html), HtmlTextNormalizer.normalize(html), () -> "Mismatch for: " + html);
+		}
+	}
+
+	@Test
+	void chunkBoundariesDoNotChangeTheResult() {
+		String html = String.join("", CORPUS);
+		String whole = HtmlTextNormalizer.normalize(html);
+		for (int chunkSize : new int[]{1, 2, 3, 7, 64}) {
+			StringBuilder text = new StringBuilder();
+			HtmlTextNormalizer normalizer = new HtmlTextNormalizer(text, null);
+			for (int i = 0; i < html.length(); i += chunkSize) {
+				normalizer.feed(html.subSequence(i, Math.min(html.length(), i + chunkSize)));
+			}
+			normalizer.finish();
+			assertEquals(whole, text.toString(), "chunk size " + chunkSize);
+		}
+	}
+
+	@Test
+	void streamingFingerprintEqualsFingerprintOfText() {
+		for (String html : CORPUS) {
+			assertEquals(ContentFingerprint.of(HtmlTextNormalizer.normalize(html)), HtmlTextNormalizer.fingerprint(html));
+		}
+	}
+
+	@Test
+	void collapseWhitespaceMatchesRegex() {
+		String value = " \t a  b\n\u000Bc\u00A0d ";
+		assertEquals(value.replaceAll("\\s+", " ").trim(), HtmlTextNormalizer.collapseWhitespace(value));
+	}
+
+	// The DOM-based cleaning used before the streaming normalizer
+	static String domText(String html) {
+		Document doc = Jsoup.parse(html);
+		doc.select("script").remove();
+		doc.select("input[type=hidden]").remove();
+		List<Node> comments = new ArrayList<>();
+		doc.forEachNode(node -> {
+			if (node instanceof Comment) {
+				comments.add(node);
+			}
+		});
+		comments.forEach(Node::remove);
+		return doc.body().text().replaceAll("\\s+", " ").trim();
+	}
+}
@@ -0,0 +1,75 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonNormalizerTests {
+
+	private static String normalize(String json, String... paths) {
+		return JsonNormalizer.normalize(json, List.of(paths).stream().map(JsonPath::compile).toList(), null);
+	}
+
+	@Test
+	void keyOrderAndFormattingDoNotMatter() {
+		String compact = normalize("{\"a\":1,\"b\":{\"y\":true,\"x\":[1,2]}}", "$");
+		String reordered = normalize("{ \"b\" : { \"x\" : [ 1, 2 ], \"y\" : true },\n  \"a\" : 1 }", "$");
+
+		assertEquals(compact, reordered);
+		assertEquals("$.a\t1\n$.b.x[0]\t1\n$.b.x[1]\t2\n$.b.y\ttrue", compact);
+	}
+
+	@Test
+	void onlySelectedFieldsAreKept() {
+		String json = "{\"updated\":\"10:05\",\"results\":[{\"id\":1,\"grade\":\"A\"},{\"id\":2,\"grade\":\"B\"},{\"id\":3}],"
+				+ "\"exam-session\":{\"published\":false}}";
+
+		// Members sort by name, not by how the path was written
+		assertEquals("$[\"exam-session\"].published\tfalse\n$.results[0].grade\t\"A\"\n$.results[1].grade\t\"B\"",
+				normalize(json, "$.results[*].grade", "$['exam-session'].published"));
+		assertEquals("$.results[1].id\t2", normalize(json, "$.results[1].id"));
+		assertEquals("", normalize(json, "$.missing.field"));
+	}
+
+	@Test
+	void arrayElementsAreOrderedByIndex() {
+		String json = "[" + "0,".repeat(10) + "\"last\"]";
+
+		List<Map.Entry<String, String>> fields = JsonNormalizer.fields(normalize(json, "$[*]"));
+
+		assertEquals(11, fields.size());
+		assertEquals(Map.entry("$[2]", "0"), fields.get(2));
+		assertEquals(Map.entry("$[10]", "\"last\""), fields.get(10));
+	}
+
+	@Test
+	void ignorePatternAppliesToStringValues() {
+		List<JsonPath> paths = List.of(JsonPath.compile("$.status"));
+		Pattern timestamp = Pattern.compile(" as of \\d{2}:\\d{2}");
+
+		assertEquals(JsonNormalizer.normalize("{\"status\":\"pending as of 10:00\"}", paths, timestamp),
+				JsonNormalizer.normalize("{\"status\":\"pending as of 10:05\"}", paths, timestamp));
+	}
+
+	@Test
+	void invalidJsonIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> normalize("<html>Maintenance</html>", "$"));
+		assertThrows(IllegalArgumentException.class, () -> normalize("{\"a\":", "$"));
+		assertThrows(IllegalArgumentException.class, () -> normalize("", "$"));
+	}
+
+	@Test
+	void unsupportedPathsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("results[0]"));
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$..grade"));
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$.results[-1]"));
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$.results[0:2]"));
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$.results[?(@.id)]"));
+		assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$['unterminated]"));
+		assertThrows(IllegalArgumentException.class, () -> ContentFilter.of(List.of("#main"), null, null, List.of("$.a")));
+	}
+}
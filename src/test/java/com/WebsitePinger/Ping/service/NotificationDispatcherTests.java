@@ -0,0 +1,266 @@
+package com.WebsitePinger.Ping.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationDispatcherTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private NotificationDispatcher dispatcher;
+
+	@AfterEach
+	void shutdown() {
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+		}
+	}
+
+	// Long window: the tests end windows themselves with flush()
+	private NotificationDispatcher dispatcher(int maxPending, int maxAttempts, NotificationService... sinks) {
+		dispatcher = new NotificationDispatcher(List.of(sinks), registry, 3_600_000, maxPending, 8, maxAttempts, 1);
+		return dispatcher;
+	}
+
+	@Test
+	void coalescesEventsPerUrlWithinAWindow() throws InterruptedException {
+		RecordingSink sink = new RecordingSink();
+		dispatcher(100, 1, sink);
+		ComparisonResult first = ComparisonResult.changed(null, null, ContentDiff.summary(1, 1));
+		ComparisonResult latest = ComparisonResult.changed(null, null, ContentDiff.summary(5, 7));
+
+		dispatcher.notifyChange("https://a.example/", T0, first);
+		dispatcher.notifyError("https://b.example/", T0.plusSeconds(1), "boom");
+		dispatcher.notifyChange("https://a.example/", T0.plusSeconds(2), latest);
+		dispatcher.notifyError("https://b.example/", T0.plusSeconds(3), "boom");
+		dispatcher.flush();
+
+		List<Notification> digest = sink.digests.poll(5, TimeUnit.SECONDS);
+		assertNotNull(digest);
+		assertEquals(2, digest.size());
+		Notification change = digest.get(0);
+		assertEquals(Notification.Type.CHANGE, change.type());
+		assertEquals(2, change.count());
+		assertEquals(T0, change.firstTime());
+		assertEquals(T0.plusSeconds(2), change.lastTime());
+		assertSame(latest, change.result());
+		assertEquals("changed 2 times, ~5 words removed, ~7 added", change.summary());
+		assertEquals(2, digest.get(1).count());
+		assertEquals(2, registry.counter("monitor.notifications.coalesced").count());
+
+		// Nothing left for the next window
+		dispatcher.flush();
+		assertNull(sink.digests.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void stuckSinkNeitherBlocksCallersNorOtherSinks() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingSink stuck = new RecordingSink() {
+			@Override
+			public void notifyDigest(String recipient, List<Notification> notifications) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		RecordingSink healthy = new RecordingSink();
+		dispatcher(10_000, 1, stuck, healthy);
+
+		long start = System.nanoTime();
+		for (int window = 0; window < 20; window++) {
+			for (int i = 0; i < 500; i++) {
+				dispatcher.notifyChange("https://site.example/page" + i, T0, ComparisonResult.changed(null, null, null));
+			}
+			dispatcher.flush();
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+		for (int window = 0; window < 20; window++) {
+			List<Notification> digest = healthy.digests.poll(5, TimeUnit.SECONDS);
+			assertNotNull(digest);
+			assertEquals(500, digest.size());
+		}
+		// The stuck sink's queue (8 digests) overflowed instead of backing up into the dispatcher
+		assertTrue(registry.counter("monitor.notifications.dropped", "reason", "queue_full").count() > 0);
+		release.countDown();
+	}
+
+	@Test
+	void retriesFailedSendsPerRecipient() throws InterruptedException {
+		Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+		RecordingSink flaky = new RecordingSink() {
+			@Override
+			public List<String> recipients() {
+				return List.of("alice", "bob");
+			}
+
+			@Override
+			public void notifyDigest(String recipient, List<Notification> notifications) {
+				if (attempts.computeIfAbsent(recipient, r -> new AtomicInteger()).incrementAndGet() == 1
+						&& recipient.equals("alice")) {
+					throw new IllegalStateException("SMTP server unavailable");
+				}
+				super.notifyDigest(recipient, notifications);
+			}
+		};
+		dispatcher(100, 3, flaky);
+
+		dispatcher.notifyError("https://a.example/", T0, "boom");
+		dispatcher.flush();
+
+		assertNotNull(flaky.digests.poll(5, TimeUnit.SECONDS));
+		assertNotNull(flaky.digests.poll(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.get("alice").get());
+		assertEquals(1, attempts.get("bob").get());
+		assertEquals(1, registry.get("monitor.notifications.deliveries").tag("outcome", "retried").counter().count());
+	}
+
+	@Test
+	void deliversSubscriptionEventsToTheirRecipientsOnly() throws InterruptedException {
+		Map<String, List<Notification>> received = new ConcurrentHashMap<>();
+		CountDownLatch delivered = new CountDownLatch(2);
+		RecordingSink mail = new RecordingSink() {
+			@Override
+			public List<String> recipients() {
+				return List.of("alice", "bob");
+			}
+
+			@Override
+			public void notifyDigest(String recipient, List<Notification> notifications) {
+				received.put(recipient, notifications);
+				delivered.countDown();
+			}
+		};
+		RecordingSink console = new RecordingSink();
+		dispatcher(100, 1, mail, console);
+		assertEquals(List.of("alice", "bob"), dispatcher.recipients());
+
+		// Two subscriptions of the same page, both changed: separate entries, each for its own recipient
+		dispatcher.notifyChange("https://a.example/", "prices", List.of("alice"), T0, ComparisonResult.changed(null, null, null));
+		dispatcher.notifyChange("https://a.example/", "news", List.of("bob"), T0, ComparisonResult.changed(null, null, null));
+		dispatcher.notifyError("https://b.example/", List.of("alice"), T0, "boom");
+		dispatcher.flush();
+
+		assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		assertEquals(List.of("prices"), received.get("alice").stream()
+				.filter(n -> n.type() == Notification.Type.CHANGE).map(Notification::subscription).toList());
+		assertEquals(2, received.get("alice").size());
+		assertEquals(List.of("news"), received.get("bob").stream().map(Notification::subscription).toList());
+		// Sinks without recipients see everything
+		assertEquals(3, console.digests.poll(5, TimeUnit.SECONDS).size());
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() throws InterruptedException {
+		AtomicInteger attempts = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(3);
+		RecordingSink broken = new RecordingSink() {
+			@Override
+			public void notifyDigest(String recipient, List<Notification> notifications) {
+				attempts.incrementAndGet();
+				done.countDown();
+				throw new IllegalStateException("webhook returned 500");
+			}
+		};
+		dispatcher(100, 3, broken);
+
+		dispatcher.notifyChange("https://a.example/", T0, ComparisonResult.changed(null, null, null));
+		dispatcher.flush();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		dispatcher.shutdown();
+		assertEquals(3, attempts.get());
+		assertEquals(1, registry.counter("monitor.notifications.dropped", "reason", "send_failed").count());
+	}
+
+	@Test
+	void dropsNewUrlsWhenTheWindowIsFull() throws InterruptedException {
+		RecordingSink sink = new RecordingSink();
+		dispatcher(2, 1, sink);
+
+		dispatcher.notifyError("https://a.example/", T0, "boom");
+		dispatcher.notifyError("https://b.example/", T0, "boom");
+		dispatcher.notifyError("https://c.example/", T0, "boom");
+		// Known URLs are still coalesced
+		dispatcher.notifyError("https://a.example/", T0, "boom");
+		dispatcher.flush();
+
+		List<Notification> digest = sink.digests.poll(5, TimeUnit.SECONDS);
+		assertEquals(List.of("https://a.example/", "https://b.example/"),
+				digest.stream().map(Notification::url).sorted().toList());
+		assertEquals(1, registry.counter("monitor.notifications.dropped", "reason", "pending_full").count());
+	}
+
+	@Test
+	void theDefaultDigestKeepsTheSubscriptionOfAChange() throws InterruptedException {
+		BlockingQueue<String> subscriptions = new LinkedBlockingQueue<>();
+		NotificationService sink = new NotificationService() {
+			@Override
+			public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+				subscriptions.add("none");
+			}
+
+			@Override
+			public void notifyChange(String url, String subscription, List<String> recipients,
+									 LocalDateTime detectionTime, ComparisonResult result) {
+				subscriptions.add(subscription);
+			}
+
+			@Override
+			public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+			}
+		};
+		dispatcher(100, 1, sink);
+
+		dispatcher.notifyChange("https://a.example/", "prices", List.of(), T0, ComparisonResult.changed(null, null, null));
+		dispatcher.flush();
+
+		assertEquals("prices", subscriptions.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void shutdownDeliversWhatIsPending() throws InterruptedException {
+		RecordingSink sink = new RecordingSink();
+		dispatcher(100, 1, sink);
+
+		dispatcher.notifyChange("https://a.example/", T0, ComparisonResult.changed(null, null, null));
+		dispatcher.shutdown();
+
+		assertEquals(1, sink.digests.poll(1, TimeUnit.SECONDS).size());
+	}
+
+	private static class RecordingSink implements NotificationService {
+
+		final BlockingQueue<List<Notification>> digests = new LinkedBlockingQueue<>();
+
+		@Override
+		public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+		}
+
+		@Override
+		public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+		}
+
+		@Override
+		public void notifyDigest(String recipient, List<Notification> notifications) {
+			digests.add(notifications);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollingTableTests {
+
+	private static final String URL = "https://example.com/";
+
+	@Test
+	void tracksTheCheckHistoryOfEachUrl() {
+		PollingTable table = new PollingTable(0);
+		assertTrue(table.put(URL, MonitorSettings.fixed(1000)));
+		table.put("https://example.org/", MonitorSettings.fixed(5000));
+
+		assertEquals(MonitorStatus.State.PENDING, table.status(URL).state());
+		assertTrue(table.tryStartCheck(URL));
+		assertFalse(table.tryStartCheck(URL));
+		assertEquals(1, table.recordFailure(URL, 1_000, 20, "timeout"));
+		assertEquals(2, table.recordFailure(URL, 2_000, 30, "timeout"));
+		table.checkDone(URL);
+		assertTrue(table.tryStartCheck(URL));
+		assertEquals(2, table.recordSuccess(URL, 3_000, 40, true));
+
+		MonitorStatus status = table.status(URL);
+		assertEquals(MonitorStatus.State.OK, status.state());
+		assertEquals(3, status.checks());
+		assertEquals(1, status.changes());
+		assertEquals(2, status.errors());
+		assertEquals("timeout", status.lastError());
+		assertEquals(40L, status.lastLatencyMs());
+		assertEquals(5000, table.currentIntervalMs("https://example.org/"));
+		assertEquals(MonitorStatus.State.PENDING, table.status("https://example.org/").state());
+	}
+
+	@Test
+	void removedUrlsStartOverAndUnknownUrlsAreIgnored() {
+		PollingTable table = new PollingTable(0);
+		table.put(URL, MonitorSettings.fixed(1000));
+		table.tryStartCheck(URL);
+		table.recordFailure(URL, 1_000, 20, "timeout");
+
+		assertTrue(table.remove(URL));
+		assertFalse(table.remove(URL));
+		assertNull(table.status(URL));
+		assertEquals(-1, table.currentIntervalMs(URL));
+		assertFalse(table.tryStartCheck(URL));
+		assertEquals(0, table.recordSuccess(URL, 2_000, 10, false));
+		// The URL's id, and its stale columns, are reused
+		table.put("https://example.org/", MonitorSettings.fixed(2000));
+		assertTrue(table.put(URL, MonitorSettings.fixed(3000)));
+		MonitorStatus status = table.status(URL);
+		assertEquals(0, status.errors());
+		assertNull(status.lastError());
+		assertNull(status.lastLatencyMs());
+		assertTrue(table.tryStartCheck(URL));
+		assertEquals(2, table.size());
+	}
+
+	@Test
+	void growsPastItsInitialCapacity() {
+		PollingTable table = new PollingTable(2);
+		for (int i = 0; i < 1_000; i++) {
+			table.put("https://example.com/page/" + i, MonitorSettings.fixed(1000 + i));
+		}
+
+		assertEquals(1_000, table.size());
+		for (int i = 0; i < 1_000; i++) {
+			assertEquals(1000 + i, table.currentIntervalMs("https://example.com/page/" + i));
+		}
+	}
+}
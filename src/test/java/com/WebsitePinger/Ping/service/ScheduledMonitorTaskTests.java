@@ -0,0 +1,447 @@
+package com.WebsitePinger.Ping.service;
+
+import com.WebsitePinger.Ping.cluster.ShardRouter;
+import com.WebsitePinger.Ping.cluster.StaticMembership;
+import com.WebsitePinger.Ping.history.PageHistoryStore;
+import com.WebsitePinger.Ping.store.NoOpSnapshotStore;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduledMonitorTaskTests {
+
+	private HttpServer server;
+	private String page;
+	private ConnectionProvider connectionProvider;
+	private ScheduledMonitorTask task;
+	private MonitorMetrics metrics;
+	private HostRateLimiter rateLimiter;
+	private WebsiteFetcher fetcher;
+	private NoOpSnapshotStore store;
+	private NotificationService notifier;
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final AtomicInteger requests = new AtomicInteger();
+	// Requests to /page being served right now, and the most at once
+	private final AtomicInteger activeRequests = new AtomicInteger();
+	private final AtomicInteger maxActiveRequests = new AtomicInteger();
+	private volatile String prices = "10 EUR";
+	private volatile String news = "nothing new";
+	private volatile CountDownLatch release = new CountDownLatch(0);
+	// (subscription, recipients) of every change notification
+	private final List<List<Object>> changes = new CopyOnWriteArrayList<>();
+	private final List<String> errors = new CopyOnWriteArrayList<>();
+	// Threads that delivered the change notifications, i.e. ran the comparisons
+	private final List<String> comparingThreads = new CopyOnWriteArrayList<>();
+	// Arrival times (System.nanoTime()) of the requests to /busy, which throttles the first one
+	private final List<Long> busyRequests = new CopyOnWriteArrayList<>();
+	// /api answers If-None-Match with 304 while apiEtag stays the same, whatever apiBody is meanwhile
+	private final AtomicInteger apiRequests = new AtomicInteger();
+	private volatile String apiBody = "<html><body><div id=\"news\">nothing new</div></body></html>";
+	private volatile String apiEtag = "\"v1\"";
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/page", exchange -> {
+			requests.incrementAndGet();
+			maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				activeRequests.decrementAndGet();
+			}
+			byte[] body = ("<html><body><div id=\"prices\">" + prices + "</div><div id=\"news\">" + news
+					+ "</div></body></html>").getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+			exchange.close();
+		});
+		server.createContext("/busy", exchange -> {
+			busyRequests.add(System.nanoTime());
+			if (busyRequests.size() == 1) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				exchange.sendResponseHeaders(429, -1);
+			} else {
+				byte[] body = "<html><body>open again</body></html>".getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			exchange.close();
+		});
+		server.createContext("/api", exchange -> {
+			apiRequests.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			String etag = apiEtag;
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				byte[] body = apiBody.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			exchange.close();
+		});
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.start();
+		page = "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+
+		FetchClientConfig clientConfig = new FetchClientConfig();
+		connectionProvider = clientConfig.fetchConnectionProvider(16, 128, 10_000, 60_000, 600_000, 30_000);
+		WebClient.Builder builder = WebClient.builder()
+				.clientConnector(clientConfig.fetchClientConnector(connectionProvider, 5_000, 10_000, true, true, false));
+		metrics = new MonitorMetrics(registry);
+		rateLimiter = new HostRateLimiter(builder, metrics, true, 1_000, 100, 30_000, 600_000, 3_600_000, false, 86_400_000);
+		HostCircuitBreaker circuitBreaker = new HostCircuitBreaker(metrics, true, 3, 60_000, 600_000);
+		fetcher = new WebsiteFetcher(builder, metrics, rateLimiter, circuitBreaker, 5_000, 0, 10, 50);
+		// Not fresh and empty: don't register the default (external) URL
+		store = new NoOpSnapshotStore() {
+			@Override
+			public boolean isFresh() {
+				return false;
+			}
+
+			@Override
+			public Map<String, MonitorSettings> loadMonitors() {
+				return Map.of();
+			}
+		};
+		notifier = new NotificationService() {
+			@Override
+			public void notifyChange(String url, LocalDateTime detectionTime, ComparisonResult result) {
+			}
+
+			@Override
+			public void notifyChange(String url, String subscription, List<String> recipients, LocalDateTime detectionTime,
+									 ComparisonResult result) {
+				changes.add(List.of(String.valueOf(subscription), recipients));
+				comparingThreads.add(Thread.currentThread().getName());
+			}
+
+			@Override
+			public void notifyError(String url, LocalDateTime errorTime, String errorMessage) {
+				errors.add(errorMessage);
+			}
+		};
+		task = newTask(true);
+	}
+
+	// With textNeeded, checks diff and keep history, so they need the page text; else they only fingerprint it
+	private ScheduledMonitorTask newTask(boolean textNeeded) {
+		return newTask(textNeeded, Schedulers.immediate(), 16);
+	}
+
+	private ScheduledMonitorTask newTask(boolean textNeeded, Scheduler cleaner, int maxConcurrency) {
+		return new ScheduledMonitorTask(fetcher, null,
+				new ContentComparator(false, textNeeded, new DiffEngine(2000, 8, 20), store), notifier,
+				new AdaptivePollingPolicy(3_600_000, 3_600_000, 2.0, 3, 86_400_000),
+				rateLimiter, store, new PageHistoryStore(registry, textNeeded, 20, 2_592_000_000L, 1 << 20),
+				new ShardRouter(new StaticMembership("test"), registry), metrics,
+				cleaner, maxConcurrency, 100, 512, 0.1);
+	}
+
+	@AfterEach
+	void tearDown() {
+		task.shutdown();
+		server.stop(0);
+		connectionProvider.dispose();
+	}
+
+	private void check() {
+		task.checkUrl(page, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+	}
+
+	@Test
+	void oneFetchPerCheckIsFannedOutToEverySubscription() {
+		MonitorSettings hourly = MonitorSettings.fixed(3_600_000);
+		task.startMonitoring(page, hourly);
+		// Spellings of the same page: one monitored URL with three subscriptions (a subscription's URL has no fragment)
+		task.subscribe(new Subscription("prices", page + "?utm_source=newsletter", hourly
+				.withContentFilter(ContentFilter.of(List.of("#prices"), null, null)).withRecipients(List.of("shop-team"))));
+		task.subscribe(new Subscription("news", UrlCanonicalizer.canonicalize(page.replace("http:", "HTTP:").replace("/page", "/./page") + "#top"),
+				hourly.withContentFilter(ContentFilter.of(List.of("#news"), null, null))));
+		assertEquals(1, task.getMonitoredCount());
+		assertEquals(3, task.getSubscriptionCount());
+
+		check();
+		prices = "12 EUR";
+		check();
+
+		assertEquals(2, requests.get());
+		// The whole-page default subscription and the one watching the prices changed; the news one did not
+		assertEquals(List.of(List.of("null", List.of()), List.of("prices", List.of("shop-team"))), changes);
+	}
+
+	@Test
+	void concurrentChecksOfAPageShareOneFetch() {
+		task.startMonitoring(page, MonitorSettings.fixed(3_600_000));
+		check();
+		requests.set(0);
+		news = "big news";
+		release = new CountDownLatch(1);
+
+		long now = System.currentTimeMillis();
+		Flux<Void> checks = Flux.merge(task.checkUrl(page, now), task.checkUrl(page, now), task.checkUrl(page, now));
+		release.countDown();
+		checks.blockLast(Duration.ofSeconds(10));
+
+		assertEquals(1, requests.get());
+		assertEquals(1, changes.size());
+		assertEquals(2, registry.counter("monitor.checks.coalesced").count());
+	}
+
+	@Test
+	void aFailingComparisonOnlyAffectsItsOwnSubscription() {
+		MonitorSettings hourly = MonitorSettings.fixed(3_600_000);
+		task.startMonitoring(page, hourly);
+		// The page serves HTML, so this subscription can never be compared
+		task.subscribe(new Subscription("api", page, hourly.withContentFilter(ContentFilter.of(null, null, null, List.of("$.price")))));
+
+		check();
+		prices = "12 EUR";
+		check();
+
+		// The default subscription still saw the change, and the broken one was reported once for the streak
+		assertEquals(List.of(List.of("null", List.of())), changes);
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).startsWith("Subscription api: Comparison failed"));
+		assertEquals(MonitorStatus.State.OK, task.getStatus(null, 1, status -> true).items().get(0).state());
+	}
+
+	@Test
+	void aSubscriptionWhoseFirstComparisonFailedIsComparedAgainDespiteA304() {
+		String api = page.replace("/page", "/api");
+		task.startMonitoring(api, MonitorSettings.fixed(3_600_000)
+				.withContentFilter(ContentFilter.of(null, null, null, List.of("$.price"))));
+		// Serves HTML under maintenance: the first comparison fails and leaves no baseline
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+		assertEquals(1, errors.size());
+
+		// Same ETag, so a conditional request would be answered with 304
+		apiBody = "{\"price\": 10}";
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+		apiBody = "{\"price\": 12}";
+		apiEtag = "\"v2\"";
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+
+		assertEquals(3, apiRequests.get());
+		assertEquals(List.of(List.of("null", List.of())), changes);
+	}
+
+	@Test
+	void pagesAreFingerprintedWhileStreamingWhenNothingNeedsTheirText() {
+		task.shutdown();
+		task = newTask(false);
+		task.startMonitoring(page, MonitorSettings.fixed(3_600_000));
+
+		check();
+		check();
+		news = "big news";
+		check();
+
+		assertEquals(3, requests.get());
+		assertEquals(List.of(List.of("null", List.of())), changes);
+	}
+
+	@Test
+	void aThrottledCheckIsQueuedAgainBehindTheHostsPause() throws InterruptedException {
+		String busy = page.replace("/page", "/busy");
+		// Without the re-queue, the next check would only come with the next interval
+		task.startMonitoring(busy, MonitorSettings.fixed(1_500));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (busyRequests.size() < 2 && System.nanoTime() < deadline) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+
+		assertEquals(2, busyRequests.size());
+		long gapMillis = TimeUnit.NANOSECONDS.toMillis(busyRequests.get(1) - busyRequests.get(0));
+		assertTrue(gapMillis >= 950 && gapMillis < 1_300, "checked again after " + gapMillis + " ms");
+		// Throttling is the host asking us to slow down, not the page failing
+		assertTrue(errors.isEmpty(), errors.toString());
+	}
+
+	@Test
+	void pagesAreComparedOnTheCleanerScheduler() {
+		Scheduler cleaner = new CleanerConfig().cleanerScheduler(registry, 1, 0, 4);
+		task.shutdown();
+		task = newTask(true, cleaner, 4);
+		task.startMonitoring(page, MonitorSettings.fixed(3_600_000));
+
+		check();
+		news = "big news";
+		check();
+
+		assertEquals(1, comparingThreads.size());
+		assertTrue(comparingThreads.get(0).startsWith("content-cleaner-"), comparingThreads.toString());
+		cleaner.dispose();
+	}
+
+	@Test
+	void aStalledCleanerHoldsBackFetchesInsteadOfRejectingChecks() throws InterruptedException {
+		// One cleaner thread and room for two queued pages: exactly what two concurrent checks can hand over
+		Scheduler cleaner = new CleanerConfig().cleanerScheduler(registry, 1, 2, 2);
+		task.shutdown();
+		task = newTask(true, cleaner, 2);
+		CountDownLatch stall = new CountDownLatch(1);
+		cleaner.schedule(() -> {
+			try {
+				stall.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		for (int i = 0; i < 6; i++) {
+			task.startMonitoring(page + "?n=" + i, MonitorSettings.fixed(50));
+		}
+		for (int i = 0; i < 30; i++) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+
+		// Two checks fetched and wait for the cleaner; the rest wait in the pipeline, not in the cleaner's queue
+		assertEquals(2, requests.get());
+		assertTrue(registry.get("executor.queued").tag("name", "content.cleaner").gauge().value() <= 2);
+		stall.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (requests.get() < 6 && System.nanoTime() < deadline) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+		assertTrue(requests.get() >= 6, "checks fetched: " + requests.get());
+		assertTrue(errors.isEmpty(), errors.toString());
+		task.shutdown();
+		cleaner.dispose();
+	}
+
+	@Test
+	void dueUrlsStillInFlightAreSkippedAndConcurrencyIsCapped() throws InterruptedException {
+		task.shutdown();
+		task = newTask(true, Schedulers.immediate(), 2);
+		release = new CountDownLatch(1);
+		for (int i = 0; i < 5; i++) {
+			task.startMonitoring(page + "?n=" + i, MonitorSettings.fixed(50));
+		}
+		for (int i = 0; i < 30; i++) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+
+		// Two checks are stuck on the server, the other three wait for a slot; each URL came due again meanwhile
+		assertEquals(2, requests.get());
+		assertTrue(registry.get("monitor.checks.skipped").counter().count() >= 5);
+		release.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (requests.get() < 10 && System.nanoTime() < deadline) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+		assertTrue(requests.get() >= 10, "checks fetched: " + requests.get());
+		assertEquals(2, maxActiveRequests.get());
+	}
+
+	@Test
+	void aSubscriberChangingThePollingSettingsMidCheckKeepsThePagesState() throws InterruptedException {
+		task.startMonitoring(page, MonitorSettings.fixed(100));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (status().checks() < 1 && System.nanoTime() < deadline) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+		release = new CountDownLatch(1);
+		while (requests.get() < 2 && System.nanoTime() < deadline) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+
+		// A subscriber that polls faster joins while the page's second check is held on the server
+		task.subscribe(new Subscription("fast", page, MonitorSettings.fixed(50)));
+		for (int i = 0; i < 20; i++) {
+			task.checkWebsites();
+			Thread.sleep(10);
+		}
+
+		// Still the one check in flight, and the first check is still on record
+		assertEquals(2, requests.get());
+		assertEquals(1, status().checks());
+		assertEquals(50, task.getPollingSnapshot(page).currentIntervalMs());
+		release.countDown();
+		while (status().checks() < 2 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, status().checks());
+		assertEquals(1, maxActiveRequests.get());
+	}
+
+	@Test
+	void aSubscriberJoiningDuringAFingerprintOnlyFetchGetsABaselineOnTheNextCheck() throws InterruptedException {
+		task.shutdown();
+		task = newTask(false);
+		String api = page.replace("/page", "/api");
+		task.startMonitoring(api, MonitorSettings.fixed(3_600_000));
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+
+		// The page changes, and the fingerprint-only fetch that sees it is held on the server while a subscriber
+		// with a filter joins
+		apiBody = "<html><body><div id=\"news\">nothing new</div><p>Sale!</p></body></html>";
+		apiEtag = "\"v2\"";
+		release = new CountDownLatch(1);
+		CountDownLatch checked = new CountDownLatch(1);
+		task.checkUrl(api, System.currentTimeMillis()).subscribe(null, error -> checked.countDown(), checked::countDown);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (apiRequests.get() < 2 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		task.subscribe(new Subscription("news", api, MonitorSettings.fixed(3_600_000)
+				.withContentFilter(ContentFilter.of(List.of("#news"), null, null))));
+		release.countDown();
+		assertTrue(checked.await(10, TimeUnit.SECONDS));
+
+		// Not answered with 304, so the subscriber gets its baseline here and sees the change below
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+		apiBody = "<html><body><div id=\"news\">big news</div><p>Sale!</p></body></html>";
+		apiEtag = "\"v3\"";
+		task.checkUrl(api, System.currentTimeMillis()).block(Duration.ofSeconds(10));
+
+		assertEquals(List.of(List.of("null", List.of()), List.of("null", List.of()), List.of("news", List.of())), changes);
+	}
+
+	private MonitorStatus status() {
+		return task.getStatus(null, 1, status -> true).items().get(0);
+	}
+}
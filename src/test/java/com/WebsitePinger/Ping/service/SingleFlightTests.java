@@ -0,0 +1,88 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+	private final AtomicInteger joined = new AtomicInteger();
+	private final SingleFlight<String, String> flight = new SingleFlight<>(joined::incrementAndGet);
+
+	@Test
+	void concurrentSubscribersShareOneCall() {
+		AtomicInteger calls = new AtomicInteger();
+		Sinks.One<String> response = Sinks.one();
+
+		List<Mono<String>> callers = List.of(
+				flight.execute("https://a.example/", () -> { calls.incrementAndGet(); return response.asMono(); }),
+				flight.execute("https://a.example/", () -> { calls.incrementAndGet(); return response.asMono(); }),
+				flight.execute("https://a.example/", () -> { calls.incrementAndGet(); return response.asMono(); }));
+		Mono<List<String>> all = Flux.merge(callers).collectList().cache();
+		all.subscribe();
+
+		response.tryEmitValue("body");
+		assertEquals(List.of("body", "body", "body"), all.block(Duration.ofSeconds(5)));
+		assertEquals(1, calls.get());
+		assertEquals(2, joined.get());
+		assertEquals(0, flight.size());
+
+		// Nothing is cached: the next call runs again
+		assertEquals("again", flight.execute("https://a.example/", () -> Mono.just("again")).block());
+	}
+
+	@Test
+	void errorsAndEmptyResultsReachEveryCaller() {
+		Sinks.One<String> failing = Sinks.one();
+		Mono<String> first = flight.execute("k", failing::asMono);
+		Mono<String> second = flight.execute("k", () -> Mono.just("unused"));
+		Mono<List<String>> both = Flux.merge(first, second).collectList().cache();
+		both.subscribe(null, error -> { });
+
+		failing.tryEmitError(new IllegalStateException("boom"));
+		assertThrows(IllegalStateException.class, () -> both.block(Duration.ofSeconds(5)));
+		assertNull(flight.execute("k", Mono::empty).block(Duration.ofSeconds(5)));
+		assertEquals(0, flight.size());
+	}
+
+	@Test
+	void blockingCallersShareOneCall() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = threads.submit(() -> flight.executeBlocking("k", () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				release.await();
+				return "body";
+			}));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			Future<String> follower = threads.submit(() -> flight.executeBlocking("k", () -> {
+				calls.incrementAndGet();
+				return "second fetch";
+			}));
+			while (joined.get() == 0) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+
+			assertEquals("body", leader.get(5, TimeUnit.SECONDS));
+			assertEquals("body", follower.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, calls.get());
+		assertEquals(0, flight.size());
+	}
+}
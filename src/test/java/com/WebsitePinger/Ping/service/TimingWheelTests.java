@@ -0,0 +1,68 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTests {
+
+	@Test
+	void expiresOnlyKeysThatAreDue() {
+		TimingWheel wheel = new TimingWheel(10, 8, 0);
+		wheel.schedule("soon", 30);
+		wheel.schedule("later", 500); // several revolutions away, shares a bucket with earlier ticks
+
+		assertEquals(List.of(), advance(wheel, 20));
+		assertEquals(List.of("soon"), advance(wheel, 40));
+		assertEquals(List.of(), advance(wheel, 490));
+		assertEquals(List.of("later"), advance(wheel, 510));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void rescheduleReplacesAndCancelRemoves() {
+		TimingWheel wheel = new TimingWheel(10, 8, 0);
+		wheel.schedule("a", 30);
+		wheel.schedule("a", 200);
+		wheel.schedule("b", 30);
+
+		assertTrue(wheel.cancel("b"));
+		assertFalse(wheel.cancel("b"));
+		assertEquals(List.of(), advance(wheel, 100));
+		assertEquals(List.of("a"), advance(wheel, 1000)); // jumping more than one revolution still finds it
+	}
+
+	@Test
+	void manyKeysShareBucketsAndExpiredSlotsAreReused() {
+		TimingWheel wheel = new TimingWheel(10, 8, 0);
+		for (int i = 0; i < 100; i++) {
+			wheel.schedule("k" + i, 10 + i * 10);
+		}
+		wheel.cancel("k50");
+
+		Set<String> expired = new HashSet<>(advance(wheel, 500));
+		assertEquals(50, expired.size());
+		assertTrue(expired.contains("k49"));
+		assertFalse(expired.contains("k50"));
+		// Expired and cancelled keys give their slots to new ones
+		wheel.schedule("late", 2_000);
+		wheel.schedule("k0", 600);
+		assertEquals(51, wheel.size());
+		expired = new HashSet<>(advance(wheel, 1_000));
+		assertEquals(50, expired.size());
+		assertTrue(expired.contains("k0"));
+		assertFalse(expired.contains("k50"));
+		assertEquals(List.of("late"), advance(wheel, 2_000));
+	}
+
+	private static List<String> advance(TimingWheel wheel, long nowMs) {
+		List<String> expired = new ArrayList<>();
+		assertEquals(wheel.advance(nowMs, expired), expired.size());
+		return expired;
+	}
+}
@@ -0,0 +1,53 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTests {
+
+	private static String canonical(String url) {
+		return UrlCanonicalizer.canonicalize(url);
+	}
+
+	@Test
+	void spellingsOfTheSamePageAreOneUrl() {
+		assertEquals("https://x.com/", canonical("https://x.com"));
+		assertEquals("https://x.com/", canonical("https://x.com/"));
+		assertEquals("https://x.com/", canonical("HTTPS://X.com:443/?utm_source=mail&utm_medium=email#top"));
+		assertEquals("https://x.com/", canonical(" https://x.com./ "));
+		assertEquals("http://x.com/a/c", canonical("http://x.com:80/a/b/../c"));
+		assertEquals("https://x.com/a/c/", canonical("https://x.com/a/./c/."));
+	}
+
+	@Test
+	void queryIsSortedWithoutTrackingParameters() {
+		assertEquals("https://x.com/p?a=1&b=2", canonical("https://x.com/p?b=2&gclid=abc&a=1&&fbclid=x"));
+		// Repeated names keep their order
+		assertEquals("https://x.com/p?a=2&a=1&z", canonical("https://x.com/p?z&a=2&a=1"));
+		assertEquals("https://x.com/p", canonical("https://x.com/p?utm_campaign=spring"));
+	}
+
+	@Test
+	void escapesAreNormalized() {
+		assertEquals("https://x.com/~user/a%2Fb", canonical("https://x.com/%7euser/a%2fb"));
+		assertEquals("https://x.com/p?q=a%20b", canonical("https://x.com/p?q=a%20b"));
+	}
+
+	@Test
+	void differencesServersCanSeeAreKept() {
+		assertEquals("https://x.com:8443/a/", canonical("https://x.com:8443/a/"));
+		assertNotEquals(canonical("https://x.com/a"), canonical("https://x.com/a/"));
+		assertNotEquals(canonical("https://x.com/A"), canonical("https://x.com/a"));
+		assertNotEquals(canonical("http://x.com/"), canonical("https://x.com/"));
+		assertEquals("https://x.com/p?a=&b", canonical("https://x.com/p?b&a="));
+	}
+
+	@Test
+	void rejectsWhatCannotBeMonitored() {
+		assertThrows(IllegalArgumentException.class, () -> canonical("ftp://x.com/file"));
+		assertThrows(IllegalArgumentException.class, () -> canonical("/relative/path"));
+		assertThrows(IllegalArgumentException.class, () -> canonical("https://exa mple.com/"));
+		assertThrows(IllegalArgumentException.class, () -> canonical(""));
+	}
+}
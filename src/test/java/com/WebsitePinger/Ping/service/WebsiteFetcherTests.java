@@ -0,0 +1,61 @@
+package com.WebsitePinger.Ping.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebsiteFetcherTests extends AbstractFetcherTests {
+
+	private WebsiteFetcher fetcher;
+	private ConnectionProvider connectionProvider;
+
+	@BeforeEach
+	void createFetcher() {
+		FetchClientConfig clientConfig = new FetchClientConfig();
+		connectionProvider = clientConfig.fetchConnectionProvider(16, 128, 10_000, 60_000, 600_000, 30_000);
+		WebClient.Builder builder = WebClient.builder()
+				.clientConnector(clientConfig.fetchClientConnector(connectionProvider, 5_000, 10_000, true, true, false));
+		fetcher = new WebsiteFetcher(builder, metrics, rateLimiter, circuitBreaker, 5_000, 3, 10, 50);
+	}
+
+	@AfterEach
+	void disposeConnections() {
+		connectionProvider.dispose();
+	}
+
+	@Override
+	FetchResult fetch(String path, Long maxBodyBytes, Duration budget) {
+		return fetcher.fetchContent(baseUrl + path, maxBodyBytes, budget).block(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void bodyCanBeFingerprintedWithoutKeepingIt() {
+		FetchResult result = fetcher.fetchContent(baseUrl + "/large", 20_000L, null, false, true).block(Duration.ofSeconds(5));
+
+		assertNotNull(result);
+		assertFalse(result.isFailed());
+		assertNull(result.content());
+		assertEquals(HtmlTextNormalizer.fingerprint("x".repeat(10_000)), result.fingerprint());
+		assertEquals(10_000, registry.get("monitor.fetch.body.size").tag("host", "127.0.0.1").summary().totalAmount());
+		// The size cap still applies while fingerprinting
+		FetchResult oversized = fetcher.fetchContent(baseUrl + "/large", 5_000L, null, false, true).block(Duration.ofSeconds(5));
+		assertEquals(FetchFailure.Kind.TOO_LARGE, oversized.failure().kind());
+	}
+
+	@Test
+	void clearingValidatorsMakesNextFetchUnconditional() throws InterruptedException {
+		fetch("/etag");
+		fetcher.clearValidators(baseUrl + "/etag");
+
+		FetchResult result = fetch("/etag");
+
+		assertNotNull(result);
+		assertFalse(result.notModified());
+	}
+}
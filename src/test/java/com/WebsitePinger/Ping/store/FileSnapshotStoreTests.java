@@ -0,0 +1,118 @@
+package com.WebsitePinger.Ping.store;
+
+import com.WebsitePinger.Ping.service.ContentFilter;
+import com.WebsitePinger.Ping.service.ContentFingerprint;
+import com.WebsitePinger.Ping.service.MonitorSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSnapshotStoreTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void monitorsAndFingerprintsSurviveReopen() throws IOException {
+		ContentFingerprint fingerprint = ContentFingerprint.of("hello");
+		MonitorSettings filtered = new MonitorSettings(1000, 60000, 4096L,
+				ContentFilter.of(List.of("#main"), List.of(".ad"), List.of("\\d{2}:\\d{2}")))
+				.withRecipients(List.of("ops@example.com"));
+		MonitorSettings json = new MonitorSettings(1000, 60000, 4096L,
+				ContentFilter.of(null, null, null, List.of("$.results[*].grade")));
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertTrue(store.isFresh());
+			store.saveMonitor("https://a.example/", MonitorSettings.fixed(1000));
+			store.saveMonitor("https://b.example/", MonitorSettings.fixed(1000));
+			store.saveMonitor("https://c.example/", filtered);
+			store.saveMonitor("https://d.example/", json);
+			store.saveFingerprint("https://a.example/", fingerprint);
+			store.saveFingerprint("https://unmonitored.example/", fingerprint); // ignored
+			store.removeMonitor("https://b.example/");
+		}
+
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertFalse(store.isFresh());
+			assertEquals(Map.of("https://a.example/", MonitorSettings.fixed(1000), "https://c.example/", filtered,
+					"https://d.example/", json), store.loadMonitors());
+			assertEquals(Map.of("https://a.example/", fingerprint), store.loadFingerprints());
+		}
+	}
+
+	@Test
+	void bulkSaveSurvivesReopen() throws IOException {
+		Map<String, MonitorSettings> batch = new LinkedHashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			batch.put("https://bulk.example/" + i, MonitorSettings.fixed(1000 + i));
+		}
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			store.saveMonitor("https://bulk.example/0", MonitorSettings.fixed(5));
+			store.saveMonitors(batch);
+			store.saveFingerprint("https://bulk.example/2999", ContentFingerprint.of("last"));
+		}
+
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertEquals(batch, store.loadMonitors());
+			assertEquals(ContentFingerprint.of("last"), store.loadFingerprints().get("https://bulk.example/2999"));
+		}
+	}
+
+	@Test
+	void compactionKeepsLiveStateAndShrinksLog() throws IOException {
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 10)) {
+			for (int i = 0; i < 50; i++) {
+				store.saveMonitor("https://churn.example/" + i, MonitorSettings.fixed(1000));
+				store.removeMonitor("https://churn.example/" + i);
+			}
+			store.saveMonitor("https://kept.example/", MonitorSettings.fixed(2000));
+			store.saveFingerprint("https://kept.example/", ContentFingerprint.of("kept"));
+		}
+		assertTrue(Files.size(dir.resolve(FileSnapshotStore.LOG_FILE)) < 20 * 64, "Log should have been compacted");
+
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 10)) {
+			assertEquals(Set.of("https://kept.example/"), store.loadMonitors().keySet());
+			assertEquals(ContentFingerprint.of("kept"), store.loadFingerprints().get("https://kept.example/"));
+		}
+	}
+
+	@Test
+	void tornTailRecordIsDropped() throws IOException {
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			store.saveMonitor("https://a.example/", MonitorSettings.fixed(1000));
+		}
+		Files.write(dir.resolve(FileSnapshotStore.LOG_FILE), new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertEquals(Set.of("https://a.example/"), store.loadMonitors().keySet());
+			store.saveMonitor("https://b.example/", MonitorSettings.fixed(1000));
+		}
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertEquals(2, store.loadMonitors().size());
+		}
+	}
+
+	@Test
+	void valuesBeyondSixtyFourKilobytesAreStored() throws IOException {
+		String longPattern = "x".repeat(70_000);
+		MonitorSettings large = new MonitorSettings(1000, 60000, null, ContentFilter.of(null, null, List.of(longPattern)));
+		String longUrl = "https://long.example/?q=" + "\u00e9".repeat(40_000);
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			store.saveMonitors(Map.of("https://large.example/", large, longUrl, MonitorSettings.fixed(1000)));
+			store.removeMonitor(longUrl);
+		}
+
+		try (FileSnapshotStore store = new FileSnapshotStore(dir, 1024)) {
+			assertEquals(Map.of("https://large.example/", large), store.loadMonitors());
+		}
+	}
+}